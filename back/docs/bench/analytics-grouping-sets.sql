@@ -0,0 +1,220 @@
+-- Benchmark: breakdowns analytics en un passage (GROUPING SETS) contre une
+-- requete par breakdown, et index de search_events.
+--
+-- Table synthetique de 10M recherches sur 30 jours, dans un schema jetable
+-- avec ses propres types enum: le script ne depend pas du schema de
+-- l'application. A lancer sur une base PostgreSQL 16 de test (pas en
+-- production):
+--
+--   psql -d backtaxes -f back/docs/bench/analytics-grouping-sets.sql > bench_output.txt
+--
+-- La table est lue une fois avant les mesures (cache chaud). Sections:
+--   1. Index d'avant 017 (B-tree ingested_at et created_at):
+--      A (six requetes, comme les count*Between de SearchEventRepository),
+--      B (une requete GROUPING SETS), C (queue de AnalyticsAggregateReader
+--      avant), D (queue apres).
+--   2. Index couvrant ingested_at de 017: C et D a nouveau; le plan de D
+--      doit etre un "Index Only Scan" avec "Heap Fetches: 0".
+--   3. created_at: B-tree contre BRIN pour A et B (taille et temps). 017
+--      garde le B-tree tant que ces mesures ne justifient pas le BRIN.
+-- Comparer les "Execution Time" et les "Buffers" de chaque section.
+
+\set ON_ERROR_STOP on
+\timing on
+
+DROP SCHEMA IF EXISTS bench_analytics CASCADE;
+CREATE SCHEMA bench_analytics;
+SET search_path = bench_analytics;
+SET max_parallel_workers_per_gather = 2;
+
+CREATE TYPE region AS ENUM ('wallonia', 'flanders', 'brussels');
+CREATE TYPE fuel_type AS ENUM ('petrol', 'diesel', 'lpg', 'cng', 'hybrid_petrol', 'hybrid_diesel',
+    'plug_in_hybrid_petrol', 'plug_in_hybrid_diesel', 'electric', 'hydrogen');
+CREATE TYPE search_type AS ENUM ('browse', 'filter', 'calculate');
+CREATE TYPE device_type AS ENUM ('desktop', 'mobile', 'tablet');
+
+CREATE TABLE search_events (
+    id bigint NOT NULL,
+    session_id uuid NOT NULL,
+    brand_id bigint,
+    model_id bigint,
+    variant_id bigint,
+    region region,
+    fuel_type fuel_type,
+    is_new_vehicle boolean,
+    search_type search_type NOT NULL,
+    device_type device_type,
+    sample_weight smallint NOT NULL DEFAULT 1,
+    created_at timestamp NOT NULL,
+    ingested_at timestamp NOT NULL
+);
+
+-- 10M lignes dans l'ordre de chargement (created_at croissant, ingested_at
+-- quelques secondes plus tard), ~1M sessions, 40 marques.
+INSERT INTO search_events
+SELECT g,
+    CAST(md5(CAST(g / 10 AS text)) AS uuid),
+    CASE WHEN g % 5 = 0 THEN NULL ELSE 1 + g % 40 END,
+    NULL,
+    NULL,
+    CASE WHEN g % 17 = 0 THEN NULL
+        ELSE (enum_range(NULL::region))[1 + g % array_length(enum_range(NULL::region), 1)] END,
+    CASE WHEN g % 7 = 0 THEN NULL
+        ELSE (enum_range(NULL::fuel_type))[1 + g % array_length(enum_range(NULL::fuel_type), 1)] END,
+    g % 3 = 0,
+    (enum_range(NULL::search_type))[1 + g % array_length(enum_range(NULL::search_type), 1)],
+    (enum_range(NULL::device_type))[1 + g % array_length(enum_range(NULL::device_type), 1)],
+    1,
+    TIMESTAMP '2025-06-01' + (g * interval '30 days') / 10000000,
+    TIMESTAMP '2025-06-01' + (g * interval '30 days') / 10000000 + interval '5 seconds'
+FROM generate_series(1, 10000000) g;
+
+-- Index d'avant 017 (changeset 012)
+CREATE INDEX idx_bench_created ON search_events (created_at);
+CREATE INDEX idx_bench_ingested ON search_events (ingested_at);
+VACUUM ANALYZE search_events;
+SELECT COUNT(*) FROM search_events;
+
+\set start '''2025-06-10'''
+\set end '''2025-06-17'''
+\set from '''2025-06-30 23:00'''
+
+-- ============================================
+-- 1A. Six requetes sur la meme plage (7 jours)
+-- ============================================
+\echo '1A. six separate breakdown queries (B-tree created_at)'
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT COUNT(DISTINCT session_id) FROM search_events
+WHERE created_at >= :start AND created_at < :end;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT brand_id, COUNT(*) FROM search_events
+WHERE created_at >= :start AND created_at < :end AND brand_id IS NOT NULL GROUP BY brand_id ORDER BY 2 DESC;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT region, COUNT(*) FROM search_events
+WHERE created_at >= :start AND created_at < :end AND region IS NOT NULL GROUP BY region;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT fuel_type, COUNT(*) FROM search_events
+WHERE created_at >= :start AND created_at < :end AND fuel_type IS NOT NULL GROUP BY fuel_type;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT search_type, COUNT(*) FROM search_events
+WHERE created_at >= :start AND created_at < :end GROUP BY search_type;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT device_type, COUNT(*) FROM search_events
+WHERE created_at >= :start AND created_at < :end AND device_type IS NOT NULL GROUP BY device_type;
+
+-- ============================================
+-- 1B. Un passage GROUPING SETS sur la meme plage
+-- ============================================
+\echo '1B. one GROUPING SETS query (B-tree created_at)'
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY)
+SELECT GROUPING(region, fuel_type, search_type, device_type, brand_id, session_id) AS grouping_id,
+    region, fuel_type, search_type, device_type, brand_id, session_id, COUNT(*)
+FROM search_events
+WHERE created_at >= :start AND created_at < :end
+GROUP BY GROUPING SETS ((region), (fuel_type), (search_type), (device_type), (brand_id), (session_id));
+
+-- ============================================
+-- 1C. Queue (derniere heure) avant: CTE + UNION ALL par niveau + sessions
+-- ============================================
+\echo '1C. tail, UNION ALL per level and separate sessions query (B-tree ingested_at)'
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY)
+WITH search_tail AS (
+    SELECT * FROM search_events e
+    WHERE e.ingested_at >= :from AND e.created_at >= '2025-06-01' AND e.created_at < '2025-07-01'
+)
+SELECT 'global', NULL, SUM(sample_weight) FROM search_tail
+UNION ALL SELECT 'region', CAST(region AS text), SUM(sample_weight) FROM search_tail
+    WHERE region IS NOT NULL GROUP BY region
+UNION ALL SELECT 'brand', CAST(brand_id AS text), SUM(sample_weight) FROM search_tail
+    WHERE region IS NOT NULL AND brand_id IS NOT NULL GROUP BY brand_id
+UNION ALL SELECT 'fuel', CAST(fuel_type AS text), SUM(sample_weight) FROM search_tail
+    WHERE region IS NOT NULL AND fuel_type IS NOT NULL GROUP BY fuel_type
+UNION ALL SELECT 'device', CAST(device_type AS text), SUM(sample_weight) FROM search_tail
+    WHERE device_type IS NOT NULL GROUP BY device_type;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY)
+SELECT DISTINCT session_id FROM search_events
+WHERE ingested_at >= :from AND created_at >= '2025-06-01' AND created_at < '2025-07-01';
+
+-- ============================================
+-- 1D. Queue apres: un passage GROUPING SETS, sessions comprises
+-- ============================================
+\echo '1D. tail, one GROUPING SETS pass (B-tree ingested_at)'
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY)
+SELECT GROUPING(t.region, t.brand_id, t.fuel_type, t.device_type) AS grouping_id,
+    t.region, t.brand_id, t.fuel_type, t.device_type, t.session_id, SUM(t.sample_weight)
+FROM search_events t
+WHERE t.ingested_at >= :from AND t.created_at >= '2025-06-01' AND t.created_at < '2025-07-01'
+GROUP BY GROUPING SETS ((), (t.region), (t.region, t.brand_id), (t.region, t.fuel_type), (t.device_type),
+    (t.session_id))
+HAVING (GROUPING(t.region) = 1 OR t.region IS NOT NULL) AND (GROUPING(t.brand_id) = 1 OR t.brand_id IS NOT NULL)
+    AND (GROUPING(t.fuel_type) = 1 OR t.fuel_type IS NOT NULL)
+    AND (GROUPING(t.device_type) = 1 OR t.device_type IS NOT NULL);
+
+-- ============================================
+-- 2. Index couvrant ingested_at (017)
+-- ============================================
+CREATE INDEX idx_bench_ingested_covering ON search_events (ingested_at)
+    INCLUDE (created_at, session_id, search_type, sample_weight, region, brand_id, model_id,
+    variant_id, fuel_type, is_new_vehicle, device_type);
+DROP INDEX idx_bench_ingested;
+VACUUM ANALYZE search_events;
+SELECT pg_size_pretty(pg_relation_size('idx_bench_ingested_covering')) AS covering_size;
+
+\echo '2C. tail, UNION ALL per level and separate sessions query (covering ingested_at)'
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY)
+WITH search_tail AS (
+    SELECT * FROM search_events e
+    WHERE e.ingested_at >= :from AND e.created_at >= '2025-06-01' AND e.created_at < '2025-07-01'
+)
+SELECT 'global', NULL, SUM(sample_weight) FROM search_tail
+UNION ALL SELECT 'region', CAST(region AS text), SUM(sample_weight) FROM search_tail
+    WHERE region IS NOT NULL GROUP BY region
+UNION ALL SELECT 'brand', CAST(brand_id AS text), SUM(sample_weight) FROM search_tail
+    WHERE region IS NOT NULL AND brand_id IS NOT NULL GROUP BY brand_id
+UNION ALL SELECT 'fuel', CAST(fuel_type AS text), SUM(sample_weight) FROM search_tail
+    WHERE region IS NOT NULL AND fuel_type IS NOT NULL GROUP BY fuel_type
+UNION ALL SELECT 'device', CAST(device_type AS text), SUM(sample_weight) FROM search_tail
+    WHERE device_type IS NOT NULL GROUP BY device_type;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY)
+SELECT DISTINCT session_id FROM search_events
+WHERE ingested_at >= :from AND created_at >= '2025-06-01' AND created_at < '2025-07-01';
+
+\echo '2D. tail, one GROUPING SETS pass (covering ingested_at, expect Index Only Scan)'
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY)
+SELECT GROUPING(t.region, t.brand_id, t.fuel_type, t.device_type) AS grouping_id,
+    t.region, t.brand_id, t.fuel_type, t.device_type, t.session_id, SUM(t.sample_weight)
+FROM search_events t
+WHERE t.ingested_at >= :from AND t.created_at >= '2025-06-01' AND t.created_at < '2025-07-01'
+GROUP BY GROUPING SETS ((), (t.region), (t.region, t.brand_id), (t.region, t.fuel_type), (t.device_type),
+    (t.session_id))
+HAVING (GROUPING(t.region) = 1 OR t.region IS NOT NULL) AND (GROUPING(t.brand_id) = 1 OR t.brand_id IS NOT NULL)
+    AND (GROUPING(t.fuel_type) = 1 OR t.fuel_type IS NOT NULL)
+    AND (GROUPING(t.device_type) = 1 OR t.device_type IS NOT NULL);
+
+-- ============================================
+-- 3. created_at: BRIN a la place du B-tree
+-- ============================================
+CREATE INDEX idx_bench_created_brin ON search_events USING brin (created_at);
+SELECT pg_size_pretty(pg_relation_size('idx_bench_created')) AS btree_size,
+    pg_size_pretty(pg_relation_size('idx_bench_created_brin')) AS brin_size;
+DROP INDEX idx_bench_created;
+ANALYZE search_events;
+
+\echo '3A. six separate breakdown queries (BRIN created_at)'
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT COUNT(DISTINCT session_id) FROM search_events
+WHERE created_at >= :start AND created_at < :end;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT brand_id, COUNT(*) FROM search_events
+WHERE created_at >= :start AND created_at < :end AND brand_id IS NOT NULL GROUP BY brand_id ORDER BY 2 DESC;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT region, COUNT(*) FROM search_events
+WHERE created_at >= :start AND created_at < :end AND region IS NOT NULL GROUP BY region;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT fuel_type, COUNT(*) FROM search_events
+WHERE created_at >= :start AND created_at < :end AND fuel_type IS NOT NULL GROUP BY fuel_type;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT search_type, COUNT(*) FROM search_events
+WHERE created_at >= :start AND created_at < :end GROUP BY search_type;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) SELECT device_type, COUNT(*) FROM search_events
+WHERE created_at >= :start AND created_at < :end AND device_type IS NOT NULL GROUP BY device_type;
+
+\echo '3B. one GROUPING SETS query (BRIN created_at)'
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY)
+SELECT GROUPING(region, fuel_type, search_type, device_type, brand_id, session_id) AS grouping_id,
+    region, fuel_type, search_type, device_type, brand_id, session_id, COUNT(*)
+FROM search_events
+WHERE created_at >= :start AND created_at < :end
+GROUP BY GROUPING SETS ((region), (fuel_type), (search_type), (device_type), (brand_id), (session_id));
+
+RESET search_path;
+DROP SCHEMA bench_analytics CASCADE;
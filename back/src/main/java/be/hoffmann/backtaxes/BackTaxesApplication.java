@@ -2,12 +2,18 @@ package be.hoffmann.backtaxes;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
 public class BackTaxesApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(BackTaxesApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(BackTaxesApplication.class, args);
+
+        // Profil batch: le traitement est termine une fois les CommandLineRunner executes
+        if (context.getEnvironment().matchesProfiles("batch")) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 
 }
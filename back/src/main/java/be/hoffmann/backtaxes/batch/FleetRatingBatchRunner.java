@@ -0,0 +1,406 @@
+package be.hoffmann.backtaxes.batch;
+
+import be.hoffmann.backtaxes.engine.TaxEngine;
+import be.hoffmann.backtaxes.engine.TaxResult;
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.entity.Variant;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.repository.VariantRepository;
+import be.hoffmann.backtaxes.service.TaxCalculationService.VehicleData;
+import be.hoffmann.backtaxes.service.rules.RuleVersionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Re-tarification hors ligne d'une flotte (profil "batch", sans serveur web).
+ *
+ * Entree (CSV avec en-tete):  reference,variant_id,region[,first_registration_date]
+ * Sortie (CSV):               reference,variant_id,region,first_registration_date,tmc,annual,status,error
+ *
+ * Les lignes sont traitees par blocs dans un pool dimensionne sur le nombre de
+ * coeurs: chaque bloc resout ses variantes en une seule requete puis calcule les
+ * taxes avec TaxEngine sur le jeu de regles immuable du jour. Les blocs sont
+ * ecrits dans l'ordre de lecture et la sortie est videe apres chaque bloc; au
+ * redemarrage, les references deja presentes dans la sortie sont ignorees.
+ */
+@Component
+@Profile("batch")
+public class FleetRatingBatchRunner implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(FleetRatingBatchRunner.class);
+
+    static final String OUTPUT_HEADER =
+            "reference,variant_id,region,first_registration_date,tmc,annual,status,error";
+
+    private final VariantRepository variantRepository;
+    private final RuleVersionService ruleVersionService;
+    private final TaxEngine taxEngine = new TaxEngine();
+    private final String input;
+    private final String output;
+    private final int threads;
+    private final int chunkSize;
+    private final long progressIntervalMs;
+
+    public FleetRatingBatchRunner(
+            VariantRepository variantRepository,
+            RuleVersionService ruleVersionService,
+            @Value("${app.batch.input:}") String input,
+            @Value("${app.batch.output:}") String output,
+            @Value("${app.batch.threads:0}") int threads,
+            @Value("${app.batch.chunk-size:500}") int chunkSize,
+            @Value("${app.batch.progress-interval-seconds:10}") int progressIntervalSeconds) {
+        this.variantRepository = variantRepository;
+        this.ruleVersionService = ruleVersionService;
+        this.input = input;
+        this.output = output;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.chunkSize = Math.max(1, chunkSize);
+        this.progressIntervalMs = progressIntervalSeconds * 1000L;
+    }
+
+    @Override
+    public void run(String... args) throws IOException {
+        if (input.isBlank() || output.isBlank()) {
+            throw new IllegalStateException("app.batch.input and app.batch.output are required in batch profile");
+        }
+        process(Path.of(input), Path.of(output));
+    }
+
+    /**
+     * Traite le fichier d'entree et complete le fichier de sortie.
+     */
+    public BatchReport process(Path inputFile, Path outputFile) throws IOException {
+        long start = System.nanoTime();
+        Set<String> references = readProcessedReferences(outputFile);
+        int alreadyProcessed = references.size();
+        if (alreadyProcessed > 0) {
+            log.info("Resuming fleet rating: {} rows already in {}", alreadyProcessed, outputFile);
+        }
+
+        TaxRuleSet rules = ruleVersionService.getRuleSet(LocalDate.now());
+        Progress progress = new Progress(start);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "fleet-rating-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(
+                     outputFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException(inputFile + ": missing header");
+            }
+            InputColumns columns = InputColumns.parse(header);
+
+            List<InputRow> chunk = new ArrayList<>(chunkSize);
+            String line;
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                InputRow row = columns.row(line, lineNumber);
+                if (!references.add(row.reference())) {
+                    // Deja presente dans la sortie, ou doublon dans l'entree
+                    progress.skipped++;
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    List<InputRow> submitted = chunk;
+                    inFlight.add(pool.submit(() -> rateChunk(submitted, rules)));
+                    chunk = new ArrayList<>(chunkSize);
+                    // Borne le nombre de blocs en memoire
+                    while (inFlight.size() >= threads * 2) {
+                        write(inFlight.poll(), writer, progress);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                List<InputRow> submitted = chunk;
+                inFlight.add(pool.submit(() -> rateChunk(submitted, rules)));
+            }
+            while (!inFlight.isEmpty()) {
+                write(inFlight.poll(), writer, progress);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        BatchReport report = new BatchReport(progress.processed, progress.errors, progress.skipped, durationMs);
+        log.info("Fleet rating finished: {} rows rated ({} errors), {} skipped, {} ms, {} rows/s",
+                report.processed(), report.errors(), report.skipped(), durationMs,
+                throughput(report.processed(), durationMs));
+        return report;
+    }
+
+    /**
+     * Calcule un bloc de lignes: une requete pour toutes ses variantes, puis les deux taxes par ligne.
+     */
+    private ChunkResult rateChunk(List<InputRow> rows, TaxRuleSet rules) {
+        Set<Long> variantIds = new HashSet<>();
+        for (InputRow row : rows) {
+            Long variantId = parseVariantId(row.variantId());
+            if (variantId != null) {
+                variantIds.add(variantId);
+            }
+        }
+        Map<Long, Variant> variants = new HashMap<>();
+        variantRepository.findAllById(variantIds).forEach(v -> variants.put(v.getId(), v));
+
+        List<String> lines = new ArrayList<>(rows.size());
+        int errors = 0;
+        for (InputRow row : rows) {
+            try {
+                lines.add(rate(row, variants, rules));
+            } catch (RuntimeException e) {
+                errors++;
+                lines.add(csv(row.reference(), row.variantId(), row.region(), row.firstRegistrationDate(),
+                        "", "", "error", sanitize(e.getMessage())));
+            }
+        }
+        return new ChunkResult(lines, errors);
+    }
+
+    private String rate(InputRow row, Map<Long, Variant> variants, TaxRuleSet rules) {
+        Long variantId = parseVariantId(row.variantId());
+        if (variantId == null) {
+            throw new IllegalArgumentException("Invalid variant_id '" + row.variantId() + "'");
+        }
+        Variant variant = variants.get(variantId);
+        if (variant == null) {
+            throw new IllegalArgumentException("Variant not found with id: " + variantId);
+        }
+        Region region;
+        try {
+            region = Region.valueOf(row.region());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid region '" + row.region() + "'");
+        }
+        LocalDate registrationDate = row.firstRegistrationDate().isEmpty()
+                ? rules.getRateDate()
+                : LocalDate.parse(row.firstRegistrationDate());
+
+        VehicleData vehicle = VehicleData.fromVariant(variant);
+        TaxResult tmc = taxEngine.calculate(vehicle, region, TaxType.tmc, registrationDate, rules);
+        TaxResult annual = taxEngine.calculate(vehicle, region, TaxType.annual, registrationDate, rules);
+
+        return csv(row.reference(), variantId.toString(), region.name(), registrationDate.toString(),
+                tmc.getAmount().toPlainString(), annual.getAmount().toPlainString(), "ok", "");
+    }
+
+    /**
+     * Ecrit un bloc termine, dans l'ordre de soumission, et vide la sortie.
+     */
+    private void write(Future<ChunkResult> future, BufferedWriter writer, Progress progress) throws IOException {
+        ChunkResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Fleet rating interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Fleet rating failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        for (String line : result.lines()) {
+            writer.write(line);
+            writer.newLine();
+        }
+        writer.flush();
+
+        progress.processed += result.lines().size();
+        progress.errors += result.errors();
+        long now = System.nanoTime();
+        if ((now - progress.lastLog) / 1_000_000 >= progressIntervalMs) {
+            long elapsedMs = (now - progress.start) / 1_000_000;
+            log.info("Fleet rating progress: {} rows rated ({} errors), {} skipped, {} rows/s",
+                    progress.processed, progress.errors, progress.skipped,
+                    throughput(progress.processed, elapsedMs));
+            progress.lastLog = now;
+        }
+    }
+
+    /**
+     * Lit les references deja ecrites dans la sortie (cree le fichier avec son en-tete s'il n'existe pas).
+     * Une derniere ligne incomplete (arret brutal pendant l'ecriture) est supprimee.
+     */
+    private Set<String> readProcessedReferences(Path outputFile) throws IOException {
+        Set<String> references = new HashSet<>();
+        if (Files.exists(outputFile)) {
+            truncateIncompleteLine(outputFile);
+        }
+        if (!Files.exists(outputFile) || Files.size(outputFile) == 0) {
+            Files.writeString(outputFile, OUTPUT_HEADER + System.lineSeparator(), StandardCharsets.UTF_8);
+            return references;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(outputFile, StandardCharsets.UTF_8)) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comma = line.indexOf(',');
+                if (comma > 0) {
+                    references.add(line.substring(0, comma));
+                }
+            }
+        }
+        return references;
+    }
+
+    private static void truncateIncompleteLine(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long position = size;
+            while (position > 0) {
+                int length = (int) Math.min(buffer.capacity(), position);
+                position -= length;
+                buffer.clear().limit(length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        long end = position + i + 1;
+                        if (end < size) {
+                            log.warn("Dropping incomplete last line of {} ({} bytes)", file, size - end);
+                            channel.truncate(end);
+                        }
+                        return;
+                    }
+                }
+            }
+            channel.truncate(0);
+        }
+    }
+
+    private static Long parseVariantId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long throughput(long rows, long elapsedMs) {
+        return elapsedMs > 0 ? rows * 1000 / elapsedMs : rows;
+    }
+
+    private static String csv(String... values) {
+        return String.join(",", values);
+    }
+
+    private static String sanitize(String message) {
+        return message == null ? "" : message.replaceAll("[,\\r\\n]+", " ");
+    }
+
+    /**
+     * Bilan d'une execution.
+     */
+    public record BatchReport(int processed, int errors, int skipped, long durationMs) {
+    }
+
+    private record ChunkResult(List<String> lines, int errors) {
+    }
+
+    /**
+     * Ligne d'entree brute; la reference sert de cle de reprise.
+     */
+    private record InputRow(String reference, String variantId, String region, String firstRegistrationDate) {
+    }
+
+    /**
+     * Position des colonnes du fichier d'entree (adressees par leur nom d'en-tete).
+     */
+    private record InputColumns(int reference, int variantId, int region, int firstRegistrationDate) {
+
+        static InputColumns parse(String header) {
+            List<String> names = new ArrayList<>();
+            for (String name : header.strip().split(",")) {
+                names.add(name.strip());
+            }
+            return new InputColumns(
+                    required(names, "reference"),
+                    required(names, "variant_id"),
+                    required(names, "region"),
+                    names.indexOf("first_registration_date"));
+        }
+
+        private static int required(List<String> names, String name) {
+            int index = names.indexOf(name);
+            if (index < 0) {
+                throw new IllegalArgumentException("Missing input column: " + name);
+            }
+            return index;
+        }
+
+        InputRow row(String line, int lineNumber) {
+            String[] values = line.split(",", -1);
+            String key = value(values, reference);
+            return new InputRow(
+                    // Une reference vide est remplacee par le numero de ligne (cle de reprise stable)
+                    key.isEmpty() ? "#" + lineNumber : key,
+                    value(values, variantId),
+                    value(values, region),
+                    firstRegistrationDate >= 0 ? value(values, firstRegistrationDate) : "");
+        }
+
+        private static String value(String[] values, int index) {
+            return index < values.length ? values[index].strip() : "";
+        }
+    }
+
+    /**
+     * Compteurs, mis a jour uniquement par le thread d'ecriture.
+     */
+    private static final class Progress {
+        private final long start;
+        private long lastLog;
+        private int processed;
+        private int errors;
+        private int skipped;
+
+        private Progress(long start) {
+            this.start = start;
+            this.lastLog = start;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package be.hoffmann.backtaxes.config;
 
+import be.hoffmann.backtaxes.service.analytics.AnalyticsWriterSettings;
+import be.hoffmann.backtaxes.service.analytics.OverflowPolicy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
@@ -11,24 +13,44 @@ import java.util.concurrent.Executor;
 /**
  * Configuration pour l'execution asynchrone.
  *
- * Utilise pour l'analytics logging qui ne doit pas bloquer
- * les requetes de calcul de taxes.
+ * L'analytics logging ne doit pas bloquer les requetes de calcul de taxes:
+ * les evenements de recherche passent par le pipeline par lots
+ * (AnalyticsBatchWriter) configure ici. Les rapports analytics ont leur
+ * propre pool borne (reportExecutor).
  */
 @Configuration
-@EnableAsync
 @EnableScheduling
 public class AsyncConfig {
 
-    @Bean(name = "analyticsExecutor")
-    public Executor analyticsExecutor() {
+    /**
+     * Pool des rapports analytics (AnalyticsReportService): peu de threads et
+     * file bornee, une demande au-dela de la file est refusee.
+     */
+    @Bean(name = "reportExecutor")
+    public Executor reportExecutor(
+            @Value("${app.analytics.reports.threads:2}") int threads,
+            @Value("${app.analytics.reports.queue-capacity:100}") int queueCapacity) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(5);
-        executor.setQueueCapacity(500);
-        executor.setThreadNamePrefix("Analytics-");
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        executor.setAwaitTerminationSeconds(30);
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("Report-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
         executor.initialize();
         return executor;
     }
+
+    @Bean
+    public AnalyticsWriterSettings analyticsWriterSettings(
+            @Value("${app.analytics.buffer-capacity:8192}") int bufferCapacity,
+            @Value("${app.analytics.batch-size:500}") int batchSize,
+            @Value("${app.analytics.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${app.analytics.overflow-policy:drop_oldest}") OverflowPolicy overflowPolicy,
+            @Value("${app.analytics.sample-threshold:0.75}") double sampleThreshold,
+            @Value("${app.analytics.sample-rate:0.1}") double sampleRate,
+            @Value("${app.analytics.block-timeout-ms:5}") long blockTimeoutMs,
+            @Value("${app.analytics.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        return new AnalyticsWriterSettings(bufferCapacity, batchSize, flushIntervalMs, overflowPolicy,
+                sampleThreshold, sampleRate, blockTimeoutMs, shutdownTimeoutMs);
+    }
 }
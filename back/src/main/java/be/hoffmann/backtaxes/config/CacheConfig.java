@@ -13,8 +13,10 @@ import java.util.concurrent.TimeUnit;
 /**
  * Configuration du cache avec Caffeine.
  *
- * Les donnees de taxes (brackets, parameters, coefficients) changent rarement
- * (au plus une fois par an lors des indexations), donc on peut les cacher longtemps.
+ * Les regles de taxes ne passent pas par ce cache: les calculs lisent la
+ * version publiee en memoire (RuleVersionService). Les statistiques
+ * analytics (analyticsAggregates, taxAmountDigests) sont videes a chaque
+ * passage du rollup de daily_aggregates.
  *
  * Configuration via application.properties:
  * - app.cache.ttl-hours: duree de vie en heures (defaut: 24)
@@ -42,11 +44,8 @@ public class CacheConfig {
 
         // Caches specifiques
         cacheManager.setCacheNames(java.util.List.of(
-                "taxBrackets",      // Tranches de taxes
-                "taxParameters",    // Parametres (CO2 ref, MMA ref, etc.)
-                "ageCoefficients",  // Coefficients d'age
-                "taxExemptions",    // Exemptions (electrique, hydrogene)
-                "minMaxAmounts"     // Montants min/max
+                "analyticsAggregates", // Statistiques admin, videes a chaque rollup
+                "taxAmountDigests"  // Distributions de montants de reference, videes a chaque rollup
         ));
 
         return cacheManager;
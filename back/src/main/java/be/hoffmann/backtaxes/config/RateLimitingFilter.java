@@ -8,6 +8,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
@@ -30,6 +31,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * - General API: 100 requests per minute per IP
  */
 @Component
+@Profile("!batch")
 public class RateLimitingFilter extends OncePerRequestFilter {
 
     private static final int AUTH_LIMIT = 10;
@@ -3,6 +3,7 @@ package be.hoffmann.backtaxes.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -21,6 +22,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
  */
 @Configuration
 @EnableWebSecurity
+@Profile("!batch")
 public class SecurityConfig {
 
     @Value("${app.security.enabled:true}")
@@ -74,6 +76,7 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.GET, "/api/models/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/variants/**").permitAll()
                 .requestMatchers("/api/tax/**").permitAll()
+                .requestMatchers(HttpMethod.GET, "/api/price-lists/**").permitAll()
 
                 // Endpoints publics - Authentification
                 .requestMatchers("/api/auth/**").permitAll()
@@ -2,6 +2,7 @@ package be.hoffmann.backtaxes.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import jakarta.servlet.FilterChain;
@@ -20,6 +21,7 @@ import java.io.IOException;
  * - Information leakage via referrer (Referrer-Policy)
  */
 @Configuration
+@Profile("!batch")
 public class SecurityHeadersConfig {
 
     @Bean
@@ -6,12 +6,17 @@ import be.hoffmann.backtaxes.dto.response.ApiResponse;
 import be.hoffmann.backtaxes.dto.response.BrandResponse;
 import be.hoffmann.backtaxes.dto.response.ModelResponse;
 import be.hoffmann.backtaxes.dto.response.PagedResponse;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.service.AnalyticsService;
 import be.hoffmann.backtaxes.service.BrandService;
 import be.hoffmann.backtaxes.service.ModelService;
 import be.hoffmann.backtaxes.util.PaginationUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -25,14 +30,17 @@ import java.util.List;
 @Tag(name = "Marques", description = "Catalogue des marques automobiles")
 @RestController
 @RequestMapping("/api/brands")
+@Profile("!batch")
 public class BrandController {
 
     private final BrandService brandService;
     private final ModelService modelService;
+    private final AnalyticsService analyticsService;
 
-    public BrandController(BrandService brandService, ModelService modelService) {
+    public BrandController(BrandService brandService, ModelService modelService, AnalyticsService analyticsService) {
         this.brandService = brandService;
         this.modelService = modelService;
+        this.analyticsService = analyticsService;
     }
 
     @Operation(summary = "Liste toutes les marques", description = "Retourne la liste des marques automobiles (avec pagination optionnelle)")
@@ -67,7 +75,9 @@ public class BrandController {
     @GetMapping("/{id}/models")
     public ResponseEntity<ApiResponse<List<ModelResponse>>> getModelsByBrand(
             @Parameter(description = "ID de la marque") @PathVariable Long id,
-            @Parameter(description = "Recherche par nom de modele (max 100 caracteres)") @RequestParam(required = false) String search) {
+            @Parameter(description = "Recherche par nom de modele (max 100 caracteres)") @RequestParam(required = false) String search,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
 
         // Limite la recherche a 100 caracteres pour eviter les abus
         var sanitizedSearch = (search != null && !search.isBlank())
@@ -77,6 +87,9 @@ public class BrandController {
         var models = (sanitizedSearch != null)
                 ? modelService.searchByBrandAndName(id, sanitizedSearch)
                 : modelService.findByBrandId(id);
+        analyticsService.logSearch(analyticsService.builder()
+                .brandId(id)
+                .searchType(sanitizedSearch != null ? SearchType.filter : SearchType.browse), httpRequest, httpResponse);
         return ResponseEntity.ok(ApiResponse.success(ModelMapper.toResponseList(models)));
     }
 }
@@ -0,0 +1,132 @@
+package be.hoffmann.backtaxes.controller;
+
+import be.hoffmann.backtaxes.dto.request.FleetOptimizationRequest;
+import be.hoffmann.backtaxes.dto.response.ApiResponse;
+import be.hoffmann.backtaxes.dto.response.FleetOptimizationResponse;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.service.AnalyticsService;
+import be.hoffmann.backtaxes.service.FleetOptimizationService;
+import be.hoffmann.backtaxes.service.analytics.TaxCalculationRecord;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Controller pour l'optimisation fiscale des flottes.
+ * Endpoint public (pas d'authentification requise).
+ */
+@Tag(name = "Flottes", description = "Optimisation de la region d'immatriculation d'une flotte")
+@RestController
+@RequestMapping("/api/tax/fleet")
+@Profile("!batch")
+public class FleetController {
+
+    /** Couples variante x region enregistres par requete (lignes tax_calculations) */
+    static final int MAX_LOGGED_ASSIGNMENTS = 50;
+
+    private final FleetOptimizationService fleetOptimizationService;
+    private final AnalyticsService analyticsService;
+
+    public FleetController(
+            FleetOptimizationService fleetOptimizationService,
+            AnalyticsService analyticsService) {
+        this.fleetOptimizationService = fleetOptimizationService;
+        this.analyticsService = analyticsService;
+    }
+
+    @Operation(summary = "Optimise les regions d'immatriculation",
+            description = "Repartit les vehicules entre les regions pour minimiser TMC + N annees de taxe annuelle, "
+                    + "en respectant un nombre maximum de vehicules par region")
+    @PostMapping("/optimize")
+    public ResponseEntity<ApiResponse<FleetOptimizationResponse>> optimize(
+            @Valid @RequestBody FleetOptimizationRequest request,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
+        FleetOptimizationResponse response = fleetOptimizationService.optimize(request);
+        logCalculationEvent(response, httpRequest, httpResponse);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    /**
+     * Enregistre un seul evenement de calcul par requete: une flotte peut
+     * compter des milliers de lignes, qui ne doivent pas remplir le buffer
+     * d'evenements. Les lignes de calcul (TMC et taxe annuelle) portent les
+     * couples variante x region retenus, par quantites decroissantes, dans
+     * la limite de MAX_LOGGED_ASSIGNMENTS. Variante et region de l'evenement
+     * ne sont renseignees que si la flotte n'en a qu'une.
+     */
+    private void logCalculationEvent(
+            FleetOptimizationResponse response,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
+
+        Map<VariantRegion, FleetOptimizationResponse.Assignment> assignments = new LinkedHashMap<>();
+        Map<VariantRegion, Integer> quantities = new HashMap<>();
+        for (FleetOptimizationResponse.Assignment assignment : response.assignments()) {
+            VariantRegion key = new VariantRegion(assignment.variantId(), assignment.region());
+            assignments.putIfAbsent(key, assignment);
+            quantities.merge(key, assignment.quantity(), Integer::sum);
+        }
+        List<TaxCalculationRecord> calculations = new ArrayList<>();
+        assignments.keySet().stream()
+                .sorted(Comparator.comparing(quantities::get, Comparator.reverseOrder()))
+                .limit(MAX_LOGGED_ASSIGNMENTS)
+                .map(assignments::get)
+                .forEach(assignment -> {
+                    calculations.add(fleetCalculation(assignment, TaxType.tmc, assignment.unitTmc(),
+                            response.ruleVersion()));
+                    calculations.add(fleetCalculation(assignment, TaxType.annual, assignment.unitAnnual(),
+                            response.ruleVersion()));
+                });
+
+        Set<Long> variantIds = new HashSet<>();
+        Set<Region> regions = new HashSet<>();
+        response.assignments().forEach(assignment -> {
+            variantIds.add(assignment.variantId());
+            regions.add(assignment.region());
+        });
+        analyticsService.logCalculation(
+                analyticsService.builder()
+                        .sessionId(analyticsService.getOrCreateSessionId(httpRequest, httpResponse))
+                        .variantId(variantIds.size() == 1 ? variantIds.iterator().next() : null)
+                        .region(regions.size() == 1 ? regions.iterator().next() : null)
+                        .isNewVehicle(true)
+                        .firstRegistrationDate(LocalDate.now())
+                        .searchType(SearchType.calculate)
+                        .clientHeaders(httpRequest),
+                calculations);
+    }
+
+    /**
+     * Vehicules neufs (age 0), avec les caracteristiques de la variante
+     * evaluee et la version des regles de l'optimisation. Le resultat agrege
+     * ne porte pas de breakdown: un montant nul est considere comme une exemption.
+     */
+    private static TaxCalculationRecord fleetCalculation(
+            FleetOptimizationResponse.Assignment assignment, TaxType taxType, BigDecimal amount, Long ruleVersion) {
+        return new TaxCalculationRecord(assignment.variantId(), null, assignment.region(), taxType,
+                amount, assignment.powerKw(), assignment.fiscalHp(), assignment.co2Wltp(), 0, amount.signum() == 0,
+                ruleVersion);
+    }
+
+    private record VariantRegion(Long variantId, Region region) {
+    }
+}
@@ -5,23 +5,29 @@ import be.hoffmann.backtaxes.dto.response.ApiResponse;
 import be.hoffmann.backtaxes.dto.response.ManualTaxCalculationResponse;
 import be.hoffmann.backtaxes.entity.PendingCalculation;
 import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
 import be.hoffmann.backtaxes.service.AnalyticsService;
 import be.hoffmann.backtaxes.service.ManualTaxCalculationService;
+import be.hoffmann.backtaxes.service.analytics.TaxCalculationRecord;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 @Tag(name = "Calcul manuel", description = "Calcul de taxes avec donnees manuelles (sans variante)")
 @RestController
 @RequestMapping("/api/tax/manual")
+@Profile("!batch")
 public class ManualTaxController {
 
     private final ManualTaxCalculationService manualTaxCalculationService;
@@ -49,6 +55,7 @@ public class ManualTaxController {
 
         ManualTaxCalculationResponse result = manualTaxCalculationService.calculate(
                 request, saveForModeration, sessionId);
+        logCalculationEvent(request, result, sessionId, httpRequest);
 
         return ResponseEntity.ok(ApiResponse.success(result, result.getMessage()));
     }
@@ -88,6 +95,46 @@ public class ManualTaxController {
         return ResponseEntity.ok(ApiResponse.success(pending));
     }
 
+    /**
+     * Enregistre l'evenement de calcul et les taxes calculables pour analytics.
+     */
+    private void logCalculationEvent(
+            ManualTaxCalculationRequest request,
+            ManualTaxCalculationResponse result,
+            UUID sessionId,
+            HttpServletRequest httpRequest) {
+
+        List<TaxCalculationRecord> calculations = new ArrayList<>(2);
+        addCalculation(calculations, request, result, TaxType.tmc, result.getTaxes().getTmc());
+        addCalculation(calculations, request, result, TaxType.annual, result.getTaxes().getAnnual());
+
+        analyticsService.logCalculation(
+                analyticsService.builder()
+                        .sessionId(sessionId)
+                        .region(request.getRegion())
+                        .fuelType(request.getFuel())
+                        .firstRegistrationDate(request.getFirstRegistrationDate().toLocalDate())
+                        .searchType(SearchType.calculate)
+                        .clientHeaders(httpRequest),
+                calculations
+        );
+    }
+
+    private static void addCalculation(
+            List<TaxCalculationRecord> calculations,
+            ManualTaxCalculationRequest request,
+            ManualTaxCalculationResponse result,
+            TaxType taxType,
+            ManualTaxCalculationResponse.TaxResult taxResult) {
+        if (taxResult == null || !taxResult.isCalculable()) {
+            return;
+        }
+        calculations.add(TaxCalculationRecord.fromBreakdown(null, null, request.getRegion(), taxType,
+                        taxResult.getAmount(), taxResult.isExempt(), taxResult.getBreakdown())
+                .withSpecs(request.getPowerKw(), request.getFiscalHp(), request.getCo2Wltp())
+                .withRuleVersion(result.getRuleVersion()));
+    }
+
     // ==================== RESPONSE CLASSES ====================
 
     public static class AllRegionRequirements {
@@ -6,11 +6,16 @@ import be.hoffmann.backtaxes.dto.response.ApiResponse;
 import be.hoffmann.backtaxes.dto.response.ModelResponse;
 import be.hoffmann.backtaxes.dto.response.VariantResponse;
 import be.hoffmann.backtaxes.entity.Model;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.service.AnalyticsService;
 import be.hoffmann.backtaxes.service.ModelService;
 import be.hoffmann.backtaxes.service.VariantService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -24,24 +29,32 @@ import java.util.List;
 @Tag(name = "Modeles", description = "Catalogue des modeles de vehicules")
 @RestController
 @RequestMapping("/api/models")
+@Profile("!batch")
 public class ModelController {
 
     private final ModelService modelService;
     private final VariantService variantService;
+    private final AnalyticsService analyticsService;
 
-    public ModelController(ModelService modelService, VariantService variantService) {
+    public ModelController(ModelService modelService, VariantService variantService,
+                           AnalyticsService analyticsService) {
         this.modelService = modelService;
         this.variantService = variantService;
+        this.analyticsService = analyticsService;
     }
 
     @Operation(summary = "Recherche de modeles", description = "Recherche de modeles par mot-cle dans le nom")
     @GetMapping
     public ResponseEntity<ApiResponse<List<ModelResponse>>> searchModels(
-            @Parameter(description = "Mot-cle de recherche") @RequestParam(required = false) String search) {
+            @Parameter(description = "Mot-cle de recherche") @RequestParam(required = false) String search,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
 
-        List<Model> models = (search != null && !search.isBlank())
-                ? modelService.searchByName(search)
-                : new ArrayList<>();
+        if (search == null || search.isBlank()) {
+            return ResponseEntity.ok(ApiResponse.success(ModelMapper.toResponseList(new ArrayList<>())));
+        }
+        List<Model> models = modelService.searchByName(search);
+        analyticsService.logSearch(analyticsService.builder().searchType(SearchType.filter), httpRequest, httpResponse);
         return ResponseEntity.ok(ApiResponse.success(ModelMapper.toResponseList(models)));
     }
 
@@ -54,8 +67,14 @@ public class ModelController {
 
     @Operation(summary = "Liste les variantes d'un modele", description = "Retourne toutes les variantes associees a un modele")
     @GetMapping("/{id}/variants")
-    public ResponseEntity<ApiResponse<List<VariantResponse>>> getVariantsByModel(@Parameter(description = "ID du modele") @PathVariable Long id) {
+    public ResponseEntity<ApiResponse<List<VariantResponse>>> getVariantsByModel(
+            @Parameter(description = "ID du modele") @PathVariable Long id,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
         var variants = variantService.findByModelId(id);
+        analyticsService.logSearch(analyticsService.builder()
+                .modelId(id)
+                .searchType(SearchType.browse), httpRequest, httpResponse);
         return ResponseEntity.ok(ApiResponse.success(VariantMapper.toResponseList(variants)));
     }
 }
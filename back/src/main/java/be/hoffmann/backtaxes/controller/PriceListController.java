@@ -0,0 +1,126 @@
+package be.hoffmann.backtaxes.controller;
+
+import be.hoffmann.backtaxes.exception.ResourceNotFoundException;
+import be.hoffmann.backtaxes.service.pricelist.PriceListGenerator;
+import be.hoffmann.backtaxes.service.pricelist.PriceListGenerator.PriceListFile;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Controller pour les grilles de prix statiques (pages SEO).
+ *
+ * Sert directement les fichiers pre-compresses generes par PriceListGenerator:
+ * aucun calcul de taxe n'est fait a la requete. Le fichier gzip est envoye tel
+ * quel si le client l'accepte (Accept-Encoding avec q > 0), sinon il est
+ * decompresse a la volee.
+ */
+@Tag(name = "Grilles de prix", description = "Grilles de prix statiques par variante et par modele")
+@RestController
+@RequestMapping("/api/price-lists")
+public class PriceListController {
+
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(Duration.ofHours(1)).cachePublic();
+
+    private final PriceListGenerator priceListGenerator;
+
+    public PriceListController(PriceListGenerator priceListGenerator) {
+        this.priceListGenerator = priceListGenerator;
+    }
+
+    @Operation(summary = "Grille de prix d'une variante", description = "TMC (neuf et ages typiques) et taxe annuelle par region")
+    @GetMapping("/variants/{id}")
+    public ResponseEntity<Resource> getVariantPriceList(
+            @Parameter(description = "ID de la variante") @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) throws IOException {
+        PriceListFile file = priceListGenerator.findVariantDocument(id)
+                .orElseThrow(() -> new ResourceNotFoundException("PriceList", "variantId", id));
+        return serve(file, acceptEncoding, request);
+    }
+
+    @Operation(summary = "Grille de prix d'un modele", description = "Resume (vehicule neuf) de toutes les variantes du modele")
+    @GetMapping("/models/{id}")
+    public ResponseEntity<Resource> getModelPriceList(
+            @Parameter(description = "ID du modele") @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) throws IOException {
+        PriceListFile file = priceListGenerator.findModelDocument(id)
+                .orElseThrow(() -> new ResourceNotFoundException("PriceList", "modelId", id));
+        return serve(file, acceptEncoding, request);
+    }
+
+    private ResponseEntity<Resource> serve(PriceListFile file, String acceptEncoding, WebRequest request)
+            throws IOException {
+        String etag = "\"" + file.contentKey() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CACHE_CONTROL)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (acceptsGzip(acceptEncoding)) {
+            return response
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .contentLength(Files.size(file.path()))
+                    .body(new FileSystemResource(file.path()));
+        }
+        return response.body(new InputStreamResource(new GZIPInputStream(Files.newInputStream(file.path()))));
+    }
+
+    /**
+     * Vrai si l'en-tete Accept-Encoding accepte gzip: gzip (ou x-gzip) liste avec
+     * une qualite non nulle, ou a defaut le joker * avec une qualite non nulle.
+     * "gzip;q=0" refuse explicitement la compression.
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] tokens = coding.split(";");
+            String name = tokens[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                gzip = quality(tokens);
+            } else if (name.equals("*")) {
+                any = quality(tokens);
+            }
+        }
+        double quality = gzip != null ? gzip : (any != null ? any : 0);
+        return quality > 0;
+    }
+
+    private static double quality(String[] tokens) {
+        for (int i = 1; i < tokens.length; i++) {
+            String parameter = tokens[i].trim();
+            if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,114 @@
+package be.hoffmann.backtaxes.controller;
+
+import be.hoffmann.backtaxes.dto.response.ApiResponse;
+import be.hoffmann.backtaxes.dto.response.RuleBundleVersionResponse;
+import be.hoffmann.backtaxes.exception.ResourceNotFoundException;
+import be.hoffmann.backtaxes.service.rules.RuleBundle;
+import be.hoffmann.backtaxes.service.rules.RuleBundleService;
+import be.hoffmann.backtaxes.service.rules.RuleBundleService.CompiledBundle;
+import be.hoffmann.backtaxes.service.rules.RuleBundleService.FormulaSpec;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Duration;
+
+/**
+ * Controller du bundle de regles portable (calcul des taxes cote client).
+ *
+ * Le client interroge la version (reponse minuscule, revalidee a chaque fois),
+ * puis telecharge le bundle versionne une seule fois: son contenu ne change
+ * jamais pour une version donnee, il est donc cacheable indefiniment.
+ */
+@Tag(name = "Regles", description = "Export des regles de taxation pour le calcul local")
+@RestController
+@RequestMapping("/api/tax/rules")
+public class RuleBundleController {
+
+    static final String BASE_PATH = "/api/tax/rules";
+
+    private static final CacheControl IMMUTABLE =
+            CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final CacheControl SPEC_CACHE = CacheControl.maxAge(Duration.ofDays(1)).cachePublic();
+
+    private final RuleBundleService ruleBundleService;
+
+    public RuleBundleController(RuleBundleService ruleBundleService) {
+        this.ruleBundleService = ruleBundleService;
+    }
+
+    @Operation(summary = "Version courante du bundle de regles",
+            description = "Sonde legere: le client ne re-telecharge le bundle que si la version change")
+    @GetMapping("/version")
+    public ResponseEntity<ApiResponse<RuleBundleVersionResponse>> getVersion(WebRequest request) {
+        CompiledBundle bundle = ruleBundleService.getCurrentBundle();
+        String etag = "\"" + bundle.version() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        RuleBundleVersionResponse response = new RuleBundleVersionResponse(
+                bundle.version(),
+                RuleBundle.SCHEMA_VERSION,
+                ruleBundleService.getFormulaSpec().formulaVersion(),
+                BASE_PATH + "/bundles/" + bundle.version(),
+                BASE_PATH + "/spec",
+                bundle.json().length,
+                bundle.gzipped().length);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag)
+                .body(ApiResponse.success(response));
+    }
+
+    @Operation(summary = "Bundle de regles versionne",
+            description = "Tranches, parametres (dont min/max), coefficients d'age et exemptions en vigueur. "
+                    + "Cache immuable: une version donnee ne change jamais")
+    @GetMapping("/bundles/{version}")
+    public ResponseEntity<byte[]> getBundle(
+            @Parameter(description = "Version du bundle (voir /version)") @PathVariable String version,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) {
+        CompiledBundle bundle = ruleBundleService.findBundle(version)
+                .orElseThrow(() -> new ResourceNotFoundException("RuleBundle", "version", version));
+        String etag = "\"" + bundle.version() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(IMMUTABLE)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return response
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(bundle.gzipped());
+        }
+        return response.body(bundle.json());
+    }
+
+    @Operation(summary = "Specification des formules",
+            description = "Specification de reference (markdown) pour evaluer le bundle cote client")
+    @GetMapping("/spec")
+    public ResponseEntity<byte[]> getSpec(WebRequest request) {
+        FormulaSpec spec = ruleBundleService.getFormulaSpec();
+        String etag = "\"" + spec.contentKey() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/markdown;charset=UTF-8"))
+                .cacheControl(SPEC_CACHE)
+                .eTag(etag)
+                .body(spec.content());
+    }
+}
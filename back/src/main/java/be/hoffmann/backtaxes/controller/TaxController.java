@@ -3,20 +3,29 @@ package be.hoffmann.backtaxes.controller;
 import be.hoffmann.backtaxes.dto.request.TaxCalculationRequest;
 import be.hoffmann.backtaxes.dto.response.ApiResponse;
 import be.hoffmann.backtaxes.dto.response.TaxCalculationResponse;
+import be.hoffmann.backtaxes.dto.response.TaxComparisonResponse;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
 import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
 import be.hoffmann.backtaxes.service.AnalyticsService;
 import be.hoffmann.backtaxes.service.TaxCalculationService;
 import be.hoffmann.backtaxes.service.TaxCalculationService.TaxCalculationResult;
+import be.hoffmann.backtaxes.service.TaxDistributionService;
+import be.hoffmann.backtaxes.service.analytics.TaxCalculationRecord;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -27,16 +36,20 @@ import java.util.UUID;
 @Tag(name = "Taxes", description = "Calcul des taxes automobiles (TMC et taxe annuelle)")
 @RestController
 @RequestMapping("/api/tax")
+@Profile("!batch")
 public class TaxController {
 
     private final TaxCalculationService taxCalculationService;
     private final AnalyticsService analyticsService;
+    private final TaxDistributionService taxDistributionService;
 
     public TaxController(
             TaxCalculationService taxCalculationService,
-            AnalyticsService analyticsService) {
+            AnalyticsService analyticsService,
+            TaxDistributionService taxDistributionService) {
         this.taxCalculationService = taxCalculationService;
         this.analyticsService = analyticsService;
+        this.taxDistributionService = taxDistributionService;
     }
 
     @Operation(summary = "Calcule TMC et taxe annuelle", description = "Calcule les deux types de taxes pour un vehicule donne")
@@ -50,7 +63,7 @@ public class TaxController {
         TaxCalculationResult result = taxCalculationService.calculateBoth(request);
 
         // Logger l'evenement analytics (async)
-        logCalculationEvent(request, httpRequest, httpResponse);
+        logCalculationEvent(request, httpRequest, httpResponse, List.of(result.getTmc(), result.getAnnual()));
 
         // Construire la reponse
         Map<String, TaxCalculationResponse> response = new HashMap<>();
@@ -69,7 +82,7 @@ public class TaxController {
 
         // Utilise calculateTmcOnly pour eviter de calculer la taxe annuelle inutilement
         TaxCalculationResponse result = taxCalculationService.calculateTmcOnly(request);
-        logCalculationEvent(request, httpRequest, httpResponse);
+        logCalculationEvent(request, httpRequest, httpResponse, List.of(result));
         return ResponseEntity.ok(ApiResponse.success(result, "TMC calculation completed."));
     }
 
@@ -82,34 +95,47 @@ public class TaxController {
 
         // Utilise calculateAnnualOnly pour eviter de calculer la TMC inutilement
         TaxCalculationResponse result = taxCalculationService.calculateAnnualOnly(request);
-        logCalculationEvent(request, httpRequest, httpResponse);
+        logCalculationEvent(request, httpRequest, httpResponse, List.of(result));
         return ResponseEntity.ok(ApiResponse.success(result, "Annual tax calculation completed."));
     }
 
+    @Operation(summary = "Situe un montant",
+            description = "Part des calculs recents de la meme region et du meme type de taxe dont le montant est inferieur ou egal")
+    @GetMapping("/compare")
+    public ResponseEntity<ApiResponse<TaxComparisonResponse>> compare(
+            @RequestParam Region region,
+            @RequestParam TaxType taxType,
+            @RequestParam(required = false) FuelType fuelType,
+            @RequestParam BigDecimal amount) {
+        return ResponseEntity.ok(ApiResponse.success(taxDistributionService.compare(region, taxType, fuelType, amount)));
+    }
+
     /**
-     * Enregistre l'evenement de calcul pour analytics.
+     * Enregistre l'evenement de calcul et ses resultats pour analytics.
      */
     private void logCalculationEvent(
             TaxCalculationRequest request,
             HttpServletRequest httpRequest,
-            HttpServletResponse httpResponse) {
+            HttpServletResponse httpResponse,
+            List<TaxCalculationResponse> results) {
 
         UUID sessionId = analyticsService.getOrCreateSessionId(httpRequest, httpResponse);
-        String userAgent = httpRequest.getHeader("User-Agent");
-        String referer = httpRequest.getHeader("Referer");
-        String language = httpRequest.getHeader("Accept-Language");
 
-        analyticsService.logSearch(
+        List<TaxCalculationRecord> calculations = results.stream()
+                .map(result -> TaxCalculationRecord.from(request.getVariantId(), request.getSubmissionId(), result)
+                        .withSpecs(request.getPowerKw(), request.getFiscalHp(), request.getCo2Wltp()))
+                .toList();
+
+        analyticsService.logCalculation(
                 analyticsService.builder()
                         .sessionId(sessionId)
                         .variantId(request.getVariantId())
                         .region(request.getRegion())
+                        .fuelType(request.getFuel())
                         .firstRegistrationDate(request.getFirstRegistrationDate().toLocalDate())
                         .searchType(SearchType.calculate)
-                        .deviceType(analyticsService.detectDeviceType(userAgent))
-                        .referrerSource(analyticsService.extractReferrerSource(referer))
-                        .userAgentHash(analyticsService.hashUserAgent(userAgent))
-                        .language(language != null ? language.substring(0, Math.min(10, language.length())) : null)
+                        .clientHeaders(httpRequest),
+                calculations
         );
     }
 }
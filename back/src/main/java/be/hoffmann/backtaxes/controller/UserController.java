@@ -15,6 +15,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -29,6 +30,7 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "Authentification", description = "Inscription, connexion et gestion du profil utilisateur")
 @RestController
 @RequestMapping("/api")
+@Profile("!batch")
 public class UserController {
 
     private static final Logger audit = LoggerFactory.getLogger("audit");
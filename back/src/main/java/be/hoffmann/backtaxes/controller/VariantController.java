@@ -2,18 +2,27 @@ package be.hoffmann.backtaxes.controller;
 
 import be.hoffmann.backtaxes.dto.mapper.VariantMapper;
 import be.hoffmann.backtaxes.dto.response.ApiResponse;
+import be.hoffmann.backtaxes.dto.response.TaxHistoryResponse;
 import be.hoffmann.backtaxes.dto.response.VariantDetailResponse;
 import be.hoffmann.backtaxes.dto.response.VariantResponse;
 import be.hoffmann.backtaxes.entity.enums.EuroNorm;
 import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.service.AnalyticsService;
+import be.hoffmann.backtaxes.service.TaxHistoryService;
 import be.hoffmann.backtaxes.service.VariantService;
 import be.hoffmann.backtaxes.service.VariantService.VariantSearchCriteria;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -23,12 +32,18 @@ import java.util.List;
 @Tag(name = "Variantes", description = "Catalogue des variantes de vehicules (motorisations)")
 @RestController
 @RequestMapping("/api/variants")
+@Profile("!batch")
 public class VariantController {
 
     private final VariantService variantService;
+    private final TaxHistoryService taxHistoryService;
+    private final AnalyticsService analyticsService;
 
-    public VariantController(VariantService variantService) {
+    public VariantController(VariantService variantService, TaxHistoryService taxHistoryService,
+                             AnalyticsService analyticsService) {
         this.variantService = variantService;
+        this.taxHistoryService = taxHistoryService;
+        this.analyticsService = analyticsService;
     }
 
     @Operation(summary = "Recherche de variantes", description = "Recherche de variantes avec filtres multiples. Au moins un filtre est requis.")
@@ -42,7 +57,9 @@ public class VariantController {
             @Parameter(description = "Puissance maximale (CV)") @RequestParam(required = false) Integer maxPower,
             @Parameter(description = "Annee de debut minimum") @RequestParam(required = false) Integer minYear,
             @Parameter(description = "Annee de fin maximum") @RequestParam(required = false) Integer maxYear,
-            @Parameter(description = "Emissions CO2 max (g/km)") @RequestParam(required = false) Integer maxCo2) {
+            @Parameter(description = "Emissions CO2 max (g/km)") @RequestParam(required = false) Integer maxCo2,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
 
         // Retourne une liste vide si aucun filtre n'est fourni
         boolean hasFilters = brandId != null || modelId != null ||
@@ -67,14 +84,37 @@ public class VariantController {
         criteria.setMaxCo2(maxCo2);
 
         var variants = variantService.search(criteria);
+        analyticsService.logSearch(analyticsService.builder()
+                .brandId(brandId)
+                .modelId(modelId)
+                .fuelType(fuel != null && fuel.size() == 1 ? fuel.getFirst() : null)
+                .searchType(SearchType.filter), httpRequest, httpResponse);
         return ResponseEntity.ok(ApiResponse.success(VariantMapper.toResponseList(variants)));
     }
 
     @Operation(summary = "Recupere une variante", description = "Retourne les details complets d'une variante par son ID")
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponse<VariantDetailResponse>> getVariantById(@Parameter(description = "ID de la variante") @PathVariable Long id) {
+    public ResponseEntity<ApiResponse<VariantDetailResponse>> getVariantById(
+            @Parameter(description = "ID de la variante") @PathVariable Long id,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
         // Utilise findByIdWithDetails pour eviter le probleme N+1
         var variant = variantService.findByIdWithDetails(id);
+        analyticsService.logSearch(analyticsService.builder()
+                .brandId(variant.getModel().getBrand().getId())
+                .modelId(variant.getModel().getId())
+                .variantId(id)
+                .fuelType(variant.getFuel())
+                .searchType(SearchType.browse), httpRequest, httpResponse);
         return ResponseEntity.ok(ApiResponse.success(VariantMapper.toDetailResponse(variant)));
     }
+
+    @Operation(summary = "Historique des taxes", description = "Retourne la TMC et la taxe annuelle de la variante pour chaque region et chaque periode de validite des regles")
+    @GetMapping("/{id}/tax-history")
+    public ResponseEntity<ApiResponse<TaxHistoryResponse>> getTaxHistory(
+            @Parameter(description = "ID de la variante") @PathVariable Long id,
+            @Parameter(description = "Date de premiere immatriculation (defaut: vehicule neuf a chaque periode)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate firstRegistrationDate) {
+        return ResponseEntity.ok(ApiResponse.success(taxHistoryService.getHistory(id, firstRegistrationDate)));
+    }
 }
@@ -0,0 +1,225 @@
+package be.hoffmann.backtaxes.controller.admin;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsBreakdownResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsCalculatedVariantsResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsOverviewResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsSliceResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxAmountsResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxDistributionResponse;
+import be.hoffmann.backtaxes.dto.response.ApiResponse;
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse;
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.EuroNorm;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.service.AnalyticsQueryService;
+import be.hoffmann.backtaxes.service.TaxDistributionService;
+import be.hoffmann.backtaxes.service.TrafficSliceService;
+import be.hoffmann.backtaxes.service.analytics.LiveTrafficBroadcaster;
+import be.hoffmann.backtaxes.service.analytics.LiveTrafficCounters;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore;
+import be.hoffmann.backtaxes.service.analytics.SliceDimension;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+@Tag(name = "Administration analytics", description = "Statistiques de trafic (admin)")
+@RestController
+@RequestMapping("/api/admin/analytics")
+@Profile("!batch")
+public class AdminAnalyticsController {
+
+    private final AnalyticsQueryService analyticsQueryService;
+    private final TaxDistributionService taxDistributionService;
+    private final TrafficSliceService trafficSliceService;
+    private final LiveTrafficCounters liveTrafficCounters;
+    private final LiveTrafficBroadcaster liveTrafficBroadcaster;
+
+    public AdminAnalyticsController(AnalyticsQueryService analyticsQueryService,
+                                    TaxDistributionService taxDistributionService,
+                                    TrafficSliceService trafficSliceService,
+                                    LiveTrafficCounters liveTrafficCounters,
+                                    LiveTrafficBroadcaster liveTrafficBroadcaster) {
+        this.analyticsQueryService = analyticsQueryService;
+        this.taxDistributionService = taxDistributionService;
+        this.trafficSliceService = trafficSliceService;
+        this.liveTrafficCounters = liveTrafficCounters;
+        this.liveTrafficBroadcaster = liveTrafficBroadcaster;
+    }
+
+    /**
+     * Vue d'ensemble d'une periode.
+     * GET /api/admin/analytics/overview?from=2025-01-01&to=2025-01-31&region=wallonia
+     */
+    @Operation(summary = "Vue d'ensemble",
+            description = "Recherches, calculs, sessions uniques estimees et montants de taxe sur la periode")
+    @GetMapping("/overview")
+    public ResponseEntity<ApiResponse<AnalyticsOverviewResponse>> getOverview(
+            @Parameter(description = "Premier jour (inclus)")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Dernier jour (inclus)")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @Parameter(description = "Region (toutes si absente)")
+            @RequestParam(required = false) Region region) {
+        return ResponseEntity.ok(ApiResponse.success(analyticsQueryService.getOverview(from, to, region)));
+    }
+
+    /**
+     * Marques les plus recherchees.
+     * GET /api/admin/analytics/brands/top?from=...&to=...&limit=10
+     */
+    @Operation(summary = "Marques les plus recherchees", description = "Recherches et calculs par marque, par recherches decroissantes")
+    @GetMapping("/brands/top")
+    public ResponseEntity<ApiResponse<AnalyticsBreakdownResponse<Long>>> getTopBrands(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Region region,
+            @Parameter(description = "Nombre de marques (1 a 100)")
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(ApiResponse.success(analyticsQueryService.getTopBrands(from, to, region, limit)));
+    }
+
+    /**
+     * Repartition par carburant.
+     * GET /api/admin/analytics/fuel-mix?from=...&to=...
+     */
+    @Operation(summary = "Repartition par carburant")
+    @GetMapping("/fuel-mix")
+    public ResponseEntity<ApiResponse<AnalyticsBreakdownResponse<FuelType>>> getFuelMix(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Region region) {
+        return ResponseEntity.ok(ApiResponse.success(analyticsQueryService.getFuelMix(from, to, region)));
+    }
+
+    /**
+     * Repartition par type d'appareil.
+     * GET /api/admin/analytics/device-mix?from=...&to=...
+     */
+    @Operation(summary = "Repartition par appareil")
+    @GetMapping("/device-mix")
+    public ResponseEntity<ApiResponse<AnalyticsBreakdownResponse<DeviceType>>> getDeviceMix(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Region region) {
+        return ResponseEntity.ok(ApiResponse.success(analyticsQueryService.getDeviceMix(from, to, region)));
+    }
+
+    /**
+     * Statistiques des montants de taxe calcules.
+     * GET /api/admin/analytics/tax-amounts?from=...&to=...
+     */
+    @Operation(summary = "Montants de taxe", description = "Nombre, moyenne, minimum et maximum, au total et par region, carburant et appareil")
+    @GetMapping("/tax-amounts")
+    public ResponseEntity<ApiResponse<AnalyticsTaxAmountsResponse>> getTaxAmounts(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Region region) {
+        return ResponseEntity.ok(ApiResponse.success(analyticsQueryService.getTaxAmounts(from, to, region)));
+    }
+
+    /**
+     * Variantes les plus calculees, depuis le debut des compteurs.
+     * GET /api/admin/analytics/calculations/top?taxType=tmc&region=wallonia&limit=10
+     */
+    @Operation(summary = "Variantes les plus calculees",
+            description = "Calculs et montants par variante, lus dans les compteurs dedoublonnes (calculation_fingerprints)")
+    @GetMapping("/calculations/top")
+    public ResponseEntity<ApiResponse<AnalyticsCalculatedVariantsResponse>> getMostCalculatedVariants(
+            @RequestParam TaxType taxType,
+            @RequestParam(required = false) Region region,
+            @Parameter(description = "Version de regles (toutes si absente)")
+            @RequestParam(required = false) Long ruleVersion,
+            @Parameter(description = "Nombre de variantes (1 a 100)")
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(ApiResponse.success(
+                analyticsQueryService.getMostCalculatedVariants(region, taxType, ruleVersion, limit)));
+    }
+
+    /**
+     * Percentiles et histogramme des montants d'un type de taxe.
+     * GET /api/admin/analytics/tax-distribution?from=...&to=...&taxType=annual&fuelType=diesel&bins=20
+     */
+    @Operation(summary = "Distribution des montants",
+            description = "p50, p90, p99 et histogramme des montants calcules, par fusion des t-digests journaliers")
+    @GetMapping("/tax-distribution")
+    public ResponseEntity<ApiResponse<AnalyticsTaxDistributionResponse>> getTaxDistribution(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Region region,
+            @RequestParam TaxType taxType,
+            @Parameter(description = "Carburant (tous si absent)")
+            @RequestParam(required = false) FuelType fuelType,
+            @Parameter(description = "Nombre de classes de l'histogramme (1 a 50)")
+            @RequestParam(defaultValue = "20") int bins) {
+        return ResponseEntity.ok(ApiResponse.success(
+                taxDistributionService.getDistribution(from, to, region, taxType, fuelType, bins)));
+    }
+
+    /**
+     * Recherches recentes filtrees et groupees, lues en memoire.
+     * GET /api/admin/analytics/slices?from=...&to=...&fuelType=diesel&euroNorm=euro_6&deviceType=mobile&region=brussels&groupBy=week
+     */
+    @Operation(summary = "Decoupage des recherches recentes",
+            description = "Recherches filtrees par region, carburant, appareil, type, norme Euro et vehicule, "
+                    + "comptees par groupe (jusqu'a 3 dimensions), sur les jours gardes en memoire")
+    @GetMapping("/slices")
+    public ResponseEntity<ApiResponse<AnalyticsSliceResponse>> getSlice(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @Parameter(description = "Regions retenues (toutes si absent)")
+            @RequestParam(required = false) Set<Region> region,
+            @RequestParam(required = false) Set<FuelType> fuelType,
+            @RequestParam(required = false) Set<DeviceType> deviceType,
+            @RequestParam(required = false) Set<SearchType> searchType,
+            @RequestParam(required = false) Set<EuroNorm> euroNorm,
+            @RequestParam(required = false) Set<Long> brandId,
+            @RequestParam(required = false) Set<Long> modelId,
+            @RequestParam(required = false) Set<Long> variantId,
+            @Parameter(description = "Dimensions des groupes, dans l'ordre (total seul si absent)")
+            @RequestParam(required = false) List<SliceDimension> groupBy,
+            @Parameter(description = "Nombre de groupes (1 a 10000)")
+            @RequestParam(defaultValue = "1000") int limit) {
+        RecentSearchStore.Filter filter = new RecentSearchStore.Filter(region, fuelType, deviceType, searchType,
+                euroNorm, brandId, modelId, variantId);
+        return ResponseEntity.ok(ApiResponse.success(trafficSliceService.getSlice(from, to, filter, groupBy, limit)));
+    }
+
+    /**
+     * Trafic des dernieres minutes, lu en memoire.
+     * GET /api/admin/analytics/live?minutes=15
+     */
+    @Operation(summary = "Trafic en direct",
+            description = "Recherches et calculs par minute, par type, region, carburant et appareil (instance courante)")
+    @GetMapping("/live")
+    public ResponseEntity<ApiResponse<LiveTrafficResponse>> getLiveTraffic(
+            @Parameter(description = "Nombre de minutes, minute en cours comprise")
+            @RequestParam(defaultValue = "15") int minutes) {
+        return ResponseEntity.ok(ApiResponse.success(liveTrafficCounters.snapshot(minutes)));
+    }
+
+    /**
+     * Flux SSE du trafic en direct (evenement "traffic" a chaque intervalle).
+     * GET /api/admin/analytics/live/stream
+     */
+    @Operation(summary = "Flux du trafic en direct", description = "Server-Sent Events: minute en cours et precedente")
+    @GetMapping(value = "/live/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLiveTraffic() {
+        return liveTrafficBroadcaster.subscribe();
+    }
+}
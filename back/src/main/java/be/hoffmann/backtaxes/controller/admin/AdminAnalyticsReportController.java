@@ -0,0 +1,96 @@
+package be.hoffmann.backtaxes.controller.admin;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsReportGenerationResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsReportResponse;
+import be.hoffmann.backtaxes.dto.response.ApiResponse;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.ReportType;
+import be.hoffmann.backtaxes.service.AnalyticsReportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Tag(name = "Administration rapports", description = "Rapports analytics periodiques (admin)")
+@RestController
+@RequestMapping("/api/admin/analytics/reports")
+@Profile("!batch")
+public class AdminAnalyticsReportController {
+
+    private final AnalyticsReportService reportService;
+
+    public AdminAnalyticsReportController(AnalyticsReportService reportService) {
+        this.reportService = reportService;
+    }
+
+    /**
+     * Lance la generation d'un rapport (en arriere-plan).
+     * POST /api/admin/analytics/reports?type=monthly_summary&date=2025-06-01&region=wallonia
+     */
+    @Operation(summary = "Generer un rapport",
+            description = "Genere en arriere-plan le rapport de la periode contenant la date; remplace un rapport existant")
+    @PostMapping
+    public ResponseEntity<ApiResponse<AnalyticsReportGenerationResponse>> generate(
+            @Parameter(description = "weekly_summary, monthly_summary ou yearly_summary")
+            @RequestParam ReportType type,
+            @Parameter(description = "Un jour de la periode")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @Parameter(description = "Region (toutes si absente)")
+            @RequestParam(required = false) Region region) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success(reportService.requestGeneration(type, date, region), "Report generation started"));
+    }
+
+    /**
+     * Liste des rapports, sans leur contenu.
+     * GET /api/admin/analytics/reports?type=weekly_summary
+     */
+    @Operation(summary = "Lister les rapports", description = "Rapports par fin de periode decroissante")
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<AnalyticsReportResponse>>> listReports(
+            @RequestParam(required = false) ReportType type) {
+        return ResponseEntity.ok(ApiResponse.success(reportService.listReports(type)));
+    }
+
+    /**
+     * Rapport avec son contenu.
+     * GET /api/admin/analytics/reports/{id}
+     */
+    @Operation(summary = "Detail d'un rapport")
+    @GetMapping("/{id}")
+    public ResponseEntity<ApiResponse<AnalyticsReportResponse>> getReport(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.success(reportService.getReport(id)));
+    }
+
+    /**
+     * PUT /api/admin/analytics/reports/{id}/publish
+     */
+    @Operation(summary = "Publier un rapport")
+    @PutMapping("/{id}/publish")
+    public ResponseEntity<ApiResponse<AnalyticsReportResponse>> publish(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.success(reportService.setPublic(id, true)));
+    }
+
+    /**
+     * DELETE /api/admin/analytics/reports/{id}/publish
+     */
+    @Operation(summary = "Depublier un rapport")
+    @DeleteMapping("/{id}/publish")
+    public ResponseEntity<ApiResponse<AnalyticsReportResponse>> unpublish(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.success(reportService.setPublic(id, false)));
+    }
+}
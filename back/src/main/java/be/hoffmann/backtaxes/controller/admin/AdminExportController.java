@@ -0,0 +1,60 @@
+package be.hoffmann.backtaxes.controller.admin;
+
+import be.hoffmann.backtaxes.service.export.ExportDataset;
+import be.hoffmann.backtaxes.service.export.ExportFormat;
+import be.hoffmann.backtaxes.service.export.TableExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+
+@Tag(name = "Administration exports", description = "Export en flux des tables analytics et d'administration (admin)")
+@RestController
+@RequestMapping("/api/admin/export")
+public class AdminExportController {
+
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    private final TableExportService exportService;
+
+    public AdminExportController(TableExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    /**
+     * Telecharge une table en CSV ou NDJSON compresse.
+     * GET /api/admin/export/search_events?format=ndjson&from=2025-06-01&to=2025-06-30
+     */
+    @Operation(summary = "Exporter une table",
+            description = "Flux gzip de search_events, tax_calculations, tax_brackets ou users, lu par pages sur l'id")
+    @GetMapping("/{dataset}")
+    public ResponseEntity<StreamingResponseBody> export(
+            @Parameter(description = "search_events, tax_calculations, tax_brackets ou users")
+            @PathVariable ExportDataset dataset,
+            @Parameter(description = "csv ou ndjson")
+            @RequestParam(defaultValue = "csv") ExportFormat format,
+            @Parameter(description = "Premier jour de created_at (sauf tax_brackets)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Dernier jour de created_at (sauf tax_brackets)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        exportService.validate(dataset, from, to);
+        String filename = TableExportService.filename(dataset, format, from, to);
+        return ResponseEntity.ok()
+                .contentType(GZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(out -> exportService.export(dataset, format, from, to, out));
+    }
+}
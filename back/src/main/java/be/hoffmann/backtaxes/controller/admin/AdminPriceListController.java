@@ -0,0 +1,33 @@
+package be.hoffmann.backtaxes.controller.admin;
+
+import be.hoffmann.backtaxes.dto.response.ApiResponse;
+import be.hoffmann.backtaxes.dto.response.PriceListGenerationResponse;
+import be.hoffmann.backtaxes.service.pricelist.PriceListGenerator;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@Tag(name = "Administration", description = "Generation des grilles de prix statiques (acces administrateur)")
+@RestController
+@RequestMapping("/api/admin/price-lists")
+public class AdminPriceListController {
+
+    private final PriceListGenerator priceListGenerator;
+
+    public AdminPriceListController(PriceListGenerator priceListGenerator) {
+        this.priceListGenerator = priceListGenerator;
+    }
+
+    /**
+     * Lance la generation incrementale des grilles de prix.
+     * POST /api/admin/price-lists/generate
+     */
+    @Operation(summary = "Genere les grilles de prix", description = "Recalcule le catalogue et reecrit uniquement les documents modifies")
+    @PostMapping("/generate")
+    public ResponseEntity<ApiResponse<PriceListGenerationResponse>> generate() {
+        PriceListGenerationResponse result = priceListGenerator.generate();
+        return ResponseEntity.ok(ApiResponse.success(result,
+                result.variantsWritten() + " variant and " + result.modelsWritten() + " model price lists written"));
+    }
+}
@@ -0,0 +1,72 @@
+package be.hoffmann.backtaxes.controller.admin;
+
+import be.hoffmann.backtaxes.dto.response.ApiResponse;
+import be.hoffmann.backtaxes.dto.response.RuleDraftStatusResponse;
+import be.hoffmann.backtaxes.dto.response.RuleVersionResponse;
+import be.hoffmann.backtaxes.service.rules.PublishedRules;
+import be.hoffmann.backtaxes.service.rules.RuleVersionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Tag(name = "Administration taxes", description = "Publication des versions de regles de taxation (admin)")
+@RestController
+@RequestMapping("/api/admin/tax/versions")
+public class RuleVersionController {
+
+    private final RuleVersionService ruleVersionService;
+
+    public RuleVersionController(RuleVersionService ruleVersionService) {
+        this.ruleVersionService = ruleVersionService;
+    }
+
+    /**
+     * Liste les versions publiees.
+     * GET /api/admin/tax/versions
+     */
+    @Operation(summary = "Liste les versions publiees", description = "De la plus recente a la plus ancienne")
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<RuleVersionResponse>>> getVersions() {
+        long currentId = ruleVersionService.current().getVersionId();
+        List<RuleVersionResponse> versions = ruleVersionService.listVersions().stream()
+                .map(version -> RuleVersionResponse.fromEntity(version, currentId))
+                .toList();
+        return ResponseEntity.ok(ApiResponse.success(versions));
+    }
+
+    /**
+     * Etat du brouillon par rapport a la version publiee.
+     * GET /api/admin/tax/versions/draft
+     */
+    @Operation(summary = "Etat du brouillon", description = "Indique si des modifications attendent une publication")
+    @GetMapping("/draft")
+    public ResponseEntity<ApiResponse<RuleDraftStatusResponse>> getDraftStatus() {
+        PublishedRules published = ruleVersionService.current();
+        return ResponseEntity.ok(ApiResponse.success(new RuleDraftStatusResponse(
+                published.getVersionId(),
+                published.getPublishedAt(),
+                published.getSnapshot().size(),
+                ruleVersionService.hasPendingChanges())));
+    }
+
+    /**
+     * Publie le brouillon: les calculs utilisent la nouvelle version immediatement.
+     * POST /api/admin/tax/versions/publish
+     */
+    @Operation(summary = "Publie le brouillon",
+            description = "Fige les baremes, parametres, coefficients et exemptions dans une nouvelle version")
+    @PostMapping("/publish")
+    public ResponseEntity<ApiResponse<RuleDraftStatusResponse>> publish(
+            @Parameter(description = "Commentaire de publication") @RequestParam(required = false) String note) {
+        PublishedRules published = ruleVersionService.publish(note);
+        return ResponseEntity.ok(ApiResponse.success(new RuleDraftStatusResponse(
+                published.getVersionId(),
+                published.getPublishedAt(),
+                published.getSnapshot().size(),
+                false), "Version " + published.getVersionId() + " published."));
+    }
+}
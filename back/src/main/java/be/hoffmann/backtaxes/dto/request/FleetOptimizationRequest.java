@@ -0,0 +1,71 @@
+package be.hoffmann.backtaxes.dto.request;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO pour optimiser la region d'immatriculation d'une flotte.
+ *
+ * Exemple: 40 voitures, 5 ans de taxe annuelle, au plus 25 en Flandre:
+ * {
+ *   "vehicles": [{"reference": "pool-A", "variantId": 12, "quantity": 40}],
+ *   "years": 5,
+ *   "maxPerRegion": {"flanders": 25}
+ * }
+ */
+public record FleetOptimizationRequest(
+        @NotEmpty(message = "At least one vehicle is required")
+        @Size(max = FleetOptimizationRequest.MAX_VEHICLES, message = "At most 10000 fleet lines")
+        List<@Valid FleetVehicle> vehicles,
+
+        @Min(value = 0, message = "Years must be positive")
+        @Max(value = 30, message = "Years must be at most 30")
+        Integer years,  // null = 5 ans
+
+        Map<Region, @Min(value = 0, message = "Capacity must be positive") Integer> maxPerRegion  // region absente = pas de limite, 0 = region exclue
+) {
+    public static final int DEFAULT_YEARS = 5;
+
+    /** Lignes de flotte par requete (endpoint public) */
+    public static final int MAX_VEHICLES = 10_000;
+
+    /** Vehicules par ligne */
+    public static final int MAX_QUANTITY = 100_000;
+
+    public FleetOptimizationRequest {
+        if (years == null) {
+            years = DEFAULT_YEARS;
+        }
+        if (maxPerRegion == null) {
+            maxPerRegion = Map.of();
+        }
+    }
+
+    /**
+     * Ligne de flotte: une variante en une ou plusieurs unites.
+     */
+    public record FleetVehicle(
+            String reference,  // identifiant libre cote client (optionnel)
+
+            @NotNull(message = "Variant ID is required")
+            Long variantId,
+
+            @Min(value = 1, message = "Quantity must be at least 1")
+            @Max(value = MAX_QUANTITY, message = "Quantity must be at most 100000")
+            Integer quantity  // null = 1
+    ) {
+        public FleetVehicle {
+            if (quantity == null) {
+                quantity = 1;
+            }
+        }
+    }
+}
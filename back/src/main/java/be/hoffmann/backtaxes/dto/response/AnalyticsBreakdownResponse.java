@@ -0,0 +1,32 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repartition des recherches et calculs d'une periode selon une dimension
+ * (marque, carburant, appareil), par recherches decroissantes.
+ *
+ * @param searches     Recherches reparties (evenements sans valeur pour la dimension exclus)
+ * @param calculations Calculs repartis
+ */
+public record AnalyticsBreakdownResponse<K>(
+        LocalDate from,
+        LocalDate to,
+        Region region,
+        long searches,
+        long calculations,
+        List<Item<K>> items
+) {
+
+    /**
+     * @param label Libelle (nom de la marque), absent pour les enums
+     * @param share Part des recherches reparties, entre 0 et 1
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Item<K>(K key, String label, long searches, long calculations, double share) {
+    }
+}
@@ -0,0 +1,36 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxAmountsResponse.TaxAmountStats;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Variantes les plus calculees depuis le debut des compteurs (calculation_fingerprints).
+ *
+ * @param ruleVersion Version de regles (toutes si null)
+ */
+public record AnalyticsCalculatedVariantsResponse(
+        Region region,
+        TaxType taxType,
+        Long ruleVersion,
+        List<CalculatedVariant> variants
+) {
+
+    /**
+     * @param label          Marque, modele et variante (null si la variante n'existe plus)
+     * @param distinctInputs Combinaisons distinctes d'entrees et de resultat
+     * @param amounts        Nombre de calculs, moyenne, minimum et maximum des montants
+     */
+    public record CalculatedVariant(
+            long variantId,
+            String label,
+            long distinctInputs,
+            TaxAmountStats amounts,
+            LocalDateTime firstSeenAt,
+            LocalDateTime lastSeenAt
+    ) {
+    }
+}
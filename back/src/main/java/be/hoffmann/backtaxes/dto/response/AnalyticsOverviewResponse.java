@@ -0,0 +1,30 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxAmountsResponse.TaxAmountStats;
+import be.hoffmann.backtaxes.entity.enums.Region;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Vue d'ensemble du trafic sur une periode.
+ *
+ * @param rolledUpUntil Watermark du rollup: les lignes chargees ensuite sont lues brutes
+ */
+public record AnalyticsOverviewResponse(
+        LocalDate from,
+        LocalDate to,
+        Region region,
+        long searches,
+        long calculations,
+        UniqueSessions uniqueSessions,
+        TaxAmountStats taxAmounts,
+        LocalDateTime rolledUpUntil
+) {
+
+    /**
+     * Sessions uniques estimees (HyperLogLog) et intervalle a 95%.
+     */
+    public record UniqueSessions(long estimate, long lowerBound, long upperBound) {
+    }
+}
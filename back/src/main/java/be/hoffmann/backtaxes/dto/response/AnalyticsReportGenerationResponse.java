@@ -0,0 +1,17 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.ReportType;
+
+import java.time.LocalDate;
+
+/**
+ * Generation de rapport acceptee (executee en arriere-plan).
+ */
+public record AnalyticsReportGenerationResponse(
+        ReportType reportType,
+        LocalDate periodStart,
+        LocalDate periodEnd,
+        Region region
+) {
+}
@@ -0,0 +1,29 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.ReportType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Rapport analytics genere.
+ *
+ * @param region Region du rapport (null = toutes regions)
+ * @param data   Contenu JSON du rapport, absent des listes
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AnalyticsReportResponse(
+        Long id,
+        ReportType reportType,
+        String title,
+        LocalDate periodStart,
+        LocalDate periodEnd,
+        Region region,
+        boolean isPublic,
+        Instant createdAt,
+        @JsonRawValue String data
+) {
+}
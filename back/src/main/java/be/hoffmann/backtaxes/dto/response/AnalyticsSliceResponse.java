@@ -0,0 +1,37 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.service.analytics.SliceDimension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recherches recentes retenues par un filtre, comptees par groupe
+ * (store en memoire des derniers jours).
+ *
+ * @param groupCount  Nombre de groupes avant la limite
+ * @param coveredFrom Debut des donnees en memoire: les jours anterieurs ne sont pas comptes
+ * @param loadedUntil Recherches chargees en base avant cette heure
+ */
+public record AnalyticsSliceResponse(
+        LocalDate from,
+        LocalDate to,
+        List<SliceDimension> groupBy,
+        long count,
+        long groupCount,
+        List<Group> groups,
+        LocalDateTime coveredFrom,
+        LocalDateTime loadedUntil
+) {
+
+    /**
+     * Groupe, par recherches decroissantes.
+     *
+     * @param dimensions Valeur par dimension, dans l'ordre de groupBy (null = inconnue)
+     * @param share      Part des recherches retenues, entre 0 et 1
+     */
+    public record Group(Map<String, Object> dimensions, long count, double share) {
+    }
+}
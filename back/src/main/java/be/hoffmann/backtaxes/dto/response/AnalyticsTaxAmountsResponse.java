@@ -0,0 +1,29 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Statistiques des montants de taxe calcules sur une periode.
+ */
+public record AnalyticsTaxAmountsResponse(
+        LocalDate from,
+        LocalDate to,
+        Region region,
+        TaxAmountStats total,
+        Map<Region, TaxAmountStats> byRegion,
+        Map<FuelType, TaxAmountStats> byFuelType,
+        Map<DeviceType, TaxAmountStats> byDeviceType
+) {
+
+    /**
+     * Nombre, moyenne, minimum et maximum des montants (null sans montant).
+     */
+    public record TaxAmountStats(long count, BigDecimal average, BigDecimal min, BigDecimal max) {
+    }
+}
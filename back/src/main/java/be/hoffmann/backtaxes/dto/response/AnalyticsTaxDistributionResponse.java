@@ -0,0 +1,42 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Distribution des montants calcules d'un type de taxe sur une periode
+ * (estimee par t-digest; minimum et maximum exacts).
+ *
+ * @param fuelType  Carburant (null = tous)
+ * @param histogram Classes de largeur egale entre minimum et maximum
+ */
+public record AnalyticsTaxDistributionResponse(
+        LocalDate from,
+        LocalDate to,
+        Region region,
+        TaxType taxType,
+        FuelType fuelType,
+        long count,
+        BigDecimal min,
+        BigDecimal max,
+        Percentiles percentiles,
+        List<Bin> histogram
+) {
+
+    /**
+     * Percentiles des montants (null sans montant).
+     */
+    public record Percentiles(BigDecimal p50, BigDecimal p90, BigDecimal p99) {
+    }
+
+    /**
+     * Montants estimes dans [from, to[ (la derniere classe inclut to).
+     */
+    public record Bin(BigDecimal from, BigDecimal to, long count) {
+    }
+}
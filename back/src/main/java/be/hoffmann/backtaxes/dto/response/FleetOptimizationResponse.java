@@ -0,0 +1,38 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO de reponse de l'optimisation des regions d'immatriculation d'une flotte.
+ * Le cout d'un vehicule = TMC + years * taxe annuelle.
+ */
+public record FleetOptimizationResponse(
+        int years,
+        int vehicleCount,
+        Long ruleVersion,  // version des regles utilisee pour tous les couts
+        BigDecimal totalCost,
+        BigDecimal unconstrainedCost,  // cout si chaque vehicule va dans sa region la moins chere
+        Map<Region, Integer> regionCounts,
+        List<Assignment> assignments
+) {
+
+    /**
+     * Affectation d'une ligne de flotte (ou d'une partie) a une region.
+     */
+    public record Assignment(
+            String reference,
+            Long variantId,
+            Region region,
+            int quantity,
+            BigDecimal unitTmc,
+            BigDecimal unitAnnual,
+            BigDecimal unitCost,
+            Integer powerKw,   // caracteristiques de la variante evaluee
+            Integer fiscalHp,
+            Integer co2Wltp
+    ) {}
+}
@@ -0,0 +1,41 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO de reponse du trafic en direct: compteurs par minute, de la plus
+ * ancienne a la minute en cours (incomplete), et leur total.
+ */
+public record LiveTrafficResponse(
+        Instant from,
+        Instant to,
+        TrafficCounts totals,
+        List<MinuteTraffic> minutes
+) {
+
+    /**
+     * Compteurs d'une minute.
+     */
+    public record MinuteTraffic(Instant minute, TrafficCounts counts) {}
+
+    /**
+     * Recherches (tous types) et calculs, au total et par dimension.
+     */
+    public record TrafficCounts(
+            long searches,
+            long calculations,
+            Map<SearchType, Long> bySearchType,
+            Map<Region, SearchAndCalculationCount> byRegion,
+            Map<FuelType, SearchAndCalculationCount> byFuelType,
+            Map<DeviceType, SearchAndCalculationCount> byDeviceType
+    ) {}
+
+    public record SearchAndCalculationCount(long searches, long calculations) {}
+}
@@ -28,6 +28,7 @@ public class ManualTaxCalculationResponse {
     private RegionRequirements requirements;
     private PendingInfo pendingSubmission;
     private String message;
+    private Long ruleVersion;
 
     public ManualTaxCalculationResponse() {
         this.taxes = new TaxResults();
@@ -152,6 +153,8 @@ public class ManualTaxCalculationResponse {
         public void setStatus(String status) { this.status = status; }
         public String getMessage() { return message; }
         public void setMessage(String message) { this.message = message; }
+    public Long getRuleVersion() { return ruleVersion; }
+    public void setRuleVersion(Long ruleVersion) { this.ruleVersion = ruleVersion; }
     }
 
     // ==================== GETTERS & SETTERS ====================
@@ -173,6 +176,8 @@ public class ManualTaxCalculationResponse {
 
     public String getMessage() { return message; }
     public void setMessage(String message) { this.message = message; }
+    public Long getRuleVersion() { return ruleVersion; }
+    public void setRuleVersion(Long ruleVersion) { this.ruleVersion = ruleVersion; }
 
     // ==================== HELPER METHODS ====================
 
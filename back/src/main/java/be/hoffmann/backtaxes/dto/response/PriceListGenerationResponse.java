@@ -0,0 +1,14 @@
+package be.hoffmann.backtaxes.dto.response;
+
+/**
+ * DTO de reponse apres generation des grilles de prix statiques.
+ */
+public record PriceListGenerationResponse(
+        String rulesVersion,
+        int variantsWritten,
+        int variantsUnchanged,
+        int modelsWritten,
+        int modelsUnchanged,
+        int filesDeleted,
+        long durationMs
+) {}
@@ -0,0 +1,14 @@
+package be.hoffmann.backtaxes.dto.response;
+
+/**
+ * DTO de reponse de la sonde de version du bundle de regles.
+ */
+public record RuleBundleVersionResponse(
+        String version,
+        int schemaVersion,
+        int formulaVersion,
+        String bundleUrl,
+        String specUrl,
+        int sizeBytes,
+        int gzippedSizeBytes
+) {}
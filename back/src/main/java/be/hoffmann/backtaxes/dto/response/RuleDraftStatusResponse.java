@@ -0,0 +1,13 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import java.time.Instant;
+
+/**
+ * DTO de reponse sur l'etat du brouillon par rapport a la version publiee.
+ */
+public record RuleDraftStatusResponse(
+        long publishedVersionId,
+        Instant publishedAt,
+        int publishedRuleCount,
+        boolean pendingChanges
+) {}
@@ -0,0 +1,28 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.entity.TaxRuleVersion;
+
+import java.time.Instant;
+
+/**
+ * DTO de reponse pour une version publiee des regles de taxation.
+ */
+public record RuleVersionResponse(
+        Long id,
+        String fingerprint,
+        int ruleCount,
+        String note,
+        Instant publishedAt,
+        boolean current
+) {
+
+    public static RuleVersionResponse fromEntity(TaxRuleVersion version, long currentVersionId) {
+        return new RuleVersionResponse(
+                version.getId(),
+                version.getFingerprint(),
+                version.getRuleCount(),
+                version.getNote(),
+                version.getPublishedAt(),
+                version.getId() == currentVersionId);
+    }
+}
@@ -9,7 +9,7 @@ import java.util.Map;
 
 /**
  * Reponse pour un calcul de taxe.
- * Inclut le montant et le detail du calcul.
+ * Inclut le montant, le detail du calcul et la version des regles utilisee.
  */
 public class TaxCalculationResponse {
 
@@ -19,6 +19,7 @@ public class TaxCalculationResponse {
     private Boolean isExempt;
     private String exemptionReason;
     private Map<String, Object> breakdown;
+    private Long ruleVersion;
 
     public TaxCalculationResponse() {
         this.breakdown = new HashMap<>();
@@ -72,6 +73,17 @@ public class TaxCalculationResponse {
         this.breakdown = breakdown;
     }
 
+    /**
+     * Version publiee des regles ayant servi au calcul (null pour un jeu de regles ad hoc).
+     */
+    public Long getRuleVersion() {
+        return ruleVersion;
+    }
+
+    public void setRuleVersion(Long ruleVersion) {
+        this.ruleVersion = ruleVersion;
+    }
+
     public void addBreakdownItem(String key, Object value) {
         this.breakdown.put(key, value);
     }
@@ -0,0 +1,31 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Position d'un montant parmi les montants calcules recemment.
+ *
+ * @param percentile Part des calculs de montant inferieur ou egal, en %
+ *                   (null si trop peu de calculs sur la periode)
+ * @param sampleSize Calculs de reference
+ * @param from       Premier jour de la periode de reference
+ * @param to         Dernier jour de la periode de reference
+ */
+public record TaxComparisonResponse(
+        Region region,
+        TaxType taxType,
+        FuelType fuelType,
+        BigDecimal amount,
+        Double percentile,
+        long sampleSize,
+        BigDecimal median,
+        BigDecimal p90,
+        LocalDate from,
+        LocalDate to
+) {
+}
@@ -0,0 +1,38 @@
+package be.hoffmann.backtaxes.dto.response;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DTO de reponse pour l'historique des taxes d'une variante.
+ * Une entree par periode de validite des regles (tranches, parametres, coefficients).
+ */
+public record TaxHistoryResponse(
+        Long variantId,
+        LocalDate firstRegistrationDate,  // null = vehicule neuf au debut de chaque periode
+        List<Period> periods
+) {
+
+    /**
+     * Periode pendant laquelle les regles de taxation sont restees identiques.
+     */
+    public record Period(
+            LocalDate validFrom,
+            LocalDate validTo,  // null = toujours valide
+            List<RegionTaxes> regions
+    ) {}
+
+    /**
+     * Montants TMC et taxe annuelle pour une region.
+     */
+    public record RegionTaxes(
+            Region region,
+            BigDecimal tmc,
+            boolean tmcExempt,
+            BigDecimal annual,
+            boolean annualExempt
+    ) {}
+}
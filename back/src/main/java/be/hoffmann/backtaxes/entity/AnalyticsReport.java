@@ -22,6 +22,7 @@ import java.time.LocalDate;
  *   - regional_comparison: Comparaison entre regions
  *   - monthly_summary: Resume mensuel global
  *   - data_retention: Rapport pre-purge des donnees brutes
+ *   - weekly_summary, yearly_summary: Resumes hebdomadaire et annuel
  *
  * Les donnees du rapport sont stockees en JSONB pour flexibilite,
  * permettant differentes structures selon le type de rapport.
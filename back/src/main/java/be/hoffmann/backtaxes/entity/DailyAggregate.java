@@ -1,5 +1,6 @@
 package be.hoffmann.backtaxes.entity;
 
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
 import be.hoffmann.backtaxes.entity.enums.FuelType;
 import be.hoffmann.backtaxes.entity.enums.Region;
 import jakarta.persistence.*;
@@ -15,14 +16,16 @@ import java.time.LocalDate;
  * des requetes performantes sur les tendances sans scanner les
  * millions de lignes de search_events.
  *
- * Les agregats sont calcules par un job batch quotidien et conserves
- * indefiniment (contrairement aux donnees brutes purgees apres 90j).
+ * Les agregats sont alimentes incrementalement par DailyAggregateRollup
+ * (passage horaire) et conserves indefiniment (contrairement aux donnees
+ * brutes purgees apres 90j).
  *
  * Les colonnes nullables (region, brand_id, etc.) permettent differents
  * niveaux d'agregation:
  *   - Tout null = agregat global du jour
  *   - region seul = agregat par region
  *   - region + brand_id = agregat par marque dans une region
+ *   - device_type (+ region si connue) = agregat par appareil
  *   - etc.
  */
 @Entity
@@ -63,6 +66,12 @@ public class DailyAggregate {
     @Column(name = "is_new_vehicle")
     private Boolean isNewVehicle;
 
+    /** Type d'appareil (null = tous) */
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.NAMED_ENUM)
+    @Column(name = "device_type", columnDefinition = "device_type")
+    private DeviceType deviceType;
+
     /** Nombre de recherches */
     @Column(name = "search_count")
     private Integer searchCount = 0;
@@ -71,7 +80,11 @@ public class DailyAggregate {
     @Column(name = "calculation_count")
     private Integer calculationCount = 0;
 
-    /** Nombre de sessions uniques */
+    /**
+     * Nombre de sessions uniques du jour (estime par le sketch HyperLogLog
+     * session_sketch aux niveaux global, region et marque). Ne s'additionne
+     * pas entre jours ou regions: voir UniqueSessionCounter.
+     */
     @Column(name = "unique_sessions")
     private Integer uniqueSessions = 0;
 
@@ -87,6 +100,14 @@ public class DailyAggregate {
     @Column(name = "min_tax_amount", precision = 12, scale = 2)
     private BigDecimal minTaxAmount;
 
+    /** Somme des montants calcules (pour cumuler la moyenne) */
+    @Column(name = "tax_amount_sum", precision = 16, scale = 2)
+    private BigDecimal taxAmountSum = BigDecimal.ZERO;
+
+    /** Nombre de montants calcules */
+    @Column(name = "tax_amount_count")
+    private Integer taxAmountCount = 0;
+
     // ==================== CONSTRUCTEURS ====================
 
     public DailyAggregate() {
@@ -150,6 +171,14 @@ public class DailyAggregate {
         this.isNewVehicle = isNewVehicle;
     }
 
+    public DeviceType getDeviceType() {
+        return deviceType;
+    }
+
+    public void setDeviceType(DeviceType deviceType) {
+        this.deviceType = deviceType;
+    }
+
     public Integer getSearchCount() {
         return searchCount;
     }
@@ -197,4 +226,20 @@ public class DailyAggregate {
     public void setMinTaxAmount(BigDecimal minTaxAmount) {
         this.minTaxAmount = minTaxAmount;
     }
+
+    public BigDecimal getTaxAmountSum() {
+        return taxAmountSum;
+    }
+
+    public void setTaxAmountSum(BigDecimal taxAmountSum) {
+        this.taxAmountSum = taxAmountSum;
+    }
+
+    public Integer getTaxAmountCount() {
+        return taxAmountCount;
+    }
+
+    public void setTaxAmountCount(Integer taxAmountCount) {
+        this.taxAmountCount = taxAmountCount;
+    }
 }
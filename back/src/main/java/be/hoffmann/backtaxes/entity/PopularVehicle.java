@@ -13,10 +13,12 @@ import java.time.LocalDate;
  * Snapshot hebdomadaire des vehicules populaires.
  *
  * Cette table stocke le classement des vehicules selon differentes
- * metriques, genere chaque semaine par un job batch:
+ * metriques, calcule en continu par des sketches en memoire
+ * (PopularVehicleSketches) et ecrit a la fin de chaque semaine
+ * par PopularVehicleJob:
  *   - most_searched: Top 100 vehicules les plus recherches
- *   - highest_tax: Top 100 vehicules avec la taxe la plus elevee
- *   - lowest_tax: Top 100 vehicules avec la taxe la plus basse
+ *   - highest_tax: Top 100 vehicules calcules avec la taxe la plus elevee
+ *   - lowest_tax: Top 100 vehicules calcules avec la taxe la plus basse
  *
  * Un classement est genere par region et par type, permettant
  * des analyses regionales detaillees.
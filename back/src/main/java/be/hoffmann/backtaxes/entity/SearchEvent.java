@@ -22,6 +22,8 @@ import java.util.UUID;
  *
  * RGPD: Pas d'IP stockee. Session anonymisee via UUID.
  * Retention: Donnees brutes purgees apres 90 jours, agregats conserves.
+ * Table partitionnee par mois sur created_at: la purge supprime les
+ * partitions expirees (voir AnalyticsPartitionManager).
  */
 @Entity
 @Table(name = "search_events")
@@ -108,6 +110,13 @@ public class SearchEvent {
     @Column(length = 10)
     private String language;
 
+    /**
+     * Poids d'echantillonnage: l'evenement represente sample_weight evenements
+     * (1 sauf recherches echantillonnees sous charge, voir AdaptiveSampler).
+     */
+    @Column(name = "sample_weight", nullable = false)
+    private Short sampleWeight = 1;
+
     @Column(name = "created_at", insertable = false, updatable = false)
     private Instant createdAt;
 
@@ -238,6 +247,14 @@ public class SearchEvent {
         this.language = language;
     }
 
+    public Short getSampleWeight() {
+        return sampleWeight;
+    }
+
+    public void setSampleWeight(Short sampleWeight) {
+        this.sampleWeight = sampleWeight;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -16,7 +16,9 @@ import java.time.Instant;
  *   - Identification des vehicules les plus/moins taxes
  *   - Statistiques sur les caracteristiques techniques (CO2, puissance)
  *
- * Lie a un SearchEvent pour tracer le parcours utilisateur.
+ * Lie a un SearchEvent pour tracer le parcours utilisateur (sans cle
+ * etrangere en base: les deux tables sont partitionnees par mois sur
+ * created_at, voir AnalyticsPartitionManager).
  */
 @Entity
 @Table(name = "tax_calculations")
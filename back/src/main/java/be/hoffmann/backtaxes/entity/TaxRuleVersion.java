@@ -0,0 +1,101 @@
+package be.hoffmann.backtaxes.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import java.time.Instant;
+
+/**
+ * Version publiee (immuable) des regles de taxation.
+ *
+ * Les tables de configuration (tranches, parametres, coefficients d'age,
+ * exemptions) sont le brouillon edite par les administrateurs. Une
+ * publication fige une copie complete du brouillon, periodes de validite
+ * comprises: les calculs ne lisent que la derniere version publiee.
+ *
+ * Une ligne n'est jamais modifiee apres insertion; l'id sert de numero de
+ * version et est renvoye avec chaque calcul.
+ */
+@Entity
+@Table(name = "tax_rule_versions")
+public class TaxRuleVersion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** SHA-256 du contenu (detecte un brouillon identique a la version publiee) */
+    @Column(nullable = false, length = 64, updatable = false)
+    private String fingerprint;
+
+    /** Nombre de lignes de regles dans la version */
+    @Column(name = "rule_count", nullable = false, updatable = false)
+    private Integer ruleCount;
+
+    /** Copie des regles du brouillon (voir RuleSnapshot) */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(nullable = false, columnDefinition = "jsonb", updatable = false)
+    private String rules;
+
+    /** Commentaire libre de l'administrateur */
+    @Column(length = 255, updatable = false)
+    private String note;
+
+    @Column(name = "published_at", nullable = false, updatable = false)
+    private Instant publishedAt;
+
+    // ==================== CONSTRUCTEURS ====================
+
+    public TaxRuleVersion() {
+    }
+
+    // ==================== GETTERS & SETTERS ====================
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public Integer getRuleCount() {
+        return ruleCount;
+    }
+
+    public void setRuleCount(Integer ruleCount) {
+        this.ruleCount = ruleCount;
+    }
+
+    public String getRules() {
+        return rules;
+    }
+
+    public void setRules(String rules) {
+        this.rules = rules;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public void setNote(String note) {
+        this.note = note;
+    }
+
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    public void setPublishedAt(Instant publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+}
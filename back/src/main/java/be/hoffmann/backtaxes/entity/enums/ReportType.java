@@ -13,5 +13,7 @@ public enum ReportType {
     user_behavior,       // Comportement utilisateur (devices, sources, conversions)
     regional_comparison, // Comparaison entre regions
     monthly_summary,     // Resume mensuel global
-    data_retention       // Rapport pre-purge des donnees brutes
+    data_retention,      // Rapport pre-purge des donnees brutes
+    weekly_summary,      // Resume hebdomadaire (AnalyticsReportService)
+    yearly_summary       // Resume annuel (AnalyticsReportService)
 }
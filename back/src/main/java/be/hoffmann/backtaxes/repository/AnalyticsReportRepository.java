@@ -4,12 +4,14 @@ import be.hoffmann.backtaxes.entity.AnalyticsReport;
 import be.hoffmann.backtaxes.entity.enums.Region;
 import be.hoffmann.backtaxes.entity.enums.ReportType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AnalyticsReportRepository extends JpaRepository<AnalyticsReport, Long> {
@@ -40,4 +42,16 @@ public interface AnalyticsReportRepository extends JpaRepository<AnalyticsReport
     List<AnalyticsReport> findRetentionReports();
 
     boolean existsByReportTypeAndPeriodStartAndPeriodEnd(ReportType reportType, LocalDate periodStart, LocalDate periodEnd);
+
+    Optional<AnalyticsReport> findByReportTypeAndPeriodStartAndPeriodEndAndRegion(ReportType reportType, LocalDate periodStart, LocalDate periodEnd, Region region);
+
+    List<AnalyticsReport> findByReportTypeOrderByPeriodEndDesc(ReportType reportType);
+
+    /**
+     * Publie ou depublie un rapport en une seule instruction (pas de lecture prealable).
+     * @return 0 si le rapport n'existe pas ou avait deja cet etat
+     */
+    @Modifying
+    @Query("UPDATE AnalyticsReport ar SET ar.isPublic = :isPublic WHERE ar.id = :id AND COALESCE(ar.isPublic, false) <> :isPublic")
+    int updateIsPublic(@Param("id") Long id, @Param("isPublic") boolean isPublic);
 }
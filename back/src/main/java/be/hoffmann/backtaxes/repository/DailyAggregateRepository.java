@@ -28,10 +28,10 @@ public interface DailyAggregateRepository extends JpaRepository<DailyAggregate,
 
     List<DailyAggregate> findByDateBetweenAndBrandId(LocalDate start, LocalDate end, Long brandId);
 
-    @Query("SELECT da FROM DailyAggregate da WHERE da.date BETWEEN :start AND :end AND da.region IS NULL AND da.brand IS NULL ORDER BY da.date")
+    @Query("SELECT da FROM DailyAggregate da WHERE da.date BETWEEN :start AND :end AND da.region IS NULL AND da.brand IS NULL AND da.deviceType IS NULL ORDER BY da.date")
     List<DailyAggregate> findGlobalAggregatesBetween(@Param("start") LocalDate start, @Param("end") LocalDate end);
 
-    @Query("SELECT SUM(da.searchCount), SUM(da.calculationCount), SUM(da.uniqueSessions) FROM DailyAggregate da WHERE da.date BETWEEN :start AND :end AND da.region IS NULL AND da.brand IS NULL")
+    @Query("SELECT SUM(da.searchCount), SUM(da.calculationCount), SUM(da.uniqueSessions) FROM DailyAggregate da WHERE da.date BETWEEN :start AND :end AND da.region IS NULL AND da.brand IS NULL AND da.deviceType IS NULL")
     Object[] sumGlobalStatsBetween(@Param("start") LocalDate start, @Param("end") LocalDate end);
 
     @Query("SELECT da.brand.id, SUM(da.searchCount) FROM DailyAggregate da WHERE da.date BETWEEN :start AND :end AND da.brand IS NOT NULL AND da.model IS NULL GROUP BY da.brand.id ORDER BY SUM(da.searchCount) DESC")
@@ -37,6 +37,9 @@ public interface PopularVehicleRepository extends JpaRepository<PopularVehicle,
     @Query("SELECT pv.weekStart, pv.region, pv.rankingType, pv.variant.id, pv.rank FROM PopularVehicle pv WHERE pv.variant.id = :variantId ORDER BY pv.weekStart DESC")
     List<Object[]> findRankingHistoryByVariant(@Param("variantId") Long variantId);
 
+    @Query("SELECT pv.region, v.id, b.name, m.name, v.name, pv.searchCount FROM PopularVehicle pv JOIN pv.variant v JOIN pv.brand b JOIN pv.model m WHERE pv.weekStart BETWEEN :start AND :end AND pv.rankingType = :rankingType")
+    List<Object[]> findRankingRowsBetween(@Param("start") LocalDate start, @Param("end") LocalDate end, @Param("rankingType") RankingType rankingType);
+
     boolean existsByWeekStart(LocalDate weekStart);
 
     void deleteByWeekStart(LocalDate weekStart);
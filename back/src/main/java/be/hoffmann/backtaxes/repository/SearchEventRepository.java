@@ -50,6 +50,4 @@ public interface SearchEventRepository extends JpaRepository<SearchEvent, Long>
     List<Object[]> countByDeviceTypeBetween(@Param("start") Instant start, @Param("end") Instant end);
 
     Long countByIsNewVehicleAndCreatedAtBetween(Boolean isNewVehicle, Instant start, Instant end);
-
-    void deleteByCreatedAtBefore(Instant before);
 }
@@ -45,6 +45,4 @@ public interface TaxCalculationRepository extends JpaRepository<TaxCalculation,
     List<Object[]> avgAmountByRegionAndType(@Param("taxType") TaxType taxType, @Param("start") Instant start, @Param("end") Instant end);
 
     Long countByIsExemptAndCreatedAtBetween(Boolean isExempt, Instant start, Instant end);
-
-    void deleteByCreatedAtBefore(Instant before);
 }
@@ -0,0 +1,27 @@
+package be.hoffmann.backtaxes.repository;
+
+import be.hoffmann.backtaxes.entity.TaxRuleVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TaxRuleVersionRepository extends JpaRepository<TaxRuleVersion, Long> {
+
+    Optional<TaxRuleVersion> findTopByOrderByIdDesc();
+
+    List<TaxRuleVersion> findAllByOrderByIdDesc();
+
+    @Query("SELECT MAX(v.id) FROM TaxRuleVersion v")
+    Optional<Long> findLatestId();
+
+    /**
+     * Verrou des publications, partage par toutes les instances et libere a
+     * la fin de la transaction (pg_advisory_xact_lock).
+     */
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(hashtext('tax_rule_versions'))", nativeQuery = true)
+    Integer lockPublication();
+}
@@ -37,6 +37,16 @@ public interface VariantRepository extends JpaRepository<Variant, Long> {
            "WHERE m.id = :modelId")
     List<Variant> findByModelIdWithDetails(@Param("modelId") Long modelId);
 
+    /**
+     * Charge tout le catalogue (variantes + modele + marque) en une seule requete.
+     * Utilise par les traitements de masse (generation des grilles de prix).
+     */
+    @Query("SELECT v FROM Variant v " +
+           "JOIN FETCH v.model m " +
+           "JOIN FETCH m.brand b " +
+           "ORDER BY b.name, m.name, v.name, v.id")
+    List<Variant> findAllWithDetails();
+
     Optional<Variant> findByModelIdAndNameAndYearStart(Long modelId, String name, Integer yearStart);
 
     List<Variant> findByFuel(FuelType fuel);
@@ -0,0 +1,221 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsBreakdownResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsBreakdownResponse.Item;
+import be.hoffmann.backtaxes.dto.response.AnalyticsCalculatedVariantsResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsCalculatedVariantsResponse.CalculatedVariant;
+import be.hoffmann.backtaxes.dto.response.AnalyticsOverviewResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsOverviewResponse.UniqueSessions;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxAmountsResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxAmountsResponse.TaxAmountStats;
+import be.hoffmann.backtaxes.entity.Brand;
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.repository.BrandRepository;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsAggregateReader;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsAggregates;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsAggregates.Totals;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsRange;
+import be.hoffmann.backtaxes.service.analytics.CalculationFingerprints;
+import be.hoffmann.backtaxes.service.analytics.CalculationFingerprints.VariantCalculations;
+import be.hoffmann.backtaxes.service.analytics.HyperLogLog;
+import be.hoffmann.backtaxes.service.analytics.UniqueSessionCounter.UniqueSessionEstimate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Statistiques analytics pour l'administration, sur une periode arbitraire.
+ *
+ * Les chiffres viennent de daily_aggregates (mis en cache jusqu'au prochain
+ * rollup) et des seules lignes chargees depuis le dernier rollup: le temps
+ * de reponse depend du nombre de jours demandes, pas du volume de
+ * search_events. Voir AnalyticsAggregateReader. Les variantes les plus
+ * calculees sont lues dans les compteurs dedoublonnes de
+ * calculation_fingerprints (CalculationFingerprints).
+ */
+@Service
+public class AnalyticsQueryService {
+
+    static final int MAX_TOP_BRANDS = 100;
+
+    static final int MAX_TOP_VARIANTS = 100;
+
+    private final AnalyticsAggregateReader aggregateReader;
+    private final BrandRepository brandRepository;
+    private final CalculationFingerprints calculationFingerprints;
+
+    public AnalyticsQueryService(AnalyticsAggregateReader aggregateReader, BrandRepository brandRepository,
+                                 CalculationFingerprints calculationFingerprints) {
+        this.aggregateReader = aggregateReader;
+        this.brandRepository = brandRepository;
+        this.calculationFingerprints = calculationFingerprints;
+    }
+
+    /**
+     * Recherches, calculs, sessions uniques et montants de la periode.
+     */
+    public AnalyticsOverviewResponse getOverview(LocalDate from, LocalDate to, Region region) {
+        AnalyticsRange range = range(from, to, region);
+        AnalyticsAggregates aggregates = read(range);
+        UniqueSessionEstimate sessions = new UniqueSessionEstimate(
+                HyperLogLog.fromBytes(aggregates.sessionSketch()).estimate(), HyperLogLog.RELATIVE_STANDARD_ERROR);
+        LocalDateTime rolledUpUntil = aggregates.searchesRolledUpUntil().isBefore(aggregates.calculationsRolledUpUntil())
+                ? aggregates.searchesRolledUpUntil()
+                : aggregates.calculationsRolledUpUntil();
+        return new AnalyticsOverviewResponse(from, to, region,
+                aggregates.total().searches(),
+                aggregates.total().calculations(),
+                new UniqueSessions(sessions.estimate(), sessions.lowerBound(), sessions.upperBound()),
+                toStats(aggregates.total()),
+                rolledUpUntil);
+    }
+
+    /**
+     * Marques les plus recherchees (evenements avec region et marque).
+     */
+    public AnalyticsBreakdownResponse<Long> getTopBrands(LocalDate from, LocalDate to, Region region, int limit) {
+        if (limit < 1 || limit > MAX_TOP_BRANDS) {
+            throw new ValidationException("limit", "limit must be between 1 and " + MAX_TOP_BRANDS);
+        }
+        AnalyticsRange range = range(from, to, region);
+        Map<Long, Totals> byBrand = read(range).byBrand();
+        List<Long> top = bySearches(byBrand).stream().limit(limit).toList();
+        Map<Long, String> names = brandRepository.findAllById(top).stream()
+                .collect(Collectors.toMap(Brand::getId, Brand::getName));
+        return breakdown(range, byBrand, top, names::get);
+    }
+
+    /**
+     * Repartition par carburant (evenements avec region et carburant).
+     */
+    public AnalyticsBreakdownResponse<FuelType> getFuelMix(LocalDate from, LocalDate to, Region region) {
+        AnalyticsRange range = range(from, to, region);
+        return breakdown(range, read(range).byFuelType());
+    }
+
+    /**
+     * Repartition par type d'appareil.
+     */
+    public AnalyticsBreakdownResponse<DeviceType> getDeviceMix(LocalDate from, LocalDate to, Region region) {
+        AnalyticsRange range = range(from, to, region);
+        return breakdown(range, read(range).byDeviceType());
+    }
+
+    /**
+     * Montants calcules: total et par region, carburant et appareil.
+     */
+    public AnalyticsTaxAmountsResponse getTaxAmounts(LocalDate from, LocalDate to, Region region) {
+        AnalyticsRange range = range(from, to, region);
+        AnalyticsAggregates aggregates = read(range);
+        return new AnalyticsTaxAmountsResponse(from, to, region,
+                toStats(aggregates.total()),
+                toStatsMap(Region.class, aggregates.byRegion()),
+                toStatsMap(FuelType.class, aggregates.byFuelType()),
+                toStatsMap(DeviceType.class, aggregates.byDeviceType()));
+    }
+
+    /**
+     * Variantes les plus calculees et leurs montants, depuis le debut des compteurs.
+     *
+     * @param region      Region (toutes si null)
+     * @param ruleVersion Version de regles (toutes si null)
+     */
+    public AnalyticsCalculatedVariantsResponse getMostCalculatedVariants(Region region, TaxType taxType,
+                                                                         Long ruleVersion, int limit) {
+        if (taxType == null) {
+            throw new ValidationException("taxType", "taxType is required");
+        }
+        if (limit < 1 || limit > MAX_TOP_VARIANTS) {
+            throw new ValidationException("limit", "limit must be between 1 and " + MAX_TOP_VARIANTS);
+        }
+        List<CalculatedVariant> variants = calculationFingerprints.topVariants(region, taxType, ruleVersion, limit)
+                .stream()
+                .map(AnalyticsQueryService::toCalculatedVariant)
+                .toList();
+        return new AnalyticsCalculatedVariantsResponse(region, taxType, ruleVersion, variants);
+    }
+
+    /**
+     * Agregats en cache plus les lignes chargees depuis leurs watermarks.
+     */
+    private AnalyticsAggregates read(AnalyticsRange range) {
+        AnalyticsAggregates rolledUp = aggregateReader.readRolledUp(range);
+        return rolledUp.plus(aggregateReader.readTail(range,
+                rolledUp.searchesRolledUpUntil(), rolledUp.calculationsRolledUpUntil()));
+    }
+
+    private static AnalyticsRange range(LocalDate from, LocalDate to, Region region) {
+        if (from == null || to == null) {
+            throw new ValidationException("from", "from and to are required");
+        }
+        if (from.isAfter(to)) {
+            throw new ValidationException("from", "from must not be after to");
+        }
+        return new AnalyticsRange(from, to, region);
+    }
+
+    private static <K extends Comparable<K>> AnalyticsBreakdownResponse<K> breakdown(
+            AnalyticsRange range, Map<K, Totals> totals) {
+        return breakdown(range, totals, bySearches(totals), key -> null);
+    }
+
+    /**
+     * Cles ayant des recherches, par recherches decroissantes puis par cle.
+     */
+    private static <K extends Comparable<K>> List<K> bySearches(Map<K, Totals> totals) {
+        Comparator<Map.Entry<K, Totals>> order = Comparator.comparingLong(entry -> entry.getValue().searches());
+        return totals.entrySet().stream()
+                .filter(entry -> entry.getValue().searches() > 0)
+                .sorted(order.reversed().thenComparing(Map.Entry::getKey))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static <K> AnalyticsBreakdownResponse<K> breakdown(
+            AnalyticsRange range, Map<K, Totals> totals, List<K> keys, Function<K, String> label) {
+        long searches = totals.values().stream().mapToLong(Totals::searches).sum();
+        long calculations = totals.values().stream().mapToLong(Totals::calculations).sum();
+        List<Item<K>> items = keys.stream()
+                .map(key -> {
+                    Totals value = totals.get(key);
+                    double share = searches == 0 ? 0 : (double) value.searches() / searches;
+                    return new Item<>(key, label.apply(key), value.searches(), value.calculations(), share);
+                })
+                .toList();
+        return new AnalyticsBreakdownResponse<>(range.from(), range.to(), range.region(), searches, calculations, items);
+    }
+
+    private static CalculatedVariant toCalculatedVariant(VariantCalculations variant) {
+        String label = variant.variantName() == null ? null
+                : variant.brandName() + " " + variant.modelName() + " " + variant.variantName();
+        return new CalculatedVariant(variant.variantId(), label, variant.fingerprints(),
+                new TaxAmountStats(variant.calculations(), variant.averageAmount(), variant.minAmount(),
+                        variant.maxAmount()),
+                variant.firstSeenAt(), variant.lastSeenAt());
+    }
+
+    private static TaxAmountStats toStats(Totals totals) {
+        return new TaxAmountStats(totals.amountCount(), totals.amountAverage(), totals.amountMin(), totals.amountMax());
+    }
+
+    private static <E extends Enum<E>> Map<E, TaxAmountStats> toStatsMap(Class<E> type, Map<E, Totals> totals) {
+        Map<E, TaxAmountStats> stats = new EnumMap<>(type);
+        totals.forEach((key, value) -> {
+            if (value.amountCount() > 0) {
+                stats.put(key, toStats(value));
+            }
+        });
+        return stats;
+    }
+}
@@ -0,0 +1,383 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsBreakdownResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsOverviewResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsReportGenerationResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsReportResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxAmountsResponse;
+import be.hoffmann.backtaxes.entity.AnalyticsReport;
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.RankingType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.ReportType;
+import be.hoffmann.backtaxes.exception.ResourceNotFoundException;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.repository.AnalyticsReportRepository;
+import be.hoffmann.backtaxes.repository.PopularVehicleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.StringWriter;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Rapports analytics periodiques (hebdomadaire, mensuel, annuel) par region.
+ *
+ * Les sections independantes (trafic, vehicules les plus recherches,
+ * montants de taxe, carburants) sont calculees en parallele sur le pool
+ * dedie reportExecutor, jamais sur les threads HTTP: la demande rend la
+ * main immediatement. Les sections sont lues dans daily_aggregates et
+ * popular_vehicles (AnalyticsQueryService), puis ecrites dans report_data
+ * par un JsonGenerator, section par section, sans arbre JSON intermediaire.
+ *
+ * Un rapport est unique par type, periode et region: une regeneration met
+ * a jour le rapport existant. La publication (isPublic) est basculee par
+ * une seule instruction UPDATE conditionnelle.
+ */
+@Service
+@Profile("!batch")
+public class AnalyticsReportService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsReportService.class);
+
+    static final List<ReportType> SUMMARY_TYPES =
+            List.of(ReportType.weekly_summary, ReportType.monthly_summary, ReportType.yearly_summary);
+
+    /** Rangs des sections marques et variantes */
+    static final int TOP_LIMIT = 10;
+
+    /** Toutes regions (null) puis chaque region */
+    private static final List<Region> SCOPES;
+
+    static {
+        List<Region> scopes = new ArrayList<>();
+        scopes.add(null);
+        scopes.addAll(List.of(Region.values()));
+        SCOPES = Collections.unmodifiableList(scopes);
+    }
+
+    private final AnalyticsQueryService analyticsQueryService;
+    private final PopularVehicleRepository popularVehicleRepository;
+    private final AnalyticsReportRepository reportRepository;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final boolean scheduleEnabled;
+
+    public AnalyticsReportService(
+            AnalyticsQueryService analyticsQueryService,
+            PopularVehicleRepository popularVehicleRepository,
+            AnalyticsReportRepository reportRepository,
+            ObjectMapper objectMapper,
+            @Qualifier("reportExecutor") Executor executor,
+            @Value("${app.analytics.reports.schedule-enabled:true}") boolean scheduleEnabled) {
+        this.analyticsQueryService = analyticsQueryService;
+        this.popularVehicleRepository = popularVehicleRepository;
+        this.reportRepository = reportRepository;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.scheduleEnabled = scheduleEnabled;
+    }
+
+    /**
+     * Generation quotidienne des periodes terminees (par defaut a 04:00).
+     */
+    @Scheduled(cron = "${app.analytics.reports.cron:0 0 4 * * *}")
+    public void scheduledGeneration() {
+        if (scheduleEnabled) {
+            generateDue(LocalDate.now());
+        }
+    }
+
+    /**
+     * Lance les rapports des periodes terminees la veille: semaine le lundi,
+     * mois le 1er, annee le 1er janvier; pour toutes regions et chaque region.
+     *
+     * @return Nombre de rapports lances
+     */
+    int generateDue(LocalDate today) {
+        Map<ReportType, LocalDate> due = new LinkedHashMap<>();
+        if (today.getDayOfWeek() == DayOfWeek.MONDAY) {
+            due.put(ReportType.weekly_summary, today.minusWeeks(1));
+        }
+        if (today.getDayOfMonth() == 1) {
+            due.put(ReportType.monthly_summary, today.minusMonths(1));
+        }
+        if (today.getDayOfYear() == 1) {
+            due.put(ReportType.yearly_summary, today.minusYears(1));
+        }
+        int queued = 0;
+        for (Map.Entry<ReportType, LocalDate> entry : due.entrySet()) {
+            for (Region region : SCOPES) {
+                try {
+                    generate(entry.getKey(), entry.getValue(), region);
+                    queued++;
+                } catch (ValidationException e) {
+                    log.warn("Report {} of {} for {} not queued: {}",
+                            entry.getKey(), entry.getValue(), region, e.getMessage());
+                }
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Lance la generation en arriere-plan et rend la periode couverte.
+     */
+    public AnalyticsReportGenerationResponse requestGeneration(ReportType type, LocalDate date, Region region) {
+        ReportPeriod period = period(type, date);
+        generate(type, date, region);
+        return new AnalyticsReportGenerationResponse(type, period.start(), period.end(), region);
+    }
+
+    /**
+     * Genere le rapport de la periode contenant date.
+     *
+     * @throws ValidationException si le type n'est pas un resume, si la periode
+     *                             n'a pas commence, ou si la file du pool est pleine
+     */
+    public CompletableFuture<AnalyticsReport> generate(ReportType type, LocalDate date, Region region) {
+        ReportPeriod period = period(type, date);
+        if (period.start().isAfter(LocalDate.now())) {
+            throw new ValidationException("date", "Report period has not started yet");
+        }
+        long start = System.nanoTime();
+        LocalDate from = period.start();
+        LocalDate to = period.end();
+
+        CompletableFuture<Traffic> traffic;
+        CompletableFuture<TopVehicles> topVehicles;
+        CompletableFuture<AnalyticsTaxAmountsResponse> taxAmounts;
+        CompletableFuture<AnalyticsBreakdownResponse<FuelType>> fuelMix;
+        try {
+            traffic = CompletableFuture.supplyAsync(() -> new Traffic(
+                    analyticsQueryService.getOverview(from, to, region),
+                    analyticsQueryService.getDeviceMix(from, to, region)), executor);
+            topVehicles = CompletableFuture.supplyAsync(() -> new TopVehicles(
+                    analyticsQueryService.getTopBrands(from, to, region, TOP_LIMIT),
+                    topVariants(period, region)), executor);
+            taxAmounts = CompletableFuture.supplyAsync(() -> analyticsQueryService.getTaxAmounts(from, to, region), executor);
+            fuelMix = CompletableFuture.supplyAsync(() -> analyticsQueryService.getFuelMix(from, to, region), executor);
+        } catch (RejectedExecutionException e) {
+            throw new ValidationException("Report generation queue is full, retry later");
+        }
+
+        return CompletableFuture.allOf(traffic, topVehicles, taxAmounts, fuelMix)
+                .thenApplyAsync(done -> save(type, period, region,
+                        reportData(type, period, region, traffic.join(), topVehicles.join(), taxAmounts.join(),
+                                fuelMix.join()),
+                        metadata(traffic.join(), start)), executor)
+                .whenComplete((report, error) -> {
+                    if (error != null) {
+                        log.warn("Report {} {}..{} for {} failed: {}", type, from, to, region, error.getMessage());
+                    } else {
+                        log.info("Report {} {}..{} for {} generated in {} ms", type, from, to, region,
+                                (System.nanoTime() - start) / 1_000_000);
+                    }
+                });
+    }
+
+    /**
+     * Rapports generes, sans leur contenu (tous types si type est null).
+     */
+    public List<AnalyticsReportResponse> listReports(ReportType type) {
+        List<AnalyticsReport> reports = type != null
+                ? reportRepository.findByReportTypeOrderByPeriodEndDesc(type)
+                : reportRepository.findAll(Sort.by(Sort.Direction.DESC, "periodEnd"));
+        return reports.stream().map(report -> toResponse(report, false)).toList();
+    }
+
+    /**
+     * Rapport avec son contenu.
+     */
+    public AnalyticsReportResponse getReport(Long id) {
+        return toResponse(findReport(id), true);
+    }
+
+    /**
+     * Publie ou depublie un rapport.
+     */
+    @Transactional
+    public AnalyticsReportResponse setPublic(Long id, boolean isPublic) {
+        reportRepository.updateIsPublic(id, isPublic);
+        return toResponse(findReport(id), false);
+    }
+
+    // ==================== SECTIONS ====================
+
+    /**
+     * Variantes les plus recherchees: somme des classements hebdomadaires
+     * (most_searched) des semaines commencant dans la periode.
+     */
+    private List<TopVariant> topVariants(ReportPeriod period, Region region) {
+        Map<Long, TopVariant> byVariant = new HashMap<>();
+        for (Object[] row : popularVehicleRepository.findRankingRowsBetween(
+                period.start(), period.end(), RankingType.most_searched)) {
+            if (region != null && region != row[0]) {
+                continue;
+            }
+            Long variantId = (Long) row[1];
+            long searches = row[5] != null ? ((Number) row[5]).longValue() : 0;
+            byVariant.merge(variantId,
+                    new TopVariant(variantId, (String) row[2], (String) row[3], (String) row[4], searches),
+                    (current, added) -> current.plus(added.searches()));
+        }
+        return byVariant.values().stream()
+                .sorted(Comparator.comparingLong(TopVariant::searches).reversed()
+                        .thenComparing(TopVariant::variantId))
+                .limit(TOP_LIMIT)
+                .toList();
+    }
+
+    private String reportData(ReportType type, ReportPeriod period, Region region, Traffic traffic,
+                              TopVehicles topVehicles, AnalyticsTaxAmountsResponse taxAmounts,
+                              AnalyticsBreakdownResponse<FuelType> fuelMix) {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator json = objectMapper.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringProperty("report_type", type.name());
+            json.writeStringProperty("period_start", period.start().toString());
+            json.writeStringProperty("period_end", period.end().toString());
+            json.writeStringProperty("region", region != null ? region.name() : null);
+
+            json.writeName("traffic");
+            json.writeStartObject();
+            json.writeNumberProperty("searches", traffic.overview().searches());
+            json.writeNumberProperty("calculations", traffic.overview().calculations());
+            json.writePOJOProperty("unique_sessions", traffic.overview().uniqueSessions());
+            json.writePOJOProperty("devices", traffic.devices().items());
+            json.writeEndObject();
+
+            json.writeName("top_vehicles");
+            json.writeStartObject();
+            json.writePOJOProperty("brands", topVehicles.brands().items());
+            json.writePOJOProperty("variants", topVehicles.variants());
+            json.writeEndObject();
+
+            json.writeName("tax_distribution");
+            json.writeStartObject();
+            json.writePOJOProperty("total", taxAmounts.total());
+            json.writePOJOProperty("by_region", taxAmounts.byRegion());
+            json.writePOJOProperty("by_fuel_type", taxAmounts.byFuelType());
+            json.writePOJOProperty("by_device_type", taxAmounts.byDeviceType());
+            json.writeEndObject();
+
+            json.writePOJOProperty("fuel_mix", fuelMix.items());
+            json.writeEndObject();
+        }
+        return out.toString();
+    }
+
+    private String metadata(Traffic traffic, long start) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("generated_at", Instant.now().toString());
+        metadata.put("duration_ms", (System.nanoTime() - start) / 1_000_000);
+        metadata.put("rolled_up_until", String.valueOf(traffic.overview().rolledUpUntil()));
+        metadata.put("sections", List.of("traffic", "top_vehicles", "tax_distribution", "fuel_mix"));
+        return objectMapper.writeValueAsString(metadata);
+    }
+
+    private AnalyticsReport save(ReportType type, ReportPeriod period, Region region, String data, String metadata) {
+        AnalyticsReport report = reportRepository
+                .findByReportTypeAndPeriodStartAndPeriodEndAndRegion(type, period.start(), period.end(), region)
+                .orElseGet(AnalyticsReport::new);
+        report.setReportType(type);
+        report.setTitle(title(type, period, region));
+        report.setDescription("Trafic, vehicules les plus recherches, montants de taxe et carburants");
+        report.setPeriodStart(period.start());
+        report.setPeriodEnd(period.end());
+        report.setRegion(region);
+        report.setReportData(data);
+        report.setMetadata(metadata);
+        return reportRepository.save(report);
+    }
+
+    // ==================== HELPERS ====================
+
+    /**
+     * Periode du rapport contenant date (semaine du lundi au dimanche).
+     */
+    static ReportPeriod period(ReportType type, LocalDate date) {
+        if (date == null) {
+            throw new ValidationException("date", "date is required");
+        }
+        return switch (type) {
+            case weekly_summary -> {
+                LocalDate monday = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                yield new ReportPeriod(monday, monday.plusDays(6));
+            }
+            case monthly_summary -> new ReportPeriod(date.withDayOfMonth(1), date.with(TemporalAdjusters.lastDayOfMonth()));
+            case yearly_summary -> new ReportPeriod(date.withDayOfYear(1), date.with(TemporalAdjusters.lastDayOfYear()));
+            case null, default -> throw new ValidationException("type", "type must be one of " + SUMMARY_TYPES);
+        };
+    }
+
+    private static String title(ReportType type, ReportPeriod period, Region region) {
+        String label = switch (type) {
+            case weekly_summary -> "Resume hebdomadaire du " + period.start();
+            case monthly_summary -> "Resume mensuel " + YearMonth.from(period.start());
+            default -> "Resume annuel " + period.start().getYear();
+        };
+        return label + " - " + (region != null ? region.name() : "toutes regions");
+    }
+
+    private AnalyticsReport findReport(Long id) {
+        return reportRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("AnalyticsReport", "id", id));
+    }
+
+    private static AnalyticsReportResponse toResponse(AnalyticsReport report, boolean withData) {
+        return new AnalyticsReportResponse(
+                report.getId(),
+                report.getReportType(),
+                report.getTitle(),
+                report.getPeriodStart(),
+                report.getPeriodEnd(),
+                report.getRegion(),
+                Boolean.TRUE.equals(report.getIsPublic()),
+                report.getCreatedAt(),
+                withData ? report.getReportData() : null);
+    }
+
+    record ReportPeriod(LocalDate start, LocalDate end) {
+    }
+
+    private record Traffic(AnalyticsOverviewResponse overview, AnalyticsBreakdownResponse<DeviceType> devices) {
+    }
+
+    private record TopVehicles(AnalyticsBreakdownResponse<Long> brands, List<TopVariant> variants) {
+    }
+
+    /**
+     * Variante classee, recherches cumulees sur les semaines de la periode.
+     */
+    public record TopVariant(Long variantId, String brand, String model, String variant, long searches) {
+
+        TopVariant plus(long more) {
+            return new TopVariant(variantId, brand, model, variant, searches + more);
+        }
+    }
+}
@@ -1,55 +1,59 @@
 package be.hoffmann.backtaxes.service;
 
-import be.hoffmann.backtaxes.dto.response.TaxCalculationResponse;
-import be.hoffmann.backtaxes.entity.SearchEvent;
-import be.hoffmann.backtaxes.entity.TaxCalculation;
 import be.hoffmann.backtaxes.entity.enums.*;
-import be.hoffmann.backtaxes.repository.SearchEventRepository;
-import be.hoffmann.backtaxes.repository.TaxCalculationRepository;
+import be.hoffmann.backtaxes.service.analytics.AdaptiveSampler;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsEvent;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsEventWriter;
+import be.hoffmann.backtaxes.service.analytics.CalculationEventRecord;
+import be.hoffmann.backtaxes.service.analytics.CapturedEvent;
+import be.hoffmann.backtaxes.service.analytics.SearchEventRecord;
+import be.hoffmann.backtaxes.service.analytics.TaxCalculationRecord;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Arrays;
-import java.util.HexFormat;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.regex.Pattern;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Service pour l'enregistrement des evenements analytics.
- * Les appels sont asynchrones pour ne pas impacter la latence.
+ * Les appels ne bloquent pas la requete: recherches et calculs sont deposes
+ * dans le buffer de l'AnalyticsEventWriter avec les en-tetes bruts du client.
+ * Le writer les enrichit (User-Agent, Referer, langue), ecarte les robots et
+ * les ajoute au journal local (charge ensuite en base par
+ * AnalyticsJournalDrainer) et aux compteurs en direct (LiveTrafficCounters).
+ * Sous charge, les recherches browse/filter sont echantillonnees et ponderees
+ * (AdaptiveSampler); les calculs sont toujours enregistres.
  */
 @Service
+@Profile("!batch")
 public class AnalyticsService {
 
     private static final String SESSION_COOKIE_NAME = "analytics_session";
     private static final int SESSION_COOKIE_MAX_AGE = 60 * 60 * 24; // 24 heures
 
-    // Precompiled patterns for device detection (case insensitive)
-    private static final Pattern MOBILE_PATTERN = Pattern.compile(
-            "mobile|android|iphone", Pattern.CASE_INSENSITIVE);
-    private static final Pattern TABLET_PATTERN = Pattern.compile(
-            "tablet|ipad", Pattern.CASE_INSENSITIVE);
-
-    // HexFormat for efficient hex encoding (Java 17+)
-    private static final HexFormat HEX_FORMAT = HexFormat.of();
-
-    private final SearchEventRepository searchEventRepository;
-    private final TaxCalculationRepository taxCalculationRepository;
+    private final AnalyticsEventWriter analyticsEventWriter;
+    private final AdaptiveSampler adaptiveSampler;
+    private final double calculationSampleRate;
 
     public AnalyticsService(
-            SearchEventRepository searchEventRepository,
-            TaxCalculationRepository taxCalculationRepository) {
-        this.searchEventRepository = searchEventRepository;
-        this.taxCalculationRepository = taxCalculationRepository;
+            AnalyticsEventWriter analyticsEventWriter,
+            AdaptiveSampler adaptiveSampler,
+            @Value("${app.analytics.calculation-sample-rate:1.0}") double calculationSampleRate) {
+        if (calculationSampleRate < 0.0 || calculationSampleRate > 1.0) {
+            throw new IllegalArgumentException("app.analytics.calculation-sample-rate must be between 0 and 1");
+        }
+        this.analyticsEventWriter = analyticsEventWriter;
+        this.adaptiveSampler = adaptiveSampler;
+        this.calculationSampleRate = calculationSampleRate;
     }
 
     /**
@@ -94,102 +98,44 @@ public class AnalyticsService {
 
     /**
      * Enregistre un evenement de recherche (browse/filter).
+     * Ne fait que deposer l'evenement dans le buffer: pas de thread ni de transaction par evenement.
+     * Sous charge, seule une fraction des recherches est gardee, avec le poids correspondant.
      */
-    @Async("analyticsExecutor")
-    @Transactional
     public void logSearch(SearchEventBuilder builder) {
-        SearchEvent event = builder.build();
-        searchEventRepository.save(event);
-    }
-
-    /**
-     * Enregistre un evenement de calcul de taxe.
-     * Utilise pattern matching pour instanceof (Java 16+).
-     */
-    @Async("analyticsExecutor")
-    @Transactional
-    public void logCalculation(
-            SearchEvent searchEvent,
-            Long variantId,
-            Long submissionId,
-            Region region,
-            TaxCalculationResponse result) {
-
-        TaxCalculation calculation = new TaxCalculation();
-        calculation.setSearchEvent(searchEvent);
-        calculation.setVariant(null);
-        calculation.setRegion(region);
-        calculation.setTaxType(result.getTaxType());
-        calculation.setCalculatedAmount(result.getAmount());
-        calculation.setIsExempt(result.getIsExempt());
-
-        // Extraire les details du breakdown avec pattern matching
-        if (result.getBreakdown() != null) {
-            if (result.getBreakdown().get("powerKw") instanceof Integer powerKw) {
-                calculation.setPowerKw(powerKw);
-            }
-            if (result.getBreakdown().get("fiscalHp") instanceof Integer fiscalHp) {
-                calculation.setCvFiscal(fiscalHp);
-            }
-            if (result.getBreakdown().get("co2Wltp") instanceof Integer co2) {
-                calculation.setCo2Gkm(co2);
-            }
-            if (result.getBreakdown().get("vehicleAgeYears") instanceof Integer ageYears) {
-                calculation.setVehicleAgeMonths(ageYears * 12);
-            }
+        int sampleWeight = adaptiveSampler.sample(builder.searchType);
+        if (sampleWeight == 0) {
+            return;
         }
-
-        taxCalculationRepository.save(calculation);
+        analyticsEventWriter.submit(builder.capture(builder.toRecord(sampleWeight)));
     }
 
     /**
-     * Hash le User-Agent pour anonymisation RGPD.
-     * Utilise HexFormat (Java 17+) pour une conversion efficace.
+     * Idem, pour une recherche de la requete HTTP en cours: session (cookie)
+     * et en-tetes du client. Appele par les endpoints du catalogue.
      */
-    public String hashUserAgent(String userAgent) {
-        if (userAgent == null || userAgent.isBlank()) {
-            return null;
-        }
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(userAgent.getBytes(StandardCharsets.UTF_8));
-            return HEX_FORMAT.formatHex(hash);
-        } catch (NoSuchAlgorithmException e) {
-            return null;
-        }
+    public void logSearch(SearchEventBuilder builder, HttpServletRequest request, HttpServletResponse response) {
+        logSearch(builder.sessionId(getOrCreateSessionId(request, response)).clientHeaders(request));
     }
 
     /**
-     * Detecte le type d'appareil depuis le User-Agent.
-     * Utilise des patterns precompiles pour de meilleures performances.
+     * Enregistre un calcul de taxe: l'evenement de recherche et ses lignes de resultat.
+     * Seule une fraction des calculs (app.analytics.calculation-sample-rate) garde ses
+     * lignes tax_calculations; l'evenement de recherche est toujours enregistre, et
+     * toutes les lignes sont comptees dans calculation_fingerprints.
      */
-    public DeviceType detectDeviceType(String userAgent) {
-        if (userAgent == null) {
-            return null;
-        }
-        if (MOBILE_PATTERN.matcher(userAgent).find()) {
-            return TABLET_PATTERN.matcher(userAgent).find()
-                    ? DeviceType.tablet
-                    : DeviceType.mobile;
-        }
-        return DeviceType.desktop;
+    public void logCalculation(SearchEventBuilder builder, List<TaxCalculationRecord> calculations) {
+        SearchEventRecord searchEvent = builder.toRecord();
+        if (calculations.isEmpty()) {
+            analyticsEventWriter.submit(builder.capture(searchEvent));
+            return;
+        }
+        analyticsEventWriter.submit(builder.capture(
+                new CalculationEventRecord(searchEvent, calculations, sampleCalculation())));
     }
 
-    /**
-     * Extrait la source de trafic depuis le Referer.
-     */
-    public String extractReferrerSource(String referer) {
-        if (referer == null || referer.isBlank()) {
-            return "direct";
-        }
-        String ref = referer.toLowerCase();
-        if (ref.contains("google")) return "google";
-        if (ref.contains("facebook") || ref.contains("fb.com")) return "facebook";
-        if (ref.contains("twitter") || ref.contains("x.com")) return "twitter";
-        if (ref.contains("linkedin")) return "linkedin";
-        if (ref.contains("instagram")) return "instagram";
-        if (ref.contains("bing")) return "bing";
-        return "other";
+    private boolean sampleCalculation() {
+        return calculationSampleRate >= 1.0
+                || (calculationSampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < calculationSampleRate);
     }
 
     /**
@@ -206,9 +152,8 @@ public class AnalyticsService {
         private Boolean isNewVehicle;
         private LocalDate firstRegistrationDate;
         private SearchType searchType;
-        private DeviceType deviceType;
-        private String referrerSource;
-        private String userAgentHash;
+        private String userAgent;
+        private String referer;
         private String language;
 
         public SearchEventBuilder sessionId(UUID sessionId) {
@@ -261,39 +206,39 @@ public class AnalyticsService {
             return this;
         }
 
-        public SearchEventBuilder deviceType(DeviceType deviceType) {
-            this.deviceType = deviceType;
+        /**
+         * Capture les en-tetes User-Agent, Referer et Accept-Language tels quels:
+         * ils sont analyses par le thread writer, pas par la requete.
+         */
+        public SearchEventBuilder clientHeaders(HttpServletRequest request) {
+            this.userAgent = request.getHeader("User-Agent");
+            this.referer = request.getHeader("Referer");
+            this.language = request.getHeader("Accept-Language");
             return this;
         }
 
-        public SearchEventBuilder referrerSource(String referrerSource) {
-            this.referrerSource = referrerSource;
-            return this;
+        /**
+         * Fige l'evenement pour le writer par lots (horodate maintenant, pas a l'insertion).
+         * Appareil, source de trafic, hash et langue sont remplis par le writer.
+         */
+        public SearchEventRecord toRecord() {
+            return toRecord(1);
         }
 
-        public SearchEventBuilder userAgentHash(String userAgentHash) {
-            this.userAgentHash = userAgentHash;
-            return this;
-        }
-
-        public SearchEventBuilder language(String language) {
-            this.language = language;
-            return this;
+        /**
+         * Idem, pour un evenement qui en represente sampleWeight (echantillonnage).
+         */
+        public SearchEventRecord toRecord(int sampleWeight) {
+            return new SearchEventRecord(sessionId, userId, brandId, modelId, variantId, region, fuelType,
+                    isNewVehicle, firstRegistrationDate, searchType, null, null, null, null, Instant.now(),
+                    sampleWeight);
         }
 
-        public SearchEvent build() {
-            SearchEvent event = new SearchEvent();
-            event.setSessionId(sessionId);
-            event.setRegion(region);
-            event.setFuelType(fuelType);
-            event.setIsNewVehicle(isNewVehicle);
-            event.setFirstRegistrationDate(firstRegistrationDate);
-            event.setSearchType(searchType);
-            event.setDeviceType(deviceType);
-            event.setReferrerSource(referrerSource);
-            event.setUserAgentHash(userAgentHash);
-            event.setLanguage(language);
-            return event;
+        /**
+         * Associe l'evenement aux en-tetes bruts captures.
+         */
+        public CapturedEvent capture(AnalyticsEvent event) {
+            return new CapturedEvent(event, userAgent, referer, language);
         }
     }
 
@@ -0,0 +1,204 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.request.FleetOptimizationRequest;
+import be.hoffmann.backtaxes.dto.request.FleetOptimizationRequest.FleetVehicle;
+import be.hoffmann.backtaxes.dto.response.FleetOptimizationResponse;
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.entity.Variant;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.service.TaxCalculationService.VehicleData;
+import be.hoffmann.backtaxes.service.fleet.RegionAssignmentSolver;
+import be.hoffmann.backtaxes.service.rules.PublishedRules;
+import be.hoffmann.backtaxes.service.rules.RuleVersionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service pour optimiser la region d'immatriculation d'une flotte.
+ *
+ * Le cout d'un vehicule dans une region = TMC + N annees de taxe annuelle
+ * (la taxe annuelle ne depend pas de l'age du vehicule).
+ * Chaque couple variante x region est evalue une seule fois, en parallele,
+ * sur le jeu de regles immuable du jour; l'affectation est ensuite resolue
+ * par RegionAssignmentSolver sur des couts en centimes.
+ */
+@Service
+public class FleetOptimizationService {
+
+    private static final Logger log = LoggerFactory.getLogger(FleetOptimizationService.class);
+
+    private static final Region[] REGIONS = Region.values();
+
+    private final VariantService variantService;
+    private final TaxCalculationService taxCalculationService;
+    private final RuleVersionService ruleVersionService;
+
+    public FleetOptimizationService(
+            VariantService variantService,
+            TaxCalculationService taxCalculationService,
+            RuleVersionService ruleVersionService) {
+        this.variantService = variantService;
+        this.taxCalculationService = taxCalculationService;
+        this.ruleVersionService = ruleVersionService;
+    }
+
+    /**
+     * Calcule l'affectation de cout minimum des vehicules aux regions.
+     * @throws ValidationException si les capacites ne permettent pas d'immatriculer toute la flotte
+     */
+    public FleetOptimizationResponse optimize(FleetOptimizationRequest request) {
+        List<FleetVehicle> vehicles = request.vehicles();
+        int years = request.years();
+        int vehicleCount = vehicleCount(vehicles);
+
+        // 1. Chargement des variantes en une requete
+        Set<Long> variantIds = new LinkedHashSet<>();
+        vehicles.forEach(v -> variantIds.add(v.variantId()));
+        Map<Long, Variant> variants = variantService.findAllByIds(variantIds);
+
+        // 2. Evaluation parallele des couts variante x region
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        PublishedRules published = ruleVersionService.current();
+        TaxRuleSet rules = published.ruleSetAt(today);
+        Map<Long, VariantCosts> costsByVariant = new ConcurrentHashMap<>();
+        variants.values().parallelStream().forEach(variant -> costsByVariant.put(
+                variant.getId(), evaluate(VehicleData.fromVariant(variant), today, years, rules)));
+        long evaluated = System.nanoTime();
+
+        // 3. Resolution de l'affectation
+        long[][] costs = new long[vehicles.size()][];
+        int[] quantities = new int[vehicles.size()];
+        for (int i = 0; i < vehicles.size(); i++) {
+            costs[i] = costsByVariant.get(vehicles.get(i).variantId()).cents();
+            quantities[i] = vehicles.get(i).quantity();
+        }
+        int[] capacities = new int[REGIONS.length];
+        for (Region region : REGIONS) {
+            Integer max = request.maxPerRegion().get(region);
+            if (max != null && max < 0) {
+                throw new ValidationException("maxPerRegion", "Capacity for " + region + " must be positive");
+            }
+            capacities[region.ordinal()] = max != null ? max : RegionAssignmentSolver.UNLIMITED;
+        }
+
+        RegionAssignmentSolver.Solution solution;
+        try {
+            solution = new RegionAssignmentSolver(costs, quantities, capacities).solve();
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("maxPerRegion", e.getMessage());
+        }
+        long solved = System.nanoTime();
+
+        log.info("Fleet optimization: {} vehicles, {} variants, evaluation {} ms, solver {} ms",
+                vehicleCount, variants.size(), (evaluated - start) / 1_000_000, (solved - evaluated) / 1_000_000);
+
+        return toResponse(request, years, vehicleCount, published.getVersionId(), variants, costsByVariant, solution);
+    }
+
+    /**
+     * Nombre total de vehicules, verifie avant toute evaluation: la somme
+     * est faite en long et doit tenir dans un int (reponse, solveur).
+     */
+    private static int vehicleCount(List<FleetVehicle> vehicles) {
+        if (vehicles.size() > FleetOptimizationRequest.MAX_VEHICLES) {
+            throw new ValidationException("vehicles", "At most " + FleetOptimizationRequest.MAX_VEHICLES + " fleet lines");
+        }
+        long total = 0;
+        for (FleetVehicle vehicle : vehicles) {
+            if (vehicle.quantity() < 1 || vehicle.quantity() > FleetOptimizationRequest.MAX_QUANTITY) {
+                throw new ValidationException("quantity",
+                        "Quantity must be between 1 and " + FleetOptimizationRequest.MAX_QUANTITY);
+            }
+            total += vehicle.quantity();
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new ValidationException("vehicles", "Too many vehicles: " + total);
+        }
+        return (int) total;
+    }
+
+    /**
+     * Evalue le cout d'une variante dans chaque region.
+     */
+    private VariantCosts evaluate(VehicleData vehicleData, LocalDate registrationDate, int years, TaxRuleSet rules) {
+        BigDecimal[] tmc = new BigDecimal[REGIONS.length];
+        BigDecimal[] annual = new BigDecimal[REGIONS.length];
+        long[] cents = new long[REGIONS.length];
+        for (Region region : REGIONS) {
+            int r = region.ordinal();
+            tmc[r] = taxCalculationService.calculateTax(
+                    vehicleData, region, TaxType.tmc, registrationDate, rules).getAmount();
+            annual[r] = taxCalculationService.calculateTax(
+                    vehicleData, region, TaxType.annual, registrationDate, rules).getAmount();
+            cents[r] = unitCost(tmc[r], annual[r], years).movePointRight(2).longValue();
+        }
+        return new VariantCosts(tmc, annual, cents);
+    }
+
+    private FleetOptimizationResponse toResponse(
+            FleetOptimizationRequest request,
+            int years,
+            int vehicleCount,
+            long ruleVersion,
+            Map<Long, Variant> variants,
+            Map<Long, VariantCosts> costsByVariant,
+            RegionAssignmentSolver.Solution solution) {
+
+        Map<Region, Integer> regionCounts = new EnumMap<>(Region.class);
+        for (Region region : REGIONS) {
+            regionCounts.put(region, 0);
+        }
+        List<FleetOptimizationResponse.Assignment> assignments = new ArrayList<>();
+        for (int i = 0; i < request.vehicles().size(); i++) {
+            FleetVehicle vehicle = request.vehicles().get(i);
+            VariantCosts variantCosts = costsByVariant.get(vehicle.variantId());
+            Variant variant = variants.get(vehicle.variantId());
+            for (Region region : REGIONS) {
+                int quantity = solution.allocation()[i][region.ordinal()];
+                if (quantity == 0) {
+                    continue;
+                }
+                regionCounts.merge(region, quantity, Integer::sum);
+                BigDecimal tmc = variantCosts.tmc()[region.ordinal()];
+                BigDecimal annual = variantCosts.annual()[region.ordinal()];
+                assignments.add(new FleetOptimizationResponse.Assignment(
+                        vehicle.reference(), vehicle.variantId(), region, quantity,
+                        tmc, annual, unitCost(tmc, annual, years),
+                        variant.getPowerKw(), variant.getFiscalHp(), variant.getCo2Wltp()));
+            }
+        }
+
+        return new FleetOptimizationResponse(
+                years,
+                vehicleCount,
+                ruleVersion,
+                BigDecimal.valueOf(solution.totalCost(), 2),
+                BigDecimal.valueOf(solution.unconstrainedCost(), 2),
+                regionCounts,
+                assignments);
+    }
+
+    private static BigDecimal unitCost(BigDecimal tmc, BigDecimal annual, int years) {
+        return tmc.add(annual.multiply(BigDecimal.valueOf(years)));
+    }
+
+    /**
+     * Couts d'une variante, indexes par Region.ordinal().
+     */
+    private record VariantCosts(BigDecimal[] tmc, BigDecimal[] annual, long[] cents) {
+    }
+}
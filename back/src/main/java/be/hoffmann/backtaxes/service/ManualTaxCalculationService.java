@@ -9,6 +9,8 @@ import be.hoffmann.backtaxes.entity.enums.Region;
 import be.hoffmann.backtaxes.entity.enums.TaxType;
 import be.hoffmann.backtaxes.repository.PendingCalculationRepository;
 import be.hoffmann.backtaxes.service.TaxCalculationService.VehicleData;
+import be.hoffmann.backtaxes.service.rules.PublishedRules;
+import be.hoffmann.backtaxes.service.rules.RuleVersionService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,15 +28,15 @@ import java.util.UUID;
 public class ManualTaxCalculationService {
 
     private final TaxCalculationService taxCalculationService;
-    private final TaxConfigService taxConfigService;
+    private final RuleVersionService ruleVersionService;
     private final PendingCalculationRepository pendingCalculationRepository;
 
     public ManualTaxCalculationService(
             TaxCalculationService taxCalculationService,
-            TaxConfigService taxConfigService,
+            RuleVersionService ruleVersionService,
             PendingCalculationRepository pendingCalculationRepository) {
         this.taxCalculationService = taxCalculationService;
-        this.taxConfigService = taxConfigService;
+        this.ruleVersionService = ruleVersionService;
         this.pendingCalculationRepository = pendingCalculationRepository;
     }
 
@@ -58,14 +60,17 @@ public class ManualTaxCalculationService {
 
         LocalDate registrationDate = request.getFirstRegistrationDate().toLocalDate();
 
-        VehicleData vehicleData = createVehicleData(request);
+        // Une seule version publiee pour les deux taxes
+        PublishedRules rules = ruleVersionService.current();
+        response.setRuleVersion(rules.getVersionId());
+        VehicleData vehicleData = createVehicleData(request, rules);
 
         // Calculer TMC
         TaxResult tmcResult = new TaxResult();
         if (missingForTmc.isEmpty()) {
             try {
                 TaxCalculationResponse tmcResponse = taxCalculationService.calculateTax(
-                        vehicleData, request.getRegion(), TaxType.tmc, registrationDate);
+                        vehicleData, request.getRegion(), TaxType.tmc, registrationDate, rules);
                 tmcResult.fromTaxCalculationResponse(tmcResponse);
             } catch (Exception e) {
                 tmcResult.setCalculable(false);
@@ -82,7 +87,7 @@ public class ManualTaxCalculationService {
         if (missingForAnnual.isEmpty()) {
             try {
                 TaxCalculationResponse annualResponse = taxCalculationService.calculateTax(
-                        vehicleData, request.getRegion(), TaxType.annual, registrationDate);
+                        vehicleData, request.getRegion(), TaxType.annual, registrationDate, rules);
                 annualResult.fromTaxCalculationResponse(annualResponse);
             } catch (Exception e) {
                 annualResult.setCalculable(false);
@@ -177,14 +182,13 @@ public class ManualTaxCalculationService {
         };
     }
 
-    private VehicleData createVehicleData(ManualTaxCalculationRequest request) {
+    private VehicleData createVehicleData(ManualTaxCalculationRequest request, PublishedRules rules) {
         // Si fiscalHp n'est pas fourni mais displacementCc l'est, convertir via les tranches
         Integer effectiveFiscalHp = request.getFiscalHp();
         if (effectiveFiscalHp == null && request.getDisplacementCc() != null) {
-            effectiveFiscalHp = taxConfigService.getFiscalHpFromDisplacement(
+            effectiveFiscalHp = rules.ruleSetAt(LocalDate.now()).getFiscalHpFromDisplacement(
                     request.getRegion(),
-                    request.getDisplacementCc(),
-                    LocalDate.now()
+                    request.getDisplacementCc()
             ).orElse(4); // Minimum 4 CV si pas de tranche trouvee
         }
         return new VehicleData(
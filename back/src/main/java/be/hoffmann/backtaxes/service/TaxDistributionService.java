@@ -0,0 +1,135 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxDistributionResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxDistributionResponse.Bin;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxDistributionResponse.Percentiles;
+import be.hoffmann.backtaxes.dto.response.TaxComparisonResponse;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsRange;
+import be.hoffmann.backtaxes.service.analytics.TDigest;
+import be.hoffmann.backtaxes.service.analytics.TaxAmountDistribution;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Percentiles et histogrammes des montants calcules, et position d'un
+ * montant parmi les calculs recents ("comment se situe votre taxe").
+ *
+ * Tout vient des t-digests journaliers (TaxAmountDistribution): le cout
+ * depend du nombre de jours, pas du nombre de calculs. La comparaison
+ * publique lit un digest de reference en cache jusqu'au prochain rollup.
+ */
+@Service
+public class TaxDistributionService {
+
+    static final int MAX_BINS = 50;
+
+    /** En dessous, trop peu de calculs pour situer un montant */
+    static final long MIN_COMPARISON_SAMPLE = 20;
+
+    private final TaxAmountDistribution distribution;
+    private final int referenceDays;
+
+    public TaxDistributionService(
+            TaxAmountDistribution distribution,
+            @Value("${app.analytics.tax-distribution.reference-days:90}") int referenceDays) {
+        if (referenceDays < 1) {
+            throw new IllegalArgumentException("app.analytics.tax-distribution.reference-days must be positive");
+        }
+        this.distribution = distribution;
+        this.referenceDays = referenceDays;
+    }
+
+    /**
+     * Percentiles p50, p90, p99 et histogramme de la periode.
+     *
+     * @param fuelType Carburant (null = tous)
+     * @param bins     Nombre de classes de l'histogramme (1 a 50)
+     */
+    public AnalyticsTaxDistributionResponse getDistribution(LocalDate from, LocalDate to, Region region,
+                                                             TaxType taxType, FuelType fuelType, int bins) {
+        if (from == null || to == null) {
+            throw new ValidationException("from", "from and to are required");
+        }
+        if (from.isAfter(to)) {
+            throw new ValidationException("from", "from must not be after to");
+        }
+        if (taxType == null) {
+            throw new ValidationException("taxType", "taxType is required");
+        }
+        if (bins < 1 || bins > MAX_BINS) {
+            throw new ValidationException("bins", "bins must be between 1 and " + MAX_BINS);
+        }
+        TDigest digest = distribution.digest(new AnalyticsRange(from, to, region), taxType, fuelType);
+        Percentiles percentiles = new Percentiles(
+                quantile(digest, 0.5), quantile(digest, 0.9), quantile(digest, 0.99));
+        return new AnalyticsTaxDistributionResponse(from, to, region, taxType, fuelType, digest.count(),
+                amount(digest.min()), amount(digest.max()), percentiles, histogram(digest, bins));
+    }
+
+    /**
+     * Position d'un montant parmi les calculs des derniers jours (reference-days)
+     * de la meme region et du meme type de taxe.
+     *
+     * @param fuelType Carburant (null = tous)
+     */
+    public TaxComparisonResponse compare(Region region, TaxType taxType, FuelType fuelType, BigDecimal amount) {
+        if (region == null || taxType == null) {
+            throw new ValidationException("region", "region and taxType are required");
+        }
+        if (amount == null || amount.signum() < 0) {
+            throw new ValidationException("amount", "amount must be positive or zero");
+        }
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusDays(referenceDays - 1L);
+        TDigest reference = distribution.rolledUp(new AnalyticsRange(from, to, region), taxType, fuelType);
+        Double percentile = reference.count() < MIN_COMPARISON_SAMPLE
+                ? null
+                : Math.round(reference.cdf(amount.doubleValue()) * 1000) / 10.0;
+        return new TaxComparisonResponse(region, taxType, fuelType, amount, percentile, reference.count(),
+                quantile(reference, 0.5), quantile(reference, 0.9), from, to);
+    }
+
+    /**
+     * Classes de largeur egale entre minimum et maximum. Les effectifs sont
+     * les differences des rangs cumules arrondis: leur somme est exacte.
+     */
+    private static List<Bin> histogram(TDigest digest, int bins) {
+        if (digest.count() == 0) {
+            return List.of();
+        }
+        double min = digest.min();
+        double max = digest.max();
+        if (min == max) {
+            return List.of(new Bin(amount(min), amount(max), digest.count()));
+        }
+        double width = (max - min) / bins;
+        List<Bin> histogram = new ArrayList<>(bins);
+        long cumulated = 0;
+        for (int i = 0; i < bins; i++) {
+            double lower = min + i * width;
+            double upper = i == bins - 1 ? max : min + (i + 1) * width;
+            long upTo = i == bins - 1 ? digest.count() : Math.round(digest.cdf(upper) * digest.count());
+            histogram.add(new Bin(amount(lower), amount(upper), upTo - cumulated));
+            cumulated = upTo;
+        }
+        return histogram;
+    }
+
+    private static BigDecimal quantile(TDigest digest, double q) {
+        return digest.count() == 0 ? null : amount(digest.quantile(q));
+    }
+
+    private static BigDecimal amount(double value) {
+        return Double.isNaN(value) ? null : BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
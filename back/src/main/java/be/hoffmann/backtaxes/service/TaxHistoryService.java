@@ -0,0 +1,84 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.response.TaxCalculationResponse;
+import be.hoffmann.backtaxes.dto.response.TaxHistoryResponse;
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.service.TaxCalculationService.VehicleData;
+import be.hoffmann.backtaxes.service.rules.PublishedRules;
+import be.hoffmann.backtaxes.service.rules.RuleVersionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service pour l'historique des taxes d'une variante.
+ *
+ * Les periodes de validite et les regles viennent de la version publiee
+ * courante: chaque periode est calculee sur un TaxRuleSet immuable (compile
+ * une fois par version), sans aucun acces a la base par calcul.
+ */
+@Service
+@Transactional(readOnly = true)
+public class TaxHistoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(TaxHistoryService.class);
+
+    private final VariantService variantService;
+    private final TaxCalculationService taxCalculationService;
+    private final RuleVersionService ruleVersionService;
+
+    public TaxHistoryService(
+            VariantService variantService,
+            TaxCalculationService taxCalculationService,
+            RuleVersionService ruleVersionService) {
+        this.variantService = variantService;
+        this.taxCalculationService = taxCalculationService;
+        this.ruleVersionService = ruleVersionService;
+    }
+
+    /**
+     * Calcule la TMC et la taxe annuelle d'une variante pour chaque region
+     * et chaque periode de validite des regles.
+     *
+     * @param variantId ID de la variante
+     * @param firstRegistrationDate Date de premiere immatriculation, ou null pour
+     *                              simuler un vehicule neuf au debut de chaque periode
+     */
+    public TaxHistoryResponse getHistory(Long variantId, LocalDate firstRegistrationDate) {
+        VehicleData vehicleData = VehicleData.fromVariant(variantService.findById(variantId));
+
+        PublishedRules published = ruleVersionService.current();
+        List<LocalDate> boundaries = published.getSnapshot().periodBoundaries();
+        List<TaxHistoryResponse.Period> periods = new ArrayList<>(boundaries.size());
+
+        for (int i = 0; i < boundaries.size(); i++) {
+            LocalDate validFrom = boundaries.get(i);
+            LocalDate validTo = i + 1 < boundaries.size() ? boundaries.get(i + 1).minusDays(1) : null;
+            LocalDate registrationDate = firstRegistrationDate != null ? firstRegistrationDate : validFrom;
+
+            TaxRuleSet rules = published.ruleSetAt(validFrom);
+            List<TaxHistoryResponse.RegionTaxes> regions = new ArrayList<>(Region.values().length);
+            for (Region region : Region.values()) {
+                TaxCalculationResponse tmc = taxCalculationService.calculateTax(
+                        vehicleData, region, TaxType.tmc, registrationDate, rules);
+                TaxCalculationResponse annual = taxCalculationService.calculateTax(
+                        vehicleData, region, TaxType.annual, registrationDate, rules);
+                regions.add(new TaxHistoryResponse.RegionTaxes(
+                        region,
+                        tmc.getAmount(), Boolean.TRUE.equals(tmc.getIsExempt()),
+                        annual.getAmount(), Boolean.TRUE.equals(annual.getIsExempt())));
+            }
+            periods.add(new TaxHistoryResponse.Period(validFrom, validTo, regions));
+        }
+
+        log.debug("Tax history for variant {}: {} periods", variantId, periods.size());
+        return new TaxHistoryResponse(variantId, firstRegistrationDate, periods);
+    }
+}
@@ -0,0 +1,89 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsSliceResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsSliceResponse.Group;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore.Filter;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore.Slice;
+import be.hoffmann.backtaxes.service.analytics.SliceDimension;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decoupages ad hoc des recherches recentes ("diesel Euro 6 sur mobile a
+ * Bruxelles par semaine"), lus dans le store en memoire (RecentSearchStore)
+ * sans requete SQL.
+ */
+@Service
+@Profile("!batch")
+public class TrafficSliceService {
+
+    static final int MAX_DAYS = 366;
+
+    static final int MAX_GROUP_BY = 3;
+
+    static final int MAX_GROUPS = 10_000;
+
+    private final RecentSearchStore store;
+
+    public TrafficSliceService(RecentSearchStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Recherches de la periode retenues par le filtre, par groupe.
+     *
+     * @param groupBy Dimensions des groupes, une seule dimension de temps (aucune = total seul)
+     * @param limit   Nombre de groupes (1 a 10 000), par recherches decroissantes
+     */
+    public AnalyticsSliceResponse getSlice(LocalDate from, LocalDate to, Filter filter,
+                                           List<SliceDimension> groupBy, int limit) {
+        if (from == null || to == null) {
+            throw new ValidationException("from", "from and to are required");
+        }
+        if (from.isAfter(to)) {
+            throw new ValidationException("from", "from must not be after to");
+        }
+        if (from.plusDays(MAX_DAYS).isBefore(to.plusDays(1))) {
+            throw new ValidationException("to", "Period must not exceed " + MAX_DAYS + " days");
+        }
+        List<SliceDimension> dimensions = groupBy == null ? List.of() : List.copyOf(groupBy);
+        if (dimensions.size() > MAX_GROUP_BY) {
+            throw new ValidationException("groupBy", "At most " + MAX_GROUP_BY + " dimensions");
+        }
+        Set<SliceDimension> distinct = EnumSet.noneOf(SliceDimension.class);
+        distinct.addAll(dimensions);
+        if (distinct.size() != dimensions.size()) {
+            throw new ValidationException("groupBy", "Dimensions must not be repeated");
+        }
+        if (dimensions.stream().filter(SliceDimension::isTime).count() > 1) {
+            throw new ValidationException("groupBy", "At most one of hour, day, week and month");
+        }
+        if (limit < 1 || limit > MAX_GROUPS) {
+            throw new ValidationException("limit", "limit must be between 1 and " + MAX_GROUPS);
+        }
+
+        Slice slice = store.query(from.atStartOfDay(), to.plusDays(1).atStartOfDay(),
+                filter == null ? Filter.NONE : filter, dimensions, limit);
+        List<Group> groups = new ArrayList<>(slice.groups().size());
+        for (RecentSearchStore.Group group : slice.groups()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int d = 0; d < dimensions.size(); d++) {
+                values.put(dimensions.get(d).name(), group.values().get(d));
+            }
+            double share = slice.count() == 0 ? 0 : (double) group.count() / slice.count();
+            groups.add(new Group(values, group.count(), share));
+        }
+        return new AnalyticsSliceResponse(from, to, dimensions, slice.count(), slice.groupCount(), groups,
+                slice.coveredFrom(), slice.loadedUntil());
+    }
+}
@@ -10,7 +10,10 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service pour la gestion des variantes de vehicules.
@@ -47,6 +50,23 @@ public class VariantService {
                 .orElseThrow(() -> new ResourceNotFoundException("Variant", "id", id));
     }
 
+    /**
+     * Recupere plusieurs variantes en une seule requete, indexees par ID.
+     * @throws ResourceNotFoundException si une des variantes n'existe pas
+     */
+    public Map<Long, Variant> findAllByIds(Collection<Long> ids) {
+        Map<Long, Variant> variants = new HashMap<>();
+        for (Variant variant : variantRepository.findAllById(ids)) {
+            variants.put(variant.getId(), variant);
+        }
+        for (Long id : ids) {
+            if (!variants.containsKey(id)) {
+                throw new ResourceNotFoundException("Variant", "id", id);
+            }
+        }
+        return variants;
+    }
+
     /**
      * Recupere une variante avec son model et sa brand en une seule requete.
      * Utiliser cette methode pour eviter le probleme N+1 lors de l'affichage des details.
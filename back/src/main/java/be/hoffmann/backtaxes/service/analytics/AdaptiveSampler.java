@@ -0,0 +1,174 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Echantillonnage adaptatif des recherches browse/filter sous charge.
+ *
+ * A intervalle regulier, la charge de l'ingestion (remplissage du buffer de
+ * l'AnalyticsEventWriter, segments du journal en attente de chargement) et
+ * celle du pool de connexions (connexions actives, threads en attente) sont
+ * comparees aux seuils. Au-dela d'un seuil, le poids double (jusqu'a
+ * max-weight); sous la moitie de tous les seuils, il est divise par deux.
+ *
+ * Avec un poids w, une recherche browse/filter est gardee avec une
+ * probabilite 1/w et porte le poids w (SearchEventRecord.sampleWeight): la
+ * somme des poids estime sans biais le nombre de recherches. Les calculs
+ * sont toujours gardes, avec un poids 1.
+ *
+ * Metriques: analytics.sampling.weight, analytics.events.dropped (tag reason=adaptive).
+ */
+@Component
+@Profile("!batch")
+public class AdaptiveSampler {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveSampler.class);
+
+    private final AnalyticsEventWriter eventWriter;
+    private final AnalyticsJournal journal;
+    private final HikariDataSource hikari;
+    private final boolean enabled;
+    private final double bufferThreshold;
+    private final int pendingSegmentsThreshold;
+    private final double poolThreshold;
+    private final int maxLevel;
+    private final Counter dropped;
+
+    /** Poids courant = 2^level */
+    private volatile int level;
+
+    public AdaptiveSampler(
+            AnalyticsEventWriter eventWriter,
+            AnalyticsJournal journal,
+            DataSource dataSource,
+            MeterRegistry meterRegistry,
+            @Value("${app.analytics.sampling.enabled:true}") boolean enabled,
+            @Value("${app.analytics.sampling.buffer-threshold:0.5}") double bufferThreshold,
+            @Value("${app.analytics.sampling.pending-segments-threshold:2}") int pendingSegmentsThreshold,
+            @Value("${app.analytics.sampling.pool-threshold:0.8}") double poolThreshold,
+            @Value("${app.analytics.sampling.max-weight:16}") int maxWeight) {
+        if (bufferThreshold <= 0 || bufferThreshold > 1 || poolThreshold <= 0 || poolThreshold > 1) {
+            throw new IllegalArgumentException("app.analytics.sampling thresholds must be between 0 and 1");
+        }
+        if (pendingSegmentsThreshold < 1) {
+            throw new IllegalArgumentException("app.analytics.sampling.pending-segments-threshold must be positive");
+        }
+        if (maxWeight < 1 || maxWeight > 1024 || Integer.bitCount(maxWeight) != 1) {
+            throw new IllegalArgumentException("app.analytics.sampling.max-weight must be a power of 2 up to 1024");
+        }
+        this.eventWriter = eventWriter;
+        this.journal = journal;
+        this.hikari = hikari(dataSource);
+        this.enabled = enabled;
+        this.bufferThreshold = bufferThreshold;
+        this.pendingSegmentsThreshold = pendingSegmentsThreshold;
+        this.poolThreshold = poolThreshold;
+        this.maxLevel = Integer.numberOfTrailingZeros(maxWeight);
+        this.dropped = Counter.builder("analytics.events.dropped")
+                .tag("stream", "journal")
+                .tag("reason", "adaptive")
+                .register(meterRegistry);
+        Gauge.builder("analytics.sampling.weight", this, AdaptiveSampler::weight)
+                .description("Poids des recherches browse/filter enregistrees")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Decide si une recherche est enregistree.
+     *
+     * @return Poids de l'evenement, 0 s'il n'est pas enregistre
+     */
+    public int sample(SearchType searchType) {
+        int weight = weight();
+        if (weight == 1 || searchType == SearchType.calculate) {
+            return 1;
+        }
+        if (ThreadLocalRandom.current().nextInt(weight) == 0) {
+            return weight;
+        }
+        dropped.increment();
+        return 0;
+    }
+
+    public int weight() {
+        return 1 << level;
+    }
+
+    /**
+     * Ajuste le poids a la charge courante.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.sampling.interval-ms:1000}")
+    public void adjust() {
+        if (!enabled) {
+            return;
+        }
+        adjust(currentLoad());
+    }
+
+    void adjust(Load load) {
+        int current = level;
+        int next = current;
+        if (load.bufferFill() >= bufferThreshold
+                || load.pendingSegments() >= pendingSegmentsThreshold
+                || load.poolUsage() >= poolThreshold
+                || load.waitingThreads() > 0) {
+            next = Math.min(current + 1, maxLevel);
+        } else if (load.bufferFill() < bufferThreshold / 2
+                && load.pendingSegments() * 2 < pendingSegmentsThreshold
+                && load.poolUsage() < poolThreshold / 2) {
+            next = Math.max(current - 1, 0);
+        }
+        if (next != current) {
+            level = next;
+            log.info("Analytics sampling weight {} -> {} (buffer {}%, {} pending segments, pool {}%, {} waiting)",
+                    1 << current, 1 << next, Math.round(load.bufferFill() * 100), load.pendingSegments(),
+                    Math.round(load.poolUsage() * 100), load.waitingThreads());
+        }
+    }
+
+    private Load currentLoad() {
+        double bufferFill = (double) eventWriter.depth() / eventWriter.capacity();
+        int pendingSegments = journal.sealedSegments().size();
+        // Le pool n'existe qu'apres la premiere connexion
+        HikariPoolMXBean pool = hikari != null ? hikari.getHikariPoolMXBean() : null;
+        if (pool == null) {
+            return new Load(bufferFill, pendingSegments, 0, 0);
+        }
+        return new Load(bufferFill, pendingSegments,
+                (double) pool.getActiveConnections() / hikari.getMaximumPoolSize(), pool.getThreadsAwaitingConnection());
+    }
+
+    private static HikariDataSource hikari(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Charge mesuree a un instant.
+     *
+     * @param bufferFill      Remplissage du buffer du writer (0-1)
+     * @param pendingSegments Segments du journal en attente de chargement
+     * @param poolUsage       Connexions actives / taille du pool (0-1)
+     * @param waitingThreads  Threads en attente d'une connexion
+     */
+    record Load(double bufferFill, int pendingSegments, double poolUsage, int waitingThreads) {
+    }
+}
@@ -0,0 +1,280 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsAggregates.Totals;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Lecture des statistiques d'une periode depuis daily_aggregates, completee
+ * par les lignes brutes que le rollup n'a pas encore agregees.
+ *
+ * Les agregats et les watermarks du rollup sont lus dans une meme
+ * transaction (REPEATABLE READ) et mis en cache par periode et filtres; le
+ * cache est vide a chaque passage de DailyAggregateRollup. La queue (lignes
+ * chargees a partir des watermarks lus avec les agregats) n'est pas mise en
+ * cache: elle ne couvre que l'heure en cours et s'appuie sur l'index
+ * couvrant ingested_at; bornee sur created_at, elle ne lit que les partitions
+ * mensuelles de la periode. Une ligne est donc comptee une seule fois, meme si un rollup
+ * passe entre la lecture des agregats et celle de la queue. Les niveaux et
+ * leurs filtres sont ceux de RollupLevel.
+ *
+ * La queue de chaque table est lue en un seul passage (GROUPING SETS):
+ * tous les niveaux, et pour search_events les sessions uniques (ensemble
+ * session_id), sortent de la meme lecture; GROUPING() indique le niveau de
+ * chaque ligne.
+ */
+@Component
+public class AnalyticsAggregateReader {
+
+    public static final String CACHE = "analyticsAggregates";
+
+    private static final List<RollupLevel> LEVELS = List.of(
+            RollupLevel.global, RollupLevel.region, RollupLevel.brand, RollupLevel.fuel, RollupLevel.device);
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String SELECT_WATERMARKS = """
+            SELECT source, watermark FROM analytics_rollup_watermarks
+            """;
+
+    private static final String AGGREGATE_LEVEL = """
+            SELECT '%s' AS level, %s AS dimension,
+                COALESCE(SUM(search_count), 0) AS searches,
+                COALESCE(SUM(calculation_count), 0) AS calculations,
+                COALESCE(SUM(tax_amount_count), 0) AS amount_count,
+                COALESCE(SUM(tax_amount_sum), 0) AS amount_sum,
+                MIN(min_tax_amount) AS amount_min,
+                MAX(max_tax_amount) AS amount_max
+            FROM daily_aggregates
+            WHERE date BETWEEN :start AND :end AND %s%s%s
+            """;
+
+    /** Colonnes des ensembles de regroupement de la queue, dans l'ordre des arguments de GROUPING() */
+    private static final List<String> TAIL_COLUMNS = List.of("region", "brand_id", "fuel_type", "device_type");
+
+    private static final Map<Integer, RollupLevel> LEVEL_BY_GROUPING = LEVELS.stream()
+            .collect(Collectors.toUnmodifiableMap(level -> level.grouping(TAIL_COLUMNS), Function.identity()));
+
+    private static final String TAIL_SEARCHES = """
+            SELECT %s AS grouping_id, %s, t.session_id,
+                COALESCE(SUM(t.sample_weight), 0) AS searches,
+                COALESCE(SUM(t.sample_weight) FILTER (WHERE t.search_type = 'calculate'), 0) AS calculations,
+                0 AS amount_count, 0 AS amount_sum,
+                CAST(NULL AS numeric) AS amount_min, CAST(NULL AS numeric) AS amount_max
+            FROM (%s) t
+            WHERE t.ingested_at >= :searchesFrom AND t.created_at >= :startTime AND t.created_at < :endTime%s
+            GROUP BY GROUPING SETS (%s, (t.session_id))
+            HAVING %s
+            """;
+
+    private static final String TAIL_AMOUNTS = """
+            SELECT %s AS grouping_id, %s, CAST(NULL AS uuid) AS session_id,
+                0 AS searches, 0 AS calculations,
+                COUNT(t.calculated_amount) AS amount_count,
+                COALESCE(SUM(t.calculated_amount), 0) AS amount_sum,
+                MIN(t.calculated_amount) AS amount_min,
+                MAX(t.calculated_amount) AS amount_max
+            FROM (%s) t
+            WHERE t.ingested_at >= :calculationsFrom AND t.created_at >= :startTime AND t.created_at < :endTime%s
+            GROUP BY GROUPING SETS (%s)
+            HAVING %s
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    private final UniqueSessionCounter uniqueSessionCounter;
+
+    public AnalyticsAggregateReader(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            UniqueSessionCounter uniqueSessionCounter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.uniqueSessionCounter = uniqueSessionCounter;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Statistiques deja agregees de la periode, avec les watermarks du rollup.
+     */
+    @Cacheable(CACHE)
+    public AnalyticsAggregates readRolledUp(AnalyticsRange range) {
+        return snapshotTemplate.execute(status -> {
+            Map<String, LocalDateTime> watermarks = new HashMap<>();
+            jdbcTemplate.query(SELECT_WATERMARKS, (RowCallbackHandler) rs -> watermarks.put(
+                    rs.getString("source"), rs.getObject("watermark", LocalDateTime.class)));
+
+            String sql = levels(range).stream()
+                    .map(level -> AGGREGATE_LEVEL.formatted(level.name(), dimension(level, null),
+                            level.aggregateRows(), regionFilter(range, null), groupBy(level, null)))
+                    .collect(Collectors.joining("UNION ALL\n"));
+            Builder builder = new Builder(range);
+            jdbcTemplate.query(sql, params(range), (RowCallbackHandler) rs -> builder.add(
+                    RollupLevel.valueOf(rs.getString("level")), rs.getString("dimension"), totals(rs)));
+
+            HyperLogLog sessions = uniqueSessionCounter.unionSketch(range.from(), range.to(), range.region(), null);
+            return builder.build(
+                    watermarks.getOrDefault(DailyAggregateRollup.SEARCH_EVENTS, EPOCH),
+                    watermarks.getOrDefault(DailyAggregateRollup.TAX_CALCULATIONS, EPOCH),
+                    sessions);
+        });
+    }
+
+    /**
+     * Statistiques de la periode pour les lignes chargees a partir des watermarks donnes.
+     */
+    public AnalyticsAggregates readTail(AnalyticsRange range, LocalDateTime searchesFrom, LocalDateTime calculationsFrom) {
+        MapSqlParameterSource params = params(range)
+                .addValue("searchesFrom", searchesFrom)
+                .addValue("calculationsFrom", calculationsFrom);
+        String groupingSets = levels(range).stream()
+                .map(level -> level.groupingSet("t"))
+                .collect(Collectors.joining(", "));
+        String grouping = TAIL_COLUMNS.stream()
+                .map(column -> "t." + column)
+                .collect(Collectors.joining(", ", "GROUPING(", ")"));
+        String columns = TAIL_COLUMNS.stream()
+                .map(column -> "t." + column)
+                .collect(Collectors.joining(", "));
+        // Une valeur NULL d'une colonne regroupee exclut la ligne de son niveau (requiredFilter)
+        String having = TAIL_COLUMNS.stream()
+                .map(column -> "(GROUPING(t." + column + ") = 1 OR t." + column + " IS NOT NULL)")
+                .collect(Collectors.joining(" AND "));
+        String sql = TAIL_SEARCHES.formatted(grouping, columns, RollupLevel.ENRICHED_SEARCH_EVENTS,
+                regionFilter(range, "t"), groupingSets, having)
+                + "UNION ALL\n"
+                + TAIL_AMOUNTS.formatted(grouping, columns, RollupLevel.ENRICHED_TAX_CALCULATIONS,
+                regionFilter(range, "t"), groupingSets, having);
+
+        Builder builder = new Builder(range);
+        HyperLogLog sessions = new HyperLogLog();
+        jdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> {
+            // Ensemble (session_id): une ligne par session, seule ligne ou session_id n'est pas NULL
+            UUID sessionId = rs.getObject("session_id", UUID.class);
+            if (sessionId != null) {
+                sessions.add(sessionId);
+                return;
+            }
+            RollupLevel level = LEVEL_BY_GROUPING.get(rs.getInt("grouping_id"));
+            if (level == null) {
+                throw new IllegalStateException("Unexpected grouping " + rs.getInt("grouping_id"));
+            }
+            String dimension = level.groupColumn() == null ? null : rs.getString(level.groupColumn());
+            builder.add(level, dimension, totals(rs));
+        });
+        return builder.build(searchesFrom, calculationsFrom, sessions);
+    }
+
+    /**
+     * Vide les caches des agregats et des distributions de montants
+     * (TaxAmountDistribution): appele apres chaque passage du rollup.
+     */
+    @CacheEvict(value = {CACHE, TaxAmountDistribution.CACHE}, allEntries = true)
+    public void evictRolledUp() {
+        // Le cache est vide par l'annotation
+    }
+
+    /**
+     * Niveaux lus: avec un filtre region, le total est celui de la region.
+     */
+    private static List<RollupLevel> levels(AnalyticsRange range) {
+        return range.region() == null ? LEVELS : LEVELS.subList(1, LEVELS.size());
+    }
+
+    private static MapSqlParameterSource params(AnalyticsRange range) {
+        return new MapSqlParameterSource()
+                .addValue("start", range.from())
+                .addValue("end", range.to())
+                .addValue("startTime", range.from().atStartOfDay())
+                .addValue("endTime", range.to().plusDays(1).atStartOfDay())
+                .addValue("region", range.region() != null ? range.region().name() : null);
+    }
+
+    private static String dimension(RollupLevel level, String alias) {
+        return level.groupColumn() == null
+                ? "CAST(NULL AS text)"
+                : "CAST(" + column(alias, level.groupColumn()) + " AS text)";
+    }
+
+    private static Totals totals(ResultSet rs) throws SQLException {
+        return new Totals(
+                rs.getLong("searches"),
+                rs.getLong("calculations"),
+                rs.getLong("amount_count"),
+                rs.getBigDecimal("amount_sum"),
+                rs.getBigDecimal("amount_min"),
+                rs.getBigDecimal("amount_max"));
+    }
+
+    private static String groupBy(RollupLevel level, String alias) {
+        return level.groupColumn() == null ? "" : "\nGROUP BY " + column(alias, level.groupColumn());
+    }
+
+    private static String regionFilter(AnalyticsRange range, String alias) {
+        return range.region() == null ? "" : " AND " + column(alias, "region") + " = CAST(:region AS region)";
+    }
+
+    private static String column(String alias, String column) {
+        return alias == null ? column : alias + "." + column;
+    }
+
+    /**
+     * Repartit les mesures par niveau et dimension.
+     */
+    private static final class Builder {
+
+        private final AnalyticsRange range;
+        private Totals total = Totals.EMPTY;
+        private final Map<Region, Totals> byRegion = new EnumMap<>(Region.class);
+        private final Map<Long, Totals> byBrand = new HashMap<>();
+        private final Map<FuelType, Totals> byFuelType = new EnumMap<>(FuelType.class);
+        private final Map<DeviceType, Totals> byDeviceType = new EnumMap<>(DeviceType.class);
+
+        private Builder(AnalyticsRange range) {
+            this.range = range;
+        }
+
+        private void add(RollupLevel level, String dimension, Totals totals) {
+            switch (level) {
+                case global -> total = total.plus(totals);
+                case region -> byRegion.merge(Region.valueOf(dimension), totals, Totals::plus);
+                case brand -> byBrand.merge(Long.valueOf(dimension), totals, Totals::plus);
+                case fuel -> byFuelType.merge(FuelType.valueOf(dimension), totals, Totals::plus);
+                case device -> byDeviceType.merge(DeviceType.valueOf(dimension), totals, Totals::plus);
+                default -> throw new IllegalStateException("Unexpected level " + level);
+            }
+        }
+
+        private AnalyticsAggregates build(LocalDateTime searchesUntil, LocalDateTime calculationsUntil,
+                                          HyperLogLog sessions) {
+            Totals periodTotal = range.region() == null
+                    ? total
+                    : byRegion.getOrDefault(range.region(), Totals.EMPTY);
+            return new AnalyticsAggregates(searchesUntil, calculationsUntil, periodTotal,
+                    Map.copyOf(byRegion), Map.copyOf(byBrand), Map.copyOf(byFuelType), Map.copyOf(byDeviceType),
+                    sessions.toBytes());
+        }
+    }
+}
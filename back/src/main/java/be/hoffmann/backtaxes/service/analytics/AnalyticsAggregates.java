@@ -0,0 +1,91 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Statistiques d'une periode par niveau d'agregation: total, region,
+ * marque, carburant et appareil.
+ *
+ * Les valeurs lues dans daily_aggregates et celles des lignes pas encore
+ * agregees s'additionnent (plus). Les watermarks sont ceux du rollup au
+ * moment de la lecture des agregats: les lignes chargees a partir de ces
+ * heures n'y sont pas encore.
+ *
+ * @param searchesRolledUpUntil     Watermark du rollup de search_events
+ * @param calculationsRolledUpUntil Watermark du rollup de tax_calculations
+ * @param sessionSketch             Sketch HyperLogLog des sessions (HyperLogLog.toBytes)
+ */
+public record AnalyticsAggregates(
+        LocalDateTime searchesRolledUpUntil,
+        LocalDateTime calculationsRolledUpUntil,
+        Totals total,
+        Map<Region, Totals> byRegion,
+        Map<Long, Totals> byBrand,
+        Map<FuelType, Totals> byFuelType,
+        Map<DeviceType, Totals> byDeviceType,
+        byte[] sessionSketch) {
+
+    /**
+     * Somme de ces statistiques et de celles des lignes chargees apres les watermarks.
+     */
+    public AnalyticsAggregates plus(AnalyticsAggregates tail) {
+        return new AnalyticsAggregates(
+                searchesRolledUpUntil,
+                calculationsRolledUpUntil,
+                total.plus(tail.total),
+                merge(byRegion, tail.byRegion),
+                merge(byBrand, tail.byBrand),
+                merge(byFuelType, tail.byFuelType),
+                merge(byDeviceType, tail.byDeviceType),
+                HyperLogLog.fromBytes(sessionSketch).merge(HyperLogLog.fromBytes(tail.sessionSketch)).toBytes());
+    }
+
+    private static <K> Map<K, Totals> merge(Map<K, Totals> left, Map<K, Totals> right) {
+        return Stream.concat(left.entrySet().stream(), right.entrySet().stream())
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue, Totals::plus));
+    }
+
+    /**
+     * Recherches, calculs et montants calcules d'un groupe.
+     * Somme et nombre des montants permettent une moyenne exacte.
+     */
+    public record Totals(long searches, long calculations,
+                         long amountCount, BigDecimal amountSum, BigDecimal amountMin, BigDecimal amountMax) {
+
+        public static final Totals EMPTY = new Totals(0, 0, 0, BigDecimal.ZERO, null, null);
+
+        public Totals plus(Totals other) {
+            return new Totals(
+                    searches + other.searches,
+                    calculations + other.calculations,
+                    amountCount + other.amountCount,
+                    amountSum.add(other.amountSum),
+                    combine(amountMin, other.amountMin, BigDecimal::min),
+                    combine(amountMax, other.amountMax, BigDecimal::max));
+        }
+
+        /**
+         * Montant moyen (null sans montant).
+         */
+        public BigDecimal amountAverage() {
+            return amountCount == 0 ? null : amountSum.divide(BigDecimal.valueOf(amountCount), 2, RoundingMode.HALF_UP);
+        }
+
+        private static BigDecimal combine(BigDecimal a, BigDecimal b, BinaryOperator<BigDecimal> pick) {
+            if (a == null) {
+                return b;
+            }
+            return b == null ? a : pick.apply(a, b);
+        }
+    }
+}
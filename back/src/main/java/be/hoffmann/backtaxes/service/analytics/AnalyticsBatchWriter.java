@@ -0,0 +1,275 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pipeline d'ingestion analytics: buffer borne + writer unique par lots.
+ *
+ * Les threads HTTP deposent les evenements dans un BoundedRingBuffer (aucun
+ * verrou, aucune transaction, aucune tache par evenement). Un seul thread
+ * vide le buffer et ecrit par lots, des que le lot est plein ou que
+ * l'intervalle de flush est ecoule. Quand le buffer est sature, la politique
+ * de debordement decide: jamais d'exception vers l'appelant.
+ *
+ * La politique sample garde un evenement echantillonnable sur n (n = 1 /
+ * sampleRate, arrondi) et multiplie son poids par n (reweight): les totaux
+ * ponderes restent sans biais. Les evenements que reweight refuse (calculs)
+ * sont toujours gardes.
+ *
+ * A l'arret, le writer s'arrete apres le serveur web et vide le buffer avant
+ * la destruction des beans (journal, pool de connexions).
+ *
+ * Metriques (tag stream): analytics.buffer.depth, analytics.flush.latency,
+ * analytics.events.written, analytics.events.sampled (gardes avec un poids
+ * multiplie), analytics.events.dropped (tag reason).
+ *
+ * @param <T> Type d'evenement ecrit
+ */
+public abstract class AnalyticsBatchWriter<T> implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsBatchWriter.class);
+
+    /** Pause d'un producteur en attente de place (politique block) */
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final String stream;
+    private final BoundedRingBuffer<T> buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long blockTimeoutNanos;
+    private final int sampleThreshold;
+    private final int sampleFactor;
+    private final long shutdownTimeoutMillis;
+
+    private final Timer flushLatency;
+    private final Counter written;
+    private final Counter sampled;
+    private final Counter droppedOverflow;
+    private final Counter droppedSampled;
+    private final Counter droppedTimeout;
+    private final Counter droppedShutdown;
+    private final Counter failed;
+
+    private volatile boolean running;
+    private volatile Thread writerThread;
+
+    protected AnalyticsBatchWriter(String stream, AnalyticsWriterSettings settings, MeterRegistry meterRegistry) {
+        this.stream = stream;
+        this.buffer = new BoundedRingBuffer<>(settings.bufferCapacity());
+        this.overflowPolicy = settings.overflowPolicy();
+        this.batchSize = settings.batchSize();
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.flushIntervalMs());
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(settings.blockTimeoutMs());
+        this.sampleThreshold = (int) (buffer.capacity() * settings.sampleThreshold());
+        this.sampleFactor = (int) Math.round(1 / settings.sampleRate());
+        this.shutdownTimeoutMillis = settings.shutdownTimeoutMs();
+
+        Gauge.builder("analytics.buffer.depth", buffer, BoundedRingBuffer::size)
+                .tag("stream", stream)
+                .description("Evenements en attente d'ecriture")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("analytics.flush.latency")
+                .tag("stream", stream)
+                .description("Duree d'ecriture d'un lot")
+                .register(meterRegistry);
+        this.written = Counter.builder("analytics.events.written").tag("stream", stream).register(meterRegistry);
+        this.sampled = Counter.builder("analytics.events.sampled").tag("stream", stream).register(meterRegistry);
+        this.droppedOverflow = dropCounter(meterRegistry, "overflow");
+        this.droppedSampled = dropCounter(meterRegistry, "sampled");
+        this.droppedTimeout = dropCounter(meterRegistry, "timeout");
+        this.droppedShutdown = dropCounter(meterRegistry, "shutdown");
+        this.failed = dropCounter(meterRegistry, "write_error");
+    }
+
+    /**
+     * Ecrit un lot d'evenements (appele uniquement par le thread writer).
+     */
+    protected abstract void writeBatch(List<T> batch);
+
+    /**
+     * Meme evenement, representant factor fois plus d'evenements (politique sample).
+     *
+     * @return null si l'evenement ne doit pas etre echantillonne (il est alors toujours garde)
+     */
+    protected T reweight(T event, int factor) {
+        return null;
+    }
+
+    /**
+     * Depose un evenement sans bloquer (sauf politique block, bornee par son timeout).
+     *
+     * @return false si l'evenement a ete abandonne
+     */
+    public boolean submit(T event) {
+        if (!running) {
+            droppedShutdown.increment();
+            return false;
+        }
+        boolean accepted = switch (overflowPolicy) {
+            case drop_oldest -> offerDroppingOldest(event);
+            case sample -> offerSampled(event);
+            case block -> offerBlocking(event);
+        };
+        if (accepted && buffer.size() >= batchSize) {
+            LockSupport.unpark(writerThread);
+        }
+        return accepted;
+    }
+
+    private boolean offerDroppingOldest(T event) {
+        while (!buffer.offer(event)) {
+            if (buffer.poll() != null) {
+                droppedOverflow.increment();
+            }
+        }
+        return true;
+    }
+
+    private boolean offerSampled(T event) {
+        T kept = event;
+        if (sampleFactor > 1 && buffer.size() >= sampleThreshold) {
+            T weighted = reweight(event, sampleFactor);
+            if (weighted != null) {
+                if (ThreadLocalRandom.current().nextInt(sampleFactor) != 0) {
+                    droppedSampled.increment();
+                    return false;
+                }
+                kept = weighted;
+            }
+        }
+        if (!buffer.offer(kept)) {
+            droppedOverflow.increment();
+            return false;
+        }
+        if (kept != event) {
+            sampled.increment();
+        }
+        return true;
+    }
+
+    private boolean offerBlocking(T event) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (!buffer.offer(event)) {
+            if (!running || System.nanoTime() - deadline >= 0) {
+                droppedTimeout.increment();
+                return false;
+            }
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+        }
+        return true;
+    }
+
+    private void runWriter() {
+        List<T> batch = new ArrayList<>(batchSize);
+        long lastFlush = System.nanoTime();
+        while (running || !buffer.isEmpty()) {
+            int drained = buffer.drainTo(batch, batchSize - batch.size());
+            long elapsed = System.nanoTime() - lastFlush;
+            if (batch.size() >= batchSize || (!batch.isEmpty() && (elapsed >= flushIntervalNanos || !running))) {
+                flush(batch);
+                lastFlush = System.nanoTime();
+            } else if (drained == 0) {
+                LockSupport.parkNanos(this, batch.isEmpty() ? flushIntervalNanos : flushIntervalNanos - elapsed);
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    private void flush(List<T> batch) {
+        long start = System.nanoTime();
+        try {
+            writeBatch(batch);
+            written.increment(batch.size());
+        } catch (RuntimeException e) {
+            failed.increment(batch.size());
+            log.warn("Analytics writer [{}]: batch of {} events lost: {}", stream, batch.size(), e.getMessage());
+        } finally {
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batch.clear();
+        }
+    }
+
+    // ==================== CYCLE DE VIE ====================
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::runWriter, "analytics-writer-" + stream);
+        thread.setDaemon(true);
+        writerThread = thread;
+        thread.start();
+        log.info("Analytics writer [{}] started (capacity {}, batch {}, policy {})",
+                stream, buffer.capacity(), batchSize, overflowPolicy);
+    }
+
+    /**
+     * Arrete les depots et vide le buffer (borne par le timeout d'arret).
+     */
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Thread thread = writerThread;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(shutdownTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("Analytics writer [{}] did not drain within {} ms ({} events left)",
+                    stream, shutdownTimeoutMillis, buffer.size());
+        } else {
+            log.info("Analytics writer [{}] drained and stopped", stream);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Arrete apres le serveur web (qui arrete d'accepter des requetes) et avant la destruction des beans.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    int depth() {
+        return buffer.size();
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    private Counter dropCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("analytics.events.dropped")
+                .tag("stream", stream)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,194 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Chargement en masse des evenements du journal dans PostgreSQL (COPY).
+ *
+ * Un chargement est une seule transaction: reservation des identifiants
+ * search_events (pour relier les tax_calculations), COPY des deux tables,
+ * mise a jour des compteurs calculation_fingerprints et avancement du point
+ * de reprise du journal. Apres un crash, le drainer reprend exactement
+ * apres le dernier lot valide, sans doublon. Les lignes des calculs non
+ * echantillonnes ne sont comptees que dans calculation_fingerprints.
+ */
+@Component
+public class AnalyticsCopyLoader {
+
+    static final String COPY_SEARCH_EVENTS = """
+            COPY search_events (id, session_id, user_id, brand_id, model_id, variant_id, region, fuel_type,
+                is_new_vehicle, first_registration_date, search_type, device_type, referrer_source,
+                user_agent_hash, language, created_at, sample_weight) FROM STDIN WITH (FORMAT csv)
+            """;
+
+    static final String COPY_TAX_CALCULATIONS = """
+            COPY tax_calculations (search_event_id, variant_id, submission_id, region, tax_type,
+                calculated_amount, power_kw, cv_fiscal, co2_gkm, vehicle_age_months, is_exempt, created_at)
+            FROM STDIN WITH (FORMAT csv)
+            """;
+
+    private static final String RESERVE_IDS = """
+            SELECT nextval(pg_get_serial_sequence('search_events', 'id')) FROM generate_series(1, ?)
+            """;
+
+    private static final String SELECT_CHECKPOINT = """
+            SELECT segment, position FROM analytics_journal_checkpoints WHERE journal_id = ?
+            """;
+
+    private static final String UPSERT_CHECKPOINT = """
+            INSERT INTO analytics_journal_checkpoints (journal_id, segment, position, updated_at)
+            VALUES (?, ?, ?, CURRENT_TIMESTAMP)
+            ON CONFLICT (journal_id) DO UPDATE
+            SET segment = EXCLUDED.segment, position = EXCLUDED.position, updated_at = EXCLUDED.updated_at
+            """;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CalculationFingerprints calculationFingerprints;
+
+    public AnalyticsCopyLoader(
+            DataSource dataSource,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            CalculationFingerprints calculationFingerprints) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.calculationFingerprints = calculationFingerprints;
+    }
+
+    /**
+     * Dernier point de reprise valide d'un journal.
+     */
+    public Optional<JournalCheckpoint> readCheckpoint(String journalId) {
+        return jdbcTemplate.query(SELECT_CHECKPOINT,
+                (rs, rowNum) -> new JournalCheckpoint(rs.getLong("segment"), rs.getLong("position")),
+                journalId).stream().findFirst();
+    }
+
+    /**
+     * Charge des evenements et avance le point de reprise, dans une seule transaction.
+     */
+    public void load(String journalId, List<AnalyticsEvent> events, JournalCheckpoint checkpoint) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> ids = jdbcTemplate.queryForList(RESERVE_IDS, Long.class, events.size());
+            StringBuilder searchRows = new StringBuilder(events.size() * 160);
+            StringBuilder calculationRows = new StringBuilder();
+            for (int i = 0; i < events.size(); i++) {
+                AnalyticsEvent event = events.get(i);
+                long id = ids.get(i);
+                appendSearchEvent(searchRows, id, event.searchEvent());
+                if (event instanceof CalculationEventRecord calculation && calculation.linesSampled()) {
+                    for (TaxCalculationRecord line : calculation.calculations()) {
+                        appendCalculation(calculationRows, id, line, event.searchEvent());
+                    }
+                }
+            }
+            copy(COPY_SEARCH_EVENTS, searchRows);
+            if (!calculationRows.isEmpty()) {
+                copy(COPY_TAX_CALCULATIONS, calculationRows);
+            }
+            calculationFingerprints.record(events);
+            jdbcTemplate.update(UPSERT_CHECKPOINT, journalId, checkpoint.segment(), checkpoint.position());
+        });
+    }
+
+    private void copy(String sql, CharSequence rows) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, new StringReader(rows.toString()));
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("COPY failed: " + e.getMessage(), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    // ==================== CSV ====================
+
+    static void appendSearchEvent(StringBuilder out, long id, SearchEventRecord event) {
+        out.append(id);
+        field(out, event.sessionId());
+        field(out, event.userId());
+        field(out, event.brandId());
+        field(out, event.modelId());
+        field(out, event.variantId());
+        field(out, event.region());
+        field(out, event.fuelType());
+        field(out, event.isNewVehicle());
+        field(out, event.firstRegistrationDate());
+        field(out, event.searchType());
+        field(out, event.deviceType());
+        text(out, event.referrerSource());
+        text(out, event.userAgentHash());
+        text(out, event.language());
+        field(out, timestamp(event));
+        field(out, event.sampleWeight());
+        out.append('\n');
+    }
+
+    static void appendCalculation(StringBuilder out, long searchEventId, TaxCalculationRecord line,
+                                  SearchEventRecord event) {
+        out.append(searchEventId);
+        field(out, line.variantId());
+        field(out, line.submissionId());
+        field(out, line.region());
+        field(out, line.taxType());
+        field(out, line.calculatedAmount() != null ? line.calculatedAmount().setScale(2, RoundingMode.HALF_UP) : null);
+        field(out, line.powerKw());
+        field(out, line.cvFiscal());
+        field(out, line.co2Gkm());
+        field(out, line.vehicleAgeMonths());
+        field(out, line.isExempt());
+        field(out, timestamp(event));
+        out.append('\n');
+    }
+
+    /**
+     * Colonnes timestamp sans fuseau: heure locale du serveur, comme les ecritures JPA.
+     */
+    static LocalDateTime timestamp(SearchEventRecord event) {
+        return LocalDateTime.ofInstant(event.createdAt(), ZoneId.systemDefault());
+    }
+
+    /** Valeur non textuelle: vide (NULL en CSV) si absente */
+    private static void field(StringBuilder out, Object value) {
+        out.append(',');
+        if (value instanceof BigDecimal decimal) {
+            out.append(decimal.toPlainString());
+        } else if (value != null) {
+            out.append(value);
+        }
+    }
+
+    /** Texte toujours entre guillemets: une chaine vide n'est pas NULL */
+    private static void text(StringBuilder out, String value) {
+        out.append(',');
+        if (value != null) {
+            out.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    /**
+     * Position dans le journal jusqu'a laquelle les evenements sont en base.
+     */
+    public record JournalCheckpoint(long segment, long position) {
+    }
+}
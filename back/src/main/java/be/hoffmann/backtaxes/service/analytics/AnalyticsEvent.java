@@ -0,0 +1,12 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+/**
+ * Evenement analytics en attente d'ecriture (journal puis base).
+ */
+public sealed interface AnalyticsEvent permits SearchEventRecord, CalculationEventRecord {
+
+    /**
+     * Ligne search_events de l'evenement (un calcul est aussi une recherche).
+     */
+    SearchEventRecord searchEvent();
+}
@@ -0,0 +1,311 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Encodage binaire compact des evenements du journal analytics.
+ *
+ * Les champs optionnels sont signales par un masque de bits, les enums
+ * sont ecrits par ordinal (1 octet), les dates en jour epoch et les
+ * instants en microsecondes. Les ordinaux sont traduits a la lecture via
+ * le dictionnaire des noms ecrit dans l'en-tete de chaque segment: un
+ * segment ecrit avant un deploiement qui reordonne un enum reste lisible.
+ * Une recherche echantillonnee (poids > 1) et un calcul dont les lignes ne
+ * sont pas echantillonnees ont leur propre type d'entree, et la version de
+ * regles d'une ligne de calcul un bit de masque libre jusque-la: les
+ * segments anterieurs restent lisibles tels quels.
+ */
+final class AnalyticsEventCodec {
+
+    private static final byte TYPE_SEARCH = 1;
+    private static final byte TYPE_CALCULATION = 2;
+    private static final byte TYPE_SAMPLED_SEARCH = 3;
+    private static final byte TYPE_UNSAMPLED_CALCULATION = 4;
+
+    /** Enums encodes par ordinal, dans l'ordre du dictionnaire d'en-tete */
+    private static final List<Class<? extends Enum<?>>> DICTIONARY_ENUMS =
+            List.of(Region.class, FuelType.class, SearchType.class, DeviceType.class, TaxType.class);
+
+    private static final int SESSION = 1;
+    private static final int USER = 1 << 1;
+    private static final int BRAND = 1 << 2;
+    private static final int MODEL = 1 << 3;
+    private static final int VARIANT = 1 << 4;
+    private static final int NEW_VEHICLE = 1 << 5;
+    private static final int NEW_VEHICLE_VALUE = 1 << 6;
+    private static final int REGISTRATION_DATE = 1 << 7;
+
+    private static final int CALC_VARIANT = 1;
+    private static final int CALC_SUBMISSION = 1 << 1;
+    private static final int CALC_POWER = 1 << 2;
+    private static final int CALC_CV = 1 << 3;
+    private static final int CALC_CO2 = 1 << 4;
+    private static final int CALC_AGE = 1 << 5;
+    private static final int CALC_EXEMPT = 1 << 6;
+    private static final int CALC_RULE_VERSION = 1 << 7;
+
+    private final Region[] regions;
+    private final FuelType[] fuelTypes;
+    private final SearchType[] searchTypes;
+    private final DeviceType[] deviceTypes;
+    private final TaxType[] taxTypes;
+
+    private AnalyticsEventCodec(List<List<String>> dictionary) {
+        this.regions = resolve(Region.class, dictionary.get(0));
+        this.fuelTypes = resolve(FuelType.class, dictionary.get(1));
+        this.searchTypes = resolve(SearchType.class, dictionary.get(2));
+        this.deviceTypes = resolve(DeviceType.class, dictionary.get(3));
+        this.taxTypes = resolve(TaxType.class, dictionary.get(4));
+    }
+
+    // ==================== EN-TETE ====================
+
+    /**
+     * Ecrit le dictionnaire des enums courants (en-tete de segment).
+     */
+    static void writeDictionary(ByteBuffer out) {
+        out.put((byte) DICTIONARY_ENUMS.size());
+        for (Class<? extends Enum<?>> type : DICTIONARY_ENUMS) {
+            Enum<?>[] constants = type.getEnumConstants();
+            out.put((byte) constants.length);
+            for (Enum<?> constant : constants) {
+                putString(out, constant.name());
+            }
+        }
+    }
+
+    /**
+     * Decodeur pour un segment, a partir de son dictionnaire.
+     */
+    static AnalyticsEventCodec readDictionary(ByteBuffer in) {
+        int enumCount = in.get();
+        List<List<String>> dictionary = new ArrayList<>(enumCount);
+        for (int i = 0; i < enumCount; i++) {
+            int constantCount = in.get();
+            List<String> names = new ArrayList<>(constantCount);
+            for (int j = 0; j < constantCount; j++) {
+                names.add(getString(in));
+            }
+            dictionary.add(names);
+        }
+        if (dictionary.size() != DICTIONARY_ENUMS.size()) {
+            throw new IllegalStateException("Unsupported journal dictionary (" + enumCount + " enums)");
+        }
+        return new AnalyticsEventCodec(dictionary);
+    }
+
+    // ==================== ENCODAGE ====================
+
+    static void encode(AnalyticsEvent event, ByteBuffer out) {
+        switch (event) {
+            case SearchEventRecord search when search.sampleWeight() > 1 -> {
+                out.put(TYPE_SAMPLED_SEARCH);
+                out.putShort((short) search.sampleWeight());
+                putSearchEvent(out, search);
+            }
+            case SearchEventRecord search -> {
+                out.put(TYPE_SEARCH);
+                putSearchEvent(out, search);
+            }
+            case CalculationEventRecord calculation -> {
+                out.put(calculation.linesSampled() ? TYPE_CALCULATION : TYPE_UNSAMPLED_CALCULATION);
+                putSearchEvent(out, calculation.searchEvent());
+                out.put((byte) calculation.calculations().size());
+                for (TaxCalculationRecord line : calculation.calculations()) {
+                    putCalculation(out, line);
+                }
+            }
+        }
+    }
+
+    private static void putSearchEvent(ByteBuffer out, SearchEventRecord event) {
+        int flags = (event.sessionId() != null ? SESSION : 0)
+                | (event.userId() != null ? USER : 0)
+                | (event.brandId() != null ? BRAND : 0)
+                | (event.modelId() != null ? MODEL : 0)
+                | (event.variantId() != null ? VARIANT : 0)
+                | (event.isNewVehicle() != null ? NEW_VEHICLE : 0)
+                | (Boolean.TRUE.equals(event.isNewVehicle()) ? NEW_VEHICLE_VALUE : 0)
+                | (event.firstRegistrationDate() != null ? REGISTRATION_DATE : 0);
+        out.put((byte) flags);
+        if (event.sessionId() != null) {
+            out.putLong(event.sessionId().getMostSignificantBits());
+            out.putLong(event.sessionId().getLeastSignificantBits());
+        }
+        putIfPresent(out, event.userId());
+        putIfPresent(out, event.brandId());
+        putIfPresent(out, event.modelId());
+        putIfPresent(out, event.variantId());
+        putOrdinal(out, event.region());
+        putOrdinal(out, event.fuelType());
+        putOrdinal(out, event.searchType());
+        putOrdinal(out, event.deviceType());
+        if (event.firstRegistrationDate() != null) {
+            out.putInt((int) event.firstRegistrationDate().toEpochDay());
+        }
+        putString(out, event.referrerSource());
+        putString(out, event.userAgentHash());
+        putString(out, event.language());
+        out.putLong(ChronoUnit.MICROS.between(Instant.EPOCH, event.createdAt()));
+    }
+
+    private static void putCalculation(ByteBuffer out, TaxCalculationRecord line) {
+        int flags = (line.variantId() != null ? CALC_VARIANT : 0)
+                | (line.submissionId() != null ? CALC_SUBMISSION : 0)
+                | (line.powerKw() != null ? CALC_POWER : 0)
+                | (line.cvFiscal() != null ? CALC_CV : 0)
+                | (line.co2Gkm() != null ? CALC_CO2 : 0)
+                | (line.vehicleAgeMonths() != null ? CALC_AGE : 0)
+                | (line.isExempt() ? CALC_EXEMPT : 0)
+                | (line.ruleVersion() != null ? CALC_RULE_VERSION : 0);
+        out.put((byte) flags);
+        putIfPresent(out, line.variantId());
+        putIfPresent(out, line.submissionId());
+        putOrdinal(out, line.region());
+        putOrdinal(out, line.taxType());
+        out.putLong(line.calculatedAmount().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+        putIfPresent(out, line.powerKw());
+        putIfPresent(out, line.cvFiscal());
+        putIfPresent(out, line.co2Gkm());
+        putIfPresent(out, line.vehicleAgeMonths());
+        putIfPresent(out, line.ruleVersion());
+    }
+
+    // ==================== DECODAGE ====================
+
+    AnalyticsEvent decode(ByteBuffer in) {
+        byte type = in.get();
+        return switch (type) {
+            case TYPE_SEARCH -> getSearchEvent(in, 1);
+            case TYPE_SAMPLED_SEARCH -> getSearchEvent(in, in.getShort());
+            case TYPE_CALCULATION, TYPE_UNSAMPLED_CALCULATION -> {
+                SearchEventRecord search = getSearchEvent(in, 1);
+                int count = Byte.toUnsignedInt(in.get());
+                List<TaxCalculationRecord> lines = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    lines.add(getCalculation(in));
+                }
+                yield new CalculationEventRecord(search, lines, type == TYPE_CALCULATION);
+            }
+            default -> throw new IllegalStateException("Unknown journal entry type " + type);
+        };
+    }
+
+    private SearchEventRecord getSearchEvent(ByteBuffer in, int sampleWeight) {
+        int flags = Byte.toUnsignedInt(in.get());
+        UUID sessionId = (flags & SESSION) != 0 ? new UUID(in.getLong(), in.getLong()) : null;
+        Long userId = (flags & USER) != 0 ? in.getLong() : null;
+        Long brandId = (flags & BRAND) != 0 ? in.getLong() : null;
+        Long modelId = (flags & MODEL) != 0 ? in.getLong() : null;
+        Long variantId = (flags & VARIANT) != 0 ? in.getLong() : null;
+        Region region = byOrdinal(regions, in.get());
+        FuelType fuelType = byOrdinal(fuelTypes, in.get());
+        SearchType searchType = byOrdinal(searchTypes, in.get());
+        DeviceType deviceType = byOrdinal(deviceTypes, in.get());
+        Boolean isNewVehicle = (flags & NEW_VEHICLE) != 0 ? (flags & NEW_VEHICLE_VALUE) != 0 : null;
+        LocalDate registrationDate = (flags & REGISTRATION_DATE) != 0 ? LocalDate.ofEpochDay(in.getInt()) : null;
+        String referrerSource = getString(in);
+        String userAgentHash = getString(in);
+        String language = getString(in);
+        Instant createdAt = Instant.EPOCH.plus(in.getLong(), ChronoUnit.MICROS);
+        return new SearchEventRecord(sessionId, userId, brandId, modelId, variantId, region, fuelType,
+                isNewVehicle, registrationDate, searchType, deviceType, referrerSource, userAgentHash,
+                language, createdAt, sampleWeight);
+    }
+
+    private TaxCalculationRecord getCalculation(ByteBuffer in) {
+        int flags = Byte.toUnsignedInt(in.get());
+        Long variantId = (flags & CALC_VARIANT) != 0 ? in.getLong() : null;
+        Long submissionId = (flags & CALC_SUBMISSION) != 0 ? in.getLong() : null;
+        Region region = byOrdinal(regions, in.get());
+        TaxType taxType = byOrdinal(taxTypes, in.get());
+        BigDecimal amount = BigDecimal.valueOf(in.getLong(), 2);
+        Integer powerKw = (flags & CALC_POWER) != 0 ? in.getInt() : null;
+        Integer cvFiscal = (flags & CALC_CV) != 0 ? in.getInt() : null;
+        Integer co2Gkm = (flags & CALC_CO2) != 0 ? in.getInt() : null;
+        Integer ageMonths = (flags & CALC_AGE) != 0 ? in.getInt() : null;
+        Long ruleVersion = (flags & CALC_RULE_VERSION) != 0 ? in.getLong() : null;
+        return new TaxCalculationRecord(variantId, submissionId, region, taxType, amount,
+                powerKw, cvFiscal, co2Gkm, ageMonths, (flags & CALC_EXEMPT) != 0, ruleVersion);
+    }
+
+    // ==================== PRIMITIVES ====================
+
+    private static void putIfPresent(ByteBuffer out, Long value) {
+        if (value != null) {
+            out.putLong(value);
+        }
+    }
+
+    private static void putIfPresent(ByteBuffer out, Integer value) {
+        if (value != null) {
+            out.putInt(value);
+        }
+    }
+
+    /** Ordinal + 1, 0 pour null */
+    private static void putOrdinal(ByteBuffer out, Enum<?> value) {
+        out.put((byte) (value != null ? value.ordinal() + 1 : 0));
+    }
+
+    private static <E> E byOrdinal(E[] values, byte encoded) {
+        int index = Byte.toUnsignedInt(encoded) - 1;
+        return index >= 0 && index < values.length ? values[index] : null;
+    }
+
+    /** Longueur sur 2 octets (-1 pour null) puis UTF-8 */
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal string too long: " + bytes.length + " bytes");
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Traduit les noms du dictionnaire en constantes courantes (null si la valeur a disparu).
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Enum<E>> E[] resolve(Class<E> type, List<String> names) {
+        E[] values = (E[]) Array.newInstance(type, names.size());
+        for (int i = 0; i < names.size(); i++) {
+            try {
+                values[i] = Enum.valueOf(type, names.get(i));
+            } catch (IllegalArgumentException e) {
+                values[i] = null;
+            }
+        }
+        return values;
+    }
+}
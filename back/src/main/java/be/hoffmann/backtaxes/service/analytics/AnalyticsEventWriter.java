@@ -0,0 +1,132 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.service.analytics.UserAgentClassifier.Classification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writer des evenements analytics vers le journal local.
+ *
+ * Les threads HTTP ne font qu'un depot dans le buffer, avec les en-tetes
+ * bruts du client (CapturedEvent). Ce thread unique enrichit les evenements
+ * (hash du User-Agent, type d'appareil, source de trafic, langue), ecarte
+ * les robots (app.analytics.filter-bots) et ajoute les lots au segment
+ * memory-mapped, sans dependre de la base. Le chargement dans PostgreSQL est
+ * fait par AnalyticsJournalDrainer. Chaque lot ecrit alimente aussi les
+ * compteurs en direct (LiveTrafficCounters) et les classements de vehicules
+ * populaires (PopularVehicleSketches).
+ *
+ * Politique sample: seules les recherches browse/filter sont echantillonnees,
+ * leur poids multiplie (borne par la colonne sample_weight, smallint); les
+ * calculs sont toujours gardes.
+ *
+ * Metrique supplementaire: analytics.events.dropped (tag reason=bot).
+ */
+@Component
+@Profile("!batch")
+public class AnalyticsEventWriter extends AnalyticsBatchWriter<CapturedEvent> {
+
+    private static final String STREAM = "journal";
+
+    /** Longueur de la colonne search_events.language */
+    private static final int MAX_LANGUAGE_LENGTH = 10;
+
+    /** Poids maximum (colonne search_events.sample_weight, smallint) */
+    private static final int MAX_SAMPLE_WEIGHT = Short.MAX_VALUE;
+
+    private final AnalyticsJournal journal;
+    private final PopularVehicleSketches popularVehicleSketches;
+    private final LiveTrafficCounters liveTrafficCounters;
+    private final UserAgentClassifier userAgentClassifier;
+    private final boolean filterBots;
+    private final Counter droppedBots;
+
+    public AnalyticsEventWriter(
+            AnalyticsJournal journal,
+            PopularVehicleSketches popularVehicleSketches,
+            LiveTrafficCounters liveTrafficCounters,
+            UserAgentClassifier userAgentClassifier,
+            AnalyticsWriterSettings settings,
+            MeterRegistry meterRegistry,
+            @Value("${app.analytics.filter-bots:true}") boolean filterBots) {
+        super(STREAM, settings, meterRegistry);
+        this.journal = journal;
+        this.popularVehicleSketches = popularVehicleSketches;
+        this.liveTrafficCounters = liveTrafficCounters;
+        this.userAgentClassifier = userAgentClassifier;
+        this.filterBots = filterBots;
+        this.droppedBots = Counter.builder("analytics.events.dropped")
+                .tag("stream", STREAM)
+                .tag("reason", "bot")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void writeBatch(List<CapturedEvent> batch) {
+        List<AnalyticsEvent> events = new ArrayList<>(batch.size());
+        for (CapturedEvent captured : batch) {
+            Classification client = userAgentClassifier.classify(captured.userAgent());
+            if (filterBots && client.bot()) {
+                droppedBots.increment();
+                continue;
+            }
+            AnalyticsEvent event = enrich(captured, client);
+            liveTrafficCounters.record(event.searchEvent());
+            events.add(event);
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        journal.append(events);
+        popularVehicleSketches.record(events);
+    }
+
+    @Override
+    protected CapturedEvent reweight(CapturedEvent captured, int factor) {
+        if (!(captured.event() instanceof SearchEventRecord search) || search.searchType() == SearchType.calculate
+                || search.sampleWeight() > MAX_SAMPLE_WEIGHT / factor) {
+            return null;
+        }
+        return new CapturedEvent(search.withSampleWeight(search.sampleWeight() * factor),
+                captured.userAgent(), captured.referer(), captured.acceptLanguage());
+    }
+
+    private static AnalyticsEvent enrich(CapturedEvent captured, Classification client) {
+        String language = captured.acceptLanguage();
+        SearchEventRecord searchEvent = captured.event().searchEvent().withClient(
+                client.deviceType(),
+                referrerSource(captured.referer()),
+                client.hash(),
+                language != null ? language.substring(0, Math.min(MAX_LANGUAGE_LENGTH, language.length())) : null);
+        return switch (captured.event()) {
+            case SearchEventRecord search -> searchEvent;
+            case CalculationEventRecord calculation ->
+                    new CalculationEventRecord(searchEvent, calculation.calculations(), calculation.linesSampled());
+        };
+    }
+
+    /**
+     * Extrait la source de trafic depuis le Referer.
+     */
+    static String referrerSource(String referer) {
+        if (referer == null || referer.isBlank()) {
+            return "direct";
+        }
+        String ref = referer.toLowerCase(Locale.ROOT);
+        if (ref.contains("google")) return "google";
+        if (ref.contains("facebook") || ref.contains("fb.com")) return "facebook";
+        if (ref.contains("twitter") || ref.contains("x.com")) return "twitter";
+        if (ref.contains("linkedin")) return "linkedin";
+        if (ref.contains("instagram")) return "instagram";
+        if (ref.contains("bing")) return "bing";
+        return "other";
+    }
+}
@@ -0,0 +1,340 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal local des evenements analytics, en segments memory-mapped.
+ *
+ * Les evenements sont ajoutes sequentiellement dans le segment actif
+ * (ecriture memoire, le noyau se charge de la persistance): une panne de
+ * PostgreSQL ne bloque ni ne perd aucun evenement. Un segment plein, ou
+ * scelle par le drainer, n'est plus jamais modifie; le drainer le charge
+ * en base puis le supprime (voir AnalyticsJournalDrainer).
+ *
+ * Format d'un segment: magic, longueur et dictionnaire des enums, puis des
+ * entrees [longueur][CRC32C][evenement encode]. Une longueur nulle ou un
+ * CRC invalide marque la fin (ecriture interrompue par un crash).
+ *
+ * Au demarrage, les segments existants sont consideres comme scelles et
+ * un nouveau segment est ouvert au premier ajout. Le fichier journal.state
+ * garde l'identifiant du journal et le dernier numero de segment: les
+ * numeros ne repartent jamais en arriere, et un repertoire recree (nouvel
+ * identifiant) ne reprend pas le point de reprise d'un ancien journal.
+ *
+ * Un seul processus utilise un repertoire: un verrou exclusif sur
+ * journal.lock est pris a l'ouverture et garde jusqu'a l'arret (libere par
+ * le systeme si le processus meurt). Un second processus sur le meme
+ * repertoire echoue au demarrage au lieu de charger ou supprimer les
+ * segments de l'autre. Le profil batch n'ouvre pas de journal.
+ */
+@Component
+@Profile("!batch")
+public class AnalyticsJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsJournal.class);
+
+    static final int MAGIC = 0x414A4E31; // "AJN1"
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".ajl";
+    private static final String STATE_FILE = "journal.state";
+    private static final String LOCK_FILE = "journal.lock";
+    private static final int ENTRY_HEADER_BYTES = 8;
+    private static final int MAX_ENTRY_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final String id;
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_ENTRY_BYTES);
+    private final CRC32C crc = new CRC32C();
+    private final FileChannel lockChannel;
+
+    /** Numero du segment actif (ou du prochain a ouvrir) */
+    private volatile long activeNumber;
+    private FileChannel activeChannel;
+    private MappedByteBuffer active;
+    private int activeHeaderEnd;
+
+    public AnalyticsJournal(
+            @Value("${app.analytics.journal.directory:./analytics-journal}") String directory,
+            @Value("${app.analytics.journal.segment-size-mb:16}") int segmentSizeMb) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = Math.multiplyExact(segmentSizeMb, 1024 * 1024);
+        try {
+            Files.createDirectories(this.directory);
+            this.lockChannel = FileChannel.open(this.directory.resolve(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (tryLock(lockChannel) == null) {
+                lockChannel.close();
+                throw new IllegalStateException("Analytics journal " + this.directory.toAbsolutePath()
+                        + " is used by another process (set app.analytics.journal.directory per process)");
+            }
+            Path stateFile = this.directory.resolve(STATE_FILE);
+            String[] state = Files.exists(stateFile)
+                    ? Files.readString(stateFile).trim().split(" ")
+                    : new String[]{UUID.randomUUID().toString(), "0"};
+            this.id = state[0];
+            long lastSegment = Long.parseLong(state[1]);
+            long lastExisting = listSegments().stream().mapToLong(JournalSegment::number).max().orElse(0);
+            this.activeNumber = Math.max(lastSegment, lastExisting) + 1;
+            writeState(activeNumber - 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot initialize analytics journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Identifiant du journal (cle du point de reprise en base).
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Ajoute des evenements au segment actif (ouvre un nouveau segment si necessaire).
+     */
+    public synchronized void append(List<? extends AnalyticsEvent> events) {
+        try {
+            for (AnalyticsEvent event : events) {
+                scratch.clear();
+                AnalyticsEventCodec.encode(event, scratch);
+                scratch.flip();
+                int length = scratch.remaining();
+                if (active == null || active.remaining() < ENTRY_HEADER_BYTES + length) {
+                    seal();
+                    open();
+                }
+                crc.reset();
+                crc.update(scratch.array(), 0, length);
+                int position = active.position();
+                active.position(position + ENTRY_HEADER_BYTES);
+                active.put(scratch);
+                active.putInt(position + 4, (int) crc.getValue());
+                active.putInt(position, length);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to analytics journal", e);
+        }
+    }
+
+    /**
+     * Scelle le segment actif s'il contient des evenements, pour que le drainer puisse le charger.
+     *
+     * @return true si un segment a ete scelle
+     */
+    public synchronized boolean sealActiveSegment() {
+        try {
+            return seal();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot seal analytics journal segment", e);
+        }
+    }
+
+    /**
+     * Segments scelles, du plus ancien au plus recent.
+     */
+    public List<JournalSegment> sealedSegments() {
+        long current = activeNumber;
+        return listSegments().stream()
+                .filter(segment -> segment.number() < current)
+                .toList();
+    }
+
+    /**
+     * Supprime un segment entierement charge en base.
+     */
+    public void delete(JournalSegment segment) {
+        try {
+            Files.deleteIfExists(segment.path());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete analytics journal segment " + segment.path(), e);
+        }
+    }
+
+    /**
+     * Met de cote un segment illisible (renomme en .corrupt) pour ne pas bloquer le chargement.
+     */
+    public void quarantine(JournalSegment segment) {
+        try {
+            Files.move(segment.path(), segment.path().resolveSibling(segment.path().getFileName() + ".corrupt"),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot move aside analytics journal segment " + segment.path(), e);
+        }
+    }
+
+    /**
+     * Lit au plus maxEvents evenements d'un segment scelle a partir d'une position.
+     *
+     * @param fromPosition Position retournee par la lecture precedente (0 pour le debut)
+     */
+    public static JournalChunk read(JournalSegment segment, long fromPosition, int maxEvents) {
+        try (FileChannel channel = FileChannel.open(segment.path(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IllegalStateException("Not an analytics journal segment: " + segment.path());
+            }
+            int headerLength = buffer.getInt();
+            AnalyticsEventCodec codec = AnalyticsEventCodec.readDictionary(buffer.slice(8, headerLength));
+            int position = (int) Math.max(fromPosition, 8 + headerLength);
+            CRC32C checksum = new CRC32C();
+            List<AnalyticsEvent> events = new ArrayList<>(Math.min(maxEvents, 4096));
+
+            while (events.size() < maxEvents) {
+                if (position + ENTRY_HEADER_BYTES > buffer.limit()) {
+                    return new JournalChunk(events, position, true);
+                }
+                int length = buffer.getInt(position);
+                int expectedCrc = buffer.getInt(position + 4);
+                if (length <= 0 || position + ENTRY_HEADER_BYTES + length > buffer.limit()) {
+                    return new JournalChunk(events, position, true);
+                }
+                ByteBuffer payload = buffer.slice(position + ENTRY_HEADER_BYTES, length);
+                checksum.reset();
+                checksum.update(payload.duplicate());
+                if ((int) checksum.getValue() != expectedCrc) {
+                    log.warn("Analytics journal {}: truncated entry at {}, ignoring the rest of the segment",
+                            segment.path().getFileName(), position);
+                    return new JournalChunk(events, position, true);
+                }
+                events.add(codec.decode(payload));
+                position += ENTRY_HEADER_BYTES + length;
+            }
+            return new JournalChunk(events, position, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read analytics journal segment " + segment.path(), e);
+        }
+    }
+
+    /**
+     * Scelle le segment actif a l'arret (apres le vidage du buffer par le writer).
+     */
+    @PreDestroy
+    public void close() {
+        try {
+            sealActiveSegment();
+        } finally {
+            releaseLock();
+        }
+    }
+
+    /**
+     * Libere le verrou du repertoire (a l'arret, ou comme le ferait la mort du processus).
+     */
+    void releaseLock() {
+        try {
+            lockChannel.close();
+        } catch (IOException e) {
+            log.warn("Cannot release analytics journal lock in {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private void open() throws IOException {
+        writeState(activeNumber);
+        Path path = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, activeNumber, SEGMENT_SUFFIX));
+        activeChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        active = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        active.putInt(MAGIC);
+        active.putInt(0);
+        AnalyticsEventCodec.writeDictionary(active);
+        active.putInt(4, active.position() - 8);
+        activeHeaderEnd = active.position();
+    }
+
+    /**
+     * Force le segment actif sur disque et le tronque a sa taille utile.
+     */
+    private boolean seal() throws IOException {
+        if (active == null) {
+            return false;
+        }
+        if (active.position() == activeHeaderEnd) {
+            return false;
+        }
+        int size = active.position();
+        active.force();
+        active = null;
+        activeChannel.truncate(size);
+        activeChannel.close();
+        activeChannel = null;
+        activeNumber++;
+        return true;
+    }
+
+    private void writeState(long lastSegment) throws IOException {
+        Path temporary = directory.resolve(STATE_FILE + ".tmp");
+        Files.writeString(temporary, id + " " + lastSegment);
+        Files.move(temporary, directory.resolve(STATE_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<JournalSegment> listSegments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(JournalSegment::parse)
+                    .filter(segment -> segment != null)
+                    .sorted((a, b) -> Long.compare(a.number(), b.number()))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list analytics journal segments", e);
+        }
+    }
+
+    /**
+     * Fichier segment du journal.
+     */
+    public record JournalSegment(long number, Path path) {
+
+        static JournalSegment parse(Path path) {
+            String name = path.getFileName().toString();
+            if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+                return null;
+            }
+            try {
+                String digits = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                return new JournalSegment(Long.parseLong(digits), path);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Evenements lus et position de reprise.
+     *
+     * @param complete true si la fin du segment est atteinte
+     */
+    public record JournalChunk(List<AnalyticsEvent> events, long nextPosition, boolean complete) {
+    }
+}
@@ -0,0 +1,111 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.service.analytics.AnalyticsCopyLoader.JournalCheckpoint;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsJournal.JournalChunk;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsJournal.JournalSegment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.BufferUnderflowException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Chargement periodique du journal analytics dans PostgreSQL.
+ *
+ * A chaque passage: scelle le segment actif, puis charge les segments
+ * scelles dans l'ordre, par lots (COPY + point de reprise dans la meme
+ * transaction), et supprime chaque segment une fois entierement charge.
+ * Si la base est indisponible, les segments restent sur disque et le
+ * passage suivant reprend au dernier point de reprise.
+ */
+@Component
+@Profile("!batch")
+public class AnalyticsJournalDrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsJournalDrainer.class);
+
+    private final AnalyticsJournal journal;
+    private final AnalyticsCopyLoader loader;
+    private final int chunkSize;
+    private final Counter drained;
+
+    public AnalyticsJournalDrainer(
+            AnalyticsJournal journal,
+            AnalyticsCopyLoader loader,
+            MeterRegistry meterRegistry,
+            @Value("${app.analytics.journal.drain-chunk-size:10000}") int chunkSize) {
+        this.journal = journal;
+        this.loader = loader;
+        this.chunkSize = chunkSize;
+        this.drained = Counter.builder("analytics.journal.drained")
+                .description("Evenements charges en base depuis le journal")
+                .register(meterRegistry);
+        Gauge.builder("analytics.journal.pending.segments", journal, j -> j.sealedSegments().size())
+                .description("Segments scelles en attente de chargement")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Charge tous les segments scelles.
+     *
+     * @return Nombre d'evenements charges
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.journal.drain-interval-ms:5000}")
+    public long drain() {
+        journal.sealActiveSegment();
+        long total = 0;
+        try {
+            Optional<JournalCheckpoint> checkpoint = loader.readCheckpoint(journal.getId());
+            for (JournalSegment segment : journal.sealedSegments()) {
+                long position = 0;
+                if (checkpoint.isPresent()) {
+                    if (segment.number() < checkpoint.get().segment()) {
+                        journal.delete(segment);
+                        continue;
+                    }
+                    if (segment.number() == checkpoint.get().segment()) {
+                        position = checkpoint.get().position();
+                    }
+                }
+                total += drainSegment(segment, position);
+                journal.delete(segment);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Analytics journal drain interrupted after {} events, will retry: {}", total, e.getMessage());
+        }
+        return total;
+    }
+
+    private long drainSegment(JournalSegment segment, long position) {
+        long loaded = 0;
+        while (true) {
+            JournalChunk chunk;
+            try {
+                chunk = AnalyticsJournal.read(segment, position, chunkSize);
+            } catch (IllegalStateException | BufferUnderflowException e) {
+                log.error("Analytics journal segment {} is unreadable at {}, moved aside: {}",
+                        segment.path().getFileName(), position, e.getMessage());
+                journal.quarantine(segment);
+                return loaded;
+            }
+            List<AnalyticsEvent> events = chunk.events();
+            if (!events.isEmpty()) {
+                loader.load(journal.getId(), events, new JournalCheckpoint(segment.number(), chunk.nextPosition()));
+                drained.increment(events.size());
+                loaded += events.size();
+            }
+            position = chunk.nextPosition();
+            if (chunk.complete()) {
+                return loaded;
+            }
+        }
+    }
+}
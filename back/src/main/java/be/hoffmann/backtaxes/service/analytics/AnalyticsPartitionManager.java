@@ -0,0 +1,248 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Gestion des partitions mensuelles de search_events et tax_calculations.
+ *
+ * Chaque jour, les partitions du mois en cours et des mois suivants sont
+ * creees a l'avance, et les partitions entierement plus anciennes que la
+ * retention sont detachees puis supprimees: la purge des donnees brutes est
+ * une operation de catalogue, sans DELETE ligne a ligne ni VACUUM.
+ *
+ * Une partition n'est supprimee que si toutes ses lignes ont ete agregees
+ * par DailyAggregateRollup (ingested_at sous son watermark); sinon elle est
+ * conservee jusqu'au passage suivant. Ses lignes sont d'abord archivees par
+ * RetentionArchiver, dans la meme transaction que la suppression. Les lignes tombees dans la partition
+ * DEFAULT (mois non encore cree) sont deplacees a la creation du mois.
+ * Chaque operation prend un verrou consultatif: deux instances ne modifient
+ * pas les partitions en meme temps.
+ */
+@Component
+@Profile("!batch")
+public class AnalyticsPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsPartitionManager.class);
+
+    static final List<String> TABLES = List.of(DailyAggregateRollup.SEARCH_EVENTS, DailyAggregateRollup.TAX_CALCULATIONS);
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern PARTITION_NAME = Pattern.compile("_p(\\d{4})_(\\d{2})$");
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String LOCK = "SELECT pg_advisory_xact_lock(hashtext('analytics_partitions'))";
+
+    private static final String SELECT_PARTITIONS = """
+            SELECT child.relname FROM pg_inherits i
+            JOIN pg_class child ON child.oid = i.inhrelid
+            JOIN pg_class parent ON parent.oid = i.inhparent
+            WHERE parent.relname = ?
+            """;
+
+    private static final String EXISTS = "SELECT to_regclass(?) IS NOT NULL";
+
+    private static final String SELECT_WATERMARK = """
+            SELECT watermark FROM analytics_rollup_watermarks WHERE source = ?
+            """;
+
+    private static final String CREATE_TABLE = "CREATE TABLE %s (LIKE %s INCLUDING DEFAULTS)";
+
+    private static final String MOVE_FROM_DEFAULT = """
+            WITH moved AS (
+                DELETE FROM %s_default WHERE created_at >= ? AND created_at < ? RETURNING *
+            )
+            INSERT INTO %s SELECT * FROM moved
+            """;
+
+    private static final String ATTACH = "ALTER TABLE %s ATTACH PARTITION %s FOR VALUES FROM ('%s') TO ('%s')";
+
+    private static final String HAS_UNROLLED_ROWS = "SELECT EXISTS (SELECT 1 FROM %s WHERE ingested_at >= ?)";
+
+    private static final String LOCK_PARTITION = "LOCK TABLE %s IN SHARE MODE";
+
+    private static final String DETACH = "ALTER TABLE %s DETACH PARTITION %s";
+
+    private static final String DROP = "DROP TABLE %s";
+
+    private static final String PURGE_DEFAULT = """
+            DELETE FROM %s_default WHERE created_at < ? AND ingested_at < ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RetentionArchiver retentionArchiver;
+    private final int monthsAhead;
+    private final int retentionDays;
+
+    public AnalyticsPartitionManager(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            RetentionArchiver retentionArchiver,
+            @Value("${app.analytics.partitions.months-ahead:3}") int monthsAhead,
+            @Value("${app.analytics.partitions.retention-days:90}") int retentionDays) {
+        if (monthsAhead < 1) {
+            throw new IllegalArgumentException("app.analytics.partitions.months-ahead must be positive");
+        }
+        if (retentionDays < 1) {
+            throw new IllegalArgumentException("app.analytics.partitions.retention-days must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.retentionArchiver = retentionArchiver;
+        this.monthsAhead = monthsAhead;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Passage quotidien (par defaut a 03:15).
+     */
+    @Scheduled(cron = "${app.analytics.partitions.cron:0 15 3 * * *}")
+    public void scheduledMaintenance() {
+        try {
+            PartitionMaintenance result = maintain(LocalDate.now());
+            log.info("Analytics partitions: created {}, dropped {}, retained {}",
+                    result.created(), result.dropped(), result.retained());
+        } catch (RuntimeException e) {
+            log.warn("Analytics partition maintenance failed, will retry next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Cree les partitions a venir et supprime les partitions expirees au jour donne.
+     */
+    PartitionMaintenance maintain(LocalDate today) {
+        YearMonth current = YearMonth.from(today);
+        LocalDate cutoff = today.minusDays(retentionDays);
+        List<String> created = new ArrayList<>();
+        List<String> dropped = new ArrayList<>();
+        List<String> retained = new ArrayList<>();
+
+        for (String table : TABLES) {
+            SortedSet<YearMonth> existing = partitions(table);
+            for (int i = 0; i <= monthsAhead; i++) {
+                YearMonth month = current.plusMonths(i);
+                if (!existing.contains(month) && createPartition(table, month)) {
+                    created.add(partitionName(table, month));
+                }
+            }
+            for (YearMonth month : existing) {
+                if (month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+                    break;
+                }
+                (dropPartition(table, month) ? dropped : retained).add(partitionName(table, month));
+            }
+            purgeDefault(table, cutoff);
+        }
+        return new PartitionMaintenance(created, dropped, retained);
+    }
+
+    static String partitionName(String table, YearMonth month) {
+        return table + "_p" + month.format(SUFFIX);
+    }
+
+    private SortedSet<YearMonth> partitions(String table) {
+        SortedSet<YearMonth> months = new TreeSet<>();
+        for (String name : jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class, table)) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (name.startsWith(table) && matcher.find()) {
+                months.add(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Cree la partition du mois (vide, puis remplie des lignes du mois tombees
+     * dans la partition DEFAULT) et l'attache.
+     *
+     * @return false si une autre instance l'a deja creee
+     */
+    private boolean createPartition(String table, YearMonth month) {
+        String partition = partitionName(table, month);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(LOCK);
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTS, Boolean.class, partition))) {
+                return false;
+            }
+            jdbcTemplate.execute(CREATE_TABLE.formatted(partition, table));
+            jdbcTemplate.update(MOVE_FROM_DEFAULT.formatted(table, partition), from.atStartOfDay(), to.atStartOfDay());
+            jdbcTemplate.execute(ATTACH.formatted(table, partition, from, to));
+            return true;
+        }));
+    }
+
+    /**
+     * Archive, detache et supprime la partition si toutes ses lignes ont ete
+     * agregees. La partition est verrouillee en ecriture pendant l'archivage.
+     *
+     * @return false si la partition est conservee
+     */
+    private boolean dropPartition(String table, YearMonth month) {
+        String partition = partitionName(table, month);
+        boolean dropped = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(LOCK);
+            jdbcTemplate.execute(LOCK_PARTITION.formatted(partition));
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    HAS_UNROLLED_ROWS.formatted(partition), Boolean.class, watermark(table)))) {
+                return false;
+            }
+            retentionArchiver.archivePartition(table, partition);
+            jdbcTemplate.execute(DETACH.formatted(table, partition));
+            jdbcTemplate.execute(DROP.formatted(partition));
+            return true;
+        }));
+        if (!dropped) {
+            log.warn("Partition {} is past retention but has rows not yet rolled up, keeping it", partition);
+        }
+        return dropped;
+    }
+
+    /**
+     * Archive puis supprime les lignes expirees (et agregees) de la partition DEFAULT.
+     */
+    private void purgeDefault(String table, LocalDate cutoff) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute(LOCK);
+            LocalDateTime watermark = watermark(table);
+            retentionArchiver.archiveExpired(table, table + "_default", table + "_default_" + cutoff,
+                    cutoff.atStartOfDay(), watermark);
+            jdbcTemplate.update(PURGE_DEFAULT.formatted(table), cutoff.atStartOfDay(), watermark);
+        });
+    }
+
+    private LocalDateTime watermark(String table) {
+        return jdbcTemplate.queryForList(SELECT_WATERMARK, LocalDateTime.class, table).stream()
+                .findFirst()
+                .orElse(EPOCH);
+    }
+
+    /**
+     * Resultat d'un passage (noms des partitions).
+     *
+     * @param created  Partitions creees
+     * @param dropped  Partitions expirees supprimees
+     * @param retained Partitions expirees conservees (lignes pas encore agregees)
+     */
+    public record PartitionMaintenance(List<String> created, List<String> dropped, List<String> retained) {
+    }
+}
@@ -0,0 +1,16 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+
+import java.time.LocalDate;
+
+/**
+ * Periode (jours inclus) et filtres d'une requete analytics; cle du cache
+ * des agregats (AnalyticsAggregateReader).
+ *
+ * @param from   Premier jour
+ * @param to     Dernier jour
+ * @param region Region (null = toutes)
+ */
+public record AnalyticsRange(LocalDate from, LocalDate to, Region region) {
+}
@@ -0,0 +1,40 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+/**
+ * Reglages du pipeline d'ingestion analytics (proprietes app.analytics.*, voir AsyncConfig).
+ *
+ * @param bufferCapacity   Capacite du buffer (arrondie a la puissance de 2 superieure)
+ * @param batchSize        Nombre d'evenements maximum par insertion JDBC
+ * @param flushIntervalMs  Delai maximum avant l'ecriture d'un lot incomplet
+ * @param overflowPolicy   Comportement quand le buffer est sature
+ * @param sampleThreshold  Taux de remplissage a partir duquel la politique sample s'applique (0-1)
+ * @param sampleRate       Fraction des evenements echantillonnables gardes au-dela du seuil (0-1], arrondie a 1/n
+ * @param blockTimeoutMs   Attente maximum d'un producteur (politique block)
+ * @param shutdownTimeoutMs Attente maximum du vidage du buffer a l'arret
+ */
+public record AnalyticsWriterSettings(
+        int bufferCapacity,
+        int batchSize,
+        long flushIntervalMs,
+        OverflowPolicy overflowPolicy,
+        double sampleThreshold,
+        double sampleRate,
+        long blockTimeoutMs,
+        long shutdownTimeoutMs
+) {
+
+    public AnalyticsWriterSettings {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Analytics batch size must be positive: " + batchSize);
+        }
+        if (flushIntervalMs < 1) {
+            throw new IllegalArgumentException("Analytics flush interval must be positive: " + flushIntervalMs);
+        }
+        if (sampleThreshold < 0 || sampleThreshold > 1) {
+            throw new IllegalArgumentException("Analytics sample threshold must be between 0 and 1");
+        }
+        if (sampleRate <= 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Analytics sample rate must be above 0 and at most 1");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * File bornee sans verrou sur un tableau circulaire (algorithme de D. Vyukov).
+ *
+ * Chaque case porte un numero de sequence qui indique si elle est libre pour
+ * le producteur du tour courant ou prete pour le consommateur: offer et poll
+ * ne font qu'un CAS sur leur position, sans allocation ni verrou. Concue pour
+ * plusieurs producteurs (threads HTTP) et un writer unique; poll reste sur
+ * si un producteur retire lui-meme l'element le plus ancien (drop-oldest).
+ */
+final class BoundedRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private final AtomicLong dequeuePosition = new AtomicLong();
+
+    /**
+     * @param requestedCapacity Capacite minimale, arrondie a la puissance de 2 superieure
+     */
+    BoundedRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2 || requestedCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Ring buffer capacity must be between 2 and 2^30: " + requestedCapacity);
+        }
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Ajoute un element.
+     *
+     * @return false si le buffer est plein
+     */
+    boolean offer(E element) {
+        long position = enqueuePosition.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    elements.set(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Retire l'element le plus ancien.
+     *
+     * @return null si le buffer est vide
+     */
+    E poll() {
+        long position = dequeuePosition.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    E element = elements.get(index);
+                    elements.set(index, null);
+                    sequences.set(index, position + capacity);
+                    return element;
+                }
+                position = dequeuePosition.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = dequeuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Transfere jusqu'a maxElements elements dans la collection.
+     *
+     * @return Nombre d'elements transferes
+     */
+    int drainTo(Collection<? super E> target, int maxElements) {
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = poll()) != null) {
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Nombre approximatif d'elements (exact si aucun acces concurrent).
+     */
+    int size() {
+        long size = enqueuePosition.get() - dequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,27 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import java.util.List;
+
+/**
+ * Calcul de taxe: l'evenement de recherche et ses lignes de resultat,
+ * ecrits ensemble pour que tax_calculations reference le bon search_event_id.
+ * Les lignes d'un calcul non echantillonne (linesSampled = false) ne vont
+ * pas dans tax_calculations, mais sont comptees dans calculation_fingerprints.
+ */
+public record CalculationEventRecord(
+        SearchEventRecord searchEvent,
+        List<TaxCalculationRecord> calculations,
+        boolean linesSampled
+) implements AnalyticsEvent {
+
+    public CalculationEventRecord {
+        calculations = List.copyOf(calculations);
+    }
+
+    /**
+     * Calcul dont les lignes sont enregistrees dans tax_calculations.
+     */
+    public CalculationEventRecord(SearchEventRecord searchEvent, List<TaxCalculationRecord> calculations) {
+        this(searchEvent, calculations, true);
+    }
+}
@@ -0,0 +1,228 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compteurs dedoublonnes des calculs (calculation_fingerprints).
+ *
+ * La plupart des calculs se repetent: meme variante, region, type de taxe
+ * et age, meme resultat. Chaque combinaison distincte des entrees
+ * normalisees, du resultat et de la version de regles est identifiee par
+ * un hash (SHA-256 tronque a 128 bits) et n'a qu'une ligne, dont le
+ * compteur et les dates de premiere et derniere occurrence sont mis a
+ * jour par lot (INSERT ... ON CONFLICT DO UPDATE). Les calculs les plus
+ * frequents et leurs montants se lisent alors sur quelques milliers de
+ * lignes au lieu des millions de tax_calculations.
+ *
+ * record() est appele par AnalyticsCopyLoader dans la transaction du
+ * chargement: un lot n'est compte qu'une fois, comme ses lignes.
+ */
+@Component
+public class CalculationFingerprints {
+
+    static final int FINGERPRINT_BYTES = 16;
+
+    private static final String UPSERT = """
+            INSERT INTO calculation_fingerprints (fingerprint, variant_id, submission_id, region, tax_type,
+                fuel_type, power_kw, cv_fiscal, co2_gkm, vehicle_age_months, is_exempt, calculated_amount,
+                rule_version, calculation_count, first_seen_at, last_seen_at)
+            VALUES (:fingerprint, :variantId, :submissionId, CAST(:region AS region), CAST(:taxType AS tax_type),
+                CAST(:fuelType AS fuel_type), :powerKw, :cvFiscal, :co2Gkm, :vehicleAgeMonths, :isExempt,
+                :calculatedAmount, :ruleVersion, :count, :firstSeenAt, :lastSeenAt)
+            ON CONFLICT (fingerprint) DO UPDATE SET
+                calculation_count = calculation_fingerprints.calculation_count + EXCLUDED.calculation_count,
+                first_seen_at = LEAST(calculation_fingerprints.first_seen_at, EXCLUDED.first_seen_at),
+                last_seen_at = GREATEST(calculation_fingerprints.last_seen_at, EXCLUDED.last_seen_at)
+            """;
+
+    private static final String SELECT_TOP_VARIANTS = """
+            SELECT f.variant_id, b.name AS brand_name, m.name AS model_name, v.name AS variant_name,
+                f.calculations, f.fingerprints, f.average_amount, f.min_amount, f.max_amount,
+                f.first_seen_at, f.last_seen_at
+            FROM (
+                SELECT variant_id, SUM(calculation_count) AS calculations, COUNT(*) AS fingerprints,
+                    SUM(calculated_amount * calculation_count) / SUM(calculation_count) AS average_amount,
+                    MIN(calculated_amount) AS min_amount, MAX(calculated_amount) AS max_amount,
+                    MIN(first_seen_at) AS first_seen_at, MAX(last_seen_at) AS last_seen_at
+                FROM calculation_fingerprints
+                WHERE variant_id IS NOT NULL AND tax_type = CAST(:taxType AS tax_type)%s%s
+                GROUP BY variant_id
+                ORDER BY calculations DESC, variant_id
+                LIMIT :limit
+            ) f
+            LEFT JOIN variants v ON v.id = f.variant_id
+            LEFT JOIN models m ON m.id = v.model_id
+            LEFT JOIN brands b ON b.id = m.brand_id
+            ORDER BY f.calculations DESC, f.variant_id
+            """;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public CalculationFingerprints(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Compte les lignes de calcul d'un lot, echantillonnees ou non.
+     *
+     * @return Nombre d'empreintes distinctes mises a jour
+     */
+    public int record(List<AnalyticsEvent> events) {
+        Map<Fingerprint, Occurrences> occurrences = new HashMap<>();
+        for (AnalyticsEvent event : events) {
+            if (!(event instanceof CalculationEventRecord calculation)) {
+                continue;
+            }
+            SearchEventRecord search = calculation.searchEvent();
+            LocalDateTime seenAt = AnalyticsCopyLoader.timestamp(search);
+            for (TaxCalculationRecord line : calculation.calculations()) {
+                if (line.calculatedAmount() != null) {
+                    occurrences.computeIfAbsent(Fingerprint.of(line, search.fuelType()), key -> new Occurrences())
+                            .add(seenAt);
+                }
+            }
+        }
+        if (occurrences.isEmpty()) {
+            return 0;
+        }
+        // Tri par empreinte: ordre stable des verrous entre chargements concurrents
+        Map<byte[], SqlParameterSource> byHash = new TreeMap<>(Arrays::compareUnsigned);
+        occurrences.forEach((key, occurrence) -> {
+            byte[] hash = key.hash();
+            byHash.put(hash, params(hash, key, occurrence));
+        });
+        SqlParameterSource[] batch = byHash.values().toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPSERT, batch);
+        return batch.length;
+    }
+
+    /**
+     * Variantes les plus calculees depuis le debut des compteurs.
+     *
+     * @param region      Region (toutes si null)
+     * @param ruleVersion Version de regles (toutes si null)
+     */
+    public List<VariantCalculations> topVariants(Region region, TaxType taxType, Long ruleVersion, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("taxType", taxType.name())
+                .addValue("region", region != null ? region.name() : null)
+                .addValue("ruleVersion", ruleVersion)
+                .addValue("limit", limit);
+        String sql = SELECT_TOP_VARIANTS.formatted(
+                region != null ? " AND region = CAST(:region AS region)" : "",
+                ruleVersion != null ? " AND rule_version = :ruleVersion" : "");
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> new VariantCalculations(
+                rs.getLong("variant_id"),
+                rs.getString("brand_name"),
+                rs.getString("model_name"),
+                rs.getString("variant_name"),
+                rs.getLong("calculations"),
+                rs.getLong("fingerprints"),
+                rs.getBigDecimal("average_amount").setScale(2, RoundingMode.HALF_UP),
+                rs.getBigDecimal("min_amount"),
+                rs.getBigDecimal("max_amount"),
+                rs.getObject("first_seen_at", LocalDateTime.class),
+                rs.getObject("last_seen_at", LocalDateTime.class)));
+    }
+
+    private static MapSqlParameterSource params(byte[] hash, Fingerprint key, Occurrences occurrences) {
+        return new MapSqlParameterSource()
+                .addValue("fingerprint", hash)
+                .addValue("variantId", key.variantId())
+                .addValue("submissionId", key.submissionId())
+                .addValue("region", key.region().name())
+                .addValue("taxType", key.taxType().name())
+                .addValue("fuelType", key.fuelType() != null ? key.fuelType().name() : null)
+                .addValue("powerKw", key.powerKw())
+                .addValue("cvFiscal", key.cvFiscal())
+                .addValue("co2Gkm", key.co2Gkm())
+                .addValue("vehicleAgeMonths", key.vehicleAgeMonths())
+                .addValue("isExempt", key.isExempt())
+                .addValue("calculatedAmount", key.calculatedAmount())
+                .addValue("ruleVersion", key.ruleVersion())
+                .addValue("count", occurrences.count)
+                .addValue("firstSeenAt", occurrences.first)
+                .addValue("lastSeenAt", occurrences.last);
+    }
+
+    /**
+     * Entrees normalisees, resultat et version de regles d'une ligne de calcul
+     * (montant arrondi au centime, carburant de l'evenement de recherche).
+     */
+    record Fingerprint(Long variantId, Long submissionId, Region region, TaxType taxType, FuelType fuelType,
+                       Integer powerKw, Integer cvFiscal, Integer co2Gkm, Integer vehicleAgeMonths,
+                       boolean isExempt, BigDecimal calculatedAmount, Long ruleVersion) {
+
+        static Fingerprint of(TaxCalculationRecord line, FuelType fuelType) {
+            return new Fingerprint(line.variantId(), line.submissionId(), line.region(), line.taxType(), fuelType,
+                    line.powerKw(), line.cvFiscal(), line.co2Gkm(), line.vehicleAgeMonths(), line.isExempt(),
+                    line.calculatedAmount().setScale(2, RoundingMode.HALF_UP), line.ruleVersion());
+        }
+
+        /**
+         * Hash des valeurs par nom d'enum (independant des ordinaux).
+         */
+        byte[] hash() {
+            String canonical = String.join("|",
+                    String.valueOf(variantId), String.valueOf(submissionId), region.name(), taxType.name(),
+                    fuelType != null ? fuelType.name() : "null", String.valueOf(powerKw), String.valueOf(cvFiscal),
+                    String.valueOf(co2Gkm), String.valueOf(vehicleAgeMonths), String.valueOf(isExempt),
+                    calculatedAmount.toPlainString(), String.valueOf(ruleVersion));
+            return Arrays.copyOf(SHA_256.get().digest(canonical.getBytes(StandardCharsets.UTF_8)), FINGERPRINT_BYTES);
+        }
+    }
+
+    private static final class Occurrences {
+        private long count;
+        private LocalDateTime first;
+        private LocalDateTime last;
+
+        void add(LocalDateTime seenAt) {
+            count++;
+            if (first == null || seenAt.isBefore(first)) {
+                first = seenAt;
+            }
+            if (last == null || seenAt.isAfter(last)) {
+                last = seenAt;
+            }
+        }
+    }
+
+    /**
+     * Calculs d'une variante, tous carburants, ages et versions confondus
+     * (sauf filtre).
+     *
+     * @param fingerprints Combinaisons distinctes d'entrees et de resultat
+     */
+    public record VariantCalculations(long variantId, String brandName, String modelName, String variantName,
+                                      long calculations, long fingerprints, BigDecimal averageAmount,
+                                      BigDecimal minAmount, BigDecimal maxAmount,
+                                      LocalDateTime firstSeenAt, LocalDateTime lastSeenAt) {
+    }
+}
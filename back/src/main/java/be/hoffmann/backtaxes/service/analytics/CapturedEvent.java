@@ -0,0 +1,16 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+/**
+ * Evenement depose par le thread HTTP, avec les en-tetes bruts du client.
+ *
+ * Hash du User-Agent, type d'appareil, source de trafic et langue sont
+ * calcules par le thread writer (AnalyticsEventWriter): la requete ne fait
+ * que lire trois en-tetes.
+ */
+public record CapturedEvent(
+        AnalyticsEvent event,
+        String userAgent,
+        String referer,
+        String acceptLanguage
+) {
+}
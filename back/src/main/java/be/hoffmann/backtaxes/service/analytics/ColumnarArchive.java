@@ -0,0 +1,370 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Format colonnaire compresse des archives analytics (fichiers .tca).
+ *
+ * Les lignes sont regroupees par blocs de ROW_GROUP_SIZE; dans un bloc,
+ * chaque colonne est encodee a part puis compressee (Deflate):
+ *   - nulls: bitmap, absente si la colonne n'a aucun null dans le bloc
+ *   - LONG, DATE, TIMESTAMP: delta avec la valeur precedente (zigzag varint),
+ *     identifiants et horodatages tries tiennent sur un ou deux octets
+ *   - STRING: dictionnaire du bloc puis index varint (enums, langue, source)
+ *   - INT: zigzag varint; DECIMAL: echelle et valeur non echelonnee
+ *   - UUID: 16 octets; BOOLEAN: 1 octet
+ *
+ * Fichier: magic, nombre de colonnes, (nom, type) de chaque colonne, puis
+ * les blocs [nombre de lignes][longueur + colonne compressee]...; un bloc
+ * de 0 ligne marque la fin. La lecture ne decompresse que les colonnes
+ * demandees, les autres sont sautees grace a leur longueur.
+ */
+public final class ColumnarArchive {
+
+    static final int MAGIC = 0x54434131; // "TCA1"
+    static final int ROW_GROUP_SIZE = 32_768;
+
+    /**
+     * Types de colonnes et type Java des valeurs.
+     */
+    public enum ColumnType {
+        LONG(Long.class),
+        INT(Integer.class),
+        BOOLEAN(Boolean.class),
+        DECIMAL(BigDecimal.class),
+        DATE(LocalDate.class),
+        TIMESTAMP(LocalDateTime.class),
+        UUID(java.util.UUID.class),
+        STRING(String.class);
+
+        private final Class<?> javaType;
+
+        ColumnType(Class<?> javaType) {
+            this.javaType = javaType;
+        }
+
+        public Class<?> javaType() {
+            return javaType;
+        }
+    }
+
+    public record Column(String name, ColumnType type) {
+    }
+
+    private ColumnarArchive() {
+    }
+
+    /**
+     * Ouvre un fichier en ecriture et ecrit son en-tete.
+     */
+    public static Writer open(OutputStream out, List<Column> columns) throws IOException {
+        return new Writer(out, columns);
+    }
+
+    /**
+     * Ecriture ligne a ligne; close() ecrit le dernier bloc et la fin de fichier.
+     */
+    public static final class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final List<Column> columns;
+        private final Object[][] group;
+        private int groupRows;
+        private long rows;
+
+        private Writer(OutputStream out, List<Column> columns) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+            this.columns = List.copyOf(columns);
+            this.group = new Object[columns.size()][ROW_GROUP_SIZE];
+            this.out.writeInt(MAGIC);
+            this.out.writeShort(columns.size());
+            for (Column column : columns) {
+                this.out.writeUTF(column.name());
+                this.out.writeByte(column.type().ordinal());
+            }
+        }
+
+        /**
+         * Ajoute une ligne (valeurs dans l'ordre des colonnes, null autorise).
+         */
+        public void write(Object[] row) throws IOException {
+            for (int c = 0; c < group.length; c++) {
+                group[c][groupRows] = row[c];
+            }
+            rows++;
+            if (++groupRows == ROW_GROUP_SIZE) {
+                flushGroup();
+            }
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        private void flushGroup() throws IOException {
+            if (groupRows == 0) {
+                return;
+            }
+            out.writeInt(groupRows);
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+            for (int c = 0; c < group.length; c++) {
+                chunk.reset();
+                try (DataOutputStream column = new DataOutputStream(new DeflaterOutputStream(chunk))) {
+                    encode(columns.get(c).type(), group[c], groupRows, column);
+                }
+                out.writeInt(chunk.size());
+                chunk.writeTo(out);
+                Arrays.fill(group[c], 0, groupRows, null);
+            }
+            groupRows = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushGroup();
+                out.writeInt(0);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Lit un fichier et passe chaque ligne au consumer, avec les seules colonnes
+     * demandees (dans l'ordre demande). Le tableau passe est reutilise.
+     *
+     * @return Nombre de lignes lues
+     */
+    public static long scan(InputStream input, List<String> projection, Consumer<Object[]> consumer) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input, 64 * 1024));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a columnar archive");
+        }
+        int columnCount = in.readUnsignedShort();
+        List<Column> columns = new ArrayList<>(columnCount);
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int c = 0; c < columnCount; c++) {
+            columns.add(new Column(in.readUTF(), ColumnType.values()[in.readUnsignedByte()]));
+            indexes.put(columns.get(c).name(), c);
+        }
+        int[] projected = new int[projection.size()];
+        boolean[] needed = new boolean[columnCount];
+        for (int p = 0; p < projected.length; p++) {
+            Integer index = indexes.get(projection.get(p));
+            if (index == null) {
+                throw new IllegalArgumentException("Unknown archive column: " + projection.get(p));
+            }
+            projected[p] = index;
+            needed[index] = true;
+        }
+
+        long rows = 0;
+        Object[][] decoded = new Object[columnCount][];
+        Object[] row = new Object[projected.length];
+        for (int groupRows = in.readInt(); groupRows > 0; groupRows = in.readInt()) {
+            for (int c = 0; c < columnCount; c++) {
+                int length = in.readInt();
+                if (!needed[c]) {
+                    in.skipNBytes(length);
+                    continue;
+                }
+                byte[] chunk = in.readNBytes(length);
+                try (DataInputStream column = new DataInputStream(
+                        new InflaterInputStream(new ByteArrayInputStream(chunk)))) {
+                    decoded[c] = decode(columns.get(c).type(), groupRows, column);
+                }
+            }
+            for (int r = 0; r < groupRows; r++) {
+                for (int p = 0; p < projected.length; p++) {
+                    row[p] = decoded[projected[p]][r];
+                }
+                consumer.accept(row);
+            }
+            rows += groupRows;
+        }
+        return rows;
+    }
+
+    // ==================== ENCODAGE ====================
+
+    private static void encode(ColumnType type, Object[] values, int rows, DataOutputStream out) throws IOException {
+        BitSet nulls = new BitSet(rows);
+        for (int r = 0; r < rows; r++) {
+            if (values[r] == null) {
+                nulls.set(r);
+            }
+        }
+        out.writeBoolean(!nulls.isEmpty());
+        if (!nulls.isEmpty()) {
+            out.write(Arrays.copyOf(nulls.toByteArray(), (rows + 7) / 8));
+        }
+
+        if (type == ColumnType.STRING) {
+            Map<String, Integer> dictionary = new HashMap<>();
+            List<String> entries = new ArrayList<>();
+            int[] codes = new int[rows];
+            for (int r = 0; r < rows; r++) {
+                if (values[r] != null) {
+                    codes[r] = dictionary.computeIfAbsent((String) values[r], value -> {
+                        entries.add(value);
+                        return entries.size() - 1;
+                    });
+                }
+            }
+            writeVarLong(out, entries.size());
+            for (String entry : entries) {
+                out.writeUTF(entry);
+            }
+            for (int r = 0; r < rows; r++) {
+                if (values[r] != null) {
+                    writeVarLong(out, codes[r]);
+                }
+            }
+            return;
+        }
+
+        long previous = 0;
+        for (int r = 0; r < rows; r++) {
+            Object value = values[r];
+            if (value == null) {
+                continue;
+            }
+            switch (type) {
+                case LONG, DATE, TIMESTAMP -> {
+                    long current = toLong(type, value);
+                    writeVarLong(out, zigzag(current - previous));
+                    previous = current;
+                }
+                case INT -> writeVarLong(out, zigzag((Integer) value));
+                case BOOLEAN -> out.writeBoolean((Boolean) value);
+                case DECIMAL -> {
+                    BigDecimal decimal = (BigDecimal) value;
+                    writeVarLong(out, zigzag(decimal.scale()));
+                    writeVarLong(out, zigzag(decimal.unscaledValue().longValueExact()));
+                }
+                case UUID -> {
+                    UUID uuid = (UUID) value;
+                    out.writeLong(uuid.getMostSignificantBits());
+                    out.writeLong(uuid.getLeastSignificantBits());
+                }
+                default -> throw new IllegalStateException("Unexpected column type " + type);
+            }
+        }
+    }
+
+    private static Object[] decode(ColumnType type, int rows, DataInputStream in) throws IOException {
+        BitSet nulls = in.readBoolean() ? BitSet.valueOf(in.readNBytes((rows + 7) / 8)) : new BitSet();
+        Object[] values = new Object[rows];
+
+        if (type == ColumnType.STRING) {
+            String[] entries = new String[(int) readVarLong(in)];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = in.readUTF();
+            }
+            for (int r = 0; r < rows; r++) {
+                if (!nulls.get(r)) {
+                    values[r] = entries[(int) readVarLong(in)];
+                }
+            }
+            return values;
+        }
+
+        long previous = 0;
+        for (int r = 0; r < rows; r++) {
+            if (nulls.get(r)) {
+                continue;
+            }
+            values[r] = switch (type) {
+                case LONG, DATE, TIMESTAMP -> {
+                    previous += unzigzag(readVarLong(in));
+                    yield fromLong(type, previous);
+                }
+                case INT -> (int) unzigzag(readVarLong(in));
+                case BOOLEAN -> in.readBoolean();
+                case DECIMAL -> {
+                    int scale = (int) unzigzag(readVarLong(in));
+                    yield new BigDecimal(BigInteger.valueOf(unzigzag(readVarLong(in))), scale);
+                }
+                case UUID -> new UUID(in.readLong(), in.readLong());
+                default -> throw new IllegalStateException("Unexpected column type " + type);
+            };
+        }
+        return values;
+    }
+
+    /**
+     * Horodatages en microsecondes (precision de PostgreSQL), dates en jours.
+     */
+    private static long toLong(ColumnType type, Object value) {
+        return switch (type) {
+            case DATE -> ((LocalDate) value).toEpochDay();
+            case TIMESTAMP -> {
+                LocalDateTime timestamp = (LocalDateTime) value;
+                yield timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1_000;
+            }
+            default -> (Long) value;
+        };
+    }
+
+    private static Object fromLong(ColumnType type, long value) {
+        return switch (type) {
+            case DATE -> LocalDate.ofEpochDay(value);
+            case TIMESTAMP -> LocalDateTime.ofEpochSecond(Math.floorDiv(value, 1_000_000),
+                    (int) Math.floorMod(value, 1_000_000) * 1_000, ZoneOffset.UTC);
+            default -> value;
+        };
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,164 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rollup incremental de search_events et tax_calculations dans daily_aggregates.
+ *
+ * Chaque passage ne lit que les lignes chargees depuis le precedent: le
+ * watermark de chaque table source porte sur ingested_at (heure de chargement),
+ * pas sur created_at, et chaque ligne est agregee dans le jour de son
+ * created_at. Un evenement en retard (journal bloque pendant une panne de la
+ * base) est donc ajoute a son jour d'origine au passage suivant son chargement.
+ * Les agregats sont additifs (INSERT ... ON CONFLICT DO UPDATE): le cout d'un
+ * passage depend du volume nouveau, pas de la taille des tables. Les sessions
+ * uniques des niveaux global, region et marque sont fusionnees dans leurs
+ * sketches HyperLogLog (SessionSketchRollup), les montants calcules dans
+ * leurs t-digests (TaxDigestRollup). Chaque passage vide le cache des
+ * statistiques admin (AnalyticsAggregateReader).
+ *
+ * La borne haute est l'heure de la base moins une marge de securite, pour ne
+ * pas depasser une transaction de chargement encore en cours. Les watermarks
+ * sont verrouilles (FOR UPDATE) pendant le passage: deux instances ne
+ * peuvent pas agreger les memes lignes.
+ */
+@Component
+@Profile("!batch")
+public class DailyAggregateRollup {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyAggregateRollup.class);
+
+    static final String SEARCH_EVENTS = "search_events";
+    static final String TAX_CALCULATIONS = "tax_calculations";
+
+    private static final String SELECT_UPPER_BOUND = """
+            SELECT LOCALTIMESTAMP - make_interval(secs => :margin)
+            """;
+
+    private static final String LOCK_WATERMARKS = """
+            SELECT source, watermark FROM analytics_rollup_watermarks
+            WHERE source IN (:sources) FOR UPDATE
+            """;
+
+    private static final String UPSERT_WATERMARK = """
+            INSERT INTO analytics_rollup_watermarks (source, watermark, updated_at)
+            VALUES (:source, :watermark, CURRENT_TIMESTAMP)
+            ON CONFLICT (source) DO UPDATE
+            SET watermark = EXCLUDED.watermark, updated_at = EXCLUDED.updated_at
+            """;
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SessionSketchRollup sessionSketchRollup;
+    private final TaxDigestRollup taxDigestRollup;
+    private final AnalyticsAggregateReader aggregateReader;
+    private final int safetyMarginSeconds;
+    private final Timer duration;
+
+    public DailyAggregateRollup(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            SessionSketchRollup sessionSketchRollup,
+            TaxDigestRollup taxDigestRollup,
+            AnalyticsAggregateReader aggregateReader,
+            MeterRegistry meterRegistry,
+            @Value("${app.analytics.rollup.safety-margin-seconds:60}") int safetyMarginSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sessionSketchRollup = sessionSketchRollup;
+        this.taxDigestRollup = taxDigestRollup;
+        this.aggregateReader = aggregateReader;
+        this.safetyMarginSeconds = safetyMarginSeconds;
+        this.duration = Timer.builder("analytics.rollup.duration")
+                .description("Duree d'un passage du rollup daily_aggregates")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Passage horaire (par defaut a HH:05).
+     */
+    @Scheduled(cron = "${app.analytics.rollup.cron:0 5 * * * *}")
+    public void scheduledRollup() {
+        try {
+            RollupResult result = rollup();
+            log.info("Daily aggregates rollup up to {}: {} search groups, {} calculation groups",
+                    result.until(), result.searchGroups(), result.calculationGroups());
+        } catch (RuntimeException e) {
+            log.warn("Daily aggregates rollup failed, will retry next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Agrege les lignes chargees depuis le dernier passage et avance les watermarks.
+     */
+    public RollupResult rollup() {
+        RollupResult result = duration.record(() -> transactionTemplate.execute(status -> {
+            LocalDateTime until = jdbcTemplate.queryForObject(SELECT_UPPER_BOUND,
+                    new MapSqlParameterSource("margin", safetyMarginSeconds), LocalDateTime.class);
+
+            Map<String, LocalDateTime> watermarks = new HashMap<>();
+            jdbcTemplate.query(LOCK_WATERMARKS,
+                    new MapSqlParameterSource("sources", List.of(SEARCH_EVENTS, TAX_CALCULATIONS)),
+                    (RowCallbackHandler) rs -> watermarks.put(
+                            rs.getString("source"), rs.getObject("watermark", LocalDateTime.class)));
+
+            int searchGroups = rollupSource(SEARCH_EVENTS, watermarks, until);
+            int calculationGroups = rollupSource(TAX_CALCULATIONS, watermarks, until);
+            return new RollupResult(until, searchGroups, calculationGroups);
+        }));
+        aggregateReader.evictRolledUp();
+        return result;
+    }
+
+    private int rollupSource(String source, Map<String, LocalDateTime> watermarks, LocalDateTime until) {
+        LocalDateTime from = watermarks.getOrDefault(source, EPOCH);
+        if (!from.isBefore(until)) {
+            return 0;
+        }
+        MapSqlParameterSource range = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", until);
+        int groups = 0;
+        for (RollupLevel level : RollupLevel.values()) {
+            String sql = SEARCH_EVENTS.equals(source) ? level.searchEventsUpsert() : level.taxCalculationsUpsert();
+            groups += jdbcTemplate.update(sql, range);
+        }
+        if (SEARCH_EVENTS.equals(source)) {
+            sessionSketchRollup.update(from, until);
+        } else {
+            taxDigestRollup.update(from, until);
+        }
+        jdbcTemplate.update(UPSERT_WATERMARK, new MapSqlParameterSource()
+                .addValue("source", source)
+                .addValue("watermark", until));
+        return groups;
+    }
+
+    /**
+     * Resultat d'un passage.
+     *
+     * @param until             Nouveau watermark (lignes chargees avant cette heure)
+     * @param searchGroups      Agregats mis a jour par les recherches
+     * @param calculationGroups Agregats mis a jour par les montants calcules
+     */
+    public record RollupResult(LocalDateTime until, int searchGroups, int calculationGroups) {
+    }
+}
@@ -0,0 +1,170 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Sketch HyperLogLog (Flajolet et al.): estimation du nombre d'elements
+ * distincts en memoire constante.
+ *
+ * 2^12 registres d'un octet, hash 64 bits: erreur relative standard de
+ * 1.04 / sqrt(4096) = 1.6% (3.3% dans 95% des cas), quel que soit le volume.
+ * Deux sketches se fusionnent sans perte (maximum registre par registre):
+ * l'union de jours ou de regions a la meme precision qu'un sketch unique.
+ *
+ * Serialise en format creux (index + valeur des registres non nuls) tant
+ * que c'est plus court que le format dense: quelques octets pour un jour
+ * avec peu de sessions, 4 Ko au plus.
+ */
+public final class HyperLogLog {
+
+    static final int PRECISION = 12;
+    static final int REGISTERS = 1 << PRECISION;
+
+    /** Erreur relative standard de l'estimation */
+    public static final double RELATIVE_STANDARD_ERROR = 1.04 / Math.sqrt(REGISTERS);
+
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+    private static final int MAX_RANK = Long.SIZE - PRECISION + 1;
+    private static final double ALPHA_INFINITY = 1 / (2 * Math.log(2));
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(new byte[REGISTERS]);
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public void add(UUID value) {
+        addHash(mix(value.getMostSignificantBits() ^ mix(value.getLeastSignificantBits())));
+    }
+
+    void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Ajoute les elements d'un autre sketch (union).
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Nombre estime d'elements distincts.
+     *
+     * Estimateur ameliore d'Ertl ("New cardinality estimation algorithms for
+     * HyperLogLog sketches", 2017): sans biais sur toute la plage, sans le
+     * saut de l'estimateur d'origine au passage au comptage lineaire.
+     */
+    public long estimate() {
+        int[] histogram = new int[MAX_RANK + 1];
+        for (byte register : registers) {
+            histogram[register]++;
+        }
+        double z = REGISTERS * tau(1 - (double) histogram[MAX_RANK] / REGISTERS);
+        for (int rank = MAX_RANK - 1; rank >= 1; rank--) {
+            z = 0.5 * (z + histogram[rank]);
+        }
+        z += REGISTERS * sigma((double) histogram[0] / REGISTERS);
+        return Math.round(ALPHA_INFINITY * REGISTERS * REGISTERS / z);
+    }
+
+    private static double sigma(double x) {
+        if (x == 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (previous != z);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0 || x == 1) {
+            return 0;
+        }
+        double y = 1;
+        double z = 1 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= (1 - x) * (1 - x) * y;
+        } while (previous != z);
+        return z / 3;
+    }
+
+    // ==================== SERIALISATION ====================
+
+    public byte[] toBytes() {
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                nonZero++;
+            }
+        }
+        if (1 + 2 + nonZero * 3 >= 1 + REGISTERS) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 + REGISTERS);
+            buffer.put(DENSE).put(registers);
+            return buffer.array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 2 + nonZero * 3);
+        buffer.put(SPARSE).putShort((short) nonZero);
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] != 0) {
+                buffer.putShort((short) i).put(registers[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte format = buffer.get();
+        byte[] registers = new byte[REGISTERS];
+        if (format == DENSE) {
+            buffer.get(registers);
+        } else if (format == SPARSE) {
+            int nonZero = Short.toUnsignedInt(buffer.getShort());
+            for (int i = 0; i < nonZero; i++) {
+                registers[Short.toUnsignedInt(buffer.getShort())] = buffer.get();
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown HyperLogLog format: " + format);
+        }
+        return new HyperLogLog(registers);
+    }
+
+    /**
+     * Finaliseur de MurmurHash3: repartit uniformement les bits d'un long.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
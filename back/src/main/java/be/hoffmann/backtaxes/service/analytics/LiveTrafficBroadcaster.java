@@ -0,0 +1,84 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Diffusion SSE des compteurs de trafic en direct.
+ *
+ * Un seul snapshot est calcule par intervalle et envoye a tous les abonnes
+ * (minute en cours et minute precedente; l'historique se lit par GET).
+ * Le nombre d'abonnes est borne: au-dela, le plus ancien est ferme.
+ */
+@Component
+@Profile("!batch")
+public class LiveTrafficBroadcaster {
+
+    static final String EVENT_NAME = "traffic";
+    private static final int PUSHED_MINUTES = 2;
+
+    private final LiveTrafficCounters counters;
+    private final int maxSubscribers;
+    private final long timeoutMs;
+    private final Deque<SseEmitter> emitters = new ConcurrentLinkedDeque<>();
+
+    public LiveTrafficBroadcaster(
+            LiveTrafficCounters counters,
+            @Value("${app.analytics.live.max-subscribers:20}") int maxSubscribers,
+            @Value("${app.analytics.live.sse-timeout-ms:1800000}") long timeoutMs) {
+        this.counters = counters;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Ouvre un flux: le premier snapshot est envoye immediatement.
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.addLast(emitter);
+        while (emitters.size() > maxSubscribers) {
+            SseEmitter oldest = emitters.pollFirst();
+            if (oldest != null) {
+                oldest.complete();
+            }
+        }
+        send(emitter, counters.snapshot(PUSHED_MINUTES));
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.live.push-interval-ms:5000}")
+    public void broadcast() {
+        if (emitters.isEmpty()) {
+            return;
+        }
+        LiveTrafficResponse snapshot = counters.snapshot(PUSHED_MINUTES);
+        for (SseEmitter emitter : emitters) {
+            send(emitter, snapshot);
+        }
+    }
+
+    int subscriberCount() {
+        return emitters.size();
+    }
+
+    private void send(SseEmitter emitter, LiveTrafficResponse snapshot) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(snapshot));
+        } catch (IOException | IllegalStateException e) {
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse;
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse.MinuteTraffic;
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse.SearchAndCalculationCount;
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse.TrafficCounts;
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs de trafic en direct, par minute, en memoire.
+ *
+ * Recherches et calculs par type de recherche, region, carburant et
+ * appareil, dans un anneau de compteurs d'une minute. Chaque compteur est
+ * un LongAdder (cellules reparties entre threads): l'enregistrement n'est
+ * qu'un increment sans verrou. Une case de l'anneau est remplacee (CAS) par
+ * la minute suivante qui y tombe.
+ *
+ * Alimentes par le thread writer (AnalyticsEventWriter) apres enrichissement:
+ * le type d'appareil est connu et les robots ne sont pas comptes. Les
+ * evenements abandonnes par le buffer sature ne sont pas comptes non plus;
+ * une recherche echantillonnee compte pour son poids (sampleWeight).
+ *
+ * Les compteurs sont ceux de cette instance et ne sont pas persistes:
+ * l'historique vient de daily_aggregates (DailyAggregateRollup). La fenetre
+ * par defaut couvre le delai du rollup horaire.
+ */
+@Component
+public class LiveTrafficCounters {
+
+    private static final long MINUTE_SECONDS = 60;
+
+    private final int windowMinutes;
+    private final AtomicReferenceArray<MinuteBucket> buckets;
+
+    public LiveTrafficCounters(@Value("${app.analytics.live.window-minutes:180}") int windowMinutes) {
+        if (windowMinutes < 1) {
+            throw new IllegalArgumentException("app.analytics.live.window-minutes must be positive");
+        }
+        this.windowMinutes = windowMinutes;
+        this.buckets = new AtomicReferenceArray<>(windowMinutes + 1);
+    }
+
+    public int getWindowMinutes() {
+        return windowMinutes;
+    }
+
+    /**
+     * Compte un evenement dans la minute de son horodatage.
+     */
+    public void record(SearchEventRecord event) {
+        MinuteBucket bucket = bucket(event.createdAt().getEpochSecond() / MINUTE_SECONDS);
+        if (bucket != null) {
+            bucket.record(event);
+        }
+    }
+
+    /**
+     * Compteurs des dernieres minutes, minute en cours comprise.
+     *
+     * @param minutes Nombre de minutes (borne a la fenetre conservee)
+     */
+    public LiveTrafficResponse snapshot(int minutes) {
+        return snapshot(minutes, Instant.now());
+    }
+
+    LiveTrafficResponse snapshot(int minutes, Instant now) {
+        int count = Math.max(1, Math.min(minutes, windowMinutes));
+        long current = now.getEpochSecond() / MINUTE_SECONDS;
+        Tally totals = new Tally();
+        List<MinuteTraffic> traffic = new ArrayList<>(count);
+        for (long minute = current - count + 1; minute <= current; minute++) {
+            Tally tally = new Tally();
+            MinuteBucket bucket = buckets.get(index(minute));
+            if (bucket != null && bucket.minute == minute) {
+                tally.add(bucket);
+                totals.add(bucket);
+            }
+            traffic.add(new MinuteTraffic(Instant.ofEpochSecond(minute * MINUTE_SECONDS), tally.toCounts()));
+        }
+        return new LiveTrafficResponse(
+                Instant.ofEpochSecond((current - count + 1) * MINUTE_SECONDS),
+                Instant.ofEpochSecond((current + 1) * MINUTE_SECONDS),
+                totals.toCounts(),
+                traffic);
+    }
+
+    /**
+     * Case de la minute, remplacee si elle contient une minute plus ancienne;
+     * null si la minute est sortie de la fenetre.
+     */
+    private MinuteBucket bucket(long minute) {
+        int index = index(minute);
+        while (true) {
+            MinuteBucket bucket = buckets.get(index);
+            if (bucket != null && bucket.minute >= minute) {
+                return bucket.minute == minute ? bucket : null;
+            }
+            MinuteBucket fresh = new MinuteBucket(minute);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private int index(long minute) {
+        return (int) Math.floorMod(minute, (long) buckets.length());
+    }
+
+    /**
+     * Compteurs d'une minute.
+     */
+    private static final class MinuteBucket {
+
+        private final long minute;
+        private final LongAdder searches = new LongAdder();
+        private final LongAdder calculations = new LongAdder();
+        private final LongAdder[] bySearchType = adders(SearchType.values().length);
+        private final Dimension byRegion = new Dimension(Region.values().length);
+        private final Dimension byFuelType = new Dimension(FuelType.values().length);
+        private final Dimension byDeviceType = new Dimension(DeviceType.values().length);
+
+        private MinuteBucket(long minute) {
+            this.minute = minute;
+        }
+
+        private void record(SearchEventRecord event) {
+            boolean calculation = event.searchType() == SearchType.calculate;
+            long weight = event.sampleWeight();
+            searches.add(weight);
+            if (calculation) {
+                calculations.add(weight);
+            }
+            if (event.searchType() != null) {
+                bySearchType[event.searchType().ordinal()].add(weight);
+            }
+            byRegion.record(event.region(), calculation, weight);
+            byFuelType.record(event.fuelType(), calculation, weight);
+            byDeviceType.record(event.deviceType(), calculation, weight);
+        }
+    }
+
+    /**
+     * Recherches et calculs par valeur d'une dimension (indexes par ordinal).
+     */
+    private static final class Dimension {
+
+        private final LongAdder[] searches;
+        private final LongAdder[] calculations;
+
+        private Dimension(int size) {
+            this.searches = adders(size);
+            this.calculations = adders(size);
+        }
+
+        private void record(Enum<?> value, boolean calculation, long weight) {
+            if (value == null) {
+                return;
+            }
+            searches[value.ordinal()].add(weight);
+            if (calculation) {
+                calculations[value.ordinal()].add(weight);
+            }
+        }
+    }
+
+    private static LongAdder[] adders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Somme de minutes, convertie en DTO (valeurs nulles omises).
+     */
+    private static final class Tally {
+
+        private long searches;
+        private long calculations;
+        private final long[] bySearchType = new long[SearchType.values().length];
+        private final long[][] byRegion = new long[2][Region.values().length];
+        private final long[][] byFuelType = new long[2][FuelType.values().length];
+        private final long[][] byDeviceType = new long[2][DeviceType.values().length];
+
+        private void add(MinuteBucket bucket) {
+            searches += bucket.searches.sum();
+            calculations += bucket.calculations.sum();
+            for (int i = 0; i < bySearchType.length; i++) {
+                bySearchType[i] += bucket.bySearchType[i].sum();
+            }
+            add(byRegion, bucket.byRegion);
+            add(byFuelType, bucket.byFuelType);
+            add(byDeviceType, bucket.byDeviceType);
+        }
+
+        private static void add(long[][] tally, Dimension dimension) {
+            for (int i = 0; i < tally[0].length; i++) {
+                tally[0][i] += dimension.searches[i].sum();
+                tally[1][i] += dimension.calculations[i].sum();
+            }
+        }
+
+        private TrafficCounts toCounts() {
+            Map<SearchType, Long> searchTypes = new EnumMap<>(SearchType.class);
+            for (SearchType searchType : SearchType.values()) {
+                if (bySearchType[searchType.ordinal()] > 0) {
+                    searchTypes.put(searchType, bySearchType[searchType.ordinal()]);
+                }
+            }
+            return new TrafficCounts(searches, calculations, searchTypes,
+                    toMap(Region.class, byRegion), toMap(FuelType.class, byFuelType),
+                    toMap(DeviceType.class, byDeviceType));
+        }
+
+        private static <E extends Enum<E>> Map<E, SearchAndCalculationCount> toMap(Class<E> type, long[][] tally) {
+            Map<E, SearchAndCalculationCount> counts = new EnumMap<>(type);
+            for (E value : type.getEnumConstants()) {
+                if (tally[0][value.ordinal()] > 0) {
+                    counts.put(value, new SearchAndCalculationCount(tally[0][value.ordinal()], tally[1][value.ordinal()]));
+                }
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+/**
+ * Comportement du pipeline analytics quand le buffer d'ingestion est sature.
+ */
+public enum OverflowPolicy {
+
+    /** Retire l'evenement le plus ancien pour garder le plus recent */
+    drop_oldest,
+
+    /** Au-dela du seuil de remplissage, ne garde qu'une fraction des evenements */
+    sample,
+
+    /** Attend une place (borne par un timeout), puis abandonne l'evenement */
+    block
+}
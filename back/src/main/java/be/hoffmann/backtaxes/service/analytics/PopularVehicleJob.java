@@ -0,0 +1,98 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Sauvegarde et materialisation des classements de vehicules populaires.
+ *
+ * A chaque passage: restaure les points de controle du journal local au
+ * premier passage, materialise dans popular_vehicles les semaines terminees
+ * (lundi 00:00 plus un delai pour les evenements encore dans le journal),
+ * puis sauvegarde les sketches sous l'identifiant du journal.
+ *
+ * Chaque instance alimente ses propres sketches; la premiere qui trouve une
+ * semaine terminee la materialise en fusionnant les points de controle des
+ * autres instances, les suivantes l'oublient. Le delai doit donc depasser
+ * l'intervalle de sauvegarde: toutes les instances ont alors sauvegarde la
+ * semaine complete avant sa materialisation.
+ */
+@Component
+@Profile("!batch")
+public class PopularVehicleJob {
+
+    private static final Logger log = LoggerFactory.getLogger(PopularVehicleJob.class);
+
+    private final PopularVehicleSketches sketches;
+    private final PopularVehicleStore store;
+    private final String journalId;
+    private final int topN;
+    private final long materializeDelayMinutes;
+
+    private boolean restored;
+
+    public PopularVehicleJob(
+            PopularVehicleSketches sketches,
+            PopularVehicleStore store,
+            AnalyticsJournal journal,
+            @Value("${app.analytics.popular.top-n:100}") int topN,
+            @Value("${app.analytics.popular.materialize-delay-minutes:15}") long materializeDelayMinutes) {
+        if (topN < 1) {
+            throw new IllegalArgumentException("app.analytics.popular.top-n must be positive");
+        }
+        this.sketches = sketches;
+        this.store = store;
+        this.journalId = journal.getId();
+        this.topN = topN;
+        this.materializeDelayMinutes = materializeDelayMinutes;
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.popular.checkpoint-interval-ms:300000}")
+    public void checkpoint() {
+        checkpoint(LocalDateTime.now());
+    }
+
+    synchronized void checkpoint(LocalDateTime now) {
+        try {
+            restoreOnce();
+            LocalDate currentWeek = PopularVehicleSketches.weekStart(
+                    now.minusMinutes(materializeDelayMinutes).toLocalDate());
+            for (LocalDate week : sketches.completedWeeks(currentWeek)) {
+                int rows = store.materialize(week, journalId, others -> sketches.rankings(week, others), topN);
+                sketches.evict(week);
+                if (rows < 0) {
+                    log.debug("Popular vehicles of week {} already materialized by another instance", week);
+                } else {
+                    log.info("Popular vehicles of week {} materialized: {} rows", week, rows);
+                }
+            }
+            store.saveCheckpoints(journalId, sketches.checkpoints());
+        } catch (RuntimeException e) {
+            log.warn("Popular vehicles checkpoint failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Dernier point de controle a l'arret (les evenements deja ecrits par le writer y sont).
+     */
+    @PreDestroy
+    public void shutdown() {
+        checkpoint();
+    }
+
+    private void restoreOnce() {
+        if (restored) {
+            return;
+        }
+        sketches.restore(store.loadCheckpoints(journalId), store.lastMaterializedWeek());
+        restored = true;
+    }
+}
@@ -0,0 +1,243 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.RankingType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.service.analytics.SpaceSavingSketch.Counter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Classements des vehicules populaires calcules en continu.
+ *
+ * Par semaine et par region, deux sketches Space-Saving (memoire bornee):
+ * les variantes les plus recherchees (tout evenement avec variante, pondere
+ * par son poids d'echantillonnage) et les plus calculees, avec la moyenne des montants TMC / taxe annuelle des
+ * calculs echantillonnes. Les classements par taxe (highest_tax, lowest_tax)
+ * trient les variantes les plus calculees par cout fiscal de premiere annee.
+ *
+ * Mis a jour par le thread writer (AnalyticsEventWriter): aucun travail sur
+ * le thread HTTP. Sauvegarde et materialisation: PopularVehicleJob.
+ */
+@Component
+public class PopularVehicleSketches {
+
+    static final String SEARCHED = "searched";
+    static final String CALCULATED = "calculated";
+
+    private final int capacity;
+    private final TreeMap<LocalDate, WeekSketches> weeks = new TreeMap<>();
+
+    /** Derniere semaine materialisee: les evenements plus anciens sont ignores */
+    private LocalDate materializedThrough;
+
+    public PopularVehicleSketches(@Value("${app.analytics.popular.sketch-capacity:1000}") int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("app.analytics.popular.sketch-capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Lundi de la semaine d'un evenement (heure locale du serveur).
+     */
+    public static LocalDate weekStart(Instant instant) {
+        return weekStart(LocalDate.ofInstant(instant, ZoneId.systemDefault()));
+    }
+
+    public static LocalDate weekStart(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    /**
+     * Ajoute un lot d'evenements aux sketches de leur semaine.
+     */
+    public synchronized void record(List<? extends AnalyticsEvent> events) {
+        for (AnalyticsEvent event : events) {
+            SearchEventRecord search = event.searchEvent();
+            if (search.variantId() == null || search.region() == null) {
+                continue;
+            }
+            LocalDate week = weekStart(search.createdAt());
+            if (materializedThrough != null && !week.isAfter(materializedThrough)) {
+                continue;
+            }
+            WeekSketches sketches = weeks.computeIfAbsent(week, w -> new WeekSketches());
+            long variantId = search.variantId();
+            sketches.sketch(SEARCHED, search.region()).add(variantId, search.sampleWeight());
+            if (search.searchType() != SearchType.calculate) {
+                continue;
+            }
+            SpaceSavingSketch calculated = sketches.sketch(CALCULATED, search.region());
+            calculated.add(variantId, 1);
+            if (event instanceof CalculationEventRecord calculation) {
+                for (TaxCalculationRecord line : calculation.calculations()) {
+                    if (line.calculatedAmount() != null) {
+                        calculated.addTax(variantId, line.taxType(),
+                                line.calculatedAmount().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Integre les points de controle sauvegardes (au demarrage).
+     *
+     * @param lastMaterialized Derniere semaine deja dans popular_vehicles (null si aucune)
+     */
+    public synchronized void restore(List<SketchCheckpoint> checkpoints, LocalDate lastMaterialized) {
+        if (lastMaterialized != null && (materializedThrough == null || lastMaterialized.isAfter(materializedThrough))) {
+            materializedThrough = lastMaterialized;
+            weeks.headMap(lastMaterialized, true).clear();
+        }
+        for (SketchCheckpoint checkpoint : checkpoints) {
+            if (materializedThrough != null && !checkpoint.weekStart().isAfter(materializedThrough)) {
+                continue;
+            }
+            weeks.computeIfAbsent(checkpoint.weekStart(), w -> new WeekSketches())
+                    .sketch(checkpoint.sketch(), checkpoint.region())
+                    .merge(checkpoint.payload());
+        }
+    }
+
+    /**
+     * Etat serialise de tous les sketches en memoire.
+     */
+    public synchronized List<SketchCheckpoint> checkpoints() {
+        List<SketchCheckpoint> checkpoints = new ArrayList<>();
+        weeks.forEach((week, sketches) -> sketches.bySketch.forEach((sketch, byRegion) ->
+                byRegion.forEach((region, counters) ->
+                        checkpoints.add(new SketchCheckpoint(week, region, sketch, counters.toBytes())))));
+        return checkpoints;
+    }
+
+    /**
+     * Semaines terminees (anterieures a la semaine courante) encore en memoire.
+     */
+    public synchronized List<LocalDate> completedWeeks(LocalDate currentWeek) {
+        return List.copyOf(weeks.headMap(currentWeek, false).keySet());
+    }
+
+    /**
+     * Classements complets d'une semaine, par region et type, du premier au dernier.
+     */
+    public synchronized List<Ranking> rankings(LocalDate week) {
+        WeekSketches sketches = weeks.get(week);
+        return sketches != null ? rankings(sketches) : List.of();
+    }
+
+    /**
+     * Classements d'une semaine fusionnant ces sketches avec les points de
+     * controle d'autres instances (les sketches en memoire restent inchanges).
+     */
+    public synchronized List<Ranking> rankings(LocalDate week, List<SketchCheckpoint> others) {
+        WeekSketches merged = new WeekSketches();
+        WeekSketches own = weeks.get(week);
+        if (own != null) {
+            own.bySketch.forEach((sketch, byRegion) -> byRegion.forEach((region, counters) ->
+                    merged.sketch(sketch, region).merge(counters.toBytes())));
+        }
+        for (SketchCheckpoint checkpoint : others) {
+            if (checkpoint.weekStart().equals(week)) {
+                merged.sketch(checkpoint.sketch(), checkpoint.region()).merge(checkpoint.payload());
+            }
+        }
+        return rankings(merged);
+    }
+
+    private static List<Ranking> rankings(WeekSketches sketches) {
+        List<Ranking> rankings = new ArrayList<>();
+        for (Region region : Region.values()) {
+            SpaceSavingSketch searched = sketches.find(SEARCHED, region);
+            SpaceSavingSketch calculated = sketches.find(CALCULATED, region);
+            if (searched != null) {
+                rankings.add(new Ranking(region, RankingType.most_searched, searched.top(searched.size()).stream()
+                        .map(counter -> rankedVehicle(counter.key(), searched, calculated))
+                        .toList()));
+            }
+            if (calculated != null) {
+                List<Counter> taxed = calculated.counters().stream().filter(Counter::hasTax).toList();
+                Comparator<Counter> mostCalculated = Comparator.comparingLong(Counter::count).reversed();
+                rankings.add(new Ranking(region, RankingType.highest_tax, taxed.stream()
+                        .sorted(Comparator.comparing(Counter::avgFirstYearTax).reversed().thenComparing(mostCalculated))
+                        .map(counter -> rankedVehicle(counter.key(), searched, calculated))
+                        .toList()));
+                rankings.add(new Ranking(region, RankingType.lowest_tax, taxed.stream()
+                        .sorted(Comparator.comparing(Counter::avgFirstYearTax).thenComparing(mostCalculated))
+                        .map(counter -> rankedVehicle(counter.key(), searched, calculated))
+                        .toList()));
+            }
+        }
+        return rankings;
+    }
+
+    /**
+     * Oublie une semaine materialisee (et tout evenement tardif la concernant).
+     */
+    public synchronized void evict(LocalDate week) {
+        weeks.headMap(week, true).clear();
+        if (materializedThrough == null || week.isAfter(materializedThrough)) {
+            materializedThrough = week;
+        }
+    }
+
+    private static RankedVehicle rankedVehicle(long variantId, SpaceSavingSketch searched, SpaceSavingSketch calculated) {
+        Counter search = searched != null ? searched.get(variantId) : null;
+        Counter calculation = calculated != null ? calculated.get(variantId) : null;
+        long searchCount = search != null ? search.count() : calculation.count();
+        return new RankedVehicle(variantId, searchCount,
+                calculation != null ? calculation.avgTaxTmc() : null,
+                calculation != null ? calculation.avgTaxAnnual() : null);
+    }
+
+    /**
+     * Sketches d'une semaine, par type puis par region.
+     */
+    private final class WeekSketches {
+
+        private final Map<String, Map<Region, SpaceSavingSketch>> bySketch = new TreeMap<>();
+
+        SpaceSavingSketch sketch(String sketch, Region region) {
+            return bySketch.computeIfAbsent(sketch, s -> new EnumMap<>(Region.class))
+                    .computeIfAbsent(region, r -> new SpaceSavingSketch(capacity));
+        }
+
+        SpaceSavingSketch find(String sketch, Region region) {
+            Map<Region, SpaceSavingSketch> byRegion = bySketch.get(sketch);
+            return byRegion != null ? byRegion.get(region) : null;
+        }
+    }
+
+    /**
+     * Point de controle d'un sketch.
+     */
+    public record SketchCheckpoint(LocalDate weekStart, Region region, String sketch, byte[] payload) {
+    }
+
+    /**
+     * Classement complet d'une region pour un type.
+     */
+    public record Ranking(Region region, RankingType rankingType, List<RankedVehicle> vehicles) {
+    }
+
+    /**
+     * Variante classee avec ses statistiques de la semaine.
+     */
+    public record RankedVehicle(long variantId, long searchCount, BigDecimal avgTaxTmc, BigDecimal avgTaxAnnual) {
+    }
+}
@@ -0,0 +1,198 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.service.analytics.PopularVehicleSketches.RankedVehicle;
+import be.hoffmann.backtaxes.service.analytics.PopularVehicleSketches.Ranking;
+import be.hoffmann.backtaxes.service.analytics.PopularVehicleSketches.SketchCheckpoint;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Persistance des classements de vehicules populaires: points de controle
+ * des sketches et materialisation hebdomadaire dans popular_vehicles.
+ *
+ * Chaque instance sauvegarde ses sketches sous l'identifiant de son journal.
+ * Une semaine est materialisee une seule fois, sous un verrou en base, par
+ * la premiere instance qui la trouve terminee: elle fusionne ses sketches
+ * avec les points de controle des autres journaux.
+ */
+@Component
+public class PopularVehicleStore {
+
+    private static final String SELECT_CHECKPOINTS = """
+            SELECT week_start, region, sketch, payload FROM popular_vehicle_sketches
+            WHERE journal_id = :journalId
+            """;
+
+    private static final String SELECT_OTHER_CHECKPOINTS = """
+            SELECT week_start, region, sketch, payload FROM popular_vehicle_sketches
+            WHERE week_start = :weekStart AND journal_id <> :journalId
+            """;
+
+    private static final String UPSERT_CHECKPOINT = """
+            INSERT INTO popular_vehicle_sketches (week_start, region, sketch, journal_id, payload, updated_at)
+            VALUES (:weekStart, CAST(:region AS region), :sketch, :journalId, :payload, CURRENT_TIMESTAMP)
+            ON CONFLICT (week_start, region, sketch, journal_id) DO UPDATE
+            SET payload = EXCLUDED.payload, updated_at = EXCLUDED.updated_at
+            """;
+
+    private static final String DELETE_CHECKPOINTS = """
+            DELETE FROM popular_vehicle_sketches WHERE week_start <= :weekStart
+            """;
+
+    private static final String LOCK = "SELECT pg_advisory_xact_lock(hashtext('popular_vehicles'))";
+
+    private static final String SELECT_LAST_WEEK = """
+            SELECT MAX(week_start) FROM popular_vehicles
+            """;
+
+    private static final String SELECT_VARIANTS = """
+            SELECT v.id, v.model_id, m.brand_id FROM variants v JOIN models m ON m.id = v.model_id
+            WHERE v.id IN (:ids)
+            """;
+
+    private static final String INSERT_RANK = """
+            INSERT INTO popular_vehicles (week_start, region, ranking_type, rank, variant_id, brand_id, model_id,
+                search_count, avg_tax_tmc, avg_tax_annual)
+            VALUES (:weekStart, CAST(:region AS region), CAST(:rankingType AS ranking_type), :rank, :variantId,
+                :brandId, :modelId, :searchCount, :avgTaxTmc, :avgTaxAnnual)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public PopularVehicleStore(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Points de controle sauvegardes par un journal.
+     */
+    public List<SketchCheckpoint> loadCheckpoints(String journalId) {
+        return jdbcTemplate.query(SELECT_CHECKPOINTS, new MapSqlParameterSource("journalId", journalId),
+                PopularVehicleStore::mapCheckpoint);
+    }
+
+    public void saveCheckpoints(String journalId, List<SketchCheckpoint> checkpoints) {
+        if (checkpoints.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batch = checkpoints.stream()
+                .map(checkpoint -> new MapSqlParameterSource()
+                        .addValue("weekStart", checkpoint.weekStart())
+                        .addValue("region", checkpoint.region().name())
+                        .addValue("sketch", checkpoint.sketch())
+                        .addValue("journalId", journalId)
+                        .addValue("payload", checkpoint.payload()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPSERT_CHECKPOINT, batch);
+    }
+
+    /**
+     * Derniere semaine materialisee (null si aucune).
+     */
+    public LocalDate lastMaterializedWeek() {
+        return jdbcTemplate.queryForObject(SELECT_LAST_WEEK, Map.of(), LocalDate.class);
+    }
+
+    /**
+     * Ecrit les classements d'une semaine (topN par region et type) et
+     * supprime les points de controle jusqu'a cette semaine, dans une seule transaction, sous le
+     * verrou partage par toutes les instances. Les classements sont calcules
+     * a partir des points de controle des autres journaux pour cette semaine.
+     * Les variantes supprimees du catalogue depuis sont ignorees.
+     *
+     * @param journalId Journal de l'instance (ses sketches sont en memoire)
+     * @param rankings  Classements fusionnes avec les points de controle donnes
+     * @return Nombre de lignes ecrites, -1 si la semaine est deja materialisee
+     */
+    public int materialize(LocalDate weekStart, String journalId,
+                           Function<List<SketchCheckpoint>, List<Ranking>> rankings, int topN) {
+        Integer written = transactionTemplate.execute(status -> {
+            jdbcTemplate.getJdbcTemplate().execute(LOCK);
+            LocalDate lastWeek = lastMaterializedWeek();
+            if (lastWeek != null && !lastWeek.isBefore(weekStart)) {
+                return -1;
+            }
+            List<SketchCheckpoint> others = jdbcTemplate.query(SELECT_OTHER_CHECKPOINTS,
+                    new MapSqlParameterSource("weekStart", weekStart).addValue("journalId", journalId),
+                    PopularVehicleStore::mapCheckpoint);
+            List<SqlParameterSource> rows = rows(weekStart, rankings.apply(others), topN);
+            jdbcTemplate.batchUpdate(INSERT_RANK, rows.toArray(SqlParameterSource[]::new));
+            jdbcTemplate.update(DELETE_CHECKPOINTS, new MapSqlParameterSource("weekStart", weekStart));
+            return rows.size();
+        });
+        return written != null ? written : -1;
+    }
+
+    private List<SqlParameterSource> rows(LocalDate weekStart, List<Ranking> rankings, int topN) {
+        Map<Long, long[]> variants = findVariants(rankings, topN);
+        List<SqlParameterSource> rows = new ArrayList<>();
+        for (Ranking ranking : rankings) {
+            int rank = 0;
+            for (RankedVehicle vehicle : ranking.vehicles()) {
+                long[] modelAndBrand = variants.get(vehicle.variantId());
+                if (modelAndBrand == null) {
+                    continue;
+                }
+                rows.add(new MapSqlParameterSource()
+                        .addValue("weekStart", weekStart)
+                        .addValue("region", ranking.region().name())
+                        .addValue("rankingType", ranking.rankingType().name())
+                        .addValue("rank", ++rank)
+                        .addValue("variantId", vehicle.variantId())
+                        .addValue("modelId", modelAndBrand[0])
+                        .addValue("brandId", modelAndBrand[1])
+                        .addValue("searchCount", (int) Math.min(Integer.MAX_VALUE, vehicle.searchCount()))
+                        .addValue("avgTaxTmc", vehicle.avgTaxTmc())
+                        .addValue("avgTaxAnnual", vehicle.avgTaxAnnual()));
+                if (rank == topN) {
+                    break;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Modele et marque des variantes candidates (au plus 2 * topN par classement,
+     * de quoi remplacer des variantes supprimees).
+     */
+    private Map<Long, long[]> findVariants(List<Ranking> rankings, int topN) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Ranking ranking : rankings) {
+            ranking.vehicles().stream().limit(2L * topN).forEach(vehicle -> ids.add(vehicle.variantId()));
+        }
+        Map<Long, long[]> variants = new HashMap<>();
+        if (ids.isEmpty()) {
+            return variants;
+        }
+        jdbcTemplate.query(SELECT_VARIANTS, new MapSqlParameterSource("ids", ids), rs -> {
+            variants.put(rs.getLong("id"), new long[]{rs.getLong("model_id"), rs.getLong("brand_id")});
+        });
+        return variants;
+    }
+
+    private static SketchCheckpoint mapCheckpoint(ResultSet rs, int rowNum) throws SQLException {
+        return new SketchCheckpoint(
+                rs.getObject("week_start", LocalDate.class),
+                Region.valueOf(rs.getString("region")),
+                rs.getString("sketch"),
+                rs.getBytes("payload"));
+    }
+}
@@ -0,0 +1,575 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.EuroNorm;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recherches des derniers jours en memoire, en colonnes, pour des
+ * decoupages ad hoc ("recherches diesel Euro 6 sur mobile a Bruxelles par
+ * semaine") sans nouvelle requete SQL.
+ *
+ * Les lignes sont rangees par blocs de 65 536 (SearchColumnBlock): codes de
+ * dictionnaire des enums avec un bitmap par valeur, identifiants en int,
+ * minutes locales en int. Une requete ecarte les blocs hors periode, combine
+ * les bitmaps des valeurs filtrees mot par mot, puis compte les lignes
+ * retenues par groupe (cle des dimensions packee dans un long). Les comptes
+ * somment sample_weight, comme daily_aggregates.
+ *
+ * Le store suit le chargement du journal: chaque passage lit les lignes de
+ * search_events chargees depuis le precedent (ingested_at, avec la marge de
+ * securite du rollup), quelle que soit l'instance qui les a recues. Au
+ * demarrage, le premier passage reconstruit les jours de retention par
+ * fenetres d'un jour de chargement. Le nombre de blocs est borne par le
+ * budget memoire: au-dela, les blocs les plus anciens sont liberes, et
+ * coveredFrom indique le debut des donnees completes.
+ *
+ * Un seul thread ecrit (refresh); les requetes lisent sans verrou un
+ * instantane de la liste des blocs et de leurs tailles.
+ */
+@Component
+@Profile("!batch")
+public class RecentSearchStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentSearchStore.class);
+
+    private static final Duration LOAD_WINDOW = Duration.ofDays(1);
+
+    private static final int KEY_BITS = Long.SIZE - 1;
+
+    private static final String SELECT_UPPER_BOUND = """
+            SELECT LOCALTIMESTAMP - make_interval(secs => :margin)
+            """;
+
+    private static final String SELECT_LOADED = """
+            SELECT se.created_at, se.region, COALESCE(se.fuel_type, v.fuel) AS fuel_type, se.device_type,
+                se.search_type, v.euro_norm, COALESCE(se.brand_id, m.brand_id) AS brand_id,
+                COALESCE(se.model_id, v.model_id) AS model_id, se.variant_id, se.sample_weight
+            FROM search_events se
+            LEFT JOIN variants v ON v.id = se.variant_id
+            LEFT JOIN models m ON m.id = v.model_id
+            WHERE se.ingested_at >= :from AND se.ingested_at < :to AND se.created_at >= :since
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final int retentionDays;
+    private final int maxBlocks;
+    private final int safetyMarginSeconds;
+
+    private volatile List<SearchColumnBlock> blocks = List.of();
+    private volatile LocalDateTime loadedUntil;
+    private volatile LocalDateTime retainedFrom;
+    /** Derniere minute des blocs liberes pour tenir le budget memoire */
+    private volatile int evictedThroughMinute = Integer.MIN_VALUE;
+
+    private final int[] rowCodes = new int[SliceDimension.CODED.size()];
+    private final int[] rowIds = new int[SliceDimension.IDS.size()];
+
+    public RecentSearchStore(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${app.analytics.columnar.retention-days:90}") int retentionDays,
+            @Value("${app.analytics.columnar.memory-mb:256}") int memoryMb,
+            @Value("${app.analytics.columnar.safety-margin-seconds:60}") int safetyMarginSeconds) {
+        if (retentionDays < 1) {
+            throw new IllegalArgumentException("app.analytics.columnar.retention-days must be positive");
+        }
+        long maxBlocks = memoryMb * 1024L * 1024L / SearchColumnBlock.BYTES;
+        if (maxBlocks < 1) {
+            throw new IllegalArgumentException("app.analytics.columnar.memory-mb must hold at least one block ("
+                    + (SearchColumnBlock.BYTES + 1024 * 1024 - 1) / (1024 * 1024) + " MB)");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionDays = retentionDays;
+        this.maxBlocks = (int) Math.min(maxBlocks, Integer.MAX_VALUE);
+        this.safetyMarginSeconds = safetyMarginSeconds;
+        Gauge.builder("analytics.columnar.rows", this, RecentSearchStore::rows)
+                .description("Recherches en memoire dans le store en colonnes")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.columnar.refresh-interval-ms:30000}")
+    public void scheduledRefresh() {
+        try {
+            long appended = refresh();
+            log.debug("Recent search store: {} rows appended, {} in memory", appended, rows());
+        } catch (RuntimeException e) {
+            log.warn("Recent search store refresh failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ajoute les recherches chargees en base depuis le passage precedent
+     * (au premier passage, celles des jours de retention) et libere les
+     * blocs sortis de la retention.
+     *
+     * @return Nombre de lignes ajoutees
+     */
+    public synchronized long refresh() {
+        LocalDateTime until = jdbcTemplate.queryForObject(SELECT_UPPER_BOUND,
+                new MapSqlParameterSource("margin", safetyMarginSeconds), LocalDateTime.class);
+        LocalDateTime since = until.minusDays(retentionDays);
+        evictBefore(minute(since));
+        retainedFrom = since;
+
+        long before = rows();
+        LocalDateTime from = loadedUntil != null ? loadedUntil : since;
+        while (from.isBefore(until)) {
+            LocalDateTime to = from.plus(LOAD_WINDOW).isBefore(until) ? from.plus(LOAD_WINDOW) : until;
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("from", from)
+                    .addValue("to", to)
+                    .addValue("since", since);
+            jdbcTemplate.query(SELECT_LOADED, params, (RowCallbackHandler) rs -> append(row(rs)));
+            loadedUntil = to;
+            from = to;
+        }
+        return rows() - before;
+    }
+
+    /**
+     * Recherches de [from, to[ retenues par le filtre, comptees par groupe.
+     *
+     * @param groupBy Dimensions de la cle des groupes, dans l'ordre (aucune = total seul)
+     * @param limit   Nombre de groupes retournes, par comptes decroissants
+     */
+    public Slice query(LocalDateTime from, LocalDateTime to, Filter filter, List<SliceDimension> groupBy, int limit) {
+        int fromMinute = minute(from);
+        int toMinute = minute(to);
+        List<SearchColumnBlock> snapshot = blocks;
+        int[] sizes = new int[snapshot.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = snapshot.get(i).size();
+        }
+        GroupKey groupKey = new GroupKey(groupBy, fromMinute, toMinute, snapshot);
+        boolean[][] allowedCodes = filter.allowedCodes();
+        int[][] allowedIds = filter.allowedIds();
+
+        CountMap counts = new CountMap();
+        long total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            SearchColumnBlock block = snapshot.get(i);
+            long[] selected = block.select(sizes[i], allowedCodes, allowedIds, fromMinute, toMinute);
+            if (selected == null) {
+                continue;
+            }
+            for (int w = 0; w < selected.length; w++) {
+                for (long bits = selected[w]; bits != 0; bits &= bits - 1) {
+                    int row = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    int weight = block.weight(row);
+                    total += weight;
+                    if (!groupBy.isEmpty()) {
+                        counts.add(groupKey.key(block, row), weight);
+                    }
+                }
+            }
+        }
+        return new Slice(coveredFrom(), loadedUntil, total, counts.size(), groupKey.decode(counts.top(limit)));
+    }
+
+    /**
+     * Recherches en memoire.
+     */
+    public long rows() {
+        return blocks.stream().mapToLong(SearchColumnBlock::size).sum();
+    }
+
+    /**
+     * Ajoute une recherche au dernier bloc, ou a un nouveau bloc (thread d'ecriture uniquement).
+     */
+    void append(Row row) {
+        rowCodes[0] = code(row.region());
+        rowCodes[1] = code(row.fuelType());
+        rowCodes[2] = code(row.deviceType());
+        rowCodes[3] = code(row.searchType());
+        rowCodes[4] = code(row.euroNorm());
+        rowIds[0] = id(row.brandId());
+        rowIds[1] = id(row.modelId());
+        rowIds[2] = id(row.variantId());
+        int minute = minute(row.createdAt());
+        List<SearchColumnBlock> current = blocks;
+        if (current.isEmpty() || !current.getLast().append(minute, rowCodes, rowIds, row.sampleWeight())) {
+            addBlock().append(minute, rowCodes, rowIds, row.sampleWeight());
+        }
+    }
+
+    private SearchColumnBlock addBlock() {
+        List<SearchColumnBlock> next = new ArrayList<>(blocks);
+        if (next.size() == maxBlocks) {
+            SearchColumnBlock evicted = next.removeFirst();
+            evictedThroughMinute = Math.max(evictedThroughMinute, evicted.maxMinute());
+        }
+        SearchColumnBlock block = new SearchColumnBlock();
+        next.add(block);
+        blocks = List.copyOf(next);
+        return block;
+    }
+
+    private void evictBefore(int minute) {
+        List<SearchColumnBlock> current = blocks;
+        List<SearchColumnBlock> retained = current.stream()
+                .filter(block -> block.size() == 0 || block.maxMinute() >= minute)
+                .toList();
+        if (retained.size() != current.size()) {
+            blocks = retained;
+        }
+    }
+
+    /**
+     * Debut des donnees completes: la retention, ou la fin des blocs liberes pour le budget memoire.
+     */
+    private LocalDateTime coveredFrom() {
+        LocalDateTime retained = retainedFrom;
+        if (retained == null || evictedThroughMinute == Integer.MIN_VALUE) {
+            return retained;
+        }
+        LocalDateTime afterEvicted = time(evictedThroughMinute + 1);
+        return afterEvicted.isAfter(retained) ? afterEvicted : retained;
+    }
+
+    private static Row row(ResultSet rs) throws SQLException {
+        return new Row(
+                rs.getObject("created_at", LocalDateTime.class),
+                value(Region.class, rs.getString("region")),
+                value(FuelType.class, rs.getString("fuel_type")),
+                value(DeviceType.class, rs.getString("device_type")),
+                value(SearchType.class, rs.getString("search_type")),
+                value(EuroNorm.class, rs.getString("euro_norm")),
+                rs.getObject("brand_id", Long.class),
+                rs.getObject("model_id", Long.class),
+                rs.getObject("variant_id", Long.class),
+                rs.getInt("sample_weight"));
+    }
+
+    private static <E extends Enum<E>> E value(Class<E> type, String name) {
+        return name == null ? null : Enum.valueOf(type, name);
+    }
+
+    private static int code(Enum<?> value) {
+        return value == null ? 0 : value.ordinal() + 1;
+    }
+
+    /**
+     * Identifiant en int; 0 (inconnu) hors de la plage des int.
+     */
+    private static int id(Long id) {
+        return id == null || id < 1 || id > Integer.MAX_VALUE ? 0 : id.intValue();
+    }
+
+    /**
+     * Minutes depuis 1970 en heure locale (created_at est une heure locale).
+     */
+    static int minute(LocalDateTime time) {
+        return (int) Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    static LocalDateTime time(int minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60L, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Recherche chargee dans le store (valeurs null = inconnues).
+     */
+    record Row(LocalDateTime createdAt, Region region, FuelType fuelType, DeviceType deviceType,
+               SearchType searchType, EuroNorm euroNorm, Long brandId, Long modelId, Long variantId,
+               int sampleWeight) {
+    }
+
+    /**
+     * Valeurs retenues par dimension; un ensemble vide ne filtre pas.
+     */
+    public record Filter(Set<Region> regions, Set<FuelType> fuelTypes, Set<DeviceType> deviceTypes,
+                         Set<SearchType> searchTypes, Set<EuroNorm> euroNorms,
+                         Set<Long> brandIds, Set<Long> modelIds, Set<Long> variantIds) {
+
+        public static final Filter NONE = new Filter(Set.of(), Set.of(), Set.of(), Set.of(), Set.of(),
+                Set.of(), Set.of(), Set.of());
+
+        public Filter {
+            regions = copy(regions);
+            fuelTypes = copy(fuelTypes);
+            deviceTypes = copy(deviceTypes);
+            searchTypes = copy(searchTypes);
+            euroNorms = copy(euroNorms);
+            brandIds = copy(brandIds);
+            modelIds = copy(modelIds);
+            variantIds = copy(variantIds);
+        }
+
+        private static <T> Set<T> copy(Set<T> values) {
+            return values == null ? Set.of() : Set.copyOf(values);
+        }
+
+        /**
+         * Par dimension encodee (ordre de SliceDimension.CODED), codes retenus ou null.
+         */
+        boolean[][] allowedCodes() {
+            List<Set<? extends Enum<?>>> values = List.of(regions, fuelTypes, deviceTypes, searchTypes, euroNorms);
+            boolean[][] allowed = new boolean[values.size()][];
+            for (int c = 0; c < allowed.length; c++) {
+                if (!values.get(c).isEmpty()) {
+                    allowed[c] = new boolean[SliceDimension.CODED.get(c).dictionary().length + 1];
+                    for (Enum<?> value : values.get(c)) {
+                        allowed[c][code(value)] = true;
+                    }
+                }
+            }
+            return allowed;
+        }
+
+        /**
+         * Par colonne d'identifiant (ordre de SliceDimension.IDS), identifiants tries ou null.
+         */
+        int[][] allowedIds() {
+            List<Set<Long>> values = List.of(brandIds, modelIds, variantIds);
+            int[][] allowed = new int[values.size()][];
+            for (int i = 0; i < allowed.length; i++) {
+                if (!values.get(i).isEmpty()) {
+                    allowed[i] = values.get(i).stream()
+                            .mapToInt(RecentSearchStore::id)
+                            .filter(id -> id != 0)
+                            .sorted()
+                            .toArray();
+                }
+            }
+            return allowed;
+        }
+    }
+
+    /**
+     * Resultat d'une requete.
+     *
+     * @param coveredFrom Debut des donnees completes en memoire (null avant le premier chargement)
+     * @param loadedUntil Lignes chargees en base avant cette heure
+     * @param count       Recherches retenues (somme des poids)
+     * @param groupCount  Nombre de groupes, avant la limite
+     */
+    public record Slice(LocalDateTime coveredFrom, LocalDateTime loadedUntil, long count, long groupCount,
+                        List<Group> groups) {
+    }
+
+    /**
+     * Groupe: valeurs des dimensions dans l'ordre demande (enum, identifiant,
+     * LocalDateTime pour hour, LocalDate du premier jour pour day, week et
+     * month; null = inconnue) et recherches.
+     */
+    public record Group(List<Object> values, long count) {
+    }
+
+    /**
+     * Cle d'un groupe: valeurs des dimensions packees dans un long, chacune
+     * sur le nombre de bits de sa plus grande valeur dans la periode.
+     */
+    private static final class GroupKey {
+
+        private static final int TIME = 0;
+        private static final int CODED = 1;
+        private static final int ID = 2;
+
+        private final SliceDimension[] dimensions;
+        /** Par dimension: TIME, CODED ou ID, et colonne du bloc */
+        private final int[] kinds;
+        private final int[] columns;
+        private final int[] widths;
+        private final int fromBucket;
+        private final int fromDay;
+        /** Mois (annee * 12 + mois - 1) des jours de la periode, pour month */
+        private final int[] monthOfDay;
+
+        GroupKey(List<SliceDimension> groupBy, int fromMinute, int toMinute, List<SearchColumnBlock> snapshot) {
+            this.dimensions = groupBy.toArray(SliceDimension[]::new);
+            this.kinds = new int[dimensions.length];
+            this.columns = new int[dimensions.length];
+            this.widths = new int[dimensions.length];
+            int lastMinute = Math.max(fromMinute, toMinute - 1);
+            this.fromDay = Math.floorDiv(fromMinute, 1440);
+            this.monthOfDay = new int[Math.floorDiv(lastMinute, 1440) - fromDay + 1];
+            for (int day = 0; day < monthOfDay.length; day++) {
+                LocalDate date = LocalDate.ofEpochDay(fromDay + (long) day);
+                monthOfDay[day] = date.getYear() * 12 + date.getMonthValue() - 1;
+            }
+            int timeBucket = 0;
+            int bits = 0;
+            for (int d = 0; d < dimensions.length; d++) {
+                SliceDimension dimension = dimensions[d];
+                int maxValue;
+                if (dimension.isTime()) {
+                    kinds[d] = TIME;
+                    timeBucket = timeBucket(dimension, fromMinute);
+                    maxValue = timeBucket(dimension, lastMinute) - timeBucket;
+                } else if (SliceDimension.CODED.contains(dimension)) {
+                    kinds[d] = CODED;
+                    columns[d] = SliceDimension.CODED.indexOf(dimension);
+                    maxValue = dimension.dictionary().length;
+                } else {
+                    kinds[d] = ID;
+                    columns[d] = SliceDimension.IDS.indexOf(dimension);
+                    maxValue = 0;
+                    for (SearchColumnBlock block : snapshot) {
+                        maxValue = Math.max(maxValue, block.maxId(columns[d]));
+                    }
+                }
+                widths[d] = Integer.SIZE - Integer.numberOfLeadingZeros(maxValue);
+                bits += widths[d];
+            }
+            if (bits > KEY_BITS) {
+                throw new ValidationException("groupBy", "Too many distinct values to group by " + groupBy
+                        + " over this period");
+            }
+            this.fromBucket = timeBucket;
+        }
+
+        long key(SearchColumnBlock block, int row) {
+            long key = 0;
+            for (int d = 0; d < dimensions.length; d++) {
+                int value = switch (kinds[d]) {
+                    case TIME -> timeBucket(dimensions[d], block.minute(row)) - fromBucket;
+                    case CODED -> block.code(columns[d], row);
+                    default -> block.id(columns[d], row);
+                };
+                key = (key << widths[d]) | value;
+            }
+            return key;
+        }
+
+        List<Group> decode(List<long[]> counts) {
+            List<Group> groups = new ArrayList<>(counts.size());
+            for (long[] entry : counts) {
+                long key = entry[0];
+                Object[] values = new Object[dimensions.length];
+                for (int d = dimensions.length - 1; d >= 0; d--) {
+                    int value = (int) (key & ((1L << widths[d]) - 1));
+                    key >>>= widths[d];
+                    values[d] = decodeValue(d, value);
+                }
+                groups.add(new Group(Collections.unmodifiableList(Arrays.asList(values)), entry[1]));
+            }
+            return groups;
+        }
+
+        private Object decodeValue(int d, int value) {
+            SliceDimension dimension = dimensions[d];
+            return switch (kinds[d]) {
+                case TIME -> {
+                    int bucket = fromBucket + value;
+                    yield switch (dimension) {
+                        case hour -> time(bucket * 60);
+                        case day -> LocalDate.ofEpochDay(bucket);
+                        case week -> LocalDate.ofEpochDay(bucket * 7L - 3);
+                        default -> LocalDate.of(bucket / 12, bucket % 12 + 1, 1);
+                    };
+                }
+                case CODED -> value == 0 ? null : dimension.dictionary()[value - 1];
+                default -> value == 0 ? null : Long.valueOf(value);
+            };
+        }
+
+        /**
+         * Index de l'heure, du jour, de la semaine (lundi; le 1er janvier 1970
+         * est un jeudi) ou du mois d'une minute de la periode.
+         */
+        private int timeBucket(SliceDimension dimension, int minute) {
+            int day = Math.floorDiv(minute, 1440);
+            return switch (dimension) {
+                case hour -> Math.floorDiv(minute, 60);
+                case day -> day;
+                case week -> Math.floorDiv(day + 3, 7);
+                default -> monthOfDay[day - fromDay];
+            };
+        }
+    }
+
+    /**
+     * Comptes par cle (adressage ouvert, sans objet par ligne).
+     */
+    private static final class CountMap {
+
+        private long[] keys = new long[64];
+        private long[] counts = new long[64];
+        private boolean[] used = new boolean[64];
+        private int size;
+
+        void add(long key, long count) {
+            int mask = keys.length - 1;
+            int slot = (int) mix(key) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    counts[slot] = count;
+                    grow();
+                    return;
+                }
+            }
+            counts[slot] += count;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Paires (cle, compte) par comptes decroissants puis cles croissantes.
+         */
+        List<long[]> top(int limit) {
+            List<long[]> entries = new ArrayList<>(size);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (used[slot]) {
+                    entries.add(new long[]{keys[slot], counts[slot]});
+                }
+            }
+            entries.sort(Comparator.<long[]>comparingLong(entry -> -entry[1]).thenComparingLong(entry -> entry[0]));
+            return entries.size() > limit ? entries.subList(0, limit) : entries;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            counts = new long[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldUsed[slot]) {
+                    add(oldKeys[slot], oldCounts[slot]);
+                }
+            }
+        }
+
+        private static long mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return h ^ (h >>> 32);
+        }
+    }
+}
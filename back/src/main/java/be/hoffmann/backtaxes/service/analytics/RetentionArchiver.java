@@ -0,0 +1,363 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.AnalyticsReport;
+import be.hoffmann.backtaxes.entity.enums.ReportType;
+import be.hoffmann.backtaxes.repository.AnalyticsReportRepository;
+import be.hoffmann.backtaxes.service.analytics.ColumnarArchive.Column;
+import be.hoffmann.backtaxes.service.analytics.ColumnarArchive.ColumnType;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Archivage des donnees brutes analytics avant leur purge.
+ *
+ * Les lignes expirees de search_events et tax_calculations sont lues par un
+ * curseur serveur (fetch size) et ecrites dans un fichier colonnaire
+ * compresse (ColumnarArchive) sur disque local, un fichier par partition
+ * mensuelle. Chaque fichier est enregistre comme rapport data_retention
+ * (nombre de lignes, periode, taille, SHA-256): la table analytics_reports
+ * sert de catalogue pour relire les archives (scan).
+ *
+ * L'archivage est appele par AnalyticsPartitionManager dans la transaction
+ * qui supprime les lignes: le curseur n'existe qu'hors autocommit, et le
+ * rapport n'est valide que si la suppression l'est. Un fichier ecrit par
+ * une transaction annulee est remplace au passage suivant. Le fichier est
+ * synchronise sur disque (fsync du fichier, puis du repertoire apres son
+ * renommage) avant de rendre la main: la suppression des lignes n'est
+ * validee qu'apres une archive durable.
+ */
+@Component
+public class RetentionArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionArchiver.class);
+
+    static final String FORMAT = "tca/1";
+    static final String EXTENSION = ".tca";
+
+    public static final List<Column> SEARCH_EVENT_COLUMNS = List.of(
+            new Column("id", ColumnType.LONG),
+            new Column("session_id", ColumnType.UUID),
+            new Column("user_id", ColumnType.LONG),
+            new Column("brand_id", ColumnType.LONG),
+            new Column("model_id", ColumnType.LONG),
+            new Column("variant_id", ColumnType.LONG),
+            new Column("region", ColumnType.STRING),
+            new Column("fuel_type", ColumnType.STRING),
+            new Column("is_new_vehicle", ColumnType.BOOLEAN),
+            new Column("first_registration_date", ColumnType.DATE),
+            new Column("search_type", ColumnType.STRING),
+            new Column("device_type", ColumnType.STRING),
+            new Column("referrer_source", ColumnType.STRING),
+            new Column("user_agent_hash", ColumnType.STRING),
+            new Column("language", ColumnType.STRING),
+            new Column("sample_weight", ColumnType.INT),
+            new Column("created_at", ColumnType.TIMESTAMP),
+            new Column("ingested_at", ColumnType.TIMESTAMP));
+
+    public static final List<Column> TAX_CALCULATION_COLUMNS = List.of(
+            new Column("id", ColumnType.LONG),
+            new Column("search_event_id", ColumnType.LONG),
+            new Column("variant_id", ColumnType.LONG),
+            new Column("submission_id", ColumnType.LONG),
+            new Column("region", ColumnType.STRING),
+            new Column("tax_type", ColumnType.STRING),
+            new Column("calculated_amount", ColumnType.DECIMAL),
+            new Column("power_kw", ColumnType.INT),
+            new Column("cv_fiscal", ColumnType.INT),
+            new Column("co2_gkm", ColumnType.INT),
+            new Column("vehicle_age_months", ColumnType.INT),
+            new Column("is_exempt", ColumnType.BOOLEAN),
+            new Column("created_at", ColumnType.TIMESTAMP),
+            new Column("ingested_at", ColumnType.TIMESTAMP));
+
+    private static final Map<String, List<Column>> SCHEMAS = Map.of(
+            DailyAggregateRollup.SEARCH_EVENTS, SEARCH_EVENT_COLUMNS,
+            DailyAggregateRollup.TAX_CALCULATIONS, TAX_CALCULATION_COLUMNS);
+
+    private static final String CREATED_AT = "created_at";
+
+    /** Lignes triees par id: deltas minimaux sur id et created_at */
+    private static final String SELECT = "SELECT %s FROM %s WHERE %s ORDER BY id";
+
+    private final JdbcTemplate cursorTemplate;
+    private final AnalyticsReportRepository reportRepository;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+
+    @Autowired
+    public RetentionArchiver(
+            DataSource dataSource,
+            AnalyticsReportRepository reportRepository,
+            ObjectMapper objectMapper,
+            @Value("${app.analytics.archive.directory:./analytics-archive}") String directory,
+            @Value("${app.analytics.archive.fetch-size:10000}") int fetchSize) {
+        this(cursorTemplate(dataSource, fetchSize), reportRepository, objectMapper, Paths.get(directory));
+    }
+
+    RetentionArchiver(JdbcTemplate cursorTemplate, AnalyticsReportRepository reportRepository,
+                      ObjectMapper objectMapper, Path directory) {
+        this.cursorTemplate = cursorTemplate;
+        this.reportRepository = reportRepository;
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+    }
+
+    private static JdbcTemplate cursorTemplate(DataSource dataSource, int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("app.analytics.archive.fetch-size must be positive");
+        }
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(fetchSize);
+        return template;
+    }
+
+    /**
+     * Archive toutes les lignes d'une partition avant sa suppression.
+     *
+     * @return null si la partition est vide
+     */
+    public ArchivedFile archivePartition(String table, String partition) {
+        return archive(table, partition, partition, "TRUE");
+    }
+
+    /**
+     * Archive les lignes expirees et deja agregees d'une table (partition DEFAULT).
+     *
+     * @return null si aucune ligne
+     */
+    public ArchivedFile archiveExpired(String table, String source, String name,
+                                       LocalDateTime createdBefore, LocalDateTime ingestedBefore) {
+        return archive(table, source, name, "created_at < ? AND ingested_at < ?", createdBefore, ingestedBefore);
+    }
+
+    private ArchivedFile archive(String table, String source, String name, String condition, Object... params) {
+        List<Column> columns = schema(table);
+        String sql = SELECT.formatted(
+                columns.stream().map(Column::name).collect(Collectors.joining(", ")), source, condition);
+        int createdAt = indexOf(columns, CREATED_AT);
+        Path file = directory.resolve(table).resolve(name + EXTENSION);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), name, ".tmp");
+            try {
+                MessageDigest digest = sha256();
+                LocalDateTime[] range = new LocalDateTime[2];
+                long rows;
+                try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest);
+                     ColumnarArchive.Writer writer = ColumnarArchive.open(out, columns)) {
+                    cursorTemplate.query(sql, new ArgumentPreparedStatementSetter(params), (RowCallbackHandler) rs -> {
+                        Object[] row = new Object[columns.size()];
+                        for (int c = 0; c < row.length; c++) {
+                            row[c] = rs.getObject(columns.get(c).name(), columns.get(c).type().javaType());
+                        }
+                        LocalDateTime created = (LocalDateTime) row[createdAt];
+                        if (range[0] == null || created.isBefore(range[0])) {
+                            range[0] = created;
+                        }
+                        if (range[1] == null || created.isAfter(range[1])) {
+                            range[1] = created;
+                        }
+                        try {
+                            writer.write(row);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    rows = writer.rows();
+                }
+                if (rows == 0) {
+                    Files.delete(temp);
+                    return null;
+                }
+                sync(temp);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                sync(file.getParent());
+                ArchivedFile archived = new ArchivedFile(table, source,
+                        directory.relativize(file).toString(), rows, Files.size(file),
+                        HexFormat.of().formatHex(digest.digest()),
+                        range[0].toLocalDate(), range[1].toLocalDate());
+                record(archived, columns);
+                log.info("Archived {} rows of {} to {} ({} bytes)", rows, source, file, archived.bytes());
+                return archived;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive " + source + " to " + file, e);
+        }
+    }
+
+    /**
+     * fsync d'un fichier, ou d'un repertoire pour rendre durable un renommage.
+     */
+    private static void sync(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private void record(ArchivedFile archived, List<Column> columns) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("format", FORMAT);
+        metadata.put("row_group_size", ColumnarArchive.ROW_GROUP_SIZE);
+        metadata.put("columns", columns.stream().map(Column::name).toList());
+
+        AnalyticsReport report = new AnalyticsReport();
+        report.setReportType(ReportType.data_retention);
+        report.setTitle("Archive " + archived.source());
+        report.setDescription("Lignes brutes de " + archived.table() + " archivees avant purge");
+        report.setPeriodStart(archived.firstDay());
+        report.setPeriodEnd(archived.lastDay());
+        report.setReportData(objectMapper.writeValueAsString(archived));
+        report.setMetadata(objectMapper.writeValueAsString(metadata));
+        reportRepository.save(report);
+    }
+
+    /**
+     * Relit les archives d'une table pour une requete ponctuelle: chaque ligne
+     * creee entre from et to (inclus) est passee au consumer, avec les seules
+     * colonnes demandees. Le SHA-256 de chaque fichier est verifie avant lecture.
+     *
+     * @return Nombre de lignes passees au consumer
+     */
+    public long scan(String table, LocalDate from, LocalDate to, List<String> columns, Consumer<Object[]> consumer) {
+        schema(table);
+        List<String> projection = new ArrayList<>(columns);
+        projection.add(CREATED_AT);
+        int createdAt = columns.size();
+        long[] matched = {0};
+
+        for (ArchivedFile archived : archives(table)) {
+            if (archived.lastDay().isBefore(from) || archived.firstDay().isAfter(to)) {
+                continue;
+            }
+            Path file = directory.resolve(archived.file());
+            verify(file, archived.sha256());
+            try (InputStream in = Files.newInputStream(file)) {
+                ColumnarArchive.scan(in, projection, row -> {
+                    LocalDate day = ((LocalDateTime) row[createdAt]).toLocalDate();
+                    if (!day.isBefore(from) && !day.isAfter(to)) {
+                        consumer.accept(Arrays.copyOf(row, createdAt));
+                        matched[0]++;
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read archive " + file, e);
+            }
+        }
+        return matched[0];
+    }
+
+    /**
+     * Archives d'une table enregistrees dans analytics_reports, de la plus ancienne a la plus recente.
+     */
+    public List<ArchivedFile> archives(String table) {
+        List<ArchivedFile> archives = new ArrayList<>();
+        for (AnalyticsReport report : reportRepository.findRetentionReports().reversed()) {
+            try {
+                ArchivedFile archived = objectMapper.readValue(report.getReportData(), ArchivedFile.class);
+                if (table.equals(archived.table()) && archived.file() != null) {
+                    archives.add(archived);
+                }
+            } catch (JacksonException e) {
+                log.debug("Retention report {} does not describe an archive file: {}", report.getId(), e.getMessage());
+            }
+        }
+        return archives;
+    }
+
+    private static void verify(Path file, String expected) {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive " + file, e);
+        }
+        if (!HexFormat.of().formatHex(digest.digest()).equals(expected)) {
+            throw new IllegalStateException("Checksum mismatch for archive " + file);
+        }
+    }
+
+    private static List<Column> schema(String table) {
+        List<Column> columns = SCHEMAS.get(table);
+        if (columns == null) {
+            throw new IllegalArgumentException("No archive schema for table " + table);
+        }
+        return columns;
+    }
+
+    private static int indexOf(List<Column> columns, String name) {
+        for (int c = 0; c < columns.size(); c++) {
+            if (columns.get(c).name().equals(name)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Missing column " + name);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Fichier d'archive, tel qu'enregistre dans report_data du rapport data_retention.
+     *
+     * @param source   Table ou partition archivee
+     * @param file     Chemin relatif au repertoire des archives
+     * @param rows     Lignes archivees
+     * @param firstDay Premier jour (created_at) archive
+     * @param lastDay  Dernier jour (created_at) archive
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record ArchivedFile(
+            String table,
+            String source,
+            String file,
+            @JsonProperty("total_events_archived") long rows,
+            long bytes,
+            String sha256,
+            @JsonProperty("first_day") LocalDate firstDay,
+            @JsonProperty("last_day") LocalDate lastDay
+    ) {
+    }
+}
@@ -0,0 +1,238 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Niveaux d'agregation de daily_aggregates et requetes de rollup associees.
+ *
+ * Une colonne hors du niveau vaut NULL ("toutes valeurs"). Les colonnes
+ * obligatoires d'un niveau ne sont jamais NULL: un evenement sans region
+ * compte dans l'agregat global mais dans aucun agregat regional. Le niveau
+ * carburant garde is_new_vehicle NULL quand il est inconnu, le niveau
+ * appareil la region.
+ *
+ * Marque, modele et carburant sont completes par la variante quand
+ * l'evenement ne les porte pas (cas des calculs).
+ *
+ * Recherches et calculs somment sample_weight: une recherche echantillonnee
+ * sous charge (AdaptiveSampler) compte pour les evenements qu'elle represente.
+ * Les sessions uniques ne sont pas ponderees: sous echantillonnage, ce sont
+ * les sessions dont au moins un evenement a ete garde.
+ *
+ * Les sessions uniques des niveaux global, region et marque viennent de
+ * leur sketch HyperLogLog (SessionSketchRollup); les autres niveaux les
+ * comptent exactement.
+ */
+enum RollupLevel {
+
+    global(List.of(), List.of(), true),
+    region(List.of("region"), List.of(), true),
+    brand(List.of("region", "brand_id"), List.of(), true),
+    model(List.of("region", "brand_id", "model_id"), List.of(), false),
+    fuel(List.of("region", "fuel_type"), List.of("is_new_vehicle"), false),
+    device(List.of("device_type"), List.of("region"), false);
+
+    /** Colonnes de dimension de daily_aggregates et leur type SQL */
+    private static final Map<String, String> DIMENSIONS = new LinkedHashMap<>();
+
+    static {
+        DIMENSIONS.put("region", "region");
+        DIMENSIONS.put("brand_id", "bigint");
+        DIMENSIONS.put("model_id", "bigint");
+        DIMENSIONS.put("fuel_type", "fuel_type");
+        DIMENSIONS.put("is_new_vehicle", "boolean");
+        DIMENSIONS.put("device_type", "device_type");
+    }
+
+    private static final String CONFLICT_TARGET = "(date, " + String.join(", ", DIMENSIONS.keySet()) + ")";
+
+    static final String ENRICHED_SEARCH_EVENTS = """
+            SELECT se.session_id, se.search_type, se.sample_weight, se.created_at, se.ingested_at, se.region,
+                COALESCE(se.brand_id, m.brand_id) AS brand_id,
+                COALESCE(se.model_id, v.model_id) AS model_id,
+                COALESCE(se.fuel_type, v.fuel) AS fuel_type,
+                se.is_new_vehicle, se.device_type
+            FROM search_events se
+            LEFT JOIN variants v ON v.id = se.variant_id
+            LEFT JOIN models m ON m.id = v.model_id
+            """;
+
+    static final String ENRICHED_TAX_CALCULATIONS = """
+            SELECT tc.calculated_amount, tc.tax_type, tc.created_at, tc.ingested_at, tc.region,
+                COALESCE(se.brand_id, m.brand_id) AS brand_id,
+                COALESCE(se.model_id, v.model_id) AS model_id,
+                COALESCE(se.fuel_type, v.fuel) AS fuel_type,
+                se.is_new_vehicle, se.device_type
+            FROM tax_calculations tc
+            LEFT JOIN search_events se ON se.id = tc.search_event_id
+            LEFT JOIN variants v ON v.id = COALESCE(tc.variant_id, se.variant_id)
+            LEFT JOIN models m ON m.id = v.model_id
+            """;
+
+    private final List<String> required;
+    private final List<String> columns;
+    private final boolean sessionSketch;
+
+    RollupLevel(List<String> required, List<String> optional, boolean sessionSketch) {
+        this.required = required;
+        List<String> all = new ArrayList<>(required);
+        all.addAll(optional);
+        this.columns = List.copyOf(all);
+        this.sessionSketch = sessionSketch;
+    }
+
+    /**
+     * Sessions uniques estimees par sketch HyperLogLog plutot que comptees.
+     */
+    boolean hasSessionSketch() {
+        return sessionSketch;
+    }
+
+    /**
+     * Ajoute les recherches chargees dans [:from, :to) a leurs agregats du jour.
+     *
+     * Une session n'est comptee dans unique_sessions que si elle n'apparait
+     * pas deja, pour ce jour et ce groupe, dans les lignes des passages
+     * precedents (ingested_at < :from): le compteur reste additif.
+     * Aux niveaux avec sketch, unique_sessions est laisse a SessionSketchRollup.
+     */
+    String searchEventsUpsert() {
+        if (sessionSketch) {
+            return """
+                    INSERT INTO daily_aggregates (date, region, brand_id, model_id, fuel_type, is_new_vehicle, device_type,
+                        search_count, calculation_count)
+                    SELECT %s,
+                        SUM(batch.sample_weight),
+                        COALESCE(SUM(batch.sample_weight) FILTER (WHERE batch.search_type = 'calculate'), 0)
+                    FROM (%s) batch
+                    WHERE batch.ingested_at >= :from AND batch.ingested_at < :to%s
+                    GROUP BY 1, 2, 3, 4, 5, 6, 7
+                    ON CONFLICT %s DO UPDATE SET
+                        search_count = daily_aggregates.search_count + EXCLUDED.search_count,
+                        calculation_count = daily_aggregates.calculation_count + EXCLUDED.calculation_count
+                    """.formatted(selectDimensions("batch"), ENRICHED_SEARCH_EVENTS,
+                    requiredFilter("batch"), CONFLICT_TARGET);
+        }
+        String sameGroup = columns.stream()
+                .map(column -> "\n            AND p." + column + " IS NOT DISTINCT FROM b." + column)
+                .collect(Collectors.joining());
+        return """
+                INSERT INTO daily_aggregates (date, region, brand_id, model_id, fuel_type, is_new_vehicle, device_type,
+                    search_count, calculation_count, unique_sessions)
+                SELECT %s,
+                    SUM(batch.sample_weight),
+                    COALESCE(SUM(batch.sample_weight) FILTER (WHERE batch.search_type = 'calculate'), 0),
+                    COUNT(DISTINCT batch.session_id) FILTER (WHERE batch.first_in_group)
+                FROM (
+                    SELECT b.*, NOT EXISTS (
+                        SELECT 1 FROM (%s) p
+                        WHERE p.session_id = b.session_id
+                            AND p.ingested_at < :from
+                            AND p.created_at >= CAST(b.created_at AS date)
+                            AND p.created_at < CAST(b.created_at AS date) + 1%s
+                    ) AS first_in_group
+                    FROM (%s) b
+                    WHERE b.ingested_at >= :from AND b.ingested_at < :to%s
+                ) batch
+                GROUP BY 1, 2, 3, 4, 5, 6, 7
+                ON CONFLICT %s DO UPDATE SET
+                    search_count = daily_aggregates.search_count + EXCLUDED.search_count,
+                    calculation_count = daily_aggregates.calculation_count + EXCLUDED.calculation_count,
+                    unique_sessions = daily_aggregates.unique_sessions + EXCLUDED.unique_sessions
+                """.formatted(selectDimensions("batch"), ENRICHED_SEARCH_EVENTS, sameGroup,
+                ENRICHED_SEARCH_EVENTS, requiredFilter("b"), CONFLICT_TARGET);
+    }
+
+    /**
+     * Ajoute les montants calcules charges dans [:from, :to) a leurs agregats du jour.
+     * Somme et nombre sont cumules pour recalculer la moyenne exacte.
+     */
+    String taxCalculationsUpsert() {
+        return """
+                INSERT INTO daily_aggregates (date, region, brand_id, model_id, fuel_type, is_new_vehicle, device_type,
+                    tax_amount_sum, tax_amount_count, avg_tax_amount, min_tax_amount, max_tax_amount)
+                SELECT %s,
+                    COALESCE(SUM(batch.calculated_amount), 0),
+                    COUNT(batch.calculated_amount),
+                    ROUND(AVG(batch.calculated_amount), 2),
+                    MIN(batch.calculated_amount),
+                    MAX(batch.calculated_amount)
+                FROM (%s) batch
+                WHERE batch.ingested_at >= :from AND batch.ingested_at < :to%s
+                GROUP BY 1, 2, 3, 4, 5, 6, 7
+                ON CONFLICT %s DO UPDATE SET
+                    tax_amount_sum = daily_aggregates.tax_amount_sum + EXCLUDED.tax_amount_sum,
+                    tax_amount_count = daily_aggregates.tax_amount_count + EXCLUDED.tax_amount_count,
+                    avg_tax_amount = ROUND((daily_aggregates.tax_amount_sum + EXCLUDED.tax_amount_sum)
+                        / NULLIF(daily_aggregates.tax_amount_count + EXCLUDED.tax_amount_count, 0), 2),
+                    min_tax_amount = LEAST(daily_aggregates.min_tax_amount, EXCLUDED.min_tax_amount),
+                    max_tax_amount = GREATEST(daily_aggregates.max_tax_amount, EXCLUDED.max_tax_amount)
+                """.formatted(selectDimensions("batch"), ENRICHED_TAX_CALCULATIONS,
+                requiredFilter("batch"), CONFLICT_TARGET);
+    }
+
+    /**
+     * Jour puis colonnes de dimension (NULL type hors du niveau), dans l'ordre de CONFLICT_TARGET.
+     */
+    private String selectDimensions(String alias) {
+        StringBuilder select = new StringBuilder("CAST(" + alias + ".created_at AS date)");
+        DIMENSIONS.forEach((column, type) -> select.append(", ").append(columns.contains(column)
+                ? alias + "." + column
+                : "CAST(NULL AS " + type + ")"));
+        return select.toString();
+    }
+
+    /**
+     * Colonne la plus fine du niveau, qui distingue ses groupes d'un meme
+     * jour hors colonnes facultatives (null au niveau global).
+     */
+    String groupColumn() {
+        return required.isEmpty() ? null : required.get(required.size() - 1);
+    }
+
+    /**
+     * Lignes de daily_aggregates de ce niveau: colonnes obligatoires
+     * renseignees, colonnes hors du niveau NULL.
+     */
+    String aggregateRows() {
+        return DIMENSIONS.keySet().stream()
+                .filter(column -> !columns.contains(column) || required.contains(column))
+                .map(column -> column + (required.contains(column) ? " IS NOT NULL" : " IS NULL"))
+                .collect(Collectors.joining(" AND "));
+    }
+
+    /**
+     * Ensemble de regroupement du niveau (GROUPING SETS): ses colonnes obligatoires.
+     */
+    String groupingSet(String alias) {
+        return required.stream()
+                .map(column -> alias + "." + column)
+                .collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    /**
+     * Valeur de GROUPING(colonnes) sur les lignes de ce niveau: un bit a 1
+     * par colonne hors du niveau, le dernier argument etant le bit de poids
+     * faible.
+     */
+    int grouping(List<String> columns) {
+        int grouping = 0;
+        for (String column : columns) {
+            grouping = (grouping << 1) | (required.contains(column) ? 0 : 1);
+        }
+        return grouping;
+    }
+
+    /**
+     * Evenements bruts (alias donne) retenus par ce niveau, precedes de " AND ".
+     */
+    String requiredFilter(String alias) {
+        return required.stream()
+                .map(column -> " AND " + alias + "." + column + " IS NOT NULL")
+                .collect(Collectors.joining());
+    }
+}
@@ -0,0 +1,200 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Bloc de 65 536 recherches stockees en colonnes (RecentSearchStore).
+ *
+ * Colonnes: minute de l'evenement (minutes depuis 1970 en heure locale),
+ * identifiants de marque, modele et variante (0 = inconnu), poids
+ * d'echantillonnage et, par dimension enum, le code de dictionnaire
+ * (SliceDimension.CODED). Chaque code present a un bitmap des lignes qui le
+ * portent, alloue a sa premiere occurrence: un filtre est le OU des bitmaps
+ * des valeurs retenues, combine mot par mot (64 lignes a la fois) aux
+ * autres filtres. Les minutes extremes du bloc ecartent les blocs hors
+ * periode sans les parcourir.
+ *
+ * Un seul thread ecrit (append). size est publie apres les donnees de la
+ * ligne: un lecteur qui lit size d'abord voit toutes les lignes en dessous,
+ * et ne lit que celles-la.
+ */
+final class SearchColumnBlock {
+
+    static final int ROWS = 1 << 16;
+
+    static final int WORDS = ROWS / Long.SIZE;
+
+    /** Octets alloues par un bloc plein, bitmaps de tous les codes compris (budget memoire) */
+    static final long BYTES;
+
+    static {
+        long codes = SliceDimension.CODED.stream().mapToLong(dimension -> dimension.dictionary().length).sum();
+        long bytesPerRow = Integer.BYTES * (1L + SliceDimension.IDS.size())
+                + SliceDimension.CODED.size()
+                + Short.BYTES;
+        BYTES = ROWS * bytesPerRow + codes * WORDS * Long.BYTES;
+    }
+
+    private final int[] minutes = new int[ROWS];
+    private final int[][] ids = new int[SliceDimension.IDS.size()][ROWS];
+    private final byte[][] codes = new byte[SliceDimension.CODED.size()][ROWS];
+    private final short[] weights = new short[ROWS];
+    private final long[][][] bitmaps = new long[SliceDimension.CODED.size()][][];
+    private final int[] maxIds = new int[SliceDimension.IDS.size()];
+    private int minMinute = Integer.MAX_VALUE;
+    private int maxMinute = Integer.MIN_VALUE;
+    private volatile int size;
+
+    SearchColumnBlock() {
+        for (int c = 0; c < bitmaps.length; c++) {
+            bitmaps[c] = new long[SliceDimension.CODED.get(c).dictionary().length + 1][];
+        }
+    }
+
+    /**
+     * Ajoute une ligne (thread d'ecriture uniquement).
+     *
+     * @return false si le bloc est plein
+     */
+    boolean append(int minute, int[] rowCodes, int[] rowIds, int weight) {
+        int row = size;
+        if (row == ROWS) {
+            return false;
+        }
+        minutes[row] = minute;
+        for (int c = 0; c < codes.length; c++) {
+            int code = rowCodes[c];
+            codes[c][row] = (byte) code;
+            if (code != 0) {
+                long[] bitmap = bitmaps[c][code];
+                if (bitmap == null) {
+                    bitmap = new long[WORDS];
+                    bitmaps[c][code] = bitmap;
+                }
+                bitmap[row >>> 6] |= 1L << row;
+            }
+        }
+        for (int i = 0; i < ids.length; i++) {
+            ids[i][row] = rowIds[i];
+            maxIds[i] = Math.max(maxIds[i], rowIds[i]);
+        }
+        weights[row] = (short) weight;
+        minMinute = Math.min(minMinute, minute);
+        maxMinute = Math.max(maxMinute, minute);
+        size = row + 1;
+        return true;
+    }
+
+    /**
+     * Nombre de lignes publiees; a lire avant toute autre donnee du bloc.
+     */
+    int size() {
+        return size;
+    }
+
+    int minMinute() {
+        return minMinute;
+    }
+
+    int maxMinute() {
+        return maxMinute;
+    }
+
+    int maxId(int column) {
+        return maxIds[column];
+    }
+
+    int minute(int row) {
+        return minutes[row];
+    }
+
+    int code(int column, int row) {
+        return codes[column][row];
+    }
+
+    int id(int column, int row) {
+        return ids[column][row];
+    }
+
+    int weight(int row) {
+        return weights[row];
+    }
+
+    /**
+     * Lignes [0, size) retenues par les filtres.
+     *
+     * @param allowedCodes Par dimension encodee, codes retenus (null = pas de filtre)
+     * @param allowedIds   Par colonne d'identifiant, identifiants retenus tries (null = pas de filtre)
+     * @param fromMinute   Premiere minute retenue
+     * @param toMinute     Minute exclue
+     * @return Bitmap des lignes retenues, null si aucune
+     */
+    long[] select(int size, boolean[][] allowedCodes, int[][] allowedIds, int fromMinute, int toMinute) {
+        if (size == 0 || maxMinute < fromMinute || minMinute >= toMinute) {
+            return null;
+        }
+        int words = (size + Long.SIZE - 1) >>> 6;
+        long[] selected = new long[WORDS];
+        Arrays.fill(selected, 0, words, -1L);
+        if ((size & 63) != 0) {
+            selected[words - 1] = (1L << size) - 1;
+        }
+
+        long[] union = new long[WORDS];
+        for (int c = 0; c < allowedCodes.length; c++) {
+            if (allowedCodes[c] == null) {
+                continue;
+            }
+            Arrays.fill(union, 0, words, 0L);
+            boolean any = false;
+            for (int code = 1; code < allowedCodes[c].length; code++) {
+                long[] bitmap = allowedCodes[c][code] ? bitmaps[c][code] : null;
+                if (bitmap != null) {
+                    any = true;
+                    for (int w = 0; w < words; w++) {
+                        union[w] |= bitmap[w];
+                    }
+                }
+            }
+            if (!any) {
+                return null;
+            }
+            for (int w = 0; w < words; w++) {
+                selected[w] &= union[w];
+            }
+        }
+
+        boolean timeFilter = minMinute < fromMinute || maxMinute >= toMinute;
+        boolean idFilter = false;
+        for (int[] allowed : allowedIds) {
+            idFilter |= allowed != null;
+        }
+        boolean any = false;
+        for (int w = 0; w < words; w++) {
+            long bits = selected[w];
+            if (timeFilter || idFilter) {
+                for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+                    int row = (w << 6) + Long.numberOfTrailingZeros(remaining);
+                    if (!retained(row, allowedIds, timeFilter, fromMinute, toMinute)) {
+                        bits &= ~Long.lowestOneBit(remaining);
+                    }
+                }
+                selected[w] = bits;
+            }
+            any |= bits != 0;
+        }
+        return any ? selected : null;
+    }
+
+    private boolean retained(int row, int[][] allowedIds, boolean timeFilter, int fromMinute, int toMinute) {
+        if (timeFilter && (minutes[row] < fromMinute || minutes[row] >= toMinute)) {
+            return false;
+        }
+        for (int i = 0; i < allowedIds.length; i++) {
+            if (allowedIds[i] != null && Arrays.binarySearch(allowedIds[i], ids[i][row]) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
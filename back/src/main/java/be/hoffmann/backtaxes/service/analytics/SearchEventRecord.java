@@ -0,0 +1,77 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Ligne search_events en attente d'ecriture.
+ * createdAt est l'instant de l'evenement, pas celui de l'insertion par lot.
+ * sampleWeight est le nombre d'evenements que la ligne represente (1 hors
+ * echantillonnage, voir AdaptiveSampler).
+ */
+public record SearchEventRecord(
+        UUID sessionId,
+        Long userId,
+        Long brandId,
+        Long modelId,
+        Long variantId,
+        Region region,
+        FuelType fuelType,
+        Boolean isNewVehicle,
+        LocalDate firstRegistrationDate,
+        SearchType searchType,
+        DeviceType deviceType,
+        String referrerSource,
+        String userAgentHash,
+        String language,
+        Instant createdAt,
+        int sampleWeight
+) implements AnalyticsEvent {
+
+    public SearchEventRecord {
+        if (sampleWeight < 1) {
+            throw new IllegalArgumentException("Sample weight must be positive: " + sampleWeight);
+        }
+    }
+
+    /**
+     * Evenement non echantillonne (poids 1).
+     */
+    public SearchEventRecord(UUID sessionId, Long userId, Long brandId, Long modelId, Long variantId, Region region,
+                             FuelType fuelType, Boolean isNewVehicle, LocalDate firstRegistrationDate,
+                             SearchType searchType, DeviceType deviceType, String referrerSource,
+                             String userAgentHash, String language, Instant createdAt) {
+        this(sessionId, userId, brandId, modelId, variantId, region, fuelType, isNewVehicle, firstRegistrationDate,
+                searchType, deviceType, referrerSource, userAgentHash, language, createdAt, 1);
+    }
+
+    @Override
+    public SearchEventRecord searchEvent() {
+        return this;
+    }
+
+    /**
+     * Meme evenement, complete des informations derivees des en-tetes du client.
+     */
+    public SearchEventRecord withClient(DeviceType deviceType, String referrerSource, String userAgentHash,
+                                        String language) {
+        return new SearchEventRecord(sessionId, userId, brandId, modelId, variantId, region, fuelType,
+                isNewVehicle, firstRegistrationDate, searchType, deviceType, referrerSource,
+                userAgentHash, language, createdAt, sampleWeight);
+    }
+
+    /**
+     * Meme evenement, representant sampleWeight evenements.
+     */
+    public SearchEventRecord withSampleWeight(int sampleWeight) {
+        return new SearchEventRecord(sessionId, userId, brandId, modelId, variantId, region, fuelType,
+                isNewVehicle, firstRegistrationDate, searchType, deviceType, referrerSource,
+                userAgentHash, language, createdAt, sampleWeight);
+    }
+}
@@ -0,0 +1,148 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Mise a jour des sketches de sessions (session_sketch) de daily_aggregates.
+ *
+ * Appele par DailyAggregateRollup dans la transaction du rollup: les
+ * sessions des recherches chargees dans [from, to) sont ajoutees aux
+ * sketches global, region et region + marque de leur jour, et
+ * unique_sessions prend la valeur estimee. Ajouter deux fois une session a
+ * un sketch est sans effet: les jours agreges avant l'introduction des
+ * sketches sont reconstruits une fois depuis search_events.
+ */
+@Component
+public class SessionSketchRollup {
+
+    private static final String SELECT_SESSIONS = """
+            SELECT DISTINCT CAST(e.created_at AS date) AS day, e.region, e.brand_id, e.session_id
+            FROM (%s) e
+            WHERE %s
+            """;
+
+    private static final String NEW_ROWS = "e.ingested_at >= :from AND e.ingested_at < :to";
+
+    private static final String ROWS_OF_DAYS = "e.ingested_at < :from AND CAST(e.created_at AS date) IN (:days)";
+
+    private static final String SKETCH_LEVELS = """
+            model_id IS NULL AND fuel_type IS NULL AND is_new_vehicle IS NULL AND device_type IS NULL
+            """;
+
+    private static final String SELECT_SKETCHES = """
+            SELECT date, region, brand_id, session_sketch FROM daily_aggregates
+            WHERE date IN (:days) AND session_sketch IS NOT NULL AND
+            """ + SKETCH_LEVELS;
+
+    private static final String SELECT_DAYS_WITHOUT_SKETCH = """
+            SELECT DISTINCT date FROM daily_aggregates
+            WHERE date IN (:days) AND session_sketch IS NULL AND unique_sessions > 0 AND
+            """ + SKETCH_LEVELS;
+
+    private static final String UPSERT_SKETCH = """
+            INSERT INTO daily_aggregates (date, region, brand_id, model_id, fuel_type, is_new_vehicle, device_type,
+                unique_sessions, session_sketch)
+            VALUES (:day, CAST(:region AS region), CAST(:brandId AS bigint), NULL, NULL, NULL, NULL, :sessions, :sketch)
+            ON CONFLICT (date, region, brand_id, model_id, fuel_type, is_new_vehicle, device_type) DO UPDATE SET
+                unique_sessions = EXCLUDED.unique_sessions,
+                session_sketch = EXCLUDED.session_sketch
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public SessionSketchRollup(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Ajoute les sessions des recherches chargees dans [from, to) a leurs sketches.
+     *
+     * @return Nombre de sketches ecrits
+     */
+    public int update(LocalDateTime from, LocalDateTime to) {
+        Map<SketchKey, HyperLogLog> sketches = new HashMap<>();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        jdbcTemplate.query(SELECT_SESSIONS.formatted(RollupLevel.ENRICHED_SEARCH_EVENTS, NEW_ROWS), params,
+                (RowCallbackHandler) rs -> addSession(sketches, rs));
+        if (sketches.isEmpty()) {
+            return 0;
+        }
+
+        Set<LocalDate> days = new TreeSet<>();
+        sketches.keySet().forEach(key -> days.add(key.day()));
+        params.addValue("days", days);
+
+        List<LocalDate> daysWithoutSketch = jdbcTemplate.queryForList(SELECT_DAYS_WITHOUT_SKETCH, params, LocalDate.class);
+        if (!daysWithoutSketch.isEmpty()) {
+            jdbcTemplate.query(SELECT_SESSIONS.formatted(RollupLevel.ENRICHED_SEARCH_EVENTS, ROWS_OF_DAYS),
+                    new MapSqlParameterSource()
+                            .addValue("from", from)
+                            .addValue("days", daysWithoutSketch),
+                    (RowCallbackHandler) rs -> addSession(sketches, rs));
+        }
+
+        jdbcTemplate.query(SELECT_SKETCHES, params, (RowCallbackHandler) rs -> {
+            HyperLogLog sketch = sketches.get(key(rs, "date"));
+            if (sketch != null) {
+                sketch.merge(HyperLogLog.fromBytes(rs.getBytes("session_sketch")));
+            }
+        });
+
+        SqlParameterSource[] batch = sketches.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("day", entry.getKey().day())
+                        .addValue("region", entry.getKey().region() != null ? entry.getKey().region().name() : null)
+                        .addValue("brandId", entry.getKey().brandId())
+                        .addValue("sessions", (int) Math.min(Integer.MAX_VALUE, entry.getValue().estimate()))
+                        .addValue("sketch", entry.getValue().toBytes()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPSERT_SKETCH, batch);
+        return batch.length;
+    }
+
+    /**
+     * Ajoute une session aux sketches global, region et region + marque de son jour.
+     */
+    private static void addSession(Map<SketchKey, HyperLogLog> sketches, ResultSet rs) throws SQLException {
+        SketchKey key = key(rs, "day");
+        UUID session = rs.getObject("session_id", UUID.class);
+        sketches.computeIfAbsent(new SketchKey(key.day(), null, null), k -> new HyperLogLog()).add(session);
+        if (key.region() != null) {
+            sketches.computeIfAbsent(new SketchKey(key.day(), key.region(), null), k -> new HyperLogLog()).add(session);
+            if (key.brandId() != null) {
+                sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(session);
+            }
+        }
+    }
+
+    private static SketchKey key(ResultSet rs, String dayColumn) throws SQLException {
+        String region = rs.getString("region");
+        return new SketchKey(rs.getObject(dayColumn, LocalDate.class),
+                region != null ? Region.valueOf(region) : null,
+                rs.getObject("brand_id", Long.class));
+    }
+
+    /**
+     * Agregat porteur d'un sketch: jour, region (null = toutes), marque (null = toutes).
+     */
+    private record SketchKey(LocalDate day, Region region, Long brandId) {
+    }
+}
@@ -0,0 +1,56 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.EuroNorm;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+
+import java.util.List;
+
+/**
+ * Dimensions de regroupement des recherches recentes (RecentSearchStore).
+ *
+ * Les dimensions enum sont encodees par dictionnaire (ordinal + 1, 0 =
+ * inconnu); marque, modele et variante sont des identifiants; hour, day,
+ * week (lundi) et month decoupent l'heure locale de l'evenement.
+ */
+public enum SliceDimension {
+
+    region,
+    fuel_type,
+    device_type,
+    search_type,
+    euro_norm,
+    brand,
+    model,
+    variant,
+    hour,
+    day,
+    week,
+    month;
+
+    /** Dimensions encodees par dictionnaire, dans l'ordre des colonnes de SearchColumnBlock */
+    static final List<SliceDimension> CODED = List.of(region, fuel_type, device_type, search_type, euro_norm);
+
+    /** Dimensions identifiants, dans l'ordre des colonnes de SearchColumnBlock */
+    static final List<SliceDimension> IDS = List.of(brand, model, variant);
+
+    /**
+     * Valeurs du dictionnaire d'une dimension encodee (code = indice + 1).
+     */
+    Enum<?>[] dictionary() {
+        return switch (this) {
+            case region -> Region.values();
+            case fuel_type -> FuelType.values();
+            case device_type -> DeviceType.values();
+            case search_type -> SearchType.values();
+            case euro_norm -> EuroNorm.values();
+            default -> throw new IllegalStateException(this + " is not dictionary encoded");
+        };
+    }
+
+    public boolean isTime() {
+        return this == hour || this == day || this == week || this == month;
+    }
+}
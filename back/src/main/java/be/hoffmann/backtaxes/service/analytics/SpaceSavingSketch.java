@@ -0,0 +1,201 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Sketch Space-Saving (Metwally et al.): les cles les plus frequentes d'un flux
+ * en memoire bornee.
+ *
+ * Au plus capacity compteurs. Une cle non suivie remplace le compteur le plus
+ * faible et herite de sa valeur: un compteur surestime au plus de la valeur
+ * minimum, et toute cle de frequence superieure a total/capacity est suivie.
+ * Chaque compteur cumule aussi les montants de taxe calcules pour sa cle
+ * (remis a zero quand le compteur change de cle).
+ *
+ * Non thread-safe: utilise sous le verrou de PopularVehicleSketches.
+ */
+final class SpaceSavingSketch {
+
+    private static final int ENTRY_BYTES = 8 + 8 + 4 + 8 + 4 + 8;
+
+    private final int capacity;
+    private final Map<Long, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> byCount = new TreeSet<>(
+            Comparator.comparingLong((Counter counter) -> counter.count).thenComparingLong(counter -> counter.key));
+
+    SpaceSavingSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Sketch capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Ajoute weight occurrences d'une cle.
+     */
+    void add(long key, long weight) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count += weight;
+            byCount.add(counter);
+            return;
+        }
+        long inherited = 0;
+        if (counters.size() >= capacity) {
+            Counter evicted = byCount.pollFirst();
+            counters.remove(evicted.key);
+            inherited = evicted.count;
+        }
+        counter = new Counter(key, inherited + weight);
+        counters.put(key, counter);
+        byCount.add(counter);
+    }
+
+    /**
+     * Cumule un montant calcule pour une cle suivie (ignore sinon).
+     */
+    void addTax(long key, TaxType taxType, long cents) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.addTax(taxType, 1, cents);
+        }
+    }
+
+    Counter get(long key) {
+        return counters.get(key);
+    }
+
+    Collection<Counter> counters() {
+        return counters.values();
+    }
+
+    int size() {
+        return counters.size();
+    }
+
+    /**
+     * Les n compteurs les plus eleves, du plus frequent au moins frequent.
+     */
+    List<Counter> top(int n) {
+        List<Counter> top = new ArrayList<>(Math.min(n, counters.size()));
+        Iterator<Counter> iterator = byCount.descendingIterator();
+        while (top.size() < n && iterator.hasNext()) {
+            top.add(iterator.next());
+        }
+        return top;
+    }
+
+    // ==================== POINT DE CONTROLE ====================
+
+    byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + counters.size() * ENTRY_BYTES);
+        buffer.putInt(counters.size());
+        for (Counter counter : counters.values()) {
+            buffer.putLong(counter.key);
+            buffer.putLong(counter.count);
+            buffer.putInt(counter.tmcCount);
+            buffer.putLong(counter.tmcCents);
+            buffer.putInt(counter.annualCount);
+            buffer.putLong(counter.annualCents);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Ajoute un point de controle a ce sketch (fusion ponderee: un sketch vide
+     * retrouve exactement l'etat sauvegarde si la capacite est la meme).
+     */
+    void merge(byte[] checkpoint) {
+        ByteBuffer buffer = ByteBuffer.wrap(checkpoint);
+        int size = buffer.getInt();
+        for (int i = 0; i < size; i++) {
+            long key = buffer.getLong();
+            long count = buffer.getLong();
+            int tmcCount = buffer.getInt();
+            long tmcCents = buffer.getLong();
+            int annualCount = buffer.getInt();
+            long annualCents = buffer.getLong();
+            add(key, count);
+            Counter counter = counters.get(key);
+            counter.addTax(TaxType.tmc, tmcCount, tmcCents);
+            counter.addTax(TaxType.annual, annualCount, annualCents);
+        }
+    }
+
+    /**
+     * Compteur d'une cle: frequence estimee et montants cumules.
+     */
+    static final class Counter {
+
+        private final long key;
+        private long count;
+        private int tmcCount;
+        private long tmcCents;
+        private int annualCount;
+        private long annualCents;
+
+        private Counter(long key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+
+        private void addTax(TaxType taxType, int occurrences, long cents) {
+            if (taxType == TaxType.tmc) {
+                tmcCount += occurrences;
+                tmcCents += cents;
+            } else {
+                annualCount += occurrences;
+                annualCents += cents;
+            }
+        }
+
+        long key() {
+            return key;
+        }
+
+        long count() {
+            return count;
+        }
+
+        boolean hasTax() {
+            return tmcCount > 0 || annualCount > 0;
+        }
+
+        /** TMC moyenne (null si aucun montant) */
+        BigDecimal avgTaxTmc() {
+            return average(tmcCents, tmcCount);
+        }
+
+        /** Taxe annuelle moyenne (null si aucun montant) */
+        BigDecimal avgTaxAnnual() {
+            return average(annualCents, annualCount);
+        }
+
+        /** Cout fiscal moyen de la premiere annee (TMC + taxe annuelle), critere des classements par taxe */
+        BigDecimal avgFirstYearTax() {
+            BigDecimal tmc = avgTaxTmc();
+            BigDecimal annual = avgTaxAnnual();
+            return (tmc != null ? tmc : BigDecimal.ZERO).add(annual != null ? annual : BigDecimal.ZERO);
+        }
+
+        private static BigDecimal average(long cents, int occurrences) {
+            if (occurrences == 0) {
+                return null;
+            }
+            return BigDecimal.valueOf(cents, 2).divide(BigDecimal.valueOf(occurrences), 2, RoundingMode.HALF_UP);
+        }
+    }
+}
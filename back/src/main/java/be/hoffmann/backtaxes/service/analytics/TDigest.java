@@ -0,0 +1,282 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sketch t-digest (Dunning, "Computing extremely accurate quantiles using
+ * t-digests", 2019): distribution approchee d'un ensemble de valeurs en
+ * memoire bornee.
+ *
+ * Les valeurs sont resumees en centroides (moyenne, poids) dont le poids
+ * maximum depend du rang (fonction d'echelle k1): petits aux extremites,
+ * larges autour de la mediane. Avec la compression par defaut (100), au
+ * plus 100 centroides, 1.6 Ko serialises; l'erreur sur p99 reste de l'ordre
+ * de 0.1% du rang, sous 1% vers la mediane. Deux digests se fusionnent
+ * (centroides reinjectes puis recompresses): un digest par jour suffit
+ * pour n'importe quelle periode.
+ *
+ * Les valeurs ajoutees sont mises en attente puis compressees par lots.
+ * Non thread-safe en ecriture: un digest partage entre threads doit etre
+ * compresse (compress()) avant publication, les lectures ne le modifient
+ * alors plus.
+ */
+public final class TDigest {
+
+    public static final int DEFAULT_COMPRESSION = 100;
+
+    private static final byte FORMAT = 1;
+
+    private final int compression;
+    private double[] means = new double[0];
+    private long[] weights = new long[0];
+    private int centroids;
+    private final double[] bufferMeans;
+    private final long[] bufferWeights;
+    private int buffered;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public TDigest(int compression) {
+        if (compression < 10 || compression > 1000) {
+            throw new IllegalArgumentException("compression must be between 10 and 1000");
+        }
+        this.compression = compression;
+        this.bufferMeans = new double[5 * compression];
+        this.bufferWeights = new long[5 * compression];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, long weight) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Cannot add non finite value " + value);
+        }
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
+        buffer(value, weight);
+        count += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Ajoute les valeurs d'un autre digest (qui n'est pas modifie).
+     */
+    public TDigest merge(TDigest other) {
+        for (int i = 0; i < other.centroids; i++) {
+            buffer(other.means[i], other.weights[i]);
+        }
+        for (int i = 0; i < other.buffered; i++) {
+            buffer(other.bufferMeans[i], other.bufferWeights[i]);
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double min() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double max() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    int centroidCount() {
+        compress();
+        return centroids;
+    }
+
+    /**
+     * Valeur au quantile q (0 = minimum, 1 = maximum), interpolee entre
+     * centroides; NaN si le digest est vide.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("q must be between 0 and 1");
+        }
+        compress();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q == 1) {
+            return max;
+        }
+        if (centroids == 1) {
+            return min + q * (max - min);
+        }
+        double index = q * count;
+        double firstHalf = weights[0] / 2.0;
+        if (index <= firstHalf) {
+            return min + (means[0] - min) * index / firstHalf;
+        }
+        double weightSoFar = firstHalf;
+        for (int i = 0; i < centroids - 1; i++) {
+            double between = (weights[i] + weights[i + 1]) / 2.0;
+            if (weightSoFar + between >= index) {
+                return means[i] + (means[i + 1] - means[i]) * (index - weightSoFar) / between;
+            }
+            weightSoFar += between;
+        }
+        int last = centroids - 1;
+        double lastHalf = weights[last] / 2.0;
+        return means[last] + (max - means[last]) * Math.min(1, (index - weightSoFar) / lastHalf);
+    }
+
+    /**
+     * Part des valeurs inferieures ou egales a value (0 a 1); NaN si le
+     * digest est vide.
+     */
+    public double cdf(double value) {
+        compress();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (value < min) {
+            return 0;
+        }
+        if (value >= max) {
+            return 1;
+        }
+        if (centroids == 1) {
+            return (value - min) / (max - min);
+        }
+        if (value < means[0]) {
+            return weights[0] / 2.0 * (value - min) / (means[0] - min) / count;
+        }
+        double weightSoFar = weights[0] / 2.0;
+        for (int i = 0; i < centroids - 1; i++) {
+            double between = (weights[i] + weights[i + 1]) / 2.0;
+            if (value < means[i + 1]) {
+                return (weightSoFar + between * (value - means[i]) / (means[i + 1] - means[i])) / count;
+            }
+            weightSoFar += between;
+        }
+        int last = centroids - 1;
+        return (weightSoFar + weights[last] / 2.0 * (value - means[last]) / (max - means[last])) / count;
+    }
+
+    /**
+     * Fusionne les valeurs en attente dans les centroides.
+     *
+     * Les centroides sont parcourus par moyenne croissante; deux voisins
+     * sont fusionnes tant que le poids cumule ne depasse pas le rang limite
+     * k1^-1(k1(q) + 1) du centroide en cours.
+     */
+    public void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int total = centroids + buffered;
+        double[] allMeans = Arrays.copyOf(means, total);
+        long[] allWeights = Arrays.copyOf(weights, total);
+        System.arraycopy(bufferMeans, 0, allMeans, centroids, buffered);
+        System.arraycopy(bufferWeights, 0, allWeights, centroids, buffered);
+        buffered = 0;
+
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(allMeans[a], allMeans[b]));
+
+        double[] mergedMeans = new double[total];
+        long[] mergedWeights = new long[total];
+        int merged = 0;
+        double mean = allMeans[order[0]];
+        long weight = allWeights[order[0]];
+        double weightSoFar = 0;
+        double limit = count * rankLimit(0);
+        for (int i = 1; i < total; i++) {
+            double nextMean = allMeans[order[i]];
+            long nextWeight = allWeights[order[i]];
+            if (weightSoFar + weight + nextWeight <= limit) {
+                weight += nextWeight;
+                mean += (nextMean - mean) * nextWeight / weight;
+            } else {
+                mergedMeans[merged] = mean;
+                mergedWeights[merged++] = weight;
+                weightSoFar += weight;
+                limit = count * rankLimit(weightSoFar / count);
+                mean = nextMean;
+                weight = nextWeight;
+            }
+        }
+        mergedMeans[merged] = mean;
+        mergedWeights[merged++] = weight;
+
+        means = Arrays.copyOf(mergedMeans, merged);
+        weights = Arrays.copyOf(mergedWeights, merged);
+        centroids = merged;
+    }
+
+    private void buffer(double mean, long weight) {
+        if (buffered == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[buffered] = mean;
+        bufferWeights[buffered++] = weight;
+    }
+
+    /**
+     * Rang maximum (0 a 1) du centroide commencant au rang q: k1(q) + 1 ramene en rang.
+     */
+    private double rankLimit(double q) {
+        double k = compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, q) - 1) + 1;
+        if (k >= compression / 4.0) {
+            return 1;
+        }
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    // ==================== SERIALISATION ====================
+
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 2 + 8 + 8 + 4 + centroids * 16);
+        buffer.put(FORMAT)
+                .putShort((short) compression)
+                .putDouble(min)
+                .putDouble(max)
+                .putInt(centroids);
+        for (int i = 0; i < centroids; i++) {
+            buffer.putDouble(means[i]).putLong(weights[i]);
+        }
+        return buffer.array();
+    }
+
+    public static TDigest fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte format = buffer.get();
+        if (format != FORMAT) {
+            throw new IllegalArgumentException("Unknown t-digest format: " + format);
+        }
+        TDigest digest = new TDigest(Short.toUnsignedInt(buffer.getShort()));
+        digest.min = buffer.getDouble();
+        digest.max = buffer.getDouble();
+        int centroids = buffer.getInt();
+        digest.means = new double[centroids];
+        digest.weights = new long[centroids];
+        for (int i = 0; i < centroids; i++) {
+            digest.means[i] = buffer.getDouble();
+            digest.weights[i] = buffer.getLong();
+            digest.count += digest.weights[i];
+        }
+        digest.centroids = centroids;
+        return digest;
+    }
+}
@@ -0,0 +1,116 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Distribution des montants calcules sur une periode, par fusion des
+ * t-digests journaliers de tax_amount_digests.
+ *
+ * digest() complete les digests par les montants charges depuis le
+ * watermark du rollup, lus dans la meme transaction (REPEATABLE READ): un
+ * montant n'est compte qu'une fois. rolledUp() ne lit que les digests et
+ * est mis en cache jusqu'au prochain rollup (AnalyticsAggregateReader
+ * vide les deux caches): il sert de reference pour situer un montant
+ * sans requete.
+ */
+@Component
+public class TaxAmountDistribution {
+
+    public static final String CACHE = "taxAmountDigests";
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String SELECT_WATERMARK = """
+            SELECT watermark FROM analytics_rollup_watermarks WHERE source = :source
+            """;
+
+    private static final String SELECT_DIGESTS = """
+            SELECT digest FROM tax_amount_digests
+            WHERE date BETWEEN :start AND :end AND tax_type = CAST(:taxType AS tax_type)%s%s
+            """;
+
+    private static final String SELECT_TAIL = """
+            SELECT e.calculated_amount FROM (%s) e
+            WHERE e.ingested_at >= :calculationsFrom AND e.created_at >= :startTime AND e.created_at < :endTime
+                AND e.tax_type = CAST(:taxType AS tax_type)%s%s
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTemplate;
+
+    public TaxAmountDistribution(NamedParameterJdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Distribution de la periode, montants pas encore agreges compris.
+     *
+     * @param fuelType Carburant (null = tous, inconnu compris)
+     */
+    public TDigest digest(AnalyticsRange range, TaxType taxType, FuelType fuelType) {
+        return snapshotTemplate.execute(status -> {
+            MapSqlParameterSource params = params(range, taxType, fuelType)
+                    .addValue("source", DailyAggregateRollup.TAX_CALCULATIONS);
+            List<LocalDateTime> watermark = jdbcTemplate.queryForList(SELECT_WATERMARK, params, LocalDateTime.class);
+            params.addValue("calculationsFrom", watermark.isEmpty() ? EPOCH : watermark.get(0));
+
+            TDigest digest = readDigests(range, fuelType, params);
+            jdbcTemplate.query(SELECT_TAIL.formatted(RollupLevel.ENRICHED_TAX_CALCULATIONS,
+                            regionFilter(range, "e."), fuelFilter(fuelType, "e.")), params,
+                    (RowCallbackHandler) rs -> digest.add(rs.getBigDecimal("calculated_amount").doubleValue()));
+            digest.compress();
+            return digest;
+        });
+    }
+
+    /**
+     * Distribution deja agregee de la periode, compressee (lecture seule).
+     */
+    @Cacheable(CACHE)
+    public TDigest rolledUp(AnalyticsRange range, TaxType taxType, FuelType fuelType) {
+        TDigest digest = readDigests(range, fuelType, params(range, taxType, fuelType));
+        digest.compress();
+        return digest;
+    }
+
+    private TDigest readDigests(AnalyticsRange range, FuelType fuelType, MapSqlParameterSource params) {
+        TDigest digest = new TDigest();
+        jdbcTemplate.query(SELECT_DIGESTS.formatted(regionFilter(range, ""), fuelFilter(fuelType, "")),
+                params, (RowCallbackHandler) rs -> digest.merge(TDigest.fromBytes(rs.getBytes("digest"))));
+        return digest;
+    }
+
+    private static MapSqlParameterSource params(AnalyticsRange range, TaxType taxType, FuelType fuelType) {
+        return new MapSqlParameterSource()
+                .addValue("start", range.from())
+                .addValue("end", range.to())
+                .addValue("startTime", range.from().atStartOfDay())
+                .addValue("endTime", range.to().plusDays(1).atStartOfDay())
+                .addValue("region", range.region() != null ? range.region().name() : null)
+                .addValue("taxType", taxType.name())
+                .addValue("fuelType", fuelType != null ? fuelType.name() : null);
+    }
+
+    private static String regionFilter(AnalyticsRange range, String alias) {
+        return range.region() == null ? "" : " AND " + alias + "region = CAST(:region AS region)";
+    }
+
+    private static String fuelFilter(FuelType fuelType, String alias) {
+        return fuelType == null ? "" : " AND " + alias + "fuel_type = CAST(:fuelType AS fuel_type)";
+    }
+}
@@ -0,0 +1,89 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.dto.response.TaxCalculationResponse;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Ligne tax_calculations en attente d'ecriture.
+ * L'evenement de recherche et l'horodatage viennent du CalculationEventRecord parent.
+ * ruleVersion est la version des regles utilisee par le calcul (null si inconnue).
+ */
+public record TaxCalculationRecord(
+        Long variantId,
+        Long submissionId,
+        Region region,
+        TaxType taxType,
+        BigDecimal calculatedAmount,
+        Integer powerKw,
+        Integer cvFiscal,
+        Integer co2Gkm,
+        Integer vehicleAgeMonths,
+        boolean isExempt,
+        Long ruleVersion
+) {
+
+    /**
+     * Ligne sans version de regles connue.
+     */
+    public TaxCalculationRecord(Long variantId, Long submissionId, Region region, TaxType taxType,
+                                BigDecimal calculatedAmount, Integer powerKw, Integer cvFiscal, Integer co2Gkm,
+                                Integer vehicleAgeMonths, boolean isExempt) {
+        this(variantId, submissionId, region, taxType, calculatedAmount, powerKw, cvFiscal, co2Gkm,
+                vehicleAgeMonths, isExempt, null);
+    }
+
+    /**
+     * Ligne a partir d'un resultat du moteur.
+     */
+    public static TaxCalculationRecord from(Long variantId, Long submissionId, TaxCalculationResponse result) {
+        return fromBreakdown(variantId, submissionId, result.getRegion(), result.getTaxType(),
+                result.getAmount(), Boolean.TRUE.equals(result.getIsExempt()), result.getBreakdown())
+                .withRuleVersion(result.getRuleVersion());
+    }
+
+    /**
+     * Ligne a partir d'un montant et de son breakdown: puissance, CV fiscaux,
+     * CO2 et age sont repris du breakdown quand le moteur les y a mis.
+     */
+    public static TaxCalculationRecord fromBreakdown(
+            Long variantId,
+            Long submissionId,
+            Region region,
+            TaxType taxType,
+            BigDecimal amount,
+            boolean isExempt,
+            Map<String, Object> breakdown) {
+        Map<String, Object> values = breakdown != null ? breakdown : Map.of();
+        Integer ageYears = intValue(values.get("vehicleAgeYears"));
+        return new TaxCalculationRecord(variantId, submissionId, region, taxType, amount,
+                intValue(values.get("powerKw")),
+                intValue(values.get("fiscalHp")),
+                intValue(values.get("co2Wltp")),
+                ageYears != null ? ageYears * 12 : null,
+                isExempt);
+    }
+
+    /**
+     * Complete avec les caracteristiques connues de l'appelant (prioritaires sur le breakdown).
+     */
+    public TaxCalculationRecord withSpecs(Integer powerKw, Integer cvFiscal, Integer co2Gkm) {
+        return new TaxCalculationRecord(variantId, submissionId, region, taxType, calculatedAmount,
+                powerKw != null ? powerKw : this.powerKw,
+                cvFiscal != null ? cvFiscal : this.cvFiscal,
+                co2Gkm != null ? co2Gkm : this.co2Gkm,
+                vehicleAgeMonths, isExempt, ruleVersion);
+    }
+
+    public TaxCalculationRecord withRuleVersion(Long ruleVersion) {
+        return new TaxCalculationRecord(variantId, submissionId, region, taxType, calculatedAmount,
+                powerKw, cvFiscal, co2Gkm, vehicleAgeMonths, isExempt, ruleVersion);
+    }
+
+    private static Integer intValue(Object value) {
+        return value instanceof Number number ? number.intValue() : null;
+    }
+}
@@ -0,0 +1,140 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Mise a jour des sketches t-digest des montants calcules (tax_amount_digests).
+ *
+ * Appele par DailyAggregateRollup dans la transaction du rollup: les
+ * montants des calculs charges dans [from, to) sont ajoutes au digest de
+ * leur jour, region, type de taxe et carburant. Contrairement aux sketches
+ * de sessions, ajouter deux fois un montant le compterait deux fois: seul
+ * le watermark du rollup garantit qu'une ligne n'est lue qu'une fois. Les
+ * jours deja agreges avant l'introduction des digests sont reconstruits une
+ * fois depuis tax_calculations, tant que leurs partitions sont conservees.
+ */
+@Component
+public class TaxDigestRollup {
+
+    private static final String SELECT_AMOUNTS = """
+            SELECT CAST(e.created_at AS date) AS day, e.region, e.tax_type, e.fuel_type, e.calculated_amount
+            FROM (%s) e
+            WHERE %s
+            """;
+
+    private static final String NEW_ROWS = "e.ingested_at >= :from AND e.ingested_at < :to";
+
+    private static final String ROWS_OF_DAYS = "e.ingested_at < :from AND CAST(e.created_at AS date) IN (:days)";
+
+    private static final String SELECT_DIGESTS = """
+            SELECT date, region, tax_type, fuel_type, digest FROM tax_amount_digests
+            WHERE date IN (:days)
+            """;
+
+    private static final String SELECT_DAYS_WITHOUT_DIGEST = """
+            SELECT DISTINCT date FROM daily_aggregates da
+            WHERE date IN (:days) AND tax_amount_count > 0 AND %s
+                AND NOT EXISTS (SELECT 1 FROM tax_amount_digests d WHERE d.date = da.date)
+            """.formatted(RollupLevel.global.aggregateRows());
+
+    private static final String UPSERT_DIGEST = """
+            INSERT INTO tax_amount_digests (date, region, tax_type, fuel_type, amount_count, digest)
+            VALUES (:day, CAST(:region AS region), CAST(:taxType AS tax_type), CAST(:fuelType AS fuel_type),
+                :amountCount, :digest)
+            ON CONFLICT (date, region, tax_type, fuel_type) DO UPDATE SET
+                amount_count = EXCLUDED.amount_count,
+                digest = EXCLUDED.digest,
+                updated_at = CURRENT_TIMESTAMP
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public TaxDigestRollup(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Ajoute les montants des calculs charges dans [from, to) a leurs digests.
+     *
+     * @return Nombre de digests ecrits
+     */
+    public int update(LocalDateTime from, LocalDateTime to) {
+        Map<DigestKey, TDigest> digests = new HashMap<>();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        jdbcTemplate.query(SELECT_AMOUNTS.formatted(RollupLevel.ENRICHED_TAX_CALCULATIONS, NEW_ROWS), params,
+                (RowCallbackHandler) rs -> addAmount(digests, rs));
+        if (digests.isEmpty()) {
+            return 0;
+        }
+
+        Set<LocalDate> days = new TreeSet<>();
+        digests.keySet().forEach(key -> days.add(key.day()));
+        params.addValue("days", days);
+
+        List<LocalDate> daysWithoutDigest = jdbcTemplate.queryForList(SELECT_DAYS_WITHOUT_DIGEST, params, LocalDate.class);
+        if (!daysWithoutDigest.isEmpty()) {
+            jdbcTemplate.query(SELECT_AMOUNTS.formatted(RollupLevel.ENRICHED_TAX_CALCULATIONS, ROWS_OF_DAYS),
+                    new MapSqlParameterSource()
+                            .addValue("from", from)
+                            .addValue("days", daysWithoutDigest),
+                    (RowCallbackHandler) rs -> addAmount(digests, rs));
+        }
+
+        jdbcTemplate.query(SELECT_DIGESTS, params, (RowCallbackHandler) rs -> {
+            TDigest digest = digests.get(key(rs, "date"));
+            if (digest != null) {
+                digest.merge(TDigest.fromBytes(rs.getBytes("digest")));
+            }
+        });
+
+        SqlParameterSource[] batch = digests.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("day", entry.getKey().day())
+                        .addValue("region", entry.getKey().region().name())
+                        .addValue("taxType", entry.getKey().taxType().name())
+                        .addValue("fuelType", entry.getKey().fuelType() != null ? entry.getKey().fuelType().name() : null)
+                        .addValue("amountCount", entry.getValue().count())
+                        .addValue("digest", entry.getValue().toBytes()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPSERT_DIGEST, batch);
+        return batch.length;
+    }
+
+    private static void addAmount(Map<DigestKey, TDigest> digests, ResultSet rs) throws SQLException {
+        digests.computeIfAbsent(key(rs, "day"), k -> new TDigest())
+                .add(rs.getBigDecimal("calculated_amount").doubleValue());
+    }
+
+    private static DigestKey key(ResultSet rs, String dayColumn) throws SQLException {
+        String fuelType = rs.getString("fuel_type");
+        return new DigestKey(rs.getObject(dayColumn, LocalDate.class),
+                Region.valueOf(rs.getString("region")),
+                TaxType.valueOf(rs.getString("tax_type")),
+                fuelType != null ? FuelType.valueOf(fuelType) : null);
+    }
+
+    /**
+     * Digest d'un jour, d'une region et d'un type de taxe (carburant null = inconnu).
+     */
+    private record DigestKey(LocalDate day, Region region, TaxType taxType, FuelType fuelType) {
+    }
+}
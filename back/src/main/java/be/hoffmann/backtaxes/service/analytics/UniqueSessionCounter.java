@@ -0,0 +1,102 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Sessions uniques sur une periode, par union des sketches HyperLogLog de
+ * daily_aggregates.
+ *
+ * Additionner unique_sessions compterait plusieurs fois une session active
+ * plusieurs jours ou dans plusieurs regions; l'union des sketches non. Le
+ * cout ne depend que du nombre de jours lus (4 Ko au plus par sketch), pas
+ * du trafic, et l'erreur reste celle d'un sketch unique
+ * (HyperLogLog.RELATIVE_STANDARD_ERROR).
+ */
+@Component
+public class UniqueSessionCounter {
+
+    private static final String SELECT_SKETCHES = """
+            SELECT session_sketch FROM daily_aggregates
+            WHERE date BETWEEN :start AND :end
+                AND model_id IS NULL AND fuel_type IS NULL AND is_new_vehicle IS NULL AND device_type IS NULL
+                AND session_sketch IS NOT NULL
+                AND %s AND %s
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public UniqueSessionCounter(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Sessions uniques entre deux jours inclus.
+     *
+     * @param region  Region (null = toutes)
+     * @param brandId Marque (null = toutes); sans region, union des regions
+     */
+    public UniqueSessionEstimate countUniqueSessions(LocalDate start, LocalDate end, Region region, Long brandId) {
+        return new UniqueSessionEstimate(unionSketch(start, end, region, brandId).estimate(),
+                HyperLogLog.RELATIVE_STANDARD_ERROR);
+    }
+
+    /**
+     * Union des sketches entre deux jours inclus, a completer par des
+     * sessions non encore agregees (voir countUniqueSessions).
+     */
+    public HyperLogLog unionSketch(LocalDate start, LocalDate end, Region region, Long brandId) {
+        String regionFilter;
+        if (region != null) {
+            regionFilter = "region = CAST(:region AS region)";
+        } else {
+            regionFilter = brandId != null ? "region IS NOT NULL" : "region IS NULL";
+        }
+        String brandFilter = brandId != null ? "brand_id = :brandId" : "brand_id IS NULL";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("end", end)
+                .addValue("region", region != null ? region.name() : null)
+                .addValue("brandId", brandId);
+
+        HyperLogLog union = new HyperLogLog();
+        jdbcTemplate.query(SELECT_SKETCHES.formatted(regionFilter, brandFilter), params,
+                (RowCallbackHandler) rs -> union.merge(HyperLogLog.fromBytes(rs.getBytes("session_sketch"))));
+        return union;
+    }
+
+    /**
+     * Sessions uniques de la semaine commencant le lundi donne.
+     */
+    public UniqueSessionEstimate countWeeklyUniqueSessions(LocalDate weekStart, Region region, Long brandId) {
+        return countUniqueSessions(weekStart, weekStart.plusDays(6), region, brandId);
+    }
+
+    /**
+     * Sessions uniques d'un mois calendaire.
+     */
+    public UniqueSessionEstimate countMonthlyUniqueSessions(LocalDate month, Region region, Long brandId) {
+        LocalDate start = month.withDayOfMonth(1);
+        return countUniqueSessions(start, start.plusMonths(1).minusDays(1), region, brandId);
+    }
+
+    /**
+     * Estimation et son erreur relative standard: la valeur exacte est dans
+     * +/- 2 erreurs standard de l'estimation dans 95% des cas.
+     */
+    public record UniqueSessionEstimate(long estimate, double relativeStandardError) {
+
+        public long lowerBound() {
+            return Math.max(0, Math.round(estimate * (1 - 2 * relativeStandardError)));
+        }
+
+        public long upperBound() {
+            return Math.round(estimate * (1 + 2 * relativeStandardError));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Classification memoisee des User-Agent: hash SHA-256 (anonymisation RGPD),
+ * type d'appareil et detection des robots.
+ *
+ * Quelques centaines de User-Agent distincts couvrent l'essentiel du trafic:
+ * un cache borne (app.analytics.user-agent-cache-size entrees) evite de
+ * recalculer le hash et les expressions regulieres a chaque evenement. Les
+ * User-Agent anormalement longs sont classes sans etre mis en cache, pour
+ * que la memoire du cache reste bornee.
+ */
+@Component
+public class UserAgentClassifier {
+
+    /** Au-dela, le User-Agent n'est pas mis en cache */
+    static final int MAX_CACHED_LENGTH = 512;
+
+    private static final Classification NONE = new Classification(null, null, false);
+
+    // Precompiled patterns for device detection (case insensitive)
+    private static final Pattern MOBILE_PATTERN = Pattern.compile(
+            "mobile|android|iphone", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TABLET_PATTERN = Pattern.compile(
+            "tablet|ipad", Pattern.CASE_INSENSITIVE);
+
+    // Robots d'indexation, apercus de liens, navigateurs headless et clients HTTP en ligne de commande
+    private static final Pattern BOT_PATTERN = Pattern.compile(
+            "(?<!cu)bot\\b|bot/|crawl|spider|slurp|bingpreview|facebookexternalhit|embedly|headlesschrome"
+                    + "|lighthouse|python-requests|python-urllib|curl/|wget/|go-http-client|scrapy",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final HexFormat HEX_FORMAT = HexFormat.of();
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final Cache<String, Classification> cache;
+
+    public UserAgentClassifier(@Value("${app.analytics.user-agent-cache-size:10000}") int cacheSize) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("app.analytics.user-agent-cache-size must be positive");
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+    }
+
+    /**
+     * Classe un User-Agent (null = aucune information).
+     */
+    public Classification classify(String userAgent) {
+        if (userAgent == null) {
+            return NONE;
+        }
+        if (userAgent.length() > MAX_CACHED_LENGTH) {
+            return compute(userAgent);
+        }
+        return cache.get(userAgent, UserAgentClassifier::compute);
+    }
+
+    long cachedEntries() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    private static Classification compute(String userAgent) {
+        return new Classification(hash(userAgent), deviceType(userAgent), BOT_PATTERN.matcher(userAgent).find());
+    }
+
+    private static String hash(String userAgent) {
+        if (userAgent.isBlank()) {
+            return null;
+        }
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        return HEX_FORMAT.formatHex(digest.digest(userAgent.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static DeviceType deviceType(String userAgent) {
+        if (MOBILE_PATTERN.matcher(userAgent).find()) {
+            return TABLET_PATTERN.matcher(userAgent).find()
+                    ? DeviceType.tablet
+                    : DeviceType.mobile;
+        }
+        return DeviceType.desktop;
+    }
+
+    /**
+     * Resultat de la classification d'un User-Agent.
+     *
+     * @param hash       SHA-256 hexadecimal (null si User-Agent vide)
+     * @param deviceType Type d'appareil (null si User-Agent absent)
+     * @param bot        Robot ou client automatise
+     */
+    public record Classification(String hash, DeviceType deviceType, boolean bot) {
+    }
+}
@@ -0,0 +1,59 @@
+package be.hoffmann.backtaxes.service.export;
+
+import be.hoffmann.backtaxes.service.analytics.ColumnarArchive.Column;
+import be.hoffmann.backtaxes.service.analytics.ColumnarArchive.ColumnType;
+import be.hoffmann.backtaxes.service.analytics.RetentionArchiver;
+
+import java.util.List;
+
+/**
+ * Tables exportables par l'administration (TableExportService).
+ *
+ * La premiere colonne est toujours l'id, cle du parcours par pages. Les
+ * colonnes sensibles des utilisateurs (mot de passe, identifiant Google)
+ * ne sont pas exportees.
+ */
+public enum ExportDataset {
+
+    search_events(RetentionArchiver.SEARCH_EVENT_COLUMNS, true),
+    tax_calculations(RetentionArchiver.TAX_CALCULATION_COLUMNS, true),
+    tax_brackets(List.of(
+            new Column("id", ColumnType.LONG),
+            new Column("region", ColumnType.STRING),
+            new Column("tax_type", ColumnType.STRING),
+            new Column("bracket_key", ColumnType.STRING),
+            new Column("min_value", ColumnType.INT),
+            new Column("max_value", ColumnType.INT),
+            new Column("amount", ColumnType.DECIMAL),
+            new Column("valid_from", ColumnType.DATE),
+            new Column("valid_to", ColumnType.DATE)), false),
+    users(List.of(
+            new Column("id", ColumnType.LONG),
+            new Column("email", ColumnType.STRING),
+            new Column("is_moderator", ColumnType.BOOLEAN),
+            new Column("is_admin", ColumnType.BOOLEAN),
+            new Column("created_at", ColumnType.TIMESTAMP)), true);
+
+    private final List<Column> columns;
+    private final boolean hasCreatedAt;
+
+    ExportDataset(List<Column> columns, boolean hasCreatedAt) {
+        this.columns = columns;
+        this.hasCreatedAt = hasCreatedAt;
+    }
+
+    public String table() {
+        return name();
+    }
+
+    public List<Column> columns() {
+        return columns;
+    }
+
+    /**
+     * Vrai si l'export peut etre borne sur created_at (from/to).
+     */
+    public boolean hasCreatedAt() {
+        return hasCreatedAt;
+    }
+}
@@ -0,0 +1,10 @@
+package be.hoffmann.backtaxes.service.export;
+
+/**
+ * Formats d'export (compresses en gzip).
+ */
+public enum ExportFormat {
+
+    csv,    // En-tete puis une ligne par enregistrement (RFC 4180)
+    ndjson  // Un objet JSON par ligne
+}
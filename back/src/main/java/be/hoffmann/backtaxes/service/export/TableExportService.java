@@ -0,0 +1,248 @@
+package be.hoffmann.backtaxes.service.export;
+
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.service.analytics.ColumnarArchive.Column;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export en flux (CSV ou NDJSON, gzip) des tables analytics et d'administration.
+ *
+ * Les lignes sont lues par pages sur l'id (keyset: id > dernier id lu,
+ * ORDER BY id LIMIT page-size) et ecrites directement dans la reponse,
+ * sans entites ni liste complete en memoire: la memoire est bornee par une
+ * page, quelle que soit la taille de la table. Chaque page est une requete
+ * courte: aucune connexion du pool n'est gardee pendant que le client
+ * telecharge. Le flux gzip est vide apres chaque page.
+ *
+ * L'export n'est pas un instantane: une ligne inseree pendant l'export
+ * apparait si son id est superieur a la page en cours.
+ */
+@Service
+public class TableExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(TableExportService.class);
+
+    private static final String SELECT_PAGE = "SELECT %s FROM %s WHERE id > :after%s ORDER BY id LIMIT :limit";
+
+    private static final String CREATED_AT_FROM = " AND created_at >= :startTime";
+
+    private static final String CREATED_AT_TO = " AND created_at < :endTime";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int pageSize;
+
+    public TableExportService(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            @Value("${app.export.page-size:5000}") int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("app.export.page-size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Verifie les parametres avant l'ouverture du flux (les erreurs ne
+     * peuvent plus etre renvoyees une fois la reponse commencee).
+     *
+     * @param from Premier jour de created_at (null = sans borne)
+     * @param to   Dernier jour de created_at (null = sans borne)
+     */
+    public void validate(ExportDataset dataset, LocalDate from, LocalDate to) {
+        if ((from != null || to != null) && !dataset.hasCreatedAt()) {
+            throw new ValidationException("from", dataset.table() + " cannot be filtered on created_at");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ValidationException("from", "from must not be after to");
+        }
+    }
+
+    /**
+     * Nom du fichier telecharge, ex: search_events_2025-06-01_2025-06-30.csv.gz
+     */
+    public static String filename(ExportDataset dataset, ExportFormat format, LocalDate from, LocalDate to) {
+        StringBuilder name = new StringBuilder(dataset.table());
+        if (from != null || to != null) {
+            name.append('_').append(from != null ? from : "").append('_').append(to != null ? to : "");
+        }
+        return name.append('.').append(format.name()).append(".gz").toString();
+    }
+
+    /**
+     * Ecrit les lignes de la table dans out (gzip), page par page.
+     *
+     * @return Nombre de lignes exportees
+     */
+    public long export(ExportDataset dataset, ExportFormat format, LocalDate from, LocalDate to,
+                       OutputStream out) throws IOException {
+        validate(dataset, from, to);
+        long start = System.nanoTime();
+        List<Column> columns = dataset.columns();
+        String sql = SELECT_PAGE.formatted(
+                columns.stream().map(Column::name).collect(Collectors.joining(", ")),
+                dataset.table(),
+                (from != null ? CREATED_AT_FROM : "") + (to != null ? CREATED_AT_TO : ""));
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("limit", pageSize)
+                .addValue("startTime", from != null ? from.atStartOfDay() : null)
+                .addValue("endTime", to != null ? to.plusDays(1).atStartOfDay() : null);
+
+        // Ferme seulement en cas de succes: sans fin de flux gzip, un export
+        // interrompu est detecte comme corrompu par le client
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(out, BUFFER_SIZE, true), StandardCharsets.UTF_8), BUFFER_SIZE);
+        RowWriter rowWriter = format == ExportFormat.csv
+                ? new CsvRowWriter(writer, columns)
+                : new NdjsonRowWriter(objectMapper.writer().withRootValueSeparator("").createGenerator(writer), columns);
+        long rows = 0;
+        long after = 0;
+        List<Object[]> page;
+        do {
+            page = jdbcTemplate.query(sql, params.addValue("after", after), (rs, rowNum) -> {
+                Object[] row = new Object[columns.size()];
+                for (int c = 0; c < row.length; c++) {
+                    row[c] = rs.getObject(columns.get(c).name(), columns.get(c).type().javaType());
+                }
+                return row;
+            });
+            for (Object[] row : page) {
+                rowWriter.write(row);
+            }
+            rowWriter.flush();
+            rows += page.size();
+            if (!page.isEmpty()) {
+                after = (Long) page.get(page.size() - 1)[0];
+            }
+        } while (page.size() == pageSize);
+        rowWriter.close();
+        log.info("Exported {} rows of {} as {} in {} ms",
+                rows, dataset.table(), format, (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    /**
+     * Ecriture d'une ligne dans le format d'export.
+     */
+    private interface RowWriter {
+
+        void write(Object[] row) throws IOException;
+
+        void flush() throws IOException;
+
+        /** Termine le flux gzip */
+        void close() throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer, List<Column> columns) throws IOException {
+            this.writer = writer;
+            writer.write(columns.stream().map(Column::name).collect(Collectors.joining(",")));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(Object[] row) throws IOException {
+            for (int c = 0; c < row.length; c++) {
+                if (c > 0) {
+                    writer.write(',');
+                }
+                if (row[c] != null) {
+                    writeField(row[c] instanceof BigDecimal amount ? amount.toPlainString() : row[c].toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char ch = value.charAt(i);
+                quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator json;
+        private final List<Column> columns;
+
+        NdjsonRowWriter(JsonGenerator json, List<Column> columns) {
+            this.json = json;
+            this.columns = columns;
+        }
+
+        @Override
+        public void write(Object[] row) {
+            json.writeStartObject();
+            for (int c = 0; c < row.length; c++) {
+                json.writeName(columns.get(c).name());
+                Object value = row[c];
+                switch (value) {
+                    case null -> json.writeNull();
+                    case Long number -> json.writeNumber(number);
+                    case Integer number -> json.writeNumber(number);
+                    case BigDecimal number -> json.writeNumber(number);
+                    case Boolean bool -> json.writeBoolean(bool);
+                    default -> json.writeString(value.toString());
+                }
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() {
+            json.flush();
+        }
+
+        @Override
+        public void close() {
+            json.close();
+        }
+    }
+}
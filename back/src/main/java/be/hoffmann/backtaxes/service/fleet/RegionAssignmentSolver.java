@@ -0,0 +1,220 @@
+package be.hoffmann.backtaxes.service.fleet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Affectation de groupes de vehicules a des regions au cout minimum,
+ * sous contraintes de capacite par region ("au plus X voitures par region").
+ *
+ * Algorithme:
+ * 1. Glouton: chaque groupe va dans sa region autorisee la moins chere.
+ *    Sans contrainte active, c'est deja l'optimum.
+ * 2. Reparation: tant qu'une region depasse sa capacite, on deplace des
+ *    vehicules le long du plus court chemin (Bellman-Ford) vers une region
+ *    ayant de la place. Le graphe residuel est compresse sur les regions:
+ *    l'arc a -> b coute le plus petit surcout parmi les groupes presents en a.
+ *    C'est un flot de cout minimum par plus courts chemins successifs, donc
+ *    le resultat est optimal, y compris quand il faut deplacer en chaine
+ *    (a -> b -> c).
+ *
+ * Avec 3 regions, chaque iteration coute O(R^2 + R log G): 10 000 groupes
+ * se resolvent en quelques millisecondes.
+ */
+public final class RegionAssignmentSolver {
+
+    /** Capacite d'une region sans limite */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final long[][] costs;
+    private final int[] quantities;
+    private final int[] capacities;
+    private final int groups;
+    private final int regions;
+
+    private final int[][] allocation;
+    private final long[] load;
+    /** Pour chaque arc (a, b): groupes presents en a, tries par surcout de a vers b */
+    private final List<TreeSet<Integer>> candidates;
+
+    /**
+     * @param costs cout unitaire [groupe][region]
+     * @param quantities nombre de vehicules par groupe
+     * @param capacities capacite par region (UNLIMITED = pas de limite, 0 = region exclue)
+     */
+    public RegionAssignmentSolver(long[][] costs, int[] quantities, int[] capacities) {
+        if (costs.length != quantities.length) {
+            throw new IllegalArgumentException("Costs and quantities must have the same length");
+        }
+        this.costs = costs;
+        this.quantities = quantities;
+        this.capacities = capacities;
+        this.groups = quantities.length;
+        this.regions = capacities.length;
+        this.allocation = new int[groups][regions];
+        this.load = new long[regions];
+        this.candidates = new ArrayList<>(regions * regions);
+        for (int a = 0; a < regions; a++) {
+            for (int b = 0; b < regions; b++) {
+                if (a == b || capacities[b] == 0) {
+                    candidates.add(null);
+                } else {
+                    final int from = a;
+                    final int to = b;
+                    candidates.add(new TreeSet<>(Comparator
+                            .<Integer>comparingLong(g -> costs[g][to] - costs[g][from])
+                            .thenComparingInt(g -> g)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Resout l'affectation.
+     * @throws IllegalArgumentException si la capacite totale est insuffisante
+     */
+    public Solution solve() {
+        checkCapacity();
+
+        long unconstrainedCost = 0;
+        for (int g = 0; g < groups; g++) {
+            int best = -1;
+            for (int r = 0; r < regions; r++) {
+                if (capacities[r] > 0 && (best < 0 || costs[g][r] < costs[g][best])) {
+                    best = r;
+                }
+            }
+            setAllocation(g, best, quantities[g]);
+            load[best] += quantities[g];
+            unconstrainedCost += (long) quantities[g] * costs[g][best];
+        }
+
+        int source;
+        while ((source = findOverloadedRegion()) >= 0) {
+            augment(source);
+        }
+
+        long totalCost = 0;
+        for (int g = 0; g < groups; g++) {
+            for (int r = 0; r < regions; r++) {
+                totalCost += (long) allocation[g][r] * costs[g][r];
+            }
+        }
+        return new Solution(allocation, totalCost, unconstrainedCost);
+    }
+
+    private void checkCapacity() {
+        long totalQuantity = 0;
+        for (int quantity : quantities) {
+            totalQuantity += quantity;
+        }
+        long totalCapacity = 0;
+        for (int capacity : capacities) {
+            totalCapacity += capacity == UNLIMITED ? totalQuantity : capacity;
+        }
+        if (totalCapacity < totalQuantity) {
+            throw new IllegalArgumentException(
+                    "Region capacities (" + totalCapacity + ") are lower than the fleet size (" + totalQuantity + ")");
+        }
+    }
+
+    private int findOverloadedRegion() {
+        for (int r = 0; r < regions; r++) {
+            if (load[r] > capacities[r]) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Deplace des vehicules de la region source vers la region libre la plus
+     * proche (en surcout) dans le graphe residuel.
+     */
+    private void augment(int source) {
+        long[] dist = new long[regions];
+        int[] predRegion = new int[regions];
+        int[] predGroup = new int[regions];
+        Arrays.fill(dist, Long.MAX_VALUE);
+        Arrays.fill(predRegion, -1);
+        dist[source] = 0;
+
+        for (int iteration = 0; iteration < regions - 1; iteration++) {
+            for (int a = 0; a < regions; a++) {
+                if (dist[a] == Long.MAX_VALUE) {
+                    continue;
+                }
+                for (int b = 0; b < regions; b++) {
+                    TreeSet<Integer> edge = candidates.get(a * regions + b);
+                    if (edge == null || edge.isEmpty()) {
+                        continue;
+                    }
+                    int g = edge.first();
+                    long d = dist[a] + costs[g][b] - costs[g][a];
+                    if (d < dist[b]) {
+                        dist[b] = d;
+                        predRegion[b] = a;
+                        predGroup[b] = g;
+                    }
+                }
+            }
+        }
+
+        int target = -1;
+        for (int t = 0; t < regions; t++) {
+            if (t != source && dist[t] != Long.MAX_VALUE && load[t] < capacities[t]
+                    && (target < 0 || dist[t] < dist[target])) {
+                target = t;
+            }
+        }
+        if (target < 0) {
+            throw new IllegalStateException("No region can absorb the overflow of region " + source);
+        }
+
+        long amount = Math.min(load[source] - capacities[source], capacities[target] - load[target]);
+        for (int v = target; v != source; v = predRegion[v]) {
+            amount = Math.min(amount, allocation[predGroup[v]][predRegion[v]]);
+        }
+
+        for (int v = target; v != source; v = predRegion[v]) {
+            int g = predGroup[v];
+            int from = predRegion[v];
+            setAllocation(g, from, allocation[g][from] - (int) amount);
+            setAllocation(g, v, allocation[g][v] + (int) amount);
+            load[from] -= amount;
+            load[v] += amount;
+        }
+    }
+
+    /**
+     * Met a jour l'allocation d'un groupe et les arcs candidats correspondants.
+     */
+    private void setAllocation(int g, int region, int value) {
+        int previous = allocation[g][region];
+        allocation[g][region] = value;
+        if (previous == 0 && value > 0) {
+            for (int b = 0; b < regions; b++) {
+                TreeSet<Integer> edge = candidates.get(region * regions + b);
+                if (edge != null) {
+                    edge.add(g);
+                }
+            }
+        } else if (previous > 0 && value == 0) {
+            for (int b = 0; b < regions; b++) {
+                TreeSet<Integer> edge = candidates.get(region * regions + b);
+                if (edge != null) {
+                    edge.remove(g);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resultat: allocation [groupe][region] et couts totaux.
+     */
+    public record Solution(int[][] allocation, long totalCost, long unconstrainedCost) {
+    }
+}
@@ -0,0 +1,112 @@
+package be.hoffmann.backtaxes.service.pricelist;
+
+import be.hoffmann.backtaxes.entity.enums.EuroNorm;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Documents JSON statiques des grilles de prix (un par variante, un par modele)
+ * et manifeste de generation.
+ *
+ * Le champ schemaVersion est incremente a chaque changement incompatible du format;
+ * version est la cle de contenu du document (identique tant que les montants
+ * et les donnees affichees ne changent pas, utilisee comme ETag).
+ */
+public final class PriceListDocuments {
+
+    public static final int SCHEMA_VERSION = 1;
+
+    private PriceListDocuments() {
+    }
+
+    /**
+     * Grille de prix d'une variante: TMC par age et taxe annuelle, pour chaque region.
+     */
+    public record VariantPriceList(
+            int schemaVersion,
+            String version,
+            Instant generatedAt,
+            VariantInfo variant,
+            List<RegionPrices> regions
+    ) {}
+
+    /**
+     * Grille de prix d'un modele: resume (vehicule neuf) de chacune de ses variantes.
+     */
+    public record ModelPriceList(
+            int schemaVersion,
+            String version,
+            Instant generatedAt,
+            Long modelId,
+            String modelName,
+            Long brandId,
+            String brandName,
+            List<VariantSummary> variants
+    ) {}
+
+    public record VariantInfo(
+            Long id,
+            String name,
+            Long modelId,
+            String modelName,
+            Long brandId,
+            String brandName,
+            Integer yearStart,
+            Integer yearEnd,
+            Integer powerKw,
+            Integer fiscalHp,
+            FuelType fuel,
+            EuroNorm euroNorm,
+            Integer co2Wltp,
+            Integer co2Nedc,
+            Integer mmaKg
+    ) {}
+
+    public record RegionPrices(
+            Region region,
+            BigDecimal annual,
+            boolean annualExempt,
+            List<AgePrice> tmc
+    ) {}
+
+    /**
+     * TMC pour un vehicule de l'age donne (0 = neuf).
+     */
+    public record AgePrice(
+            int ageYears,
+            BigDecimal amount,
+            boolean exempt
+    ) {}
+
+    public record VariantSummary(
+            Long id,
+            String name,
+            Integer yearStart,
+            Integer yearEnd,
+            FuelType fuel,
+            Integer powerKw,
+            Map<Region, BigDecimal> tmcNew,
+            Map<Region, BigDecimal> annual
+    ) {}
+
+    /**
+     * Manifeste: cle de contenu de chaque document genere et empreinte des regles utilisees.
+     * Un document n'est reecrit que si sa cle change.
+     */
+    public record Manifest(
+            int schemaVersion,
+            String rulesVersion,
+            Instant generatedAt,
+            Map<Long, String> variants,
+            Map<Long, String> models
+    ) {
+        public static Manifest empty() {
+            return new Manifest(SCHEMA_VERSION, null, null, Map.of(), Map.of());
+        }
+    }
+}
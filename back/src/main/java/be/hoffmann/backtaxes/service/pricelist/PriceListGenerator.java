@@ -0,0 +1,410 @@
+package be.hoffmann.backtaxes.service.pricelist;
+
+import be.hoffmann.backtaxes.dto.response.PriceListGenerationResponse;
+import be.hoffmann.backtaxes.dto.response.TaxCalculationResponse;
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.entity.Variant;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.repository.VariantRepository;
+import be.hoffmann.backtaxes.service.TaxCalculationService;
+import be.hoffmann.backtaxes.service.TaxCalculationService.VehicleData;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.AgePrice;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.Manifest;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.ModelPriceList;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.RegionPrices;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.VariantInfo;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.VariantPriceList;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.VariantSummary;
+import be.hoffmann.backtaxes.service.rules.RuleVersionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generateur des grilles de prix statiques (pages SEO marque/modele/variante).
+ *
+ * Parcourt tout le catalogue en une requete, calcule pour chaque variante la TMC
+ * (neuf et ages typiques) et la taxe annuelle dans chaque region sur le jeu de
+ * regles immuable du jour, et ecrit des documents JSON pre-compresses (gzip):
+ *
+ *   {directory}/v{schema}/variants/{id}.json.gz
+ *   {directory}/v{schema}/models/{id}.json.gz
+ *   {directory}/v{schema}/manifest.json
+ *
+ * La generation est incrementale: les montants sont recalcules en memoire
+ * (sans acces base, quelques microsecondes par calcul) et chaque document a
+ * une cle de contenu (donnees affichees + montants). Seuls les documents dont
+ * la cle a change sont reecrits: apres une modification de regles, seules les
+ * variantes dont un montant change sont touchees sur disque. Les modeles sont
+ * traites en parallele sur un pool dimensionne au nombre de coeurs.
+ */
+@Service
+public class PriceListGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceListGenerator.class);
+
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final String GZIP_EXTENSION = ".json.gz";
+
+    private final VariantRepository variantRepository;
+    private final TaxCalculationService taxCalculationService;
+    private final RuleVersionService ruleVersionService;
+    private final ObjectMapper objectMapper;
+    private final Path baseDirectory;
+    private final List<Integer> ages;
+    private final int parallelism;
+    private final boolean scheduleEnabled;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Manifest manifest;
+
+    public PriceListGenerator(
+            VariantRepository variantRepository,
+            TaxCalculationService taxCalculationService,
+            RuleVersionService ruleVersionService,
+            ObjectMapper objectMapper,
+            @Value("${app.price-list.directory:./price-lists}") String directory,
+            @Value("${app.price-list.ages:0,1,3,5,10}") List<Integer> ages,
+            @Value("${app.price-list.parallelism:0}") int parallelism,
+            @Value("${app.price-list.schedule-enabled:false}") boolean scheduleEnabled) {
+        this.variantRepository = variantRepository;
+        this.taxCalculationService = taxCalculationService;
+        this.ruleVersionService = ruleVersionService;
+        this.objectMapper = objectMapper;
+        this.baseDirectory = Paths.get(directory).resolve("v" + PriceListDocuments.SCHEMA_VERSION);
+        this.ages = List.copyOf(ages);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.scheduleEnabled = scheduleEnabled;
+    }
+
+    /**
+     * Regeneration nocturne (si activee).
+     */
+    @Scheduled(cron = "${app.price-list.cron:0 30 3 * * *}")
+    public void scheduledGeneration() {
+        if (scheduleEnabled) {
+            generate();
+        }
+    }
+
+    /**
+     * Genere (incrementalement) toutes les grilles de prix.
+     * @throws ValidationException si une generation est deja en cours
+     */
+    public PriceListGenerationResponse generate() {
+        if (!running.compareAndSet(false, true)) {
+            throw new ValidationException("Price list generation is already running");
+        }
+        try {
+            return doGenerate();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Fichier pre-compresse de la grille d'une variante, s'il a ete genere.
+     */
+    public Optional<PriceListFile> findVariantDocument(Long variantId) {
+        return findDocument("variants", variantId, currentManifest().variants().get(variantId));
+    }
+
+    /**
+     * Fichier pre-compresse de la grille d'un modele, s'il a ete genere.
+     */
+    public Optional<PriceListFile> findModelDocument(Long modelId) {
+        return findDocument("models", modelId, currentManifest().models().get(modelId));
+    }
+
+    private PriceListGenerationResponse doGenerate() {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        TaxRuleSet rules = ruleVersionService.getRuleSet(today);
+        Manifest previous = currentManifest();
+
+        // Catalogue complet en une requete, regroupe par modele (marque -> modele -> variante)
+        Map<Long, List<Variant>> variantsByModel = new LinkedHashMap<>();
+        for (Variant variant : variantRepository.findAllWithDetails()) {
+            variantsByModel.computeIfAbsent(variant.getModel().getId(), id -> new ArrayList<>()).add(variant);
+        }
+
+        Generation generation = new Generation(rules, today, previous);
+        try (ExecutorService pool = Executors.newFixedThreadPool(parallelism)) {
+            List<Future<?>> futures = new ArrayList<>(variantsByModel.size());
+            for (List<Variant> modelVariants : variantsByModel.values()) {
+                futures.add(pool.submit(() -> generation.generateModel(modelVariants)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Price list generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Price list generation failed", e.getCause());
+        }
+
+        int deleted = deleteStale("variants", previous.variants().keySet(), generation.variantKeys.keySet())
+                + deleteStale("models", previous.models().keySet(), generation.modelKeys.keySet());
+
+        Manifest next = new Manifest(PriceListDocuments.SCHEMA_VERSION, rules.fingerprint(), Instant.now(),
+                Map.copyOf(generation.variantKeys), Map.copyOf(generation.modelKeys));
+        writeManifest(next);
+        manifest = next;
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        int variantCount = generation.variantKeys.size();
+        int modelCount = generation.modelKeys.size();
+        log.info("Price lists generated in {} ms: {}/{} variants and {}/{} models written, {} deleted (rules {})",
+                durationMs, generation.variantsWritten.get(), variantCount,
+                generation.modelsWritten.get(), modelCount, deleted, rules.fingerprint());
+
+        return new PriceListGenerationResponse(
+                rules.fingerprint(),
+                generation.variantsWritten.get(),
+                variantCount - generation.variantsWritten.get(),
+                generation.modelsWritten.get(),
+                modelCount - generation.modelsWritten.get(),
+                deleted,
+                durationMs);
+    }
+
+    /**
+     * Etat d'une generation, partage entre les threads du pool.
+     */
+    private class Generation {
+        private final TaxRuleSet rules;
+        private final LocalDate today;
+        private final Manifest previous;
+        private final Instant generatedAt = Instant.now();
+        private final Map<Long, String> variantKeys = new ConcurrentHashMap<>();
+        private final Map<Long, String> modelKeys = new ConcurrentHashMap<>();
+        private final AtomicInteger variantsWritten = new AtomicInteger();
+        private final AtomicInteger modelsWritten = new AtomicInteger();
+
+        Generation(TaxRuleSet rules, LocalDate today, Manifest previous) {
+            this.rules = rules;
+            this.today = today;
+            this.previous = previous;
+        }
+
+        void generateModel(List<Variant> modelVariants) {
+            List<String> keys = new ArrayList<>(modelVariants.size());
+            List<VariantSummary> summaries = new ArrayList<>(modelVariants.size());
+
+            for (Variant variant : modelVariants) {
+                VariantInfo info = toInfo(variant);
+                List<RegionPrices> regions = computePrices(VehicleData.fromVariant(variant));
+                String key = contentKey(info.toString(), regions.toString());
+                variantKeys.put(info.id(), key);
+                keys.add(info.id() + "=" + key);
+
+                VariantPriceList document = new VariantPriceList(
+                        PriceListDocuments.SCHEMA_VERSION, key, generatedAt, info, regions);
+                summaries.add(toSummary(document));
+
+                Path file = documentPath("variants", info.id());
+                if (!key.equals(previous.variants().get(info.id())) || !Files.exists(file)) {
+                    writeGzip(file, document);
+                    variantsWritten.incrementAndGet();
+                }
+            }
+
+            Variant first = modelVariants.get(0);
+            Long modelId = first.getModel().getId();
+            String modelKey = contentKey(first.getModel().getName(),
+                    first.getModel().getBrand().getName(), String.join(",", keys));
+            modelKeys.put(modelId, modelKey);
+
+            Path modelFile = documentPath("models", modelId);
+            if (!modelKey.equals(previous.models().get(modelId)) || !Files.exists(modelFile)) {
+                writeGzip(modelFile, new ModelPriceList(
+                        PriceListDocuments.SCHEMA_VERSION, modelKey, generatedAt,
+                        modelId, first.getModel().getName(),
+                        first.getModel().getBrand().getId(), first.getModel().getBrand().getName(),
+                        summaries));
+                modelsWritten.incrementAndGet();
+            }
+        }
+
+        /**
+         * Calcule TMC (par age) et taxe annuelle dans chaque region, entierement en memoire.
+         */
+        private List<RegionPrices> computePrices(VehicleData vehicleData) {
+            List<RegionPrices> regions = new ArrayList<>(Region.values().length);
+            for (Region region : Region.values()) {
+                TaxCalculationResponse annual = taxCalculationService.calculateTax(
+                        vehicleData, region, TaxType.annual, today, rules);
+                List<AgePrice> tmc = new ArrayList<>(ages.size());
+                for (int age : ages) {
+                    TaxCalculationResponse response = taxCalculationService.calculateTax(
+                            vehicleData, region, TaxType.tmc, today.minusYears(age), rules);
+                    tmc.add(new AgePrice(age, response.getAmount(), Boolean.TRUE.equals(response.getIsExempt())));
+                }
+                regions.add(new RegionPrices(
+                        region, annual.getAmount(), Boolean.TRUE.equals(annual.getIsExempt()), tmc));
+            }
+            return regions;
+        }
+    }
+
+    private static VariantInfo toInfo(Variant v) {
+        return new VariantInfo(
+                v.getId(), v.getName(),
+                v.getModel().getId(), v.getModel().getName(),
+                v.getModel().getBrand().getId(), v.getModel().getBrand().getName(),
+                v.getYearStart(), v.getYearEnd(),
+                v.getPowerKw(), v.getFiscalHp(), v.getFuel(), v.getEuroNorm(),
+                v.getCo2Wltp(), v.getCo2Nedc(), v.getMmaKg());
+    }
+
+    private static VariantSummary toSummary(VariantPriceList document) {
+        Map<Region, BigDecimal> tmcNew = new EnumMap<>(Region.class);
+        Map<Region, BigDecimal> annual = new EnumMap<>(Region.class);
+        for (RegionPrices prices : document.regions()) {
+            annual.put(prices.region(), prices.annual());
+            prices.tmc().stream()
+                    .filter(p -> p.ageYears() == 0)
+                    .findFirst()
+                    .ifPresent(p -> tmcNew.put(prices.region(), p.amount()));
+        }
+        VariantInfo info = document.variant();
+        return new VariantSummary(info.id(), info.name(), info.yearStart(), info.yearEnd(),
+                info.fuel(), info.powerKw(), tmcNew, annual);
+    }
+
+    private Optional<PriceListFile> findDocument(String kind, Long id, String key) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        Path file = documentPath(kind, id);
+        return Files.exists(file) ? Optional.of(new PriceListFile(file, key)) : Optional.empty();
+    }
+
+    private Path documentPath(String kind, Long id) {
+        return baseDirectory.resolve(kind).resolve(id + GZIP_EXTENSION);
+    }
+
+    /**
+     * Ecrit un document compresse de facon atomique (fichier temporaire puis renommage),
+     * pour ne jamais servir un fichier partiellement ecrit.
+     */
+    private void writeGzip(Path file, Object document) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                objectMapper.writeValue(out, document);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write price list " + file, e);
+        }
+    }
+
+    private int deleteStale(String kind, Set<Long> previousIds, Set<Long> currentIds) {
+        Set<Long> stale = new HashSet<>(previousIds);
+        stale.removeAll(currentIds);
+        int deleted = 0;
+        for (Long id : stale) {
+            try {
+                if (Files.deleteIfExists(documentPath(kind, id))) {
+                    deleted++;
+                }
+            } catch (IOException e) {
+                log.warn("Could not delete stale price list {}/{}: {}", kind, id, e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    private Manifest currentManifest() {
+        Manifest current = manifest;
+        if (current == null) {
+            current = readManifest();
+            manifest = current;
+        }
+        return current;
+    }
+
+    private Manifest readManifest() {
+        Path file = baseDirectory.resolve(MANIFEST_FILE);
+        if (!Files.exists(file)) {
+            return Manifest.empty();
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return objectMapper.readValue(in, Manifest.class);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unreadable price list manifest {}, full regeneration: {}", file, e.getMessage());
+            return Manifest.empty();
+        }
+    }
+
+    private void writeManifest(Manifest next) {
+        try {
+            Files.createDirectories(baseDirectory);
+            Path temp = Files.createTempFile(baseDirectory, MANIFEST_FILE, ".tmp");
+            objectMapper.writeValue(temp.toFile(), next);
+            Files.move(temp, baseDirectory.resolve(MANIFEST_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write price list manifest", e);
+        }
+    }
+
+    private static String contentKey(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Document genere: chemin du fichier .json.gz et cle de contenu (utilisee comme ETag).
+     */
+    public record PriceListFile(Path path, String contentKey) {
+    }
+}
@@ -0,0 +1,66 @@
+package be.hoffmann.backtaxes.service.rules;
+
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Version publiee des regles, telle que lue par les calculs.
+ *
+ * Le contenu est immuable: une publication cree une nouvelle instance et la
+ * substitue en une seule ecriture (voir RuleVersionService). Un calcul qui a
+ * lu une instance la garde jusqu'au bout, il ne voit donc jamais un melange
+ * de deux versions. Les TaxRuleSet compiles par date sont gardes avec la
+ * version: ils disparaissent avec elle, sans invalidation de cache.
+ */
+public final class PublishedRules {
+
+    /** Dates compilees gardees au maximum (aujourd'hui + periodes de l'historique) */
+    private static final int MAX_COMPILED_DATES = 64;
+
+    private final long versionId;
+    private final Instant publishedAt;
+    private final String fingerprint;
+    private final RuleSnapshot snapshot;
+    private final ConcurrentMap<LocalDate, TaxRuleSet> ruleSets = new ConcurrentHashMap<>();
+
+    public PublishedRules(long versionId, Instant publishedAt, String fingerprint, RuleSnapshot snapshot) {
+        this.versionId = versionId;
+        this.publishedAt = publishedAt;
+        this.fingerprint = fingerprint;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Jeu de regles de cette version valide a une date donnee (compile une seule fois par date).
+     */
+    public TaxRuleSet ruleSetAt(LocalDate date) {
+        TaxRuleSet ruleSet = ruleSets.get(date);
+        if (ruleSet == null) {
+            if (ruleSets.size() >= MAX_COMPILED_DATES) {
+                ruleSets.clear();
+            }
+            ruleSet = ruleSets.computeIfAbsent(date, snapshot::ruleSetAt);
+        }
+        return ruleSet;
+    }
+
+    public long getVersionId() {
+        return versionId;
+    }
+
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public RuleSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
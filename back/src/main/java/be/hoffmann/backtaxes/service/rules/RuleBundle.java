@@ -0,0 +1,50 @@
+package be.hoffmann.backtaxes.service.rules;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bundle portable des regles en vigueur, pour le calcul cote client.
+ *
+ * Les formules a appliquer sont decrites dans la specification de reference
+ * du moteur (formulaVersion). version est le hash du contenu: un bundle donne
+ * ne change jamais, un client ne le re-telecharge que si la version change.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RuleBundle(
+        int schemaVersion,
+        int formulaVersion,
+        String version,
+        Map<Region, Map<TaxType, Rules>> rules
+) {
+
+    public static final int SCHEMA_VERSION = 1;
+
+    public RuleBundle withVersion(String version) {
+        return new RuleBundle(schemaVersion, formulaVersion, version, rules);
+    }
+
+    /**
+     * Regles d'une region pour un type de taxe (min_amount / max_amount sont des parametres).
+     */
+    public record Rules(
+            Map<String, List<Bracket>> brackets,
+            Map<String, BigDecimal> parameters,
+            Map<Integer, BigDecimal> ageCoefficients,
+            List<String> exemptions
+    ) {}
+
+    /**
+     * Tranche, serialisee en tableau compact [min, max, amount] (max null = sans borne).
+     */
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"min", "max", "amount"})
+    public record Bracket(int min, Integer max, BigDecimal amount) {}
+}
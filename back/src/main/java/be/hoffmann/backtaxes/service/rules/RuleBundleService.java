@@ -0,0 +1,205 @@
+package be.hoffmann.backtaxes.service.rules;
+
+import be.hoffmann.backtaxes.engine.TaxEngine;
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service d'export des regles en vigueur sous forme de bundle portable.
+ *
+ * Le bundle est compile une seule fois par jeu de regles (empreinte du
+ * TaxRuleSet) et garde en memoire, deja serialise et compresse: la sonde de
+ * version et le telechargement ne font aucun calcul ni acces a la base.
+ */
+@Service
+public class RuleBundleService {
+
+    private static final Logger log = LoggerFactory.getLogger(RuleBundleService.class);
+
+    /** Longueur (hex) de la version: 64 bits du SHA-256 du contenu */
+    private static final int VERSION_LENGTH = 16;
+
+    private final RuleVersionService ruleVersionService;
+    private final ObjectMapper objectMapper;
+    private final AtomicReference<CompiledBundle> current = new AtomicReference<>();
+    private volatile FormulaSpec formulaSpec;
+
+    public RuleBundleService(RuleVersionService ruleVersionService, ObjectMapper objectMapper) {
+        this.ruleVersionService = ruleVersionService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Bundle des regles valides aujourd'hui (recompile seulement si les regles ont change).
+     */
+    public CompiledBundle getCurrentBundle() {
+        TaxRuleSet rules = ruleVersionService.getRuleSet(LocalDate.now());
+        CompiledBundle bundle = current.get();
+        if (bundle != null && bundle.rulesFingerprint().equals(rules.fingerprint())) {
+            return bundle;
+        }
+        CompiledBundle compiled = compile(rules);
+        current.set(compiled);
+        log.info("Compiled rule bundle {} ({} rules, {} bytes, {} gzipped)",
+                compiled.version(), rules.size(), compiled.json().length, compiled.gzipped().length);
+        return compiled;
+    }
+
+    /**
+     * Bundle d'une version donnee, s'il s'agit de la version courante.
+     * Une ancienne version n'est plus servie: le client doit relire la version courante.
+     */
+    public Optional<CompiledBundle> findBundle(String version) {
+        CompiledBundle bundle = getCurrentBundle();
+        return bundle.version().equals(version) ? Optional.of(bundle) : Optional.empty();
+    }
+
+    /**
+     * Specification de reference des formules (ressource du module tax-engine).
+     */
+    public FormulaSpec getFormulaSpec() {
+        FormulaSpec spec = formulaSpec;
+        if (spec == null) {
+            try (InputStream in = TaxEngine.class.getResourceAsStream(TaxEngine.FORMULA_SPEC_RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing resource " + TaxEngine.FORMULA_SPEC_RESOURCE);
+                }
+                byte[] content = in.readAllBytes();
+                spec = new FormulaSpec(TaxEngine.FORMULA_VERSION, sha256(content).substring(0, VERSION_LENGTH), content);
+                formulaSpec = spec;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read formula specification", e);
+            }
+        }
+        return spec;
+    }
+
+    /**
+     * Serialise le bundle de facon deterministe (cles triees) et calcule sa version
+     * a partir du contenu.
+     */
+    CompiledBundle compile(TaxRuleSet ruleSet) {
+        RuleBundle bundle = toBundle(ruleSet);
+        String version = sha256(objectMapper.writeValueAsBytes(bundle)).substring(0, VERSION_LENGTH);
+        byte[] json = objectMapper.writeValueAsBytes(bundle.withVersion(version));
+        return new CompiledBundle(version, ruleSet.fingerprint(), json, gzip(json));
+    }
+
+    private static RuleBundle toBundle(TaxRuleSet ruleSet) {
+        Map<Region, Map<TaxType, MutableRules>> collected = new EnumMap<>(Region.class);
+        ruleSet.accept(new TaxRuleSet.Visitor() {
+            @Override
+            public void bracket(Region region, TaxType taxType, String bracketKey, TaxRuleSet.BracketRule rule) {
+                rules(region, taxType).brackets.computeIfAbsent(bracketKey, k -> new ArrayList<>())
+                        .add(new RuleBundle.Bracket(rule.minValue(), rule.maxValue(), normalize(rule.amount())));
+            }
+
+            @Override
+            public void parameter(Region region, TaxType taxType, String paramKey, BigDecimal value) {
+                rules(region, taxType).parameters.put(paramKey, normalize(value));
+            }
+
+            @Override
+            public void ageCoefficient(Region region, TaxType taxType, int vehicleAgeYears, BigDecimal coefficient) {
+                rules(region, taxType).ageCoefficients.put(vehicleAgeYears, normalize(coefficient));
+            }
+
+            @Override
+            public void exemption(Region region, TaxType taxType, String conditionKey) {
+                rules(region, taxType).exemptions.add(conditionKey);
+            }
+
+            private MutableRules rules(Region region, TaxType taxType) {
+                return collected.computeIfAbsent(region, r -> new EnumMap<>(TaxType.class))
+                        .computeIfAbsent(taxType, t -> new MutableRules());
+            }
+        });
+
+        Map<Region, Map<TaxType, RuleBundle.Rules>> rules = new EnumMap<>(Region.class);
+        collected.forEach((region, byType) -> {
+            Map<TaxType, RuleBundle.Rules> regionRules = new EnumMap<>(TaxType.class);
+            byType.forEach((taxType, mutable) -> regionRules.put(taxType, mutable.toRules()));
+            rules.put(region, regionRules);
+        });
+        return new RuleBundle(RuleBundle.SCHEMA_VERSION, TaxEngine.FORMULA_VERSION, null, rules);
+    }
+
+    /**
+     * Forme canonique d'un montant (1.0000 -> 1, jamais de notation scientifique).
+     */
+    private static BigDecimal normalize(BigDecimal value) {
+        return value == null ? null : new BigDecimal(value.stripTrailingZeros().toPlainString());
+    }
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Bundle compile: JSON brut et compresse, prets a etre servis.
+     */
+    public record CompiledBundle(String version, String rulesFingerprint, byte[] json, byte[] gzipped) {
+    }
+
+    /**
+     * Specification des formules (markdown) et sa cle de contenu.
+     */
+    public record FormulaSpec(int formulaVersion, String contentKey, byte[] content) {
+    }
+
+    private static final class MutableRules {
+        private final Map<String, List<RuleBundle.Bracket>> brackets = new TreeMap<>();
+        private final Map<String, BigDecimal> parameters = new TreeMap<>();
+        private final Map<Integer, BigDecimal> ageCoefficients = new TreeMap<>();
+        private final TreeSet<String> exemptions = new TreeSet<>();
+
+        RuleBundle.Rules toRules() {
+            brackets.values().forEach(list -> list.sort(Comparator.comparingInt(RuleBundle.Bracket::min)));
+            return new RuleBundle.Rules(brackets, parameters, ageCoefficients, List.copyOf(exemptions));
+        }
+    }
+}
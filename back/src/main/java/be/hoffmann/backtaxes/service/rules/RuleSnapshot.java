@@ -0,0 +1,143 @@
+package be.hoffmann.backtaxes.service.rules;
+
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.entity.AgeCoefficient;
+import be.hoffmann.backtaxes.entity.TaxBracket;
+import be.hoffmann.backtaxes.entity.TaxExemption;
+import be.hoffmann.backtaxes.entity.TaxParameter;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Copie complete des regles du brouillon, periodes de validite comprises.
+ *
+ * C'est le contenu d'une version publiee: les lignes sont triees de facon
+ * canonique pour qu'un meme brouillon donne toujours la meme serialisation
+ * (et donc la meme empreinte), quel que soit l'ordre de lecture en base.
+ */
+public record RuleSnapshot(
+        List<BracketRow> brackets,
+        List<ParameterRow> parameters,
+        List<AgeCoefficientRow> ageCoefficients,
+        List<ExemptionRow> exemptions
+) {
+
+    public RuleSnapshot {
+        brackets = List.copyOf(brackets);
+        parameters = List.copyOf(parameters);
+        ageCoefficients = List.copyOf(ageCoefficients);
+        exemptions = List.copyOf(exemptions);
+    }
+
+    /**
+     * Copie les lignes des tables de configuration (le brouillon).
+     */
+    public static RuleSnapshot of(List<TaxBracket> brackets, List<TaxParameter> parameters,
+                                  List<AgeCoefficient> ageCoefficients, List<TaxExemption> exemptions) {
+        return new RuleSnapshot(
+                brackets.stream()
+                        .map(b -> new BracketRow(b.getRegion(), b.getTaxType(), b.getBracketKey(),
+                                b.getMinValue(), b.getMaxValue(), b.getAmount(), b.getValidFrom(), b.getValidTo()))
+                        .sorted(BracketRow.ORDER)
+                        .toList(),
+                parameters.stream()
+                        .map(p -> new ParameterRow(p.getRegion(), p.getTaxType(), p.getParamKey(),
+                                p.getParamValue(), p.getValidFrom(), p.getValidTo()))
+                        .sorted(ParameterRow.ORDER)
+                        .toList(),
+                ageCoefficients.stream()
+                        .map(ac -> new AgeCoefficientRow(ac.getRegion(), ac.getTaxType(), ac.getVehicleAgeYears(),
+                                ac.getCoefficient(), ac.getValidFrom(), ac.getValidTo()))
+                        .sorted(AgeCoefficientRow.ORDER)
+                        .toList(),
+                exemptions.stream()
+                        .map(te -> new ExemptionRow(te.getRegion(), te.getTaxType(), te.getConditionKey(),
+                                te.getValidFrom(), te.getValidTo()))
+                        .sorted(ExemptionRow.ORDER)
+                        .toList());
+    }
+
+    /**
+     * Compile le jeu de regles immuable valide a une date donnee.
+     */
+    public TaxRuleSet ruleSetAt(LocalDate date) {
+        TaxRuleSet.Builder builder = TaxRuleSet.builder(date);
+        brackets.stream().filter(b -> isValidAt(date, b.validFrom(), b.validTo())).forEach(b ->
+                builder.bracket(b.region(), b.taxType(), b.key(), b.min(), b.max(), b.amount()));
+        parameters.stream().filter(p -> isValidAt(date, p.validFrom(), p.validTo())).forEach(p ->
+                builder.parameter(p.region(), p.taxType(), p.key(), p.value()));
+        ageCoefficients.stream().filter(ac -> isValidAt(date, ac.validFrom(), ac.validTo())).forEach(ac ->
+                builder.ageCoefficient(ac.region(), ac.taxType(), ac.age(), ac.coefficient()));
+        exemptions.stream().filter(te -> isValidAt(date, te.validFrom(), te.validTo())).forEach(te ->
+                builder.exemption(te.region(), te.taxType(), te.conditionKey()));
+        return builder.build();
+    }
+
+    /**
+     * Dates de debut de chaque periode de validite, triees.
+     * Une nouvelle periode commence a chaque valid_from et le lendemain de chaque valid_to.
+     */
+    public List<LocalDate> periodBoundaries() {
+        TreeSet<LocalDate> boundaries = new TreeSet<>();
+        brackets.forEach(b -> addPeriod(boundaries, b.validFrom(), b.validTo()));
+        parameters.forEach(p -> addPeriod(boundaries, p.validFrom(), p.validTo()));
+        ageCoefficients.forEach(ac -> addPeriod(boundaries, ac.validFrom(), ac.validTo()));
+        exemptions.forEach(te -> addPeriod(boundaries, te.validFrom(), te.validTo()));
+        return new ArrayList<>(boundaries);
+    }
+
+    public int size() {
+        return brackets.size() + parameters.size() + ageCoefficients.size() + exemptions.size();
+    }
+
+    private static boolean isValidAt(LocalDate date, LocalDate validFrom, LocalDate validTo) {
+        return !date.isBefore(validFrom) && (validTo == null || !date.isAfter(validTo));
+    }
+
+    private static void addPeriod(TreeSet<LocalDate> boundaries, LocalDate validFrom, LocalDate validTo) {
+        boundaries.add(validFrom);
+        if (validTo != null) {
+            boundaries.add(validTo.plusDays(1));
+        }
+    }
+
+    public record BracketRow(Region region, TaxType taxType, String key, int min, Integer max,
+                             BigDecimal amount, LocalDate validFrom, LocalDate validTo) {
+        static final Comparator<BracketRow> ORDER = Comparator.comparing(BracketRow::region)
+                .thenComparing(BracketRow::taxType)
+                .thenComparing(BracketRow::key)
+                .thenComparingInt(BracketRow::min)
+                .thenComparing(BracketRow::validFrom);
+    }
+
+    public record ParameterRow(Region region, TaxType taxType, String key, BigDecimal value,
+                               LocalDate validFrom, LocalDate validTo) {
+        static final Comparator<ParameterRow> ORDER = Comparator.comparing(ParameterRow::region)
+                .thenComparing(ParameterRow::taxType)
+                .thenComparing(ParameterRow::key)
+                .thenComparing(ParameterRow::validFrom);
+    }
+
+    public record AgeCoefficientRow(Region region, TaxType taxType, int age, BigDecimal coefficient,
+                                    LocalDate validFrom, LocalDate validTo) {
+        static final Comparator<AgeCoefficientRow> ORDER = Comparator.comparing(AgeCoefficientRow::region)
+                .thenComparing(AgeCoefficientRow::taxType)
+                .thenComparingInt(AgeCoefficientRow::age)
+                .thenComparing(AgeCoefficientRow::validFrom);
+    }
+
+    public record ExemptionRow(Region region, TaxType taxType, String conditionKey,
+                               LocalDate validFrom, LocalDate validTo) {
+        static final Comparator<ExemptionRow> ORDER = Comparator.comparing(ExemptionRow::region)
+                .thenComparing(ExemptionRow::taxType)
+                .thenComparing(ExemptionRow::conditionKey)
+                .thenComparing(ExemptionRow::validFrom);
+    }
+}
@@ -0,0 +1,263 @@
+package be.hoffmann.backtaxes.service.rules;
+
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.entity.TaxRuleVersion;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.repository.AgeCoefficientRepository;
+import be.hoffmann.backtaxes.repository.TaxBracketRepository;
+import be.hoffmann.backtaxes.repository.TaxExemptionRepository;
+import be.hoffmann.backtaxes.repository.TaxParameterRepository;
+import be.hoffmann.backtaxes.repository.TaxRuleVersionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Service de publication des regles de taxation.
+ *
+ * Les tables de configuration sont le brouillon: les modifications des
+ * administrateurs (CRUD, indexation) n'ont aucun effet sur les calculs tant
+ * qu'elles ne sont pas publiees. Publier fige le brouillon dans une version
+ * immuable (tax_rule_versions), la compile et la substitue a la version
+ * courante via une seule AtomicReference: les lectures ne prennent aucun
+ * verrou et ne voient jamais une version partiellement appliquee.
+ *
+ * Une version ne devient courante qu'une fois sa transaction validee: la
+ * version initiale est publiee au demarrage dans sa propre transaction
+ * (les calculs tournent dans des transactions en lecture seule), une
+ * publication est substituee apres le commit.
+ *
+ * Les publications (et la version initiale) sont serialisees par un verrou
+ * en base pris dans leur transaction, pour toutes les instances: le
+ * brouillon est compare a la derniere version enregistree, pas a la version
+ * courante en memoire, qui peut ne pas encore voir un commit concurrent.
+ */
+@Service
+public class RuleVersionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RuleVersionService.class);
+
+    private static final String INITIAL_NOTE = "Version initiale";
+
+    private final TaxRuleVersionRepository versionRepository;
+    private final TaxBracketRepository taxBracketRepository;
+    private final TaxParameterRepository taxParameterRepository;
+    private final AgeCoefficientRepository ageCoefficientRepository;
+    private final TaxExemptionRepository taxExemptionRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate initializeTemplate;
+    private final AtomicReference<PublishedRules> current = new AtomicReference<>();
+
+    public RuleVersionService(
+            TaxRuleVersionRepository versionRepository,
+            TaxBracketRepository taxBracketRepository,
+            TaxParameterRepository taxParameterRepository,
+            AgeCoefficientRepository ageCoefficientRepository,
+            TaxExemptionRepository taxExemptionRepository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.versionRepository = versionRepository;
+        this.taxBracketRepository = taxBracketRepository;
+        this.taxParameterRepository = taxParameterRepository;
+        this.ageCoefficientRepository = ageCoefficientRepository;
+        this.taxExemptionRepository = taxExemptionRepository;
+        this.objectMapper = objectMapper;
+        this.initializeTemplate = new TransactionTemplate(transactionManager);
+        this.initializeTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Charge la version courante au demarrage, ou publie le brouillon si la
+     * base n'en a aucune, avant le premier calcul.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeAtStartup() {
+        current();
+    }
+
+    /**
+     * Version publiee courante (lecture sans verrou).
+     * Si le demarrage n'a pas encore charge de version, la charge ou publie
+     * le brouillon dans une transaction separee, en ecriture.
+     */
+    public PublishedRules current() {
+        PublishedRules published = current.get();
+        return published != null ? published : initialize();
+    }
+
+    /**
+     * Jeu de regles publie valide a une date donnee.
+     */
+    public TaxRuleSet getRuleSet(LocalDate date) {
+        return current().ruleSetAt(date);
+    }
+
+    /**
+     * Publie le brouillon: fige les regles dans une nouvelle version et la rend courante.
+     *
+     * @param note Commentaire libre (optionnel)
+     * @throws ValidationException si le brouillon est identique a la derniere version publiee
+     */
+    @Transactional
+    public PublishedRules publish(String note) {
+        current(); // version initiale d'abord, dans sa propre transaction
+        versionRepository.lockPublication();
+        TaxRuleVersion latest = versionRepository.findTopByOrderByIdDesc().orElse(null);
+        Draft draft = readDraft();
+        if (latest != null && draft.fingerprint().equals(latest.getFingerprint())) {
+            throw new ValidationException("Le brouillon est identique a la version publiee " + latest.getId());
+        }
+        PublishedRules published = save(draft, note);
+        swapAfterCommit(published);
+        log.info("Published tax rule version {} ({} rules, replaces version {})",
+                published.getVersionId(), draft.snapshot().size(), latest != null ? latest.getId() : null);
+        return published;
+    }
+
+    /**
+     * Indique si le brouillon differe de la version publiee.
+     */
+    @Transactional(readOnly = true)
+    public boolean hasPendingChanges() {
+        return !readDraft().fingerprint().equals(current().getFingerprint());
+    }
+
+    /**
+     * Versions publiees, de la plus recente a la plus ancienne.
+     */
+    @Transactional(readOnly = true)
+    public List<TaxRuleVersion> listVersions() {
+        return versionRepository.findAllByOrderByIdDesc();
+    }
+
+    /**
+     * Recharge la derniere version si une autre instance l'a publiee.
+     */
+    @Scheduled(fixedDelayString = "${app.rules.refresh-interval-ms:60000}")
+    public void refresh() {
+        PublishedRules published = current.get();
+        if (published == null) {
+            return;
+        }
+        versionRepository.findLatestId()
+                .filter(latestId -> latestId > published.getVersionId())
+                .flatMap(latestId -> versionRepository.findById(latestId))
+                .ifPresent(version -> {
+                    PublishedRules loaded = compile(version.getId(), version.getPublishedAt(),
+                            version.getFingerprint(), readSnapshot(version));
+                    if (current.compareAndSet(published, loaded)) {
+                        log.info("Loaded tax rule version {} published by another instance", loaded.getVersionId());
+                    }
+                });
+    }
+
+    private synchronized PublishedRules initialize() {
+        PublishedRules published = current.get();
+        if (published != null) {
+            return published;
+        }
+        published = initializeTemplate.execute(status -> {
+            versionRepository.lockPublication();
+            return versionRepository.findTopByOrderByIdDesc()
+                    .map(version -> compile(version.getId(), version.getPublishedAt(),
+                            version.getFingerprint(), readSnapshot(version)))
+                    .orElseGet(() -> save(readDraft(), INITIAL_NOTE));
+        });
+        current.set(published);
+        log.info("Using tax rule version {} ({} rules)", published.getVersionId(), published.getSnapshot().size());
+        return published;
+    }
+
+    /**
+     * Rend la version courante une fois la transaction validee (tout de
+     * suite hors transaction); une transaction annulee la laisse invisible.
+     */
+    private void swapAfterCommit(PublishedRules published) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            swap(published);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                swap(published);
+            }
+        });
+    }
+
+    /**
+     * Garde la plus recente des deux versions (refresh peut avoir charge
+     * une version plus recente entre-temps).
+     */
+    private void swap(PublishedRules published) {
+        current.accumulateAndGet(published, (previous, next) ->
+                previous == null || next.getVersionId() > previous.getVersionId() ? next : previous);
+    }
+
+    private PublishedRules save(Draft draft, String note) {
+        TaxRuleVersion version = new TaxRuleVersion();
+        version.setFingerprint(draft.fingerprint());
+        version.setRuleCount(draft.snapshot().size());
+        version.setRules(draft.json());
+        version.setNote(note);
+        version.setPublishedAt(Instant.now());
+        version = versionRepository.save(version);
+
+        return compile(version.getId(), version.getPublishedAt(), draft.fingerprint(), draft.snapshot());
+    }
+
+    /**
+     * Compile la version pour aujourd'hui avant de la rendre visible:
+     * le premier calcul apres la publication ne paie pas la compilation.
+     */
+    private static PublishedRules compile(long versionId, Instant publishedAt, String fingerprint, RuleSnapshot snapshot) {
+        PublishedRules published = new PublishedRules(versionId, publishedAt, fingerprint, snapshot);
+        published.ruleSetAt(LocalDate.now());
+        return published;
+    }
+
+    private Draft readDraft() {
+        RuleSnapshot snapshot = RuleSnapshot.of(
+                taxBracketRepository.findAll(),
+                taxParameterRepository.findAll(),
+                ageCoefficientRepository.findAll(),
+                taxExemptionRepository.findAll());
+        String json = objectMapper.writeValueAsString(snapshot);
+        return new Draft(snapshot, json, sha256(json));
+    }
+
+    private RuleSnapshot readSnapshot(TaxRuleVersion version) {
+        return objectMapper.readValue(version.getRules(), RuleSnapshot.class);
+    }
+
+    private static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Draft(RuleSnapshot snapshot, String json, String fingerprint) {
+    }
+}
@@ -0,0 +1,161 @@
+package be.hoffmann.backtaxes.batch;
+
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.entity.Variant;
+import be.hoffmann.backtaxes.entity.enums.EuroNorm;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.repository.VariantRepository;
+import be.hoffmann.backtaxes.service.rules.RuleVersionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FleetRatingBatchRunnerTest {
+
+    private static final LocalDate RATE_DATE = LocalDate.of(2025, 6, 1);
+
+    @Mock
+    private VariantRepository variantRepository;
+
+    @Mock
+    private RuleVersionService ruleVersionService;
+
+    @TempDir
+    Path directory;
+
+    private Path input;
+    private Path output;
+
+    @BeforeEach
+    void setUp() {
+        input = directory.resolve("fleet.csv");
+        output = directory.resolve("fleet-taxes.csv");
+    }
+
+    @Nested
+    @DisplayName("process")
+    class ProcessTests {
+
+        @Test
+        @DisplayName("should rate each row and report invalid rows as errors")
+        void shouldRateRows() throws IOException {
+            stubRulesAndVariant();
+            Files.writeString(input, """
+                    reference,variant_id,region,first_registration_date
+                    CAR-1,1,brussels,
+                    CAR-2,1,brussels,2024-06-01
+                    CAR-3,99,brussels,
+                    CAR-4,1,atlantis,
+                    """);
+
+            FleetRatingBatchRunner.BatchReport report = runner(2).process(input, output);
+
+            assertThat(report.processed()).isEqualTo(4);
+            assertThat(report.errors()).isEqualTo(2);
+            assertThat(Files.readAllLines(output)).containsExactly(
+                    FleetRatingBatchRunner.OUTPUT_HEADER,
+                    "CAR-1,1,brussels,2025-06-01,609.99,250.00,ok,",
+                    "CAR-2,1,brussels,2024-06-01,548.99,250.00,ok,",
+                    "CAR-3,99,brussels,,,,error,Variant not found with id: 99",
+                    "CAR-4,1,atlantis,,,,error,Invalid region 'atlantis'");
+        }
+
+        @Test
+        @DisplayName("should resolve the variants of a chunk in one query")
+        void shouldResolveVariantsInBulk() throws IOException {
+            stubRulesAndVariant();
+            Files.writeString(input, """
+                    reference,variant_id,region
+                    CAR-1,1,brussels
+                    CAR-2,1,brussels
+                    CAR-3,1,brussels
+                    """);
+
+            runner(2).process(input, output);
+
+            verify(variantRepository, times(2)).findAllById(any());
+        }
+
+        @Test
+        @DisplayName("should skip rows already written by an interrupted run")
+        void shouldResumeInterruptedRun() throws IOException {
+            stubRulesAndVariant();
+            Files.writeString(input, """
+                    reference,variant_id,region
+                    CAR-1,1,brussels
+                    CAR-2,1,brussels
+                    """);
+            // Arret brutal pendant l'ecriture de CAR-2
+            Files.writeString(output, FleetRatingBatchRunner.OUTPUT_HEADER + "\n"
+                    + "CAR-1,1,brussels,2025-06-01,609.99,250.00,ok,\n"
+                    + "CAR-2,1,bru");
+
+            FleetRatingBatchRunner.BatchReport report = runner(10).process(input, output);
+
+            assertThat(report.processed()).isEqualTo(1);
+            assertThat(report.skipped()).isEqualTo(1);
+            assertThat(Files.readAllLines(output)).containsExactly(
+                    FleetRatingBatchRunner.OUTPUT_HEADER,
+                    "CAR-1,1,brussels,2025-06-01,609.99,250.00,ok,",
+                    "CAR-2,1,brussels,2025-06-01,609.99,250.00,ok,");
+        }
+
+        @Test
+        @DisplayName("should reject an input file without required columns")
+        void shouldRejectMissingColumns() throws IOException {
+            when(ruleVersionService.getRuleSet(any())).thenReturn(TaxRuleSet.builder(RATE_DATE).build());
+            Files.writeString(input, "reference,region\nCAR-1,brussels\n");
+
+            assertThatThrownBy(() -> runner(10).process(input, output))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("variant_id");
+        }
+    }
+
+    private FleetRatingBatchRunner runner(int chunkSize) {
+        return new FleetRatingBatchRunner(
+                variantRepository, ruleVersionService, "", "", 2, chunkSize, 10);
+    }
+
+    private void stubRulesAndVariant() {
+        TaxRuleSet rules = TaxRuleSet.builder(RATE_DATE)
+                .bracket(Region.brussels, TaxType.tmc, "fiscal_hp", 0, null, new BigDecimal("609.99"))
+                .bracket(Region.brussels, TaxType.tmc, "power_kw", 0, null, new BigDecimal("75.79"))
+                .bracket(Region.brussels, TaxType.annual, "fiscal_hp", 0, null, new BigDecimal("250.00"))
+                .ageCoefficient(Region.brussels, TaxType.tmc, 1, new BigDecimal("0.9"))
+                .build();
+        when(ruleVersionService.getRuleSet(any())).thenReturn(rules);
+
+        Variant variant = new Variant();
+        variant.setId(1L);
+        variant.setPowerKw(60);
+        variant.setFiscalHp(11);
+        variant.setFuel(FuelType.petrol);
+        variant.setEuroNorm(EuroNorm.euro_6d);
+        variant.setCo2Wltp(120);
+        variant.setMmaKg(1400);
+        when(variantRepository.findAllById(any())).thenReturn(List.of(variant));
+    }
+}
@@ -4,8 +4,11 @@ import be.hoffmann.backtaxes.entity.Brand;
 import be.hoffmann.backtaxes.entity.Model;
 import be.hoffmann.backtaxes.entity.Variant;
 import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
 import be.hoffmann.backtaxes.exception.GlobalExceptionHandler;
 import be.hoffmann.backtaxes.exception.ResourceNotFoundException;
+import be.hoffmann.backtaxes.service.AnalyticsService;
+import be.hoffmann.backtaxes.service.analytics.SearchEventRecord;
 import be.hoffmann.backtaxes.service.ModelService;
 import be.hoffmann.backtaxes.service.VariantService;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,6 +16,8 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.web.servlet.MockMvc;
@@ -21,7 +26,9 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import java.util.Arrays;
 import java.util.Collections;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -38,9 +45,16 @@ class ModelControllerTest {
     @Mock
     private VariantService variantService;
 
+    @Mock
+    private AnalyticsService analyticsService;
+
+    @Captor
+    private ArgumentCaptor<AnalyticsService.SearchEventBuilder> searchCaptor;
+
     @BeforeEach
     void setUp() {
-        ModelController controller = new ModelController(modelService, variantService);
+        lenient().when(analyticsService.builder()).thenAnswer(invocation -> new AnalyticsService.SearchEventBuilder());
+        ModelController controller = new ModelController(modelService, variantService, analyticsService);
         mockMvc = MockMvcBuilders.standaloneSetup(controller)
                 .setControllerAdvice(new GlobalExceptionHandler())
                 .build();
@@ -110,6 +124,20 @@ class ModelControllerTest {
                     .andExpect(jsonPath("$.data[1].name", is("A 200")));
         }
 
+        @Test
+        @DisplayName("should log a browse search for the model")
+        void shouldLogBrowseSearch() throws Exception {
+            when(variantService.findByModelId(5L)).thenReturn(Collections.emptyList());
+
+            mockMvc.perform(get("/api/models/5/variants"))
+                    .andExpect(status().isOk());
+
+            verify(analyticsService).logSearch(searchCaptor.capture(), any(), any());
+            SearchEventRecord search = searchCaptor.getValue().toRecord();
+            assertThat(search.searchType()).isEqualTo(SearchType.browse);
+            assertThat(search.modelId()).isEqualTo(5L);
+        }
+
         @Test
         @DisplayName("should return empty list when model has no variants")
         void shouldReturnEmptyWhenNoVariants() throws Exception {
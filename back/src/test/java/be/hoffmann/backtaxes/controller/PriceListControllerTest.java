@@ -0,0 +1,164 @@
+package be.hoffmann.backtaxes.controller;
+
+import be.hoffmann.backtaxes.exception.GlobalExceptionHandler;
+import be.hoffmann.backtaxes.service.pricelist.PriceListGenerator;
+import be.hoffmann.backtaxes.service.pricelist.PriceListGenerator.PriceListFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceListControllerTest {
+
+    private static final String JSON = "{\"schemaVersion\":1,\"version\":\"abc123\"}";
+    private static final String ETAG = "\"abc123\"";
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private PriceListGenerator priceListGenerator;
+
+    private MockMvc mockMvc;
+    private PriceListFile file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockMvc = MockMvcBuilders.standaloneSetup(new PriceListController(priceListGenerator))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        Path path = directory.resolve("42.json.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+            out.write(JSON.getBytes(StandardCharsets.UTF_8));
+        }
+        file = new PriceListFile(path, "abc123");
+    }
+
+    @Nested
+    @DisplayName("GET /api/price-lists/variants/{id}")
+    class GetVariantPriceListTests {
+
+        @Test
+        @DisplayName("should serve the pre-compressed file as is when gzip is accepted")
+        void shouldServeGzip() throws Exception {
+            when(priceListGenerator.findVariantDocument(42L)).thenReturn(Optional.of(file));
+
+            mockMvc.perform(get("/api/price-lists/variants/42")
+                            .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                    .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                    .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, Files.size(file.path())))
+                    .andExpect(content().bytes(Files.readAllBytes(file.path())));
+        }
+
+        @Test
+        @DisplayName("should decompress the file when no encoding is accepted")
+        void shouldDecompressWithoutAcceptEncoding() throws Exception {
+            when(priceListGenerator.findVariantDocument(42L)).thenReturn(Optional.of(file));
+
+            mockMvc.perform(get("/api/price-lists/variants/42"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                    .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                    .andExpect(content().json(JSON));
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {"gzip;q=0", "gzip; q=0.0, identity", "br, *;q=0", "deflate", "*;q=1, gzip;q=0"})
+        @DisplayName("should decompress the file when gzip is refused or not listed")
+        void shouldDecompressWhenGzipRefused(String acceptEncoding) throws Exception {
+            when(priceListGenerator.findVariantDocument(42L)).thenReturn(Optional.of(file));
+
+            mockMvc.perform(get("/api/price-lists/variants/42")
+                            .header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                    .andExpect(content().json(JSON));
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {"GZIP", "deflate;q=1, gzip;q=0.5", "x-gzip", "br, *"})
+        @DisplayName("should accept gzip with a non-zero quality or through the wildcard")
+        void shouldAcceptGzipQualities(String acceptEncoding) throws Exception {
+            when(priceListGenerator.findVariantDocument(42L)).thenReturn(Optional.of(file));
+
+            mockMvc.perform(get("/api/price-lists/variants/42")
+                            .header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+        }
+
+        @Test
+        @DisplayName("should return 304 when the ETag matches")
+        void shouldReturnNotModified() throws Exception {
+            when(priceListGenerator.findVariantDocument(42L)).thenReturn(Optional.of(file));
+
+            mockMvc.perform(get("/api/price-lists/variants/42")
+                            .header(HttpHeaders.IF_NONE_MATCH, ETAG)
+                            .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                    .andExpect(status().isNotModified());
+        }
+
+        @Test
+        @DisplayName("should return 404 when the price list was not generated")
+        void shouldReturn404WhenNotGenerated() throws Exception {
+            when(priceListGenerator.findVariantDocument(999L)).thenReturn(Optional.empty());
+
+            mockMvc.perform(get("/api/price-lists/variants/999"))
+                    .andExpect(status().isNotFound());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/price-lists/models/{id}")
+    class GetModelPriceListTests {
+
+        @Test
+        @DisplayName("should serve the pre-compressed model file when gzip is accepted")
+        void shouldServeGzip() throws Exception {
+            when(priceListGenerator.findModelDocument(42L)).thenReturn(Optional.of(file));
+
+            mockMvc.perform(get("/api/price-lists/models/42")
+                            .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andExpect(content().bytes(Files.readAllBytes(file.path())));
+        }
+
+        @Test
+        @DisplayName("should return 404 when the price list was not generated")
+        void shouldReturn404WhenNotGenerated() throws Exception {
+            when(priceListGenerator.findModelDocument(999L)).thenReturn(Optional.empty());
+
+            mockMvc.perform(get("/api/price-lists/models/999"))
+                    .andExpect(status().isNotFound());
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package be.hoffmann.backtaxes.controller;
 
 import be.hoffmann.backtaxes.dto.response.TaxCalculationResponse;
+import be.hoffmann.backtaxes.dto.response.TaxComparisonResponse;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
 import be.hoffmann.backtaxes.entity.enums.Region;
 import be.hoffmann.backtaxes.entity.enums.TaxType;
 import be.hoffmann.backtaxes.exception.GlobalExceptionHandler;
@@ -8,11 +10,15 @@ import be.hoffmann.backtaxes.exception.ValidationException;
 import be.hoffmann.backtaxes.service.AnalyticsService;
 import be.hoffmann.backtaxes.service.TaxCalculationService;
 import be.hoffmann.backtaxes.service.TaxCalculationService.TaxCalculationResult;
+import be.hoffmann.backtaxes.service.TaxDistributionService;
+import be.hoffmann.backtaxes.service.analytics.TaxCalculationRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
@@ -20,11 +26,16 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -39,9 +50,15 @@ class TaxControllerTest {
     @Mock
     private AnalyticsService analyticsService;
 
+    @Mock
+    private TaxDistributionService taxDistributionService;
+
+    @Captor
+    private ArgumentCaptor<List<TaxCalculationRecord>> calculationsCaptor;
+
     @BeforeEach
     void setUp() {
-        TaxController controller = new TaxController(taxCalculationService, analyticsService);
+        TaxController controller = new TaxController(taxCalculationService, analyticsService, taxDistributionService);
         mockMvc = MockMvcBuilders.standaloneSetup(controller)
                 .setControllerAdvice(new GlobalExceptionHandler())
                 .build();
@@ -245,6 +262,40 @@ class TaxControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("GET /api/tax/compare")
+    class CompareTests {
+
+        @Test
+        @DisplayName("should place the amount among recent calculations without logging an event")
+        void shouldCompareAmount() throws Exception {
+            LocalDate today = LocalDate.now();
+            when(taxDistributionService.compare(Region.wallonia, TaxType.annual, FuelType.petrol, new BigDecimal("250")))
+                    .thenReturn(new TaxComparisonResponse(Region.wallonia, TaxType.annual, FuelType.petrol,
+                            new BigDecimal("250"), 42.5, 1200, new BigDecimal("270.00"), new BigDecimal("540.00"),
+                            today.minusDays(89), today));
+
+            mockMvc.perform(get("/api/tax/compare")
+                            .param("region", "wallonia").param("taxType", "annual")
+                            .param("fuelType", "petrol").param("amount", "250"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.percentile").value(42.5))
+                    .andExpect(jsonPath("$.data.sampleSize").value(1200));
+            verifyNoInteractions(analyticsService);
+        }
+
+        @Test
+        @DisplayName("should return 400 when the amount is negative")
+        void shouldRejectNegativeAmount() throws Exception {
+            when(taxDistributionService.compare(Region.wallonia, TaxType.annual, null, new BigDecimal("-1")))
+                    .thenThrow(new ValidationException("amount", "amount must be positive or zero"));
+
+            mockMvc.perform(get("/api/tax/compare")
+                            .param("region", "wallonia").param("taxType", "annual").param("amount", "-1"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
     @Nested
     @DisplayName("Analytics integration")
     class AnalyticsTests {
@@ -276,7 +327,13 @@ class TaxControllerTest {
                     .andExpect(status().isOk());
 
             verify(analyticsService).getOrCreateSessionId(any(), any());
-            verify(analyticsService).logSearch(any(AnalyticsService.SearchEventBuilder.class));
+            verify(analyticsService).logCalculation(any(AnalyticsService.SearchEventBuilder.class), calculationsCaptor.capture());
+            assertThat(calculationsCaptor.getValue())
+                    .extracting(TaxCalculationRecord::taxType, TaxCalculationRecord::calculatedAmount,
+                            TaxCalculationRecord::variantId)
+                    .containsExactly(
+                            tuple(TaxType.tmc, new BigDecimal("1000.00"), 1L),
+                            tuple(TaxType.annual, new BigDecimal("200.00"), 1L));
         }
     }
 
@@ -1,12 +1,18 @@
 package be.hoffmann.backtaxes.controller;
 
+import be.hoffmann.backtaxes.dto.response.TaxHistoryResponse;
 import be.hoffmann.backtaxes.entity.Brand;
 import be.hoffmann.backtaxes.entity.Model;
 import be.hoffmann.backtaxes.entity.Variant;
 import be.hoffmann.backtaxes.entity.enums.EuroNorm;
 import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
 import be.hoffmann.backtaxes.exception.GlobalExceptionHandler;
 import be.hoffmann.backtaxes.exception.ResourceNotFoundException;
+import be.hoffmann.backtaxes.service.AnalyticsService;
+import be.hoffmann.backtaxes.service.analytics.SearchEventRecord;
+import be.hoffmann.backtaxes.service.TaxHistoryService;
 import be.hoffmann.backtaxes.service.VariantService;
 import be.hoffmann.backtaxes.service.VariantService.VariantSearchCriteria;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,11 +21,14 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -39,9 +48,19 @@ class VariantControllerTest {
     @Mock
     private VariantService variantService;
 
+    @Mock
+    private TaxHistoryService taxHistoryService;
+
+    @Mock
+    private AnalyticsService analyticsService;
+
+    @Captor
+    private ArgumentCaptor<AnalyticsService.SearchEventBuilder> searchCaptor;
+
     @BeforeEach
     void setUp() {
-        VariantController controller = new VariantController(variantService);
+        lenient().when(analyticsService.builder()).thenAnswer(invocation -> new AnalyticsService.SearchEventBuilder());
+        VariantController controller = new VariantController(variantService, taxHistoryService, analyticsService);
         mockMvc = MockMvcBuilders.standaloneSetup(controller)
                 .setControllerAdvice(new GlobalExceptionHandler())
                 .build();
@@ -59,6 +78,22 @@ class VariantControllerTest {
                     .andExpect(jsonPath("$.data", hasSize(0)));
 
             verify(variantService, never()).search(any());
+            verify(analyticsService, never()).logSearch(any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("should log a filter search with the filtered brand and single fuel")
+        void shouldLogFilterSearch() throws Exception {
+            when(variantService.search(any())).thenReturn(List.of());
+
+            mockMvc.perform(get("/api/variants").param("brandId", "1").param("fuel", "diesel"))
+                    .andExpect(status().isOk());
+
+            verify(analyticsService).logSearch(searchCaptor.capture(), any(), any());
+            SearchEventRecord search = searchCaptor.getValue().toRecord();
+            assertEquals(SearchType.filter, search.searchType());
+            assertEquals(1L, search.brandId());
+            assertEquals(FuelType.diesel, search.fuelType());
         }
 
         @Test
@@ -248,6 +283,26 @@ class VariantControllerTest {
                     .andExpect(jsonPath("$.data.displacementCc", is(1995)));
         }
 
+        @Test
+        @DisplayName("should log a browse search with the variant, its model, brand and fuel")
+        void shouldLogBrowseSearch() throws Exception {
+            Brand bmw = createBrand(1L, "BMW");
+            Model serie3 = createModel(4L, "Serie 3", bmw);
+            Variant variant = createVariant(9L, "320d", serie3, 140, 10, FuelType.diesel);
+            when(variantService.findByIdWithDetails(9L)).thenReturn(variant);
+
+            mockMvc.perform(get("/api/variants/9").header("User-Agent", "Mozilla/5.0"))
+                    .andExpect(status().isOk());
+
+            verify(analyticsService).logSearch(searchCaptor.capture(), any(), any());
+            SearchEventRecord search = searchCaptor.getValue().toRecord();
+            assertEquals(SearchType.browse, search.searchType());
+            assertEquals(1L, search.brandId());
+            assertEquals(4L, search.modelId());
+            assertEquals(9L, search.variantId());
+            assertEquals(FuelType.diesel, search.fuelType());
+        }
+
         @Test
         @DisplayName("should return 404 when variant not found")
         void shouldReturn404WhenNotFound() throws Exception {
@@ -260,6 +315,57 @@ class VariantControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("GET /api/variants/{id}/tax-history")
+    class GetTaxHistoryTests {
+
+        @Test
+        @DisplayName("should return the periods with the taxes of each region")
+        void shouldReturnTaxHistory() throws Exception {
+            LocalDate registration = LocalDate.of(2019, 3, 15);
+            when(taxHistoryService.getHistory(9L, registration)).thenReturn(new TaxHistoryResponse(9L, registration,
+                    List.of(new TaxHistoryResponse.Period(LocalDate.of(2024, 7, 1), null, List.of(
+                            new TaxHistoryResponse.RegionTaxes(Region.wallonia,
+                                    new BigDecimal("1250.00"), false, new BigDecimal("295.02"), false))))));
+
+            mockMvc.perform(get("/api/variants/9/tax-history").param("firstRegistrationDate", "2019-03-15"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.variantId", is(9)))
+                    .andExpect(jsonPath("$.data.firstRegistrationDate", is("2019-03-15")))
+                    .andExpect(jsonPath("$.data.periods", hasSize(1)))
+                    .andExpect(jsonPath("$.data.periods[0].validFrom", is("2024-07-01")))
+                    .andExpect(jsonPath("$.data.periods[0].regions[0].region", is("wallonia")))
+                    .andExpect(jsonPath("$.data.periods[0].regions[0].tmc", is(1250.00)))
+                    .andExpect(jsonPath("$.data.periods[0].regions[0].annual", is(295.02)))
+                    .andExpect(jsonPath("$.data.periods[0].regions[0].annualExempt", is(false)));
+
+            verify(analyticsService, never()).logSearch(any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("should simulate a new vehicle when no registration date is given")
+        void shouldDefaultToNewVehicle() throws Exception {
+            when(taxHistoryService.getHistory(9L, null)).thenReturn(new TaxHistoryResponse(9L, null, List.of()));
+
+            mockMvc.perform(get("/api/variants/9/tax-history"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.periods", hasSize(0)));
+
+            verify(taxHistoryService).getHistory(9L, null);
+        }
+
+        @Test
+        @DisplayName("should return 404 when variant not found")
+        void shouldReturn404WhenNotFound() throws Exception {
+            when(taxHistoryService.getHistory(999L, null))
+                    .thenThrow(new ResourceNotFoundException("Variant", "id", 999L));
+
+            mockMvc.perform(get("/api/variants/999/tax-history"))
+                    .andExpect(status().isNotFound())
+                    .andExpect(jsonPath("$.error.code", is("NOT_FOUND")));
+        }
+    }
+
     // Helper methods
     private Brand createBrand(Long id, String name) {
         Brand brand = new Brand();
@@ -0,0 +1,152 @@
+package be.hoffmann.backtaxes.controller.admin;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsOverviewResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsOverviewResponse.UniqueSessions;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxAmountsResponse.TaxAmountStats;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxDistributionResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxDistributionResponse.Bin;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxDistributionResponse.Percentiles;
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse;
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse.MinuteTraffic;
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse.SearchAndCalculationCount;
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse.TrafficCounts;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.exception.GlobalExceptionHandler;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.service.AnalyticsQueryService;
+import be.hoffmann.backtaxes.service.TaxDistributionService;
+import be.hoffmann.backtaxes.service.analytics.LiveTrafficBroadcaster;
+import be.hoffmann.backtaxes.service.analytics.LiveTrafficCounters;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests unitaires pour AdminAnalyticsController (MockMvc standalone).
+ */
+@ExtendWith(MockitoExtension.class)
+class AdminAnalyticsControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private AnalyticsQueryService analyticsQueryService;
+
+    @Mock
+    private TaxDistributionService taxDistributionService;
+
+    @Mock
+    private LiveTrafficCounters liveTrafficCounters;
+
+    @Mock
+    private LiveTrafficBroadcaster liveTrafficBroadcaster;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new AdminAnalyticsController(
+                        analyticsQueryService, taxDistributionService, liveTrafficCounters, liveTrafficBroadcaster))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Nested
+    @DisplayName("GET /api/admin/analytics/overview")
+    class OverviewTests {
+
+        @Test
+        @DisplayName("should return the overview of the requested range and region")
+        void shouldReturnOverview() throws Exception {
+            LocalDate from = LocalDate.of(2025, 6, 1);
+            LocalDate to = LocalDate.of(2025, 6, 30);
+            when(analyticsQueryService.getOverview(from, to, Region.flanders)).thenReturn(new AnalyticsOverviewResponse(
+                    from, to, Region.flanders, 120, 45, new UniqueSessions(80, 78, 82),
+                    new TaxAmountStats(45, new BigDecimal("310.50"), new BigDecimal("61.50"), new BigDecimal("2480.00")),
+                    LocalDateTime.of(2025, 6, 30, 10, 4)));
+
+            mockMvc.perform(get("/api/admin/analytics/overview")
+                            .param("from", "2025-06-01").param("to", "2025-06-30").param("region", "flanders"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.searches").value(120))
+                    .andExpect(jsonPath("$.data.uniqueSessions.estimate").value(80))
+                    .andExpect(jsonPath("$.data.taxAmounts.average").value(310.50));
+        }
+
+        @Test
+        @DisplayName("should return 400 when the range is invalid")
+        void shouldRejectInvalidRange() throws Exception {
+            when(analyticsQueryService.getOverview(LocalDate.of(2025, 6, 30), LocalDate.of(2025, 6, 1), null))
+                    .thenThrow(new ValidationException("from", "from must not be after to"));
+
+            mockMvc.perform(get("/api/admin/analytics/overview").param("from", "2025-06-30").param("to", "2025-06-01"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/admin/analytics/tax-distribution")
+    class TaxDistributionTests {
+
+        @Test
+        @DisplayName("should return percentiles and histogram of the requested tax type")
+        void shouldReturnDistribution() throws Exception {
+            LocalDate from = LocalDate.of(2025, 6, 1);
+            LocalDate to = LocalDate.of(2025, 6, 30);
+            when(taxDistributionService.getDistribution(from, to, null, TaxType.annual, FuelType.diesel, 2))
+                    .thenReturn(new AnalyticsTaxDistributionResponse(from, to, null, TaxType.annual, FuelType.diesel,
+                            40, new BigDecimal("90.00"), new BigDecimal("910.00"),
+                            new Percentiles(new BigDecimal("310.00"), new BigDecimal("620.00"), new BigDecimal("880.00")),
+                            List.of(new Bin(new BigDecimal("90.00"), new BigDecimal("500.00"), 28),
+                                    new Bin(new BigDecimal("500.00"), new BigDecimal("910.00"), 12))));
+
+            mockMvc.perform(get("/api/admin/analytics/tax-distribution")
+                            .param("from", "2025-06-01").param("to", "2025-06-30")
+                            .param("taxType", "annual").param("fuelType", "diesel").param("bins", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.count").value(40))
+                    .andExpect(jsonPath("$.data.percentiles.p90").value(620.00))
+                    .andExpect(jsonPath("$.data.histogram.length()").value(2));
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/admin/analytics/live")
+    class LiveTrafficTests {
+
+        @Test
+        @DisplayName("should return in-memory counters for the requested minutes")
+        void shouldReturnLiveTraffic() throws Exception {
+            Instant minute = Instant.parse("2026-03-02T10:15:00Z");
+            TrafficCounts counts = new TrafficCounts(3, 1, Map.of(SearchType.calculate, 1L),
+                    Map.of(Region.wallonia, new SearchAndCalculationCount(3, 1)), Map.of(), Map.of());
+            when(liveTrafficCounters.snapshot(5)).thenReturn(new LiveTrafficResponse(
+                    minute, minute.plusSeconds(60), counts, List.of(new MinuteTraffic(minute, counts))));
+
+            mockMvc.perform(get("/api/admin/analytics/live").param("minutes", "5"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.totals.searches").value(3))
+                    .andExpect(jsonPath("$.data.totals.byRegion.wallonia.calculations").value(1))
+                    .andExpect(jsonPath("$.data.minutes.length()").value(1));
+        }
+    }
+}
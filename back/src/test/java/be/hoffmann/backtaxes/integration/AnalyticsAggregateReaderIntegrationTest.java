@@ -0,0 +1,143 @@
+package be.hoffmann.backtaxes.integration;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsAggregateReader;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsAggregates;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsAggregates.Totals;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsRange;
+import be.hoffmann.backtaxes.service.analytics.HyperLogLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the unaggregated tail of the admin statistics on PostgreSQL:
+ * a single GROUPING SETS read per table, each row mapped to its level by GROUPING().
+ */
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("integration")
+class AnalyticsAggregateReaderIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    private static final LocalDate DAY = LocalDate.now().minusDays(1);
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Autowired
+    private AnalyticsAggregateReader aggregateReader;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long brandId;
+
+    @BeforeEach
+    void insertEvents() {
+        jdbcTemplate.update("TRUNCATE search_events, tax_calculations");
+        brandId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM brands", Long.class);
+
+        UUID first = UUID.randomUUID();
+        insertSearch(first, "browse", "wallonia", brandId, "diesel", "mobile");
+        long calculation = insertSearch(first, "calculate", "wallonia", brandId, "diesel", "mobile");
+        insertCalculation(calculation, "tmc", "100.00");
+        insertCalculation(calculation, "annual", "300.00");
+        insertSearch(UUID.randomUUID(), "browse", "flanders", null, null, "desktop");
+        // No region nor device: counted in the total only
+        insertSearch(UUID.randomUUID(), "browse", null, null, null, null);
+    }
+
+    @Test
+    @DisplayName("should map every grouping set of the tail to its level and dimension")
+    void shouldReadAllLevels() {
+        AnalyticsAggregates tail = aggregateReader.readTail(new AnalyticsRange(DAY, DAY, null), EPOCH, EPOCH);
+
+        assertTotals(tail.total(), 4, 1, 2, "400.00", "100.00", "300.00");
+        assertThat(tail.byRegion()).containsOnlyKeys(Region.wallonia, Region.flanders);
+        assertTotals(tail.byRegion().get(Region.wallonia), 2, 1, 2, "400.00", "100.00", "300.00");
+        assertTotals(tail.byRegion().get(Region.flanders), 1, 0, 0, "0", null, null);
+        assertThat(tail.byBrand()).containsOnlyKeys(brandId);
+        assertTotals(tail.byBrand().get(brandId), 2, 1, 2, "400.00", "100.00", "300.00");
+        assertThat(tail.byFuelType()).containsOnlyKeys(FuelType.diesel);
+        assertTotals(tail.byFuelType().get(FuelType.diesel), 2, 1, 2, "400.00", "100.00", "300.00");
+        assertThat(tail.byDeviceType()).containsOnlyKeys(DeviceType.mobile, DeviceType.desktop);
+        assertTotals(tail.byDeviceType().get(DeviceType.mobile), 2, 1, 2, "400.00", "100.00", "300.00");
+        assertTotals(tail.byDeviceType().get(DeviceType.desktop), 1, 0, 0, "0", null, null);
+        assertThat(HyperLogLog.fromBytes(tail.sessionSketch()).estimate()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("should use the region as total and skip rows loaded before the watermarks")
+    void shouldFilterRegionAndWatermarks() {
+        AnalyticsAggregates tail = aggregateReader.readTail(
+                new AnalyticsRange(DAY, DAY, Region.wallonia), EPOCH, EPOCH);
+
+        assertTotals(tail.total(), 2, 1, 2, "400.00", "100.00", "300.00");
+        assertThat(tail.byRegion()).containsOnlyKeys(Region.wallonia);
+        assertThat(tail.byDeviceType()).containsOnlyKeys(DeviceType.mobile);
+
+        LocalDateTime later = LocalDateTime.now().plusMinutes(1);
+        AnalyticsAggregates empty = aggregateReader.readTail(new AnalyticsRange(DAY, DAY, null), later, later);
+
+        assertTotals(empty.total(), 0, 0, 0, "0", null, null);
+        assertThat(empty.byRegion()).isEmpty();
+    }
+
+    private long insertSearch(UUID sessionId, String searchType, String region, Long brand, String fuelType,
+                              String deviceType) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO search_events (session_id, search_type, region, brand_id, fuel_type, device_type, created_at)
+                VALUES (?, CAST(? AS search_type), CAST(? AS region), ?, CAST(? AS fuel_type),
+                    CAST(? AS device_type), ?)
+                RETURNING id
+                """, Long.class, sessionId, searchType, region, brand, fuelType, deviceType, DAY.atTime(12, 0));
+    }
+
+    private void insertCalculation(long searchEventId, String taxType, String amount) {
+        jdbcTemplate.update("""
+                INSERT INTO tax_calculations (search_event_id, region, tax_type, calculated_amount, created_at)
+                VALUES (?, 'wallonia', CAST(? AS tax_type), ?, ?)
+                """, searchEventId, taxType, new BigDecimal(amount), DAY.atTime(12, 0));
+    }
+
+    private static void assertTotals(Totals totals, long searches, long calculations, long amountCount,
+                                     String amountSum, String amountMin, String amountMax) {
+        assertThat(totals.searches()).isEqualTo(searches);
+        assertThat(totals.calculations()).isEqualTo(calculations);
+        assertThat(totals.amountCount()).isEqualTo(amountCount);
+        assertThat(totals.amountSum()).isEqualByComparingTo(amountSum);
+        if (amountMin == null) {
+            assertThat(totals.amountMin()).isNull();
+            assertThat(totals.amountMax()).isNull();
+        } else {
+            assertThat(totals.amountMin()).isEqualByComparingTo(amountMin);
+            assertThat(totals.amountMax()).isEqualByComparingTo(amountMax);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package be.hoffmann.backtaxes.integration;
+
+import be.hoffmann.backtaxes.service.analytics.AnalyticsPartitionManager;
+import be.hoffmann.backtaxes.service.analytics.DailyAggregateRollup;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the monthly partitions of the analytics tables on PostgreSQL:
+ * creation and attachment of upcoming months (with the rows that fell into the
+ * DEFAULT partition), archiving, detachment and drop of expired months.
+ */
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("integration")
+class AnalyticsPartitionManagerIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        // Liquibase creates three months ahead: the manager creates the next two
+        registry.add("app.analytics.partitions.months-ahead", () -> 5);
+        registry.add("app.analytics.rollup.safety-margin-seconds", () -> 0);
+    }
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final YearMonth EXPIRED = YearMonth.of(2020, 1);
+    private static final YearMonth NOT_ROLLED_UP = YearMonth.of(2020, 2);
+
+    @Autowired
+    private AnalyticsPartitionManager partitionManager;
+
+    @Autowired
+    private DailyAggregateRollup rollup;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.analytics.archive.directory}")
+    private Path archiveDirectory;
+
+    @Test
+    @DisplayName("should create upcoming months from the default partition and drop rolled-up expired months")
+    void shouldMaintainPartitions() {
+        YearMonth upcoming = YearMonth.now().plusMonths(5);
+        insertSearch(upcoming.atDay(10).atTime(12, 0));
+        assertThat(count("search_events_default")).isEqualTo(1);
+
+        createPartition(EXPIRED);
+        insertSearch(EXPIRED.atDay(15).atTime(12, 0));
+        createPartition(NOT_ROLLED_UP);
+        rollup.rollup();
+        insertSearch(NOT_ROLLED_UP.atDay(15).atTime(12, 0));
+
+        partitionManager.scheduledMaintenance();
+
+        assertThat(isAttached(partition(upcoming.minusMonths(1)))).isTrue();
+        assertThat(isAttached(partition(upcoming))).isTrue();
+        assertThat(count(partition(upcoming))).isEqualTo(1);
+        assertThat(count("search_events_default")).isZero();
+
+        assertThat(exists(partition(EXPIRED))).isFalse();
+        assertThat(archiveDirectory.resolve("search_events").resolve(partition(EXPIRED) + ".tca")).exists();
+        assertThat(isAttached(partition(NOT_ROLLED_UP))).isTrue();
+        assertThat(count(partition(NOT_ROLLED_UP))).isEqualTo(1);
+    }
+
+    private static String partition(YearMonth month) {
+        return "search_events_p" + month.format(SUFFIX);
+    }
+
+    private void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE %s PARTITION OF search_events FOR VALUES FROM ('%s') TO ('%s')"
+                .formatted(partition(month), month.atDay(1), month.plusMonths(1).atDay(1)));
+    }
+
+    private void insertSearch(LocalDateTime createdAt) {
+        jdbcTemplate.update("""
+                INSERT INTO search_events (session_id, region, search_type, created_at)
+                VALUES (?, 'wallonia', 'browse', ?)
+                """, UUID.randomUUID(), createdAt);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+
+    private boolean isAttached(String partition) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                SELECT EXISTS (
+                    SELECT 1 FROM pg_inherits i
+                    JOIN pg_class child ON child.oid = i.inhrelid
+                    JOIN pg_class parent ON parent.oid = i.inhparent
+                    WHERE parent.relname = 'search_events' AND child.relname = ?
+                )
+                """, Boolean.class, partition));
+    }
+}
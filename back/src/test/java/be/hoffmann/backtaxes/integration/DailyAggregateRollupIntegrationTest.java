@@ -0,0 +1,106 @@
+package be.hoffmann.backtaxes.integration;
+
+import be.hoffmann.backtaxes.service.analytics.DailyAggregateRollup;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the incremental daily_aggregates rollup on PostgreSQL:
+ * additive counters across runs, late events added to their original day and
+ * unique sessions counted once per day (sketch levels and exact levels).
+ */
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("integration")
+class DailyAggregateRollupIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        // Rows committed before a run are below its upper bound
+        registry.add("app.analytics.rollup.safety-margin-seconds", () -> 0);
+    }
+
+    private static final LocalDate DAY = LocalDate.now().minusDays(2);
+
+    // Global level: unique sessions from the HyperLogLog sketch
+    private static final String GLOBAL = "region IS NULL AND device_type IS NULL";
+    // Device level: unique sessions counted exactly
+    private static final String DEVICE = "region = 'wallonia' AND device_type = 'desktop'";
+
+    @Autowired
+    private DailyAggregateRollup rollup;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("should add late events to their day on the next run, counting each session once")
+    void shouldRollUpLateEvents() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        insertSearch(first, "browse", DAY.atTime(9, 0));
+        insertSearch(first, "calculate", DAY.atTime(10, 0));
+        insertSearch(second, "browse", DAY.atTime(11, 0));
+
+        rollup.rollup();
+
+        assertThat(aggregate(GLOBAL)).isEqualTo(new Aggregate(3, 1, 2));
+        assertThat(aggregate(DEVICE)).isEqualTo(new Aggregate(3, 1, 2));
+
+        // Loaded after the first run, created on the day already rolled up
+        insertSearch(first, "calculate", DAY.atTime(23, 0));
+        insertSearch(UUID.randomUUID(), "browse", DAY.atTime(23, 30));
+
+        rollup.rollup();
+
+        assertThat(aggregate(GLOBAL)).isEqualTo(new Aggregate(5, 2, 3));
+        assertThat(aggregate(DEVICE)).isEqualTo(new Aggregate(5, 2, 3));
+
+        rollup.rollup();
+
+        assertThat(aggregate(GLOBAL)).isEqualTo(new Aggregate(5, 2, 3));
+        assertThat(aggregate(DEVICE)).isEqualTo(new Aggregate(5, 2, 3));
+    }
+
+    private void insertSearch(UUID sessionId, String searchType, LocalDateTime createdAt) {
+        jdbcTemplate.update("""
+                INSERT INTO search_events (session_id, region, search_type, device_type, created_at)
+                VALUES (?, 'wallonia', CAST(? AS search_type), 'desktop', ?)
+                """, sessionId, searchType, createdAt);
+    }
+
+    private Aggregate aggregate(String level) {
+        return jdbcTemplate.queryForObject("""
+                SELECT search_count, calculation_count, unique_sessions FROM daily_aggregates
+                WHERE date = ? AND brand_id IS NULL AND model_id IS NULL AND fuel_type IS NULL
+                    AND is_new_vehicle IS NULL AND %s
+                """.formatted(level),
+                (rs, rowNum) -> new Aggregate(
+                        rs.getLong("search_count"), rs.getLong("calculation_count"), rs.getLong("unique_sessions")),
+                DAY);
+    }
+
+    private record Aggregate(long searches, long calculations, long uniqueSessions) {
+    }
+}
@@ -0,0 +1,227 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsBreakdownResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsBreakdownResponse.Item;
+import be.hoffmann.backtaxes.dto.response.AnalyticsCalculatedVariantsResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsOverviewResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxAmountsResponse;
+import be.hoffmann.backtaxes.entity.Brand;
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.repository.BrandRepository;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsAggregateReader;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsAggregates;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsAggregates.Totals;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsRange;
+import be.hoffmann.backtaxes.service.analytics.CalculationFingerprints;
+import be.hoffmann.backtaxes.service.analytics.CalculationFingerprints.VariantCalculations;
+import be.hoffmann.backtaxes.service.analytics.HyperLogLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsQueryServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 6, 1);
+    private static final LocalDate TO = LocalDate.of(2025, 6, 30);
+    private static final LocalDateTime SEARCHES_UNTIL = LocalDateTime.of(2025, 6, 30, 10, 4);
+    private static final LocalDateTime CALCULATIONS_UNTIL = LocalDateTime.of(2025, 6, 30, 9, 4);
+    private static final UUID SESSION = UUID.randomUUID();
+
+    @Mock
+    private AnalyticsAggregateReader aggregateReader;
+
+    @Mock
+    private BrandRepository brandRepository;
+
+    @Mock
+    private CalculationFingerprints calculationFingerprints;
+
+    private AnalyticsQueryService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AnalyticsQueryService(aggregateReader, brandRepository, calculationFingerprints);
+    }
+
+    private void givenAggregates(Region region, AnalyticsAggregates rolledUp, AnalyticsAggregates tail) {
+        AnalyticsRange range = new AnalyticsRange(FROM, TO, region);
+        when(aggregateReader.readRolledUp(range)).thenReturn(rolledUp);
+        when(aggregateReader.readTail(range, SEARCHES_UNTIL, CALCULATIONS_UNTIL)).thenReturn(tail);
+    }
+
+    private static AnalyticsAggregates aggregates(Totals total, Map<Long, Totals> byBrand,
+                                                  Map<FuelType, Totals> byFuelType, UUID... sessions) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (UUID session : sessions) {
+            sketch.add(session);
+        }
+        return new AnalyticsAggregates(SEARCHES_UNTIL, CALCULATIONS_UNTIL, total,
+                Map.of(Region.wallonia, total), byBrand, byFuelType, Map.of(), sketch.toBytes());
+    }
+
+    private static Totals searches(long searches, long calculations) {
+        return new Totals(searches, calculations, 0, BigDecimal.ZERO, null, null);
+    }
+
+    private static Totals amounts(long count, String sum, String min, String max) {
+        return new Totals(0, 0, count, new BigDecimal(sum), new BigDecimal(min), new BigDecimal(max));
+    }
+
+    @Nested
+    @DisplayName("getOverview")
+    class OverviewTests {
+
+        @Test
+        @DisplayName("should add rows loaded since the rollup to the cached aggregates")
+        void shouldAddTailToAggregates() {
+            givenAggregates(null,
+                    aggregates(searches(100, 40).plus(amounts(40, "8000.00", "50.00", "900.00")), Map.of(), Map.of(),
+                            SESSION, UUID.randomUUID()),
+                    aggregates(searches(5, 2).plus(amounts(2, "2000.00", "20.00", "1980.00")), Map.of(), Map.of(),
+                            SESSION));
+
+            AnalyticsOverviewResponse overview = service.getOverview(FROM, TO, null);
+
+            assertThat(overview.searches()).isEqualTo(105);
+            assertThat(overview.calculations()).isEqualTo(42);
+            assertThat(overview.uniqueSessions().estimate()).isEqualTo(2);
+            assertThat(overview.taxAmounts().count()).isEqualTo(42);
+            assertThat(overview.taxAmounts().average()).isEqualByComparingTo("238.10");
+            assertThat(overview.taxAmounts().min()).isEqualByComparingTo("20.00");
+            assertThat(overview.taxAmounts().max()).isEqualByComparingTo("1980.00");
+            assertThat(overview.rolledUpUntil()).isEqualTo(CALCULATIONS_UNTIL);
+        }
+
+        @Test
+        @DisplayName("should reject a range ending before it starts")
+        void shouldRejectInvertedRange() {
+            assertThatThrownBy(() -> service.getOverview(TO, FROM, null))
+                    .isInstanceOf(ValidationException.class);
+            verifyNoInteractions(aggregateReader);
+        }
+    }
+
+    @Nested
+    @DisplayName("breakdowns")
+    class BreakdownTests {
+
+        @Test
+        @DisplayName("should rank brands by searches with their names and shares")
+        void shouldRankTopBrands() {
+            givenAggregates(Region.wallonia,
+                    aggregates(searches(10, 0), Map.of(1L, searches(6, 1), 2L, searches(2, 0)), Map.of()),
+                    aggregates(searches(2, 0), Map.of(2L, searches(6, 3), 3L, amounts(1, "10", "10", "10")), Map.of()));
+            Brand bmw = new Brand("BMW");
+            bmw.setId(2L);
+            when(brandRepository.findAllById(any())).thenReturn(List.of(bmw));
+
+            AnalyticsBreakdownResponse<Long> top = service.getTopBrands(FROM, TO, Region.wallonia, 1);
+
+            assertThat(top.searches()).isEqualTo(14);
+            assertThat(top.items()).containsExactly(new Item<>(2L, "BMW", 8, 3, 8.0 / 14));
+        }
+
+        @Test
+        @DisplayName("should reject a top brands limit out of bounds")
+        void shouldRejectLimit() {
+            assertThatThrownBy(() -> service.getTopBrands(FROM, TO, null, 0))
+                    .isInstanceOf(ValidationException.class);
+            assertThatThrownBy(() -> service.getTopBrands(FROM, TO, null, AnalyticsQueryService.MAX_TOP_BRANDS + 1))
+                    .isInstanceOf(ValidationException.class);
+        }
+
+        @Test
+        @DisplayName("should split searches by fuel type and omit fuel types without searches")
+        void shouldComputeFuelMix() {
+            givenAggregates(null,
+                    aggregates(searches(10, 0), Map.of(),
+                            Map.of(FuelType.diesel, searches(3, 1), FuelType.petrol, searches(1, 0),
+                                    FuelType.lpg, amounts(1, "10", "10", "10"))),
+                    aggregates(searches(0, 0), Map.of(), Map.of(FuelType.petrol, searches(4, 2))));
+
+            AnalyticsBreakdownResponse<FuelType> mix = service.getFuelMix(FROM, TO, null);
+
+            assertThat(mix.items()).extracting(Item::key).containsExactly(FuelType.petrol, FuelType.diesel);
+            assertThat(mix.items().get(0).share()).isEqualTo(5.0 / 8);
+            assertThat(mix.calculations()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("should report tax amounts only for groups with calculated amounts")
+        void shouldComputeTaxAmounts() {
+            givenAggregates(null,
+                    aggregates(amounts(2, "300.00", "100.00", "200.00"), Map.of(),
+                            Map.of(FuelType.diesel, amounts(2, "300.00", "100.00", "200.00"),
+                                    FuelType.petrol, searches(4, 0))),
+                    aggregates(Totals.EMPTY, Map.of(), Map.of()));
+
+            AnalyticsTaxAmountsResponse amounts = service.getTaxAmounts(FROM, TO, null);
+
+            assertThat(amounts.total().average()).isEqualByComparingTo("150.00");
+            assertThat(amounts.byFuelType()).containsOnlyKeys(FuelType.diesel);
+            assertThat(amounts.byRegion()).containsOnlyKeys(Region.wallonia);
+            assertThat(amounts.byDeviceType()).doesNotContainKey(DeviceType.mobile);
+        }
+    }
+
+    @Nested
+    @DisplayName("getMostCalculatedVariants")
+    class MostCalculatedTests {
+
+        @Test
+        @DisplayName("should label variants and report their fingerprint counters")
+        void shouldMapFingerprintCounters() {
+            LocalDateTime first = LocalDateTime.of(2025, 1, 3, 8, 0);
+            LocalDateTime last = LocalDateTime.of(2025, 6, 30, 18, 0);
+            when(calculationFingerprints.topVariants(Region.wallonia, TaxType.tmc, 4L, 2)).thenReturn(List.of(
+                    new VariantCalculations(7L, "Volkswagen", "Golf", "1.5 TSI", 1200, 14,
+                            new BigDecimal("412.50"), new BigDecimal("61.50"), new BigDecimal("867.00"), first, last),
+                    new VariantCalculations(9L, null, null, null, 30, 2,
+                            new BigDecimal("100.00"), new BigDecimal("100.00"), new BigDecimal("100.00"), first, last)));
+
+            AnalyticsCalculatedVariantsResponse response =
+                    service.getMostCalculatedVariants(Region.wallonia, TaxType.tmc, 4L, 2);
+
+            assertThat(response.variants()).hasSize(2);
+            assertThat(response.variants().get(0).label()).isEqualTo("Volkswagen Golf 1.5 TSI");
+            assertThat(response.variants().get(0).distinctInputs()).isEqualTo(14);
+            assertThat(response.variants().get(0).amounts().count()).isEqualTo(1200);
+            assertThat(response.variants().get(0).amounts().average()).isEqualByComparingTo("412.50");
+            assertThat(response.variants().get(0).lastSeenAt()).isEqualTo(last);
+            assertThat(response.variants().get(1).label()).isNull();
+        }
+
+        @Test
+        @DisplayName("should require a tax type and a limit between 1 and 100")
+        void shouldValidateParameters() {
+            assertThatThrownBy(() -> service.getMostCalculatedVariants(null, null, null, 10))
+                    .isInstanceOf(ValidationException.class);
+            assertThatThrownBy(() -> service.getMostCalculatedVariants(null, TaxType.annual, null,
+                    AnalyticsQueryService.MAX_TOP_VARIANTS + 1))
+                    .isInstanceOf(ValidationException.class);
+            verifyNoInteractions(calculationFingerprints);
+        }
+    }
+}
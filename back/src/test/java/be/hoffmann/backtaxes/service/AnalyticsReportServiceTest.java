@@ -0,0 +1,246 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsBreakdownResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsBreakdownResponse.Item;
+import be.hoffmann.backtaxes.dto.response.AnalyticsOverviewResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsOverviewResponse.UniqueSessions;
+import be.hoffmann.backtaxes.dto.response.AnalyticsReportResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxAmountsResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxAmountsResponse.TaxAmountStats;
+import be.hoffmann.backtaxes.entity.AnalyticsReport;
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.RankingType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.ReportType;
+import be.hoffmann.backtaxes.exception.ResourceNotFoundException;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.repository.AnalyticsReportRepository;
+import be.hoffmann.backtaxes.repository.PopularVehicleRepository;
+import be.hoffmann.backtaxes.service.AnalyticsReportService.ReportPeriod;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsReportServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 6, 1);
+    private static final LocalDate TO = LocalDate.of(2025, 6, 30);
+
+    @Mock
+    private AnalyticsQueryService analyticsQueryService;
+
+    @Mock
+    private PopularVehicleRepository popularVehicleRepository;
+
+    @Mock
+    private AnalyticsReportRepository reportRepository;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+
+    private AnalyticsReportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AnalyticsReportService(analyticsQueryService, popularVehicleRepository, reportRepository,
+                objectMapper, Runnable::run, true);
+    }
+
+    private void givenSections(Region... regions) {
+        for (Region region : regions) {
+            givenSection(region);
+        }
+        when(popularVehicleRepository.findRankingRowsBetween(FROM, TO, RankingType.most_searched)).thenReturn(List.of(
+                new Object[]{Region.wallonia, 30L, "Peugeot", "208", "1.2 PureTech", 5},
+                new Object[]{Region.wallonia, 31L, "Peugeot", "308", "1.5 BlueHDi", 4},
+                new Object[]{Region.wallonia, 30L, "Peugeot", "208", "1.2 PureTech", 3},
+                new Object[]{Region.flanders, 31L, "Peugeot", "308", "1.5 BlueHDi", 20}));
+        when(reportRepository.save(any(AnalyticsReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private void givenSection(Region region) {
+        TaxAmountStats stats = new TaxAmountStats(4, new BigDecimal("250.00"), new BigDecimal("80.00"),
+                new BigDecimal("600.00"));
+        when(analyticsQueryService.getOverview(FROM, TO, region)).thenReturn(new AnalyticsOverviewResponse(
+                FROM, TO, region, 12, 4, new UniqueSessions(7, 6, 8), stats, LocalDateTime.of(2025, 7, 1, 0, 0)));
+        when(analyticsQueryService.getDeviceMix(FROM, TO, region)).thenReturn(new AnalyticsBreakdownResponse<>(
+                FROM, TO, region, 12, 4, List.of(new Item<>(DeviceType.mobile, "mobile", 9, 3, 0.75))));
+        when(analyticsQueryService.getTopBrands(FROM, TO, region, AnalyticsReportService.TOP_LIMIT))
+                .thenReturn(new AnalyticsBreakdownResponse<>(
+                        FROM, TO, region, 12, 4, List.of(new Item<>(3L, "Peugeot", 12, 4, 1.0))));
+        when(analyticsQueryService.getTaxAmounts(FROM, TO, region)).thenReturn(new AnalyticsTaxAmountsResponse(
+                FROM, TO, region, stats, Map.of(Region.wallonia, stats), Map.of(FuelType.diesel, stats), Map.of()));
+        when(analyticsQueryService.getFuelMix(FROM, TO, region)).thenReturn(new AnalyticsBreakdownResponse<>(
+                FROM, TO, region, 12, 4, List.of(new Item<>(FuelType.diesel, "diesel", 12, 4, 1.0))));
+    }
+
+    @Nested
+    @DisplayName("generate")
+    class GenerateTests {
+
+        @Test
+        @DisplayName("should write every section of the regional report")
+        void shouldWriteSections() {
+            givenSections(Region.wallonia);
+            when(reportRepository.findByReportTypeAndPeriodStartAndPeriodEndAndRegion(
+                    ReportType.monthly_summary, FROM, TO, Region.wallonia)).thenReturn(Optional.empty());
+
+            AnalyticsReport report = service.generate(ReportType.monthly_summary, LocalDate.of(2025, 6, 15),
+                    Region.wallonia).join();
+
+            assertThat(report.getTitle()).isEqualTo("Resume mensuel 2025-06 - wallonia");
+            assertThat(report.getPeriodStart()).isEqualTo(FROM);
+            assertThat(report.getPeriodEnd()).isEqualTo(TO);
+            JsonNode data = objectMapper.readTree(report.getReportData());
+            assertThat(data.get("report_type").asString()).isEqualTo("monthly_summary");
+            assertThat(data.get("region").asString()).isEqualTo("wallonia");
+            assertThat(data.get("traffic").get("searches").asLong()).isEqualTo(12);
+            assertThat(data.get("traffic").get("devices")).hasSize(1);
+            assertThat(data.get("top_vehicles").get("brands").get(0).get("label").asString()).isEqualTo("Peugeot");
+            JsonNode variants = data.get("top_vehicles").get("variants");
+            assertThat(variants).hasSize(2);
+            assertThat(variants.get(0).get("variantId").asLong()).isEqualTo(30);
+            assertThat(variants.get(0).get("searches").asLong()).isEqualTo(8);
+            assertThat(data.get("tax_distribution").get("by_fuel_type").has("diesel")).isTrue();
+            assertThat(data.get("fuel_mix").get(0).get("key").asString()).isEqualTo("diesel");
+            assertThat(objectMapper.readTree(report.getMetadata()).get("sections")).hasSize(4);
+        }
+
+        @Test
+        @DisplayName("should replace the existing report of the same period and scope")
+        void shouldReplaceExistingReport() {
+            givenSections((Region) null);
+            AnalyticsReport existing = new AnalyticsReport();
+            existing.setReportData("{}");
+            when(reportRepository.findByReportTypeAndPeriodStartAndPeriodEndAndRegion(
+                    ReportType.monthly_summary, FROM, TO, null)).thenReturn(Optional.of(existing));
+
+            AnalyticsReport report = service.generate(ReportType.monthly_summary, FROM, null).join();
+
+            assertThat(report).isSameAs(existing);
+            assertThat(report.getTitle()).endsWith("toutes regions");
+            assertThat(report.getReportData()).contains("\"variantId\":31").contains("\"searches\":24");
+        }
+
+        @Test
+        @DisplayName("should reject a non summary report type")
+        void shouldRejectReportType() {
+            assertThatThrownBy(() -> service.generate(ReportType.data_retention, FROM, null))
+                    .isInstanceOf(ValidationException.class);
+            verifyNoInteractions(analyticsQueryService);
+        }
+
+        @Test
+        @DisplayName("should reject a period that has not started")
+        void shouldRejectFuturePeriod() {
+            assertThatThrownBy(() -> service.generate(ReportType.weekly_summary, LocalDate.now().plusWeeks(2), null))
+                    .isInstanceOf(ValidationException.class);
+        }
+
+        @Test
+        @DisplayName("should report a full queue as a validation error")
+        void shouldRejectWhenQueueIsFull() {
+            Executor full = task -> {
+                throw new RejectedExecutionException("full");
+            };
+            service = new AnalyticsReportService(analyticsQueryService, popularVehicleRepository, reportRepository,
+                    objectMapper, full, true);
+
+            assertThatThrownBy(() -> service.generate(ReportType.monthly_summary, FROM, null))
+                    .isInstanceOf(ValidationException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("period")
+    class PeriodTests {
+
+        @Test
+        @DisplayName("should cover Monday to Sunday, the calendar month and the calendar year")
+        void shouldComputePeriods() {
+            LocalDate thursday = LocalDate.of(2025, 6, 12);
+
+            assertThat(AnalyticsReportService.period(ReportType.weekly_summary, thursday))
+                    .isEqualTo(new ReportPeriod(LocalDate.of(2025, 6, 9), LocalDate.of(2025, 6, 15)));
+            assertThat(AnalyticsReportService.period(ReportType.monthly_summary, thursday))
+                    .isEqualTo(new ReportPeriod(FROM, TO));
+            assertThat(AnalyticsReportService.period(ReportType.yearly_summary, thursday))
+                    .isEqualTo(new ReportPeriod(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31)));
+        }
+    }
+
+    @Nested
+    @DisplayName("generateDue")
+    class GenerateDueTests {
+
+        @Test
+        @DisplayName("should queue nothing in the middle of a week and a month")
+        void shouldQueueNothing() {
+            assertThat(service.generateDue(LocalDate.of(2025, 6, 12))).isZero();
+            verifyNoInteractions(analyticsQueryService);
+        }
+
+        @Test
+        @DisplayName("should queue the previous month for every scope on the first day")
+        void shouldQueuePreviousMonth() {
+            givenSections(null, Region.wallonia, Region.flanders, Region.brussels);
+
+            assertThat(service.generateDue(LocalDate.of(2025, 7, 1))).isEqualTo(Region.values().length + 1);
+        }
+    }
+
+    @Nested
+    @DisplayName("setPublic")
+    class SetPublicTests {
+
+        @Test
+        @DisplayName("should flip the flag with a single update")
+        void shouldPublish() {
+            AnalyticsReport report = new AnalyticsReport();
+            report.setReportType(ReportType.monthly_summary);
+            report.setIsPublic(true);
+            report.setReportData("{}");
+            when(reportRepository.updateIsPublic(5L, true)).thenReturn(1);
+            when(reportRepository.findById(5L)).thenReturn(Optional.of(report));
+
+            AnalyticsReportResponse response = service.setPublic(5L, true);
+
+            assertThat(response.isPublic()).isTrue();
+            assertThat(response.data()).isNull();
+            verify(reportRepository).updateIsPublic(5L, true);
+        }
+
+        @Test
+        @DisplayName("should throw when the report does not exist")
+        void shouldThrowWhenMissing() {
+            when(reportRepository.findById(9L)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> service.setPublic(9L, false))
+                    .isInstanceOf(ResourceNotFoundException.class);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.response.TaxCalculationResponse;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.service.analytics.AdaptiveSampler;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsEventWriter;
+import be.hoffmann.backtaxes.service.analytics.CalculationEventRecord;
+import be.hoffmann.backtaxes.service.analytics.CapturedEvent;
+import be.hoffmann.backtaxes.service.analytics.SearchEventRecord;
+import be.hoffmann.backtaxes.service.analytics.TaxCalculationRecord;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import jakarta.servlet.http.Cookie;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsServiceTest {
+
+    @Mock
+    private AnalyticsEventWriter analyticsEventWriter;
+
+    @Mock
+    private AdaptiveSampler adaptiveSampler;
+
+    @Captor
+    private ArgumentCaptor<CapturedEvent> eventCaptor;
+
+    @Nested
+    @DisplayName("logSearch")
+    class LogSearchTests {
+
+        @Test
+        @DisplayName("should submit the search with the weight chosen by the sampler")
+        void shouldSubmitWeightedSearch() {
+            AnalyticsService service = new AnalyticsService(analyticsEventWriter, adaptiveSampler, 1.0);
+            when(adaptiveSampler.sample(SearchType.browse)).thenReturn(4);
+
+            service.logSearch(service.builder().sessionId(UUID.randomUUID()).searchType(SearchType.browse));
+
+            verify(analyticsEventWriter).submit(eventCaptor.capture());
+            assertThat(eventCaptor.getValue().event().searchEvent().sampleWeight()).isEqualTo(4);
+        }
+
+        @Test
+        @DisplayName("should not submit a search left out by the sampler")
+        void shouldSkipUnsampledSearch() {
+            AnalyticsService service = new AnalyticsService(analyticsEventWriter, adaptiveSampler, 1.0);
+            when(adaptiveSampler.sample(SearchType.filter)).thenReturn(0);
+
+            service.logSearch(service.builder().sessionId(UUID.randomUUID()).searchType(SearchType.filter));
+
+            verifyNoInteractions(analyticsEventWriter);
+        }
+
+        @Test
+        @DisplayName("should take the session and client headers from the HTTP request")
+        void shouldCaptureRequest() {
+            AnalyticsService service = new AnalyticsService(analyticsEventWriter, adaptiveSampler, 1.0);
+            when(adaptiveSampler.sample(SearchType.browse)).thenReturn(1);
+            UUID sessionId = UUID.randomUUID();
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setCookies(new Cookie("analytics_session", sessionId.toString()));
+            request.addHeader("User-Agent", "Mozilla/5.0");
+
+            service.logSearch(service.builder().modelId(5L).searchType(SearchType.browse), request,
+                    new MockHttpServletResponse());
+
+            verify(analyticsEventWriter).submit(eventCaptor.capture());
+            assertThat(eventCaptor.getValue().userAgent()).isEqualTo("Mozilla/5.0");
+            assertThat(eventCaptor.getValue().event().searchEvent().sessionId()).isEqualTo(sessionId);
+            assertThat(eventCaptor.getValue().event().searchEvent().modelId()).isEqualTo(5L);
+        }
+    }
+
+    @Nested
+    @DisplayName("logCalculation")
+    class LogCalculationTests {
+
+        @Test
+        @DisplayName("should submit search event with its calculations when sampled")
+        void shouldSubmitCalculationsWhenSampled() {
+            AnalyticsService service = new AnalyticsService(analyticsEventWriter, adaptiveSampler, 1.0);
+            TaxCalculationRecord line = calculation(TaxType.tmc, "1500.00");
+
+            service.logCalculation(calculateEvent(service), List.of(line));
+
+            verify(analyticsEventWriter).submit(eventCaptor.capture());
+            assertThat(eventCaptor.getValue().event()).isInstanceOfSatisfying(CalculationEventRecord.class, event -> {
+                assertThat(event.calculations()).containsExactly(line);
+                assertThat(event.linesSampled()).isTrue();
+                assertThat(event.searchEvent().searchType()).isEqualTo(SearchType.calculate);
+            });
+            verifyNoInteractions(adaptiveSampler);
+        }
+
+        @Test
+        @DisplayName("should keep the calculations for fingerprints only when not sampled")
+        void shouldMarkLinesUnsampledWhenNotSampled() {
+            AnalyticsService service = new AnalyticsService(analyticsEventWriter, adaptiveSampler, 0.0);
+            TaxCalculationRecord line = calculation(TaxType.tmc, "1500.00");
+
+            service.logCalculation(calculateEvent(service), List.of(line));
+
+            verify(analyticsEventWriter).submit(eventCaptor.capture());
+            assertThat(eventCaptor.getValue().event()).isInstanceOfSatisfying(CalculationEventRecord.class, event -> {
+                assertThat(event.calculations()).containsExactly(line);
+                assertThat(event.linesSampled()).isFalse();
+            });
+        }
+
+        @Test
+        @DisplayName("should keep only the search event when nothing was calculable")
+        void shouldSubmitSearchEventOnlyWithoutCalculations() {
+            AnalyticsService service = new AnalyticsService(analyticsEventWriter, adaptiveSampler, 1.0);
+
+            service.logCalculation(calculateEvent(service), List.of());
+
+            verify(analyticsEventWriter).submit(eventCaptor.capture());
+            assertThat(eventCaptor.getValue().event()).isInstanceOf(SearchEventRecord.class);
+        }
+
+        @Test
+        @DisplayName("should capture raw client headers without deriving anything on the request thread")
+        void shouldCaptureRawHeaders() {
+            AnalyticsService service = new AnalyticsService(analyticsEventWriter, adaptiveSampler, 1.0);
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader("User-Agent", "Mozilla/5.0 (iPhone; CPU iPhone OS 17_0 like Mac OS X) Mobile");
+            request.addHeader("Referer", "https://www.google.be/");
+            request.addHeader("Accept-Language", "nl-BE,nl;q=0.9,fr;q=0.8");
+
+            service.logCalculation(calculateEvent(service).clientHeaders(request), List.of());
+
+            verify(analyticsEventWriter).submit(eventCaptor.capture());
+            CapturedEvent captured = eventCaptor.getValue();
+            assertThat(captured.userAgent()).startsWith("Mozilla/5.0 (iPhone");
+            assertThat(captured.referer()).isEqualTo("https://www.google.be/");
+            assertThat(captured.acceptLanguage()).isEqualTo("nl-BE,nl;q=0.9,fr;q=0.8");
+            assertThat(captured.event().searchEvent().deviceType()).isNull();
+            assertThat(captured.event().searchEvent().userAgentHash()).isNull();
+        }
+
+        @Test
+        @DisplayName("should reject sample rate outside [0, 1]")
+        void shouldRejectInvalidSampleRate() {
+            assertThatThrownBy(() -> new AnalyticsService(analyticsEventWriter, adaptiveSampler, 1.5))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("TaxCalculationRecord")
+    class CalculationRecordTests {
+
+        @Test
+        @DisplayName("should read specs and age from breakdown")
+        void shouldReadBreakdown() {
+            TaxCalculationResponse response = new TaxCalculationResponse();
+            response.setRegion(Region.wallonia);
+            response.setTaxType(TaxType.tmc);
+            response.setAmount(new BigDecimal("1500.00"));
+            response.setIsExempt(false);
+            response.setBreakdown(Map.of("powerKw", 110, "vehicleAgeYears", 2));
+            response.setRuleVersion(4L);
+
+            TaxCalculationRecord line = TaxCalculationRecord.from(7L, null, response);
+
+            assertThat(line.variantId()).isEqualTo(7L);
+            assertThat(line.region()).isEqualTo(Region.wallonia);
+            assertThat(line.powerKw()).isEqualTo(110);
+            assertThat(line.cvFiscal()).isNull();
+            assertThat(line.vehicleAgeMonths()).isEqualTo(24);
+            assertThat(line.isExempt()).isFalse();
+            assertThat(line.ruleVersion()).isEqualTo(4L);
+        }
+
+        @Test
+        @DisplayName("should prefer caller specs over breakdown")
+        void shouldPreferCallerSpecs() {
+            TaxCalculationRecord line = TaxCalculationRecord.fromBreakdown(null, null, Region.flanders, TaxType.annual,
+                            BigDecimal.ZERO, true, Map.of("fiscalHp", 9))
+                    .withSpecs(85, null, 120);
+
+            assertThat(line.powerKw()).isEqualTo(85);
+            assertThat(line.cvFiscal()).isEqualTo(9);
+            assertThat(line.co2Gkm()).isEqualTo(120);
+            assertThat(line.vehicleAgeMonths()).isNull();
+            assertThat(line.isExempt()).isTrue();
+        }
+    }
+
+    private static AnalyticsService.SearchEventBuilder calculateEvent(AnalyticsService service) {
+        return service.builder()
+                .sessionId(UUID.randomUUID())
+                .region(Region.wallonia)
+                .searchType(SearchType.calculate);
+    }
+
+    private static TaxCalculationRecord calculation(TaxType taxType, String amount) {
+        return new TaxCalculationRecord(1L, null, Region.wallonia, taxType, new BigDecimal(amount),
+                null, null, null, 0, false);
+    }
+}
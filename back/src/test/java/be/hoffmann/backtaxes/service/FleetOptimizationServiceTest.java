@@ -0,0 +1,113 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.request.FleetOptimizationRequest;
+import be.hoffmann.backtaxes.dto.request.FleetOptimizationRequest.FleetVehicle;
+import be.hoffmann.backtaxes.dto.response.FleetOptimizationResponse;
+import be.hoffmann.backtaxes.dto.response.TaxCalculationResponse;
+import be.hoffmann.backtaxes.engine.TaxRules;
+import be.hoffmann.backtaxes.entity.Variant;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.service.rules.PublishedRules;
+import be.hoffmann.backtaxes.service.rules.RuleSnapshot;
+import be.hoffmann.backtaxes.service.rules.RuleVersionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FleetOptimizationServiceTest {
+
+    @Mock
+    private VariantService variantService;
+
+    @Mock
+    private TaxCalculationService taxCalculationService;
+
+    @Mock
+    private RuleVersionService ruleVersionService;
+
+    private FleetOptimizationService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new FleetOptimizationService(variantService, taxCalculationService, ruleVersionService);
+    }
+
+    @Test
+    @DisplayName("should return the rule version and the evaluated variant specs with each assignment")
+    void shouldReturnRuleVersionAndSpecs() {
+        Variant variant = new Variant();
+        variant.setId(7L);
+        variant.setPowerKw(110);
+        variant.setFiscalHp(11);
+        variant.setCo2Wltp(128);
+        when(variantService.findAllByIds(Set.of(7L))).thenReturn(Map.of(7L, variant));
+        when(ruleVersionService.current()).thenReturn(new PublishedRules(3L, Instant.now(), "f",
+                new RuleSnapshot(List.of(), List.of(), List.of(), List.of())));
+        when(taxCalculationService.calculateTax(any(), any(), eq(TaxType.tmc), any(), any(TaxRules.class)))
+                .thenAnswer(invocation -> amount(invocation.getArgument(1) == Region.flanders ? "100.00" : "300.00"));
+        when(taxCalculationService.calculateTax(any(), any(), eq(TaxType.annual), any(), any(TaxRules.class)))
+                .thenAnswer(invocation -> amount("50.00"));
+
+        FleetOptimizationResponse response = service.optimize(new FleetOptimizationRequest(
+                List.of(new FleetVehicle("pool", 7L, 4)), 2, Map.of()));
+
+        assertThat(response.ruleVersion()).isEqualTo(3L);
+        assertThat(response.vehicleCount()).isEqualTo(4);
+        assertThat(response.assignments()).singleElement().satisfies(assignment -> {
+            assertThat(assignment.region()).isEqualTo(Region.flanders);
+            assertThat(assignment.quantity()).isEqualTo(4);
+            assertThat(assignment.unitCost()).isEqualByComparingTo("200.00");
+            assertThat(List.of(assignment.powerKw(), assignment.fiscalHp(), assignment.co2Wltp()))
+                    .containsExactly(110, 11, 128);
+        });
+    }
+
+    private static TaxCalculationResponse amount(String amount) {
+        TaxCalculationResponse response = new TaxCalculationResponse();
+        response.setAmount(new BigDecimal(amount));
+        return response;
+    }
+
+    @Test
+    @DisplayName("should reject a quantity above the maximum before evaluating any variant")
+    void shouldRejectLargeQuantity() {
+        FleetOptimizationRequest request = new FleetOptimizationRequest(List.of(
+                new FleetVehicle("a", 1L, Integer.MAX_VALUE),
+                new FleetVehicle("b", 2L, Integer.MAX_VALUE)), 5, Map.of());
+
+        assertThatThrownBy(() -> service.optimize(request))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Quantity");
+        verifyNoInteractions(variantService, ruleVersionService);
+    }
+
+    @Test
+    @DisplayName("should reject more fleet lines than the maximum")
+    void shouldRejectTooManyLines() {
+        FleetOptimizationRequest request = new FleetOptimizationRequest(Collections.nCopies(
+                FleetOptimizationRequest.MAX_VEHICLES + 1, new FleetVehicle(null, 1L, 1)), 5, Map.of());
+
+        assertThatThrownBy(() -> service.optimize(request)).isInstanceOf(ValidationException.class);
+        verifyNoInteractions(variantService, ruleVersionService);
+    }
+}
@@ -3,7 +3,6 @@ package be.hoffmann.backtaxes.service;
 import be.hoffmann.backtaxes.dto.request.FirstRegistrationDate;
 import be.hoffmann.backtaxes.dto.request.TaxCalculationRequest;
 import be.hoffmann.backtaxes.dto.response.TaxCalculationResponse;
-import be.hoffmann.backtaxes.entity.TaxBracket;
 import be.hoffmann.backtaxes.entity.Variant;
 import be.hoffmann.backtaxes.entity.enums.EuroNorm;
 import be.hoffmann.backtaxes.entity.enums.FuelType;
@@ -11,6 +10,9 @@ import be.hoffmann.backtaxes.entity.enums.Region;
 import be.hoffmann.backtaxes.entity.enums.TaxType;
 import be.hoffmann.backtaxes.exception.ValidationException;
 import be.hoffmann.backtaxes.repository.VehicleSubmissionRepository;
+import be.hoffmann.backtaxes.service.rules.PublishedRules;
+import be.hoffmann.backtaxes.service.rules.RuleSnapshot;
+import be.hoffmann.backtaxes.service.rules.RuleVersionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -20,19 +22,23 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class TaxCalculationServiceTest {
 
+    private static final long VERSION_ID = 7L;
+    private static final LocalDate RULES_FROM = LocalDate.of(2020, 1, 1);
+
     @Mock
     private VariantService variantService;
 
@@ -40,14 +46,19 @@ class TaxCalculationServiceTest {
     private VehicleSubmissionRepository submissionRepository;
 
     @Mock
-    private TaxConfigService taxConfigService;
+    private RuleVersionService ruleVersionService;
 
     private TaxCalculationService taxCalculationService;
 
+    private final List<RuleSnapshot.BracketRow> brackets = new ArrayList<>();
+    private final List<RuleSnapshot.ParameterRow> parameters = new ArrayList<>();
+    private final List<RuleSnapshot.AgeCoefficientRow> ageCoefficients = new ArrayList<>();
+    private final List<RuleSnapshot.ExemptionRow> exemptions = new ArrayList<>();
+
     @BeforeEach
     void setUp() {
         taxCalculationService = new TaxCalculationService(
-                variantService, submissionRepository, taxConfigService);
+                variantService, submissionRepository, ruleVersionService);
     }
 
     @Nested
@@ -100,26 +111,18 @@ class TaxCalculationServiceTest {
             Variant variant = createTestVariant();
             when(variantService.findById(1L)).thenReturn(variant);
 
-            // TMC mocks
-            when(taxConfigService.isZeroEmissionExempt(eq(Region.wallonia), eq(TaxType.tmc), any(), any())).thenReturn(false);
-            when(taxConfigService.getAgeCoefficient(eq(Region.wallonia), eq(TaxType.tmc), anyInt(), any(), any())).thenReturn(BigDecimal.ONE);
-            when(taxConfigService.findBracket(eq(Region.wallonia), eq(TaxType.tmc), eq("power_kw"), any(Integer.class), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(500))));
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("energy_thermal"), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("co2_reference_wltp"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(136));
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("mma_reference"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(1838));
-            when(taxConfigService.getMinAmount(eq(Region.wallonia), eq(TaxType.tmc), any())).thenReturn(BigDecimal.valueOf(61.5));
-            when(taxConfigService.getMaxAmount(eq(Region.wallonia), eq(TaxType.tmc), any())).thenReturn(Optional.empty());
-
-            // Annual mocks
-            when(taxConfigService.isZeroEmissionExempt(eq(Region.wallonia), eq(TaxType.annual), any(), any())).thenReturn(false);
-            when(taxConfigService.findBracket(eq(Region.wallonia), eq(TaxType.annual), eq("fiscal_hp"), any(Integer.class), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(300))));
-            when(taxConfigService.getMinAmount(eq(Region.wallonia), eq(TaxType.annual), any())).thenReturn(BigDecimal.valueOf(87));
-            when(taxConfigService.getMaxAmount(eq(Region.wallonia), eq(TaxType.annual), any())).thenReturn(Optional.empty());
+            // TMC rules
+            ageCoefficient(Region.wallonia, TaxType.tmc, 0, BigDecimal.ONE);
+            bracket(Region.wallonia, TaxType.tmc, "power_kw", 0, null, BigDecimal.valueOf(500));
+            parameter(Region.wallonia, TaxType.tmc, "energy_thermal", BigDecimal.ONE);
+            parameter(Region.wallonia, TaxType.tmc, "co2_reference_wltp", BigDecimal.valueOf(136));
+            parameter(Region.wallonia, TaxType.tmc, "mma_reference", BigDecimal.valueOf(1838));
+            parameter(Region.wallonia, TaxType.tmc, "min_amount", BigDecimal.valueOf(61.5));
+
+            // Annual rules
+            bracket(Region.wallonia, TaxType.annual, "fiscal_hp", 0, null, BigDecimal.valueOf(300));
+            parameter(Region.wallonia, TaxType.annual, "min_amount", BigDecimal.valueOf(87));
+            publishRules();
 
             TaxCalculationService.TaxCalculationResult result = taxCalculationService.calculateBoth(request);
 
@@ -142,9 +145,8 @@ class TaxCalculationServiceTest {
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     150, 10, FuelType.electric, EuroNorm.euro_6d, null, null, null);
 
-            when(taxConfigService.isZeroEmissionExempt(
-                    eq(Region.wallonia), eq(TaxType.tmc), eq(FuelType.electric), any()))
-                    .thenReturn(true);
+            exemption(Region.wallonia, TaxType.tmc, "fuel_electric");
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.wallonia, TaxType.tmc, LocalDate.now());
@@ -160,9 +162,8 @@ class TaxCalculationServiceTest {
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     200, 15, FuelType.hydrogen, EuroNorm.euro_6d, null, null, null);
 
-            when(taxConfigService.isZeroEmissionExempt(
-                    eq(Region.flanders), eq(TaxType.annual), eq(FuelType.hydrogen), any()))
-                    .thenReturn(true);
+            exemption(Region.flanders, TaxType.annual, "fuel_hydrogen");
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.flanders, TaxType.annual, LocalDate.now());
@@ -179,23 +180,16 @@ class TaxCalculationServiceTest {
         @Test
         @DisplayName("should calculate TMC with CO2 factor")
         void shouldCalculateTmcWithCo2Factor() {
-            // Include MMA so the mma_reference mock is used
+            // Include MMA so the mma_reference parameter is used
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     110, 8, FuelType.petrol, EuroNorm.euro_6d, 150, null, 1800);
-
-            when(taxConfigService.isZeroEmissionExempt(any(), any(), any(), any())).thenReturn(false);
-            when(taxConfigService.getAgeCoefficient(eq(Region.wallonia), eq(TaxType.tmc), eq(0), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
-            when(taxConfigService.findBracket(eq(Region.wallonia), eq(TaxType.tmc), eq("power_kw"), any(Integer.class), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(500))));
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("energy_thermal"), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("co2_reference_wltp"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(136));
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("mma_reference"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(1838));
-            when(taxConfigService.getMinAmount(eq(Region.wallonia), eq(TaxType.tmc), any())).thenReturn(BigDecimal.valueOf(61.5));
-            when(taxConfigService.getMaxAmount(eq(Region.wallonia), eq(TaxType.tmc), any())).thenReturn(Optional.empty());
+            ageCoefficient(Region.wallonia, TaxType.tmc, 0, BigDecimal.ONE);
+            bracket(Region.wallonia, TaxType.tmc, "power_kw", 0, null, BigDecimal.valueOf(500));
+            parameter(Region.wallonia, TaxType.tmc, "energy_thermal", BigDecimal.ONE);
+            parameter(Region.wallonia, TaxType.tmc, "co2_reference_wltp", BigDecimal.valueOf(136));
+            parameter(Region.wallonia, TaxType.tmc, "mma_reference", BigDecimal.valueOf(1838));
+            parameter(Region.wallonia, TaxType.tmc, "min_amount", BigDecimal.valueOf(61.5));
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.wallonia, TaxType.tmc, LocalDate.now());
@@ -211,20 +205,13 @@ class TaxCalculationServiceTest {
         void shouldCalculateTmcWithMmaFactor() {
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     150, 10, FuelType.diesel, EuroNorm.euro_6d, 140, null, 2000);
-
-            when(taxConfigService.isZeroEmissionExempt(any(), any(), any(), any())).thenReturn(false);
-            when(taxConfigService.getAgeCoefficient(eq(Region.wallonia), eq(TaxType.tmc), eq(0), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
-            when(taxConfigService.findBracket(eq(Region.wallonia), eq(TaxType.tmc), eq("power_kw"), any(Integer.class), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(500))));
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("energy_thermal"), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("co2_reference_wltp"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(136));
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("mma_reference"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(1838));
-            when(taxConfigService.getMinAmount(eq(Region.wallonia), eq(TaxType.tmc), any())).thenReturn(BigDecimal.valueOf(61.5));
-            when(taxConfigService.getMaxAmount(eq(Region.wallonia), eq(TaxType.tmc), any())).thenReturn(Optional.empty());
+            ageCoefficient(Region.wallonia, TaxType.tmc, 0, BigDecimal.ONE);
+            bracket(Region.wallonia, TaxType.tmc, "power_kw", 0, null, BigDecimal.valueOf(500));
+            parameter(Region.wallonia, TaxType.tmc, "energy_thermal", BigDecimal.ONE);
+            parameter(Region.wallonia, TaxType.tmc, "co2_reference_wltp", BigDecimal.valueOf(136));
+            parameter(Region.wallonia, TaxType.tmc, "mma_reference", BigDecimal.valueOf(1838));
+            parameter(Region.wallonia, TaxType.tmc, "min_amount", BigDecimal.valueOf(61.5));
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.wallonia, TaxType.tmc, LocalDate.now());
@@ -243,16 +230,11 @@ class TaxCalculationServiceTest {
         void shouldApplyLpgReduction() {
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     100, 8, FuelType.lpg, EuroNorm.euro_6d, null, null, null);
-
-            when(taxConfigService.isZeroEmissionExempt(any(), any(), any(), any())).thenReturn(false);
-            when(taxConfigService.getAgeCoefficient(eq(Region.brussels), eq(TaxType.tmc), eq(0), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
-            when(taxConfigService.findBracket(eq(Region.brussels), eq(TaxType.tmc), eq("fiscal_hp"), any(Integer.class), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(800))));
-            when(taxConfigService.getParameter(eq(Region.brussels), eq(TaxType.tmc), eq("lpg_reduction"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(298));
-            when(taxConfigService.getMinAmount(eq(Region.brussels), eq(TaxType.tmc), any())).thenReturn(BigDecimal.valueOf(61.5));
-            when(taxConfigService.getMaxAmount(eq(Region.brussels), eq(TaxType.tmc), any())).thenReturn(Optional.empty());
+            ageCoefficient(Region.brussels, TaxType.tmc, 0, BigDecimal.ONE);
+            bracket(Region.brussels, TaxType.tmc, "fiscal_hp", 0, null, BigDecimal.valueOf(800));
+            parameter(Region.brussels, TaxType.tmc, "lpg_reduction", BigDecimal.valueOf(298));
+            parameter(Region.brussels, TaxType.tmc, "min_amount", BigDecimal.valueOf(61.5));
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.brussels, TaxType.tmc, LocalDate.now());
@@ -271,25 +253,18 @@ class TaxCalculationServiceTest {
             // Véhicule essence Euro 5 avec CO2 connu
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     120, 9, FuelType.petrol, EuroNorm.euro_5, 150, null, null);
-
-            when(taxConfigService.isZeroEmissionExempt(any(), any(), any(), any())).thenReturn(false);
-            when(taxConfigService.getAgeCoefficient(eq(Region.flanders), eq(TaxType.tmc), eq(0), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
+            ageCoefficient(Region.flanders, TaxType.tmc, 0, BigDecimal.ONE);
             // Paramètres pour la formule officielle WLTP (2026 = véhicule WLTP)
-            when(taxConfigService.getParameter(eq(Region.flanders), eq(TaxType.tmc), eq("formula_divisor"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(246));
-            when(taxConfigService.getParameter(eq(Region.flanders), eq(TaxType.tmc), eq("formula_constant"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(4500));
-            when(taxConfigService.getParameter(eq(Region.flanders), eq(TaxType.tmc), eq("fuel_factor_default"), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
+            parameter(Region.flanders, TaxType.tmc, "formula_divisor", BigDecimal.valueOf(246));
+            parameter(Region.flanders, TaxType.tmc, "formula_constant", BigDecimal.valueOf(4500));
+            parameter(Region.flanders, TaxType.tmc, "fuel_factor_default", BigDecimal.ONE);
             // WLTP q factor for 2026+ vehicles (no co2_correction_x needed for WLTP)
-            when(taxConfigService.getParameter(eq(Region.flanders), eq(TaxType.tmc), eq("wltp_q_factor"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(1.245));
+            parameter(Region.flanders, TaxType.tmc, "wltp_q_factor", BigDecimal.valueOf(1.245));
             // Euro 5 = numeric value 5, luchtcomponent petrol
-            when(taxConfigService.findBracket(eq(Region.flanders), eq(TaxType.tmc), eq("luchtcomponent_petrol"), eq(5), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(113.33))));
-            when(taxConfigService.getMinAmount(eq(Region.flanders), eq(TaxType.tmc), any())).thenReturn(BigDecimal.valueOf(55.88));
-            when(taxConfigService.getMaxAmount(eq(Region.flanders), eq(TaxType.tmc), any())).thenReturn(Optional.of(BigDecimal.valueOf(13969.29)));
+            bracket(Region.flanders, TaxType.tmc, "luchtcomponent_petrol", 5, 5, BigDecimal.valueOf(113.33));
+            parameter(Region.flanders, TaxType.tmc, "min_amount", BigDecimal.valueOf(55.88));
+            parameter(Region.flanders, TaxType.tmc, "max_amount", BigDecimal.valueOf(13969.29));
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.flanders, TaxType.tmc, LocalDate.now());
@@ -304,25 +279,18 @@ class TaxCalculationServiceTest {
             // Véhicule essence Euro 6 avec CO2 faible
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     80, 6, FuelType.petrol, EuroNorm.euro_6d, 120, null, null);
-
-            when(taxConfigService.isZeroEmissionExempt(any(), any(), any(), any())).thenReturn(false);
-            when(taxConfigService.getAgeCoefficient(eq(Region.flanders), eq(TaxType.tmc), eq(0), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
+            ageCoefficient(Region.flanders, TaxType.tmc, 0, BigDecimal.ONE);
             // Paramètres formule officielle
-            when(taxConfigService.getParameter(eq(Region.flanders), eq(TaxType.tmc), eq("formula_divisor"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(246));
-            when(taxConfigService.getParameter(eq(Region.flanders), eq(TaxType.tmc), eq("formula_constant"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(4500));
-            when(taxConfigService.getParameter(eq(Region.flanders), eq(TaxType.tmc), eq("fuel_factor_default"), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
+            parameter(Region.flanders, TaxType.tmc, "formula_divisor", BigDecimal.valueOf(246));
+            parameter(Region.flanders, TaxType.tmc, "formula_constant", BigDecimal.valueOf(4500));
+            parameter(Region.flanders, TaxType.tmc, "fuel_factor_default", BigDecimal.ONE);
             // WLTP q factor for 2026+ vehicles
-            when(taxConfigService.getParameter(eq(Region.flanders), eq(TaxType.tmc), eq("wltp_q_factor"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(1.245));
+            parameter(Region.flanders, TaxType.tmc, "wltp_q_factor", BigDecimal.valueOf(1.245));
             // Euro 6 = numeric value 6, luchtcomponent petrol
-            when(taxConfigService.findBracket(eq(Region.flanders), eq(TaxType.tmc), eq("luchtcomponent_petrol"), eq(6), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(27.43))));
-            when(taxConfigService.getMinAmount(eq(Region.flanders), eq(TaxType.tmc), any())).thenReturn(BigDecimal.valueOf(55.88));
-            when(taxConfigService.getMaxAmount(eq(Region.flanders), eq(TaxType.tmc), any())).thenReturn(Optional.of(BigDecimal.valueOf(13969.29)));
+            bracket(Region.flanders, TaxType.tmc, "luchtcomponent_petrol", 6, 6, BigDecimal.valueOf(27.43));
+            parameter(Region.flanders, TaxType.tmc, "min_amount", BigDecimal.valueOf(55.88));
+            parameter(Region.flanders, TaxType.tmc, "max_amount", BigDecimal.valueOf(13969.29));
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.flanders, TaxType.tmc, LocalDate.now());
@@ -344,12 +312,9 @@ class TaxCalculationServiceTest {
         void shouldCalculateBasedOnFiscalHp() {
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     100, 8, FuelType.petrol, EuroNorm.euro_6d, null, null, null);
-
-            when(taxConfigService.isZeroEmissionExempt(any(), any(), any(), any())).thenReturn(false);
-            when(taxConfigService.findBracket(eq(Region.wallonia), eq(TaxType.annual), eq("fiscal_hp"), any(Integer.class), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(300))));
-            when(taxConfigService.getMinAmount(eq(Region.wallonia), eq(TaxType.annual), any())).thenReturn(BigDecimal.valueOf(87));
-            when(taxConfigService.getMaxAmount(eq(Region.wallonia), eq(TaxType.annual), any())).thenReturn(Optional.empty());
+            bracket(Region.wallonia, TaxType.annual, "fiscal_hp", 0, null, BigDecimal.valueOf(300));
+            parameter(Region.wallonia, TaxType.annual, "min_amount", BigDecimal.valueOf(87));
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.wallonia, TaxType.annual, LocalDate.now());
@@ -364,15 +329,11 @@ class TaxCalculationServiceTest {
             // Test with 8CV LPG in Brussels (8-13 CV bracket = 148.68€)
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     100, 8, FuelType.lpg, EuroNorm.euro_6d, null, null, null);
-
-            when(taxConfigService.isZeroEmissionExempt(any(), any(), any(), any())).thenReturn(false);
-            when(taxConfigService.findBracket(eq(Region.brussels), eq(TaxType.annual), eq("fiscal_hp"), any(Integer.class), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(300))));
+            bracket(Region.brussels, TaxType.annual, "fiscal_hp", 0, null, BigDecimal.valueOf(300));
             // LPG supplement is now bracket-based (≤7: 89.16€, 8-13: 148.68€, ≥14: 208.20€)
-            when(taxConfigService.findBracket(eq(Region.brussels), eq(TaxType.annual), eq("lpg_supplement"), eq(8), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(148.68))));
-            when(taxConfigService.getMinAmount(eq(Region.brussels), eq(TaxType.annual), any())).thenReturn(BigDecimal.valueOf(87));
-            when(taxConfigService.getMaxAmount(eq(Region.brussels), eq(TaxType.annual), any())).thenReturn(Optional.empty());
+            bracket(Region.brussels, TaxType.annual, "lpg_supplement", 8, 8, BigDecimal.valueOf(148.68));
+            parameter(Region.brussels, TaxType.annual, "min_amount", BigDecimal.valueOf(87));
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.brussels, TaxType.annual, LocalDate.now());
@@ -387,16 +348,11 @@ class TaxCalculationServiceTest {
         void shouldApplyCo2AdjustmentForFlanders() {
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     120, 10, FuelType.diesel, EuroNorm.euro_6d, 160, null, null);
-
-            when(taxConfigService.isZeroEmissionExempt(any(), any(), any(), any())).thenReturn(false);
-            when(taxConfigService.findBracket(eq(Region.flanders), eq(TaxType.annual), eq("fiscal_hp"), any(Integer.class), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(300))));
-            when(taxConfigService.getParameter(eq(Region.flanders), eq(TaxType.annual), eq("co2_reference_wltp"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(149));
-            when(taxConfigService.getParameter(eq(Region.flanders), eq(TaxType.annual), eq("co2_correction_percent"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(0.003));
-            when(taxConfigService.getMinAmount(eq(Region.flanders), eq(TaxType.annual), any())).thenReturn(BigDecimal.valueOf(87));
-            when(taxConfigService.getMaxAmount(eq(Region.flanders), eq(TaxType.annual), any())).thenReturn(Optional.empty());
+            bracket(Region.flanders, TaxType.annual, "fiscal_hp", 0, null, BigDecimal.valueOf(300));
+            parameter(Region.flanders, TaxType.annual, "co2_reference_wltp", BigDecimal.valueOf(149));
+            parameter(Region.flanders, TaxType.annual, "co2_correction_percent", BigDecimal.valueOf(0.003));
+            parameter(Region.flanders, TaxType.annual, "min_amount", BigDecimal.valueOf(87));
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.flanders, TaxType.annual, LocalDate.now());
@@ -405,6 +361,51 @@ class TaxCalculationServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Published rule version")
+    class PublishedRuleVersionTests {
+
+        @Test
+        @DisplayName("should compute both taxes on a single published version")
+        void shouldUseSingleVersionForBothTaxes() {
+            TaxCalculationRequest request = new TaxCalculationRequest();
+            request.setVariantId(1L);
+            request.setRegion(Region.wallonia);
+            request.setFirstRegistrationDate(new FirstRegistrationDate(2024, 1));
+            when(variantService.findById(1L)).thenReturn(createTestVariant());
+
+            bracket(Region.wallonia, TaxType.tmc, "power_kw", 0, null, BigDecimal.valueOf(500));
+            bracket(Region.wallonia, TaxType.annual, "fiscal_hp", 0, null, BigDecimal.valueOf(300));
+            publishRules();
+
+            TaxCalculationService.TaxCalculationResult result = taxCalculationService.calculateBoth(request);
+
+            assertThat(result.getTmc().getRuleVersion()).isEqualTo(VERSION_ID);
+            assertThat(result.getAnnual().getRuleVersion()).isEqualTo(VERSION_ID);
+            verify(ruleVersionService, times(1)).current();
+        }
+
+        @Test
+        @DisplayName("should convert displacement with the published brackets")
+        void shouldConvertDisplacementWithPublishedBrackets() {
+            TaxCalculationRequest request = new TaxCalculationRequest();
+            request.setRegion(Region.brussels);
+            request.setDisplacementCc(1500);
+            request.setFuel(FuelType.petrol);
+            request.setFirstRegistrationDate(new FirstRegistrationDate(2024, 1));
+
+            bracket(Region.brussels, TaxType.annual, "displacement_cc", 1401, 1600, BigDecimal.valueOf(8));
+            bracket(Region.brussels, TaxType.annual, "fiscal_hp", 8, 8, BigDecimal.valueOf(300));
+            publishRules();
+
+            TaxCalculationResponse response = taxCalculationService.calculateAnnualOnly(request);
+
+            assertThat(response.getBreakdown().get("fiscalHp")).isEqualTo(8);
+            assertThat(response.getAmount()).isEqualByComparingTo("300");
+            assertThat(response.getRuleVersion()).isEqualTo(VERSION_ID);
+        }
+    }
+
     @Nested
     @DisplayName("Min/Max amount limits")
     class AmountLimitsTests {
@@ -414,20 +415,13 @@ class TaxCalculationServiceTest {
         void shouldApplyMinAmount() {
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     50, 3, FuelType.petrol, EuroNorm.euro_6d, 100, null, 1500);
-
-            when(taxConfigService.isZeroEmissionExempt(any(), any(), any(), any())).thenReturn(false);
-            when(taxConfigService.getAgeCoefficient(eq(Region.wallonia), eq(TaxType.tmc), eq(0), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
-            when(taxConfigService.findBracket(eq(Region.wallonia), eq(TaxType.tmc), eq("power_kw"), eq(50), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(10))));
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("energy_thermal"), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("co2_reference_wltp"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(136));
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("mma_reference"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(1838));
-            when(taxConfigService.getMinAmount(eq(Region.wallonia), eq(TaxType.tmc), any())).thenReturn(BigDecimal.valueOf(100));
-            when(taxConfigService.getMaxAmount(eq(Region.wallonia), eq(TaxType.tmc), any())).thenReturn(Optional.empty());
+            ageCoefficient(Region.wallonia, TaxType.tmc, 0, BigDecimal.ONE);
+            bracket(Region.wallonia, TaxType.tmc, "power_kw", 50, 50, BigDecimal.valueOf(10));
+            parameter(Region.wallonia, TaxType.tmc, "energy_thermal", BigDecimal.ONE);
+            parameter(Region.wallonia, TaxType.tmc, "co2_reference_wltp", BigDecimal.valueOf(136));
+            parameter(Region.wallonia, TaxType.tmc, "mma_reference", BigDecimal.valueOf(1838));
+            parameter(Region.wallonia, TaxType.tmc, "min_amount", BigDecimal.valueOf(100));
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.wallonia, TaxType.tmc, LocalDate.now());
@@ -441,21 +435,14 @@ class TaxCalculationServiceTest {
         void shouldApplyMaxAmount() {
             TaxCalculationService.VehicleData vehicleData = new TaxCalculationService.VehicleData(
                     400, 25, FuelType.diesel, EuroNorm.euro_4, 250, null, 3000);
-
-            when(taxConfigService.isZeroEmissionExempt(any(), any(), any(), any())).thenReturn(false);
-            when(taxConfigService.getAgeCoefficient(eq(Region.wallonia), eq(TaxType.tmc), eq(0), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
-            when(taxConfigService.findBracket(eq(Region.wallonia), eq(TaxType.tmc), eq("power_kw"), eq(400), any()))
-                    .thenReturn(Optional.of(createTaxBracket(BigDecimal.valueOf(50000))));
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("energy_thermal"), any(), any()))
-                    .thenReturn(BigDecimal.ONE);
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("co2_reference_wltp"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(136));
-            when(taxConfigService.getParameter(eq(Region.wallonia), eq(TaxType.tmc), eq("mma_reference"), any(), any()))
-                    .thenReturn(BigDecimal.valueOf(1838));
-            when(taxConfigService.getMinAmount(eq(Region.wallonia), eq(TaxType.tmc), any())).thenReturn(BigDecimal.ZERO);
-            when(taxConfigService.getMaxAmount(eq(Region.wallonia), eq(TaxType.tmc), any()))
-                    .thenReturn(Optional.of(BigDecimal.valueOf(20000)));
+            ageCoefficient(Region.wallonia, TaxType.tmc, 0, BigDecimal.ONE);
+            bracket(Region.wallonia, TaxType.tmc, "power_kw", 400, 400, BigDecimal.valueOf(50000));
+            parameter(Region.wallonia, TaxType.tmc, "energy_thermal", BigDecimal.ONE);
+            parameter(Region.wallonia, TaxType.tmc, "co2_reference_wltp", BigDecimal.valueOf(136));
+            parameter(Region.wallonia, TaxType.tmc, "mma_reference", BigDecimal.valueOf(1838));
+            parameter(Region.wallonia, TaxType.tmc, "min_amount", BigDecimal.ZERO);
+            parameter(Region.wallonia, TaxType.tmc, "max_amount", BigDecimal.valueOf(20000));
+            publishRules();
 
             TaxCalculationResponse response = taxCalculationService.calculateTax(
                     vehicleData, Region.wallonia, TaxType.tmc, LocalDate.now());
@@ -473,13 +460,30 @@ class TaxCalculationServiceTest {
         variant.setFuel(FuelType.petrol);
         variant.setEuroNorm(EuroNorm.euro_6d);
         variant.setCo2Wltp(140);
-        variant.setMmaKg(1800);  // Add MMA so the mma_reference mock is used
+        variant.setMmaKg(1800);  // Add MMA so the mma_reference parameter is used
         return variant;
     }
 
-    private TaxBracket createTaxBracket(BigDecimal amount) {
-        TaxBracket bracket = new TaxBracket();
-        bracket.setAmount(amount);
-        return bracket;
+    // Regles publiees valides depuis RULES_FROM, sans date de fin
+
+    private void bracket(Region region, TaxType taxType, String key, int min, Integer max, BigDecimal amount) {
+        brackets.add(new RuleSnapshot.BracketRow(region, taxType, key, min, max, amount, RULES_FROM, null));
+    }
+
+    private void parameter(Region region, TaxType taxType, String key, BigDecimal value) {
+        parameters.add(new RuleSnapshot.ParameterRow(region, taxType, key, value, RULES_FROM, null));
+    }
+
+    private void ageCoefficient(Region region, TaxType taxType, int age, BigDecimal coefficient) {
+        ageCoefficients.add(new RuleSnapshot.AgeCoefficientRow(region, taxType, age, coefficient, RULES_FROM, null));
+    }
+
+    private void exemption(Region region, TaxType taxType, String conditionKey) {
+        exemptions.add(new RuleSnapshot.ExemptionRow(region, taxType, conditionKey, RULES_FROM, null));
+    }
+
+    private void publishRules() {
+        when(ruleVersionService.current()).thenReturn(new PublishedRules(VERSION_ID, Instant.now(), "test",
+                new RuleSnapshot(brackets, parameters, ageCoefficients, exemptions)));
     }
 }
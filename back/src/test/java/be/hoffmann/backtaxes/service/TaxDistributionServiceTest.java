@@ -0,0 +1,151 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxDistributionResponse;
+import be.hoffmann.backtaxes.dto.response.AnalyticsTaxDistributionResponse.Bin;
+import be.hoffmann.backtaxes.dto.response.TaxComparisonResponse;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsRange;
+import be.hoffmann.backtaxes.service.analytics.TDigest;
+import be.hoffmann.backtaxes.service.analytics.TaxAmountDistribution;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TaxDistributionServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 6, 1);
+    private static final LocalDate TO = LocalDate.of(2025, 6, 30);
+
+    @Mock
+    private TaxAmountDistribution distribution;
+
+    private TaxDistributionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TaxDistributionService(distribution, 90);
+    }
+
+    /** Montants 1, 2, ..., count EUR */
+    private static TDigest uniform(int count) {
+        TDigest digest = new TDigest();
+        for (int i = 1; i <= count; i++) {
+            digest.add(i);
+        }
+        return digest;
+    }
+
+    @Nested
+    @DisplayName("getDistribution")
+    class DistributionTests {
+
+        @Test
+        @DisplayName("should return percentiles and a histogram summing to the count")
+        void shouldReturnPercentilesAndHistogram() {
+            when(distribution.digest(new AnalyticsRange(FROM, TO, Region.flanders), TaxType.annual, FuelType.diesel))
+                    .thenReturn(uniform(1000));
+
+            AnalyticsTaxDistributionResponse response = service.getDistribution(
+                    FROM, TO, Region.flanders, TaxType.annual, FuelType.diesel, 4);
+
+            assertThat(response.count()).isEqualTo(1000);
+            assertThat(response.min()).isEqualByComparingTo("1");
+            assertThat(response.max()).isEqualByComparingTo("1000");
+            assertThat(response.percentiles().p50().doubleValue()).isBetween(495.0, 506.0);
+            assertThat(response.percentiles().p99().doubleValue()).isBetween(985.0, 995.0);
+            assertThat(response.histogram()).hasSize(4);
+            assertThat(response.histogram()).extracting(Bin::count).allSatisfy(count -> assertThat(count).isBetween(240L, 260L));
+            assertThat(response.histogram().stream().mapToLong(Bin::count).sum()).isEqualTo(1000);
+        }
+
+        @Test
+        @DisplayName("should return empty statistics when nothing was calculated")
+        void shouldHandleEmptyPeriod() {
+            when(distribution.digest(new AnalyticsRange(FROM, TO, null), TaxType.tmc, null)).thenReturn(new TDigest());
+
+            AnalyticsTaxDistributionResponse response = service.getDistribution(FROM, TO, null, TaxType.tmc, null, 10);
+
+            assertThat(response.count()).isZero();
+            assertThat(response.min()).isNull();
+            assertThat(response.percentiles().p90()).isNull();
+            assertThat(response.histogram()).isEmpty();
+        }
+
+        @Test
+        @DisplayName("should reject an invalid number of bins or a missing tax type")
+        void shouldValidateParameters() {
+            assertThatThrownBy(() -> service.getDistribution(FROM, TO, null, TaxType.tmc, null, 0))
+                    .isInstanceOf(ValidationException.class);
+            assertThatThrownBy(() -> service.getDistribution(FROM, TO, null, null, null, 10))
+                    .isInstanceOf(ValidationException.class);
+            assertThatThrownBy(() -> service.getDistribution(TO, FROM, null, TaxType.tmc, null, 10))
+                    .isInstanceOf(ValidationException.class);
+            verifyNoInteractions(distribution);
+        }
+    }
+
+    @Nested
+    @DisplayName("compare")
+    class CompareTests {
+
+        @Test
+        @DisplayName("should place the amount in the reference distribution of the last days")
+        void shouldComputePercentile() {
+            LocalDate today = LocalDate.now();
+            when(distribution.rolledUp(new AnalyticsRange(today.minusDays(89), today, Region.brussels),
+                    TaxType.annual, null)).thenReturn(uniform(1000));
+
+            TaxComparisonResponse response = service.compare(Region.brussels, TaxType.annual, null, new BigDecimal("250"));
+
+            assertThat(response.percentile()).isBetween(24.0, 26.0);
+            assertThat(response.sampleSize()).isEqualTo(1000);
+            assertThat(response.from()).isEqualTo(today.minusDays(89));
+            assertThat(response.median()).isNotNull();
+        }
+
+        @Test
+        @DisplayName("should not give a percentile with too few calculations")
+        void shouldRequireMinimumSample() {
+            LocalDate today = LocalDate.now();
+            when(distribution.rolledUp(new AnalyticsRange(today.minusDays(89), today, Region.wallonia),
+                    TaxType.tmc, FuelType.electric)).thenReturn(uniform(5));
+
+            TaxComparisonResponse response = service.compare(Region.wallonia, TaxType.tmc, FuelType.electric,
+                    new BigDecimal("3"));
+
+            assertThat(response.percentile()).isNull();
+            assertThat(response.sampleSize()).isEqualTo(5);
+        }
+
+        @Test
+        @DisplayName("should reject a negative amount")
+        void shouldRejectNegativeAmount() {
+            assertThatThrownBy(() -> service.compare(Region.wallonia, TaxType.tmc, null, new BigDecimal("-1")))
+                    .isInstanceOf(ValidationException.class);
+        }
+    }
+
+    @Test
+    @DisplayName("should refuse a non-positive reference period")
+    void shouldRejectReferenceDays() {
+        assertThatThrownBy(() -> new TaxDistributionService(mock(TaxAmountDistribution.class), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,168 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.response.TaxCalculationResponse;
+import be.hoffmann.backtaxes.dto.response.TaxHistoryResponse;
+import be.hoffmann.backtaxes.dto.response.TaxHistoryResponse.Period;
+import be.hoffmann.backtaxes.dto.response.TaxHistoryResponse.RegionTaxes;
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.engine.TaxRules;
+import be.hoffmann.backtaxes.entity.Variant;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.service.TaxCalculationService.VehicleData;
+import be.hoffmann.backtaxes.service.rules.PublishedRules;
+import be.hoffmann.backtaxes.service.rules.RuleSnapshot;
+import be.hoffmann.backtaxes.service.rules.RuleSnapshot.BracketRow;
+import be.hoffmann.backtaxes.service.rules.RuleVersionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TaxHistoryServiceTest {
+
+    private static final LocalDate JANUARY = LocalDate.of(2024, 1, 1);
+    private static final LocalDate JULY = LocalDate.of(2024, 7, 1);
+
+    @Mock
+    private VariantService variantService;
+
+    @Mock
+    private TaxCalculationService taxCalculationService;
+
+    @Mock
+    private RuleVersionService ruleVersionService;
+
+    @Captor
+    private ArgumentCaptor<LocalDate> registrationDates;
+
+    @Captor
+    private ArgumentCaptor<TaxRules> rules;
+
+    private TaxHistoryService service;
+    private PublishedRules published;
+
+    @BeforeEach
+    void setUp() {
+        service = new TaxHistoryService(variantService, taxCalculationService, ruleVersionService);
+
+        // Bareme annuel wallon indexe au 1er juillet: deux periodes
+        published = new PublishedRules(4L, Instant.now(), "f", new RuleSnapshot(List.of(
+                new BracketRow(Region.wallonia, TaxType.annual, "fiscal_hp", 8, 8,
+                        new BigDecimal("100.00"), JANUARY, JULY.minusDays(1)),
+                new BracketRow(Region.wallonia, TaxType.annual, "fiscal_hp", 8, 8,
+                        new BigDecimal("120.00"), JULY, null)),
+                List.of(), List.of(), List.of()));
+        when(ruleVersionService.current()).thenReturn(published);
+        when(variantService.findById(7L)).thenReturn(variant());
+        when(taxCalculationService.calculateTax(any(VehicleData.class), any(Region.class), any(TaxType.class),
+                any(LocalDate.class), any(TaxRules.class)))
+                .thenAnswer(invocation -> response(invocation.getArgument(1), invocation.getArgument(2),
+                        invocation.getArgument(4)));
+    }
+
+    @Nested
+    @DisplayName("getHistory")
+    class GetHistoryTests {
+
+        @Test
+        @DisplayName("should return one period per rule boundary with the taxes of every region")
+        void shouldReturnPeriods() {
+            TaxHistoryResponse history = service.getHistory(7L, null);
+
+            assertThat(history.variantId()).isEqualTo(7L);
+            assertThat(history.firstRegistrationDate()).isNull();
+            assertThat(history.periods()).extracting(Period::validFrom, Period::validTo)
+                    .containsExactly(tuple(JANUARY, JULY.minusDays(1)), tuple(JULY, null));
+            for (Period period : history.periods()) {
+                assertThat(period.regions()).extracting(RegionTaxes::region).containsExactly(Region.values());
+            }
+            RegionTaxes january = history.periods().get(0).regions().get(Region.wallonia.ordinal());
+            assertThat(january.annual()).isEqualByComparingTo("100.00");
+            assertThat(january.annualExempt()).isFalse();
+            assertThat(january.tmc()).isNull();
+            assertThat(january.tmcExempt()).isTrue();
+            assertThat(history.periods().get(1).regions().get(Region.wallonia.ordinal()).annual())
+                    .isEqualByComparingTo("120.00");
+        }
+
+        @Test
+        @DisplayName("should compute every tax of a period on the rule set compiled once for that period")
+        void shouldReuseRuleSetPerPeriod() {
+            service.getHistory(7L, null);
+
+            int callsPerPeriod = Region.values().length * 2;
+            verify(taxCalculationService, times(2 * callsPerPeriod)).calculateTax(any(VehicleData.class),
+                    any(Region.class), any(TaxType.class), registrationDates.capture(), rules.capture());
+            TaxRuleSet january = published.ruleSetAt(JANUARY);
+            TaxRuleSet july = published.ruleSetAt(JULY);
+            assertThat(rules.getAllValues().subList(0, callsPerPeriod)).allSatisfy(ruleSet ->
+                    assertThat(ruleSet).isSameAs(january));
+            assertThat(rules.getAllValues().subList(callsPerPeriod, 2 * callsPerPeriod)).allSatisfy(ruleSet ->
+                    assertThat(ruleSet).isSameAs(july));
+            // Sans date d'immatriculation: vehicule neuf au debut de chaque periode
+            assertThat(registrationDates.getAllValues().subList(0, callsPerPeriod)).containsOnly(JANUARY);
+            assertThat(registrationDates.getAllValues().subList(callsPerPeriod, 2 * callsPerPeriod))
+                    .containsOnly(JULY);
+        }
+
+        @Test
+        @DisplayName("should compute every period with the given first registration date")
+        void shouldUseRegistrationDate() {
+            LocalDate registration = LocalDate.of(2019, 3, 15);
+
+            TaxHistoryResponse history = service.getHistory(7L, registration);
+
+            assertThat(history.firstRegistrationDate()).isEqualTo(registration);
+            verify(taxCalculationService, times(2 * Region.values().length * 2)).calculateTax(
+                    any(VehicleData.class), any(Region.class), any(TaxType.class), registrationDates.capture(),
+                    any(TaxRules.class));
+            assertThat(registrationDates.getAllValues()).containsOnly(registration);
+        }
+    }
+
+    private static Variant variant() {
+        Variant variant = new Variant();
+        variant.setId(7L);
+        variant.setPowerKw(110);
+        variant.setFiscalHp(8);
+        variant.setCo2Wltp(128);
+        variant.setFuel(FuelType.petrol);
+        return variant;
+    }
+
+    /**
+     * Taxe annuelle wallonne lue dans le jeu de regles recu; TMC exoneree.
+     */
+    private static TaxCalculationResponse response(Region region, TaxType taxType, TaxRules rules) {
+        TaxCalculationResponse response = new TaxCalculationResponse();
+        if (taxType == TaxType.tmc) {
+            response.setIsExempt(true);
+            return response;
+        }
+        response.setIsExempt(false);
+        if (region == Region.wallonia) {
+            response.setAmount(rules.findBracketAmount(Region.wallonia, TaxType.annual, "fiscal_hp", 8).orElseThrow());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,94 @@
+package be.hoffmann.backtaxes.service;
+
+import be.hoffmann.backtaxes.dto.response.AnalyticsSliceResponse;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore.Filter;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore.Group;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore.Slice;
+import be.hoffmann.backtaxes.service.analytics.SliceDimension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TrafficSliceServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2026, 3, 1);
+    private static final LocalDate TO = LocalDate.of(2026, 3, 31);
+
+    @Mock
+    private RecentSearchStore store;
+
+    private TrafficSliceService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TrafficSliceService(store);
+    }
+
+    @Test
+    @DisplayName("should query the whole days of the period and name the group values")
+    void shouldMapSlice() {
+        List<SliceDimension> groupBy = List.of(SliceDimension.region, SliceDimension.week);
+        LocalDateTime loadedUntil = LocalDateTime.of(2026, 4, 1, 9, 0);
+        when(store.query(FROM.atStartOfDay(), LocalDateTime.of(2026, 4, 1, 0, 0), Filter.NONE, groupBy, 2))
+                .thenReturn(new Slice(LocalDateTime.of(2026, 1, 1, 9, 0), loadedUntil, 8, 3, List.of(
+                        new Group(List.of(Region.brussels, LocalDate.of(2026, 3, 2)), 6),
+                        new Group(Arrays.asList(null, LocalDate.of(2026, 3, 9)), 1))));
+
+        AnalyticsSliceResponse response = service.getSlice(FROM, TO, null, groupBy, 2);
+
+        assertThat(response.count()).isEqualTo(8);
+        assertThat(response.groupCount()).isEqualTo(3);
+        assertThat(response.loadedUntil()).isEqualTo(loadedUntil);
+        assertThat(response.groups()).hasSize(2);
+        assertThat(response.groups().get(0).dimensions()).containsExactly(
+                entry("region", Region.brussels), entry("week", LocalDate.of(2026, 3, 2)));
+        assertThat(response.groups().get(0).share()).isEqualTo(0.75);
+        assertThat(response.groups().get(1).dimensions()).containsEntry("region", null);
+    }
+
+    @Test
+    @DisplayName("should reject invalid periods, groupings and limits without reading the store")
+    void shouldValidateParameters() {
+        Filter filter = new Filter(null, Set.of(FuelType.diesel), null, null, null, null, null, null);
+
+        assertThatThrownBy(() -> service.getSlice(null, TO, filter, List.of(), 10))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> service.getSlice(TO, FROM, filter, List.of(), 10))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> service.getSlice(FROM, FROM.plusDays(TrafficSliceService.MAX_DAYS), filter,
+                List.of(), 10)).isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> service.getSlice(FROM, TO, filter, List.of(SliceDimension.region,
+                SliceDimension.fuel_type, SliceDimension.device_type, SliceDimension.day), 10))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> service.getSlice(FROM, TO, filter,
+                List.of(SliceDimension.brand, SliceDimension.brand), 10))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> service.getSlice(FROM, TO, filter,
+                List.of(SliceDimension.day, SliceDimension.hour), 10))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> service.getSlice(FROM, TO, filter, List.of(),
+                TrafficSliceService.MAX_GROUPS + 1))
+                .isInstanceOf(ValidationException.class);
+        verifyNoInteractions(store);
+    }
+}
@@ -0,0 +1,118 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.service.analytics.AdaptiveSampler.Load;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class AdaptiveSamplerTest {
+
+    private static final Load IDLE = new Load(0, 0, 0.1, 0);
+    private static final Load BUSY_POOL = new Load(0, 0, 0.9, 0);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Nested
+    @DisplayName("adjust")
+    class AdjustTests {
+
+        @Test
+        @DisplayName("should double the weight while a threshold is exceeded, up to the maximum")
+        void shouldRaiseWeightUnderLoad() {
+            AdaptiveSampler sampler = sampler(8);
+
+            sampler.adjust(BUSY_POOL);
+            assertThat(sampler.weight()).isEqualTo(2);
+            sampler.adjust(new Load(0.6, 0, 0, 0));
+            sampler.adjust(new Load(0, 3, 0, 0));
+            sampler.adjust(new Load(0, 0, 0, 1));
+
+            assertThat(sampler.weight()).isEqualTo(8);
+        }
+
+        @Test
+        @DisplayName("should lower the weight only once every signal is under half its threshold")
+        void shouldLowerWeightWithHysteresis() {
+            AdaptiveSampler sampler = sampler(16);
+            sampler.adjust(BUSY_POOL);
+            sampler.adjust(BUSY_POOL);
+
+            sampler.adjust(new Load(0, 0, 0.6, 0));
+            assertThat(sampler.weight()).isEqualTo(4);
+
+            sampler.adjust(IDLE);
+            sampler.adjust(IDLE);
+            sampler.adjust(IDLE);
+            assertThat(sampler.weight()).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    @DisplayName("sample")
+    class SampleTests {
+
+        @Test
+        @DisplayName("should always keep calculations with weight 1")
+        void shouldKeepCalculations() {
+            AdaptiveSampler sampler = sampler(16);
+            for (int i = 0; i < 4; i++) {
+                sampler.adjust(BUSY_POOL);
+            }
+
+            for (int i = 0; i < 1000; i++) {
+                assertThat(sampler.sample(SearchType.calculate)).isEqualTo(1);
+            }
+        }
+
+        @Test
+        @DisplayName("should keep one browse event in w, weighted w, so that the weights sum to the event count")
+        void shouldSampleWithoutBias() {
+            AdaptiveSampler sampler = sampler(16);
+            sampler.adjust(BUSY_POOL);
+            sampler.adjust(BUSY_POOL);
+
+            long kept = 0;
+            long weights = 0;
+            for (int i = 0; i < 100_000; i++) {
+                int weight = sampler.sample(SearchType.browse);
+                assertThat(weight).isIn(0, 4);
+                kept += weight > 0 ? 1 : 0;
+                weights += weight;
+            }
+
+            assertThat(kept).isBetween(24_000L, 26_000L);
+            assertThat(weights).isBetween(96_000L, 104_000L);
+            assertThat(meterRegistry.get("analytics.events.dropped").tag("reason", "adaptive").counter().count())
+                    .isEqualTo(100_000.0 - kept);
+        }
+
+        @Test
+        @DisplayName("should keep every search without load")
+        void shouldKeepAllWithoutLoad() {
+            AdaptiveSampler sampler = sampler(16);
+
+            assertThat(sampler.sample(SearchType.filter)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("should refuse a maximum weight that is not a power of 2")
+    void shouldRejectMaxWeight() {
+        assertThatThrownBy(() -> sampler(12)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> sampler(2048)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private AdaptiveSampler sampler(int maxWeight) {
+        return new AdaptiveSampler(mock(AnalyticsEventWriter.class), mock(AnalyticsJournal.class),
+                mock(DataSource.class), meterRegistry, true, 0.5, 2, 0.8, maxWeight);
+    }
+}
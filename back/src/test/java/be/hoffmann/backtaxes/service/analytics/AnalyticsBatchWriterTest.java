@@ -0,0 +1,266 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalyticsBatchWriterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RecordingWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.release();
+            writer.stop();
+        }
+    }
+
+    @Nested
+    @DisplayName("flush")
+    class FlushTests {
+
+        @Test
+        @DisplayName("should write a batch as soon as it is full")
+        void shouldFlushBySize() throws Exception {
+            writer = start(settings(16, 3, 60_000, OverflowPolicy.drop_oldest));
+
+            writer.submit(1);
+            writer.submit(2);
+            writer.submit(3);
+
+            assertThat(writer.nextBatch()).containsExactly(1, 2, 3);
+            assertThat(counter("analytics.events.written")).isEqualTo(3);
+            assertThat(meterRegistry.get("analytics.flush.latency").timer().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should write an incomplete batch once the flush interval elapses")
+        void shouldFlushByTime() throws Exception {
+            writer = start(settings(16, 100, 20, OverflowPolicy.drop_oldest));
+
+            writer.submit(1);
+            writer.submit(2);
+
+            assertThat(writer.nextBatch()).containsExactly(1, 2);
+        }
+
+        @Test
+        @DisplayName("should count a failed batch as dropped and keep writing")
+        void shouldSurviveWriteFailure() throws Exception {
+            writer = start(settings(16, 1, 60_000, OverflowPolicy.drop_oldest));
+            writer.failNext = true;
+
+            writer.submit(1);
+            writer.submit(2);
+
+            assertThat(writer.nextBatch()).containsExactly(2);
+            assertThat(dropped("write_error")).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    @DisplayName("overflow policies")
+    class OverflowTests {
+
+        @Test
+        @DisplayName("drop_oldest should evict the oldest pending event")
+        void shouldDropOldest() throws Exception {
+            writer = startBlocked(OverflowPolicy.drop_oldest);
+
+            assertThat(writer.submit(2)).isTrue();
+            assertThat(writer.submit(3)).isTrue();
+            assertThat(writer.submit(4)).isTrue();
+            assertThat(writer.depth()).isEqualTo(2);
+            writer.release();
+
+            assertThat(writer.nextBatch()).containsExactly(1);
+            assertThat(writer.nextBatch()).containsExactly(3);
+            assertThat(writer.nextBatch()).containsExactly(4);
+            assertThat(dropped("overflow")).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("sample should keep one event in n above the threshold and multiply its weight by n")
+        void shouldSample() {
+            writer = start(new AnalyticsWriterSettings(8192, 500, 20, OverflowPolicy.sample, 0.0, 0.25, 5, 5_000));
+            for (int i = 0; i < 4000; i++) {
+                writer.submit(1);
+            }
+
+            writer.stop();
+
+            assertThat(writer.written()).allMatch(weight -> weight == 4);
+            assertThat(writer.written().size()).isBetween(800, 1200);
+            assertThat(counter("analytics.events.sampled")).isEqualTo(writer.written().size());
+            assertThat(dropped("sampled")).isEqualTo(4000 - writer.written().size());
+        }
+
+        @Test
+        @DisplayName("sample should always keep the events that cannot be sampled")
+        void shouldKeepUnsampledEvents() {
+            writer = start(new AnalyticsWriterSettings(8192, 500, 20, OverflowPolicy.sample, 0.0, 0.25, 5, 5_000));
+            for (int i = 0; i < 1000; i++) {
+                writer.submit(-1);
+            }
+
+            writer.stop();
+
+            assertThat(writer.written()).hasSize(1000).containsOnly(-1);
+            assertThat(dropped("sampled")).isZero();
+        }
+
+        @Test
+        @DisplayName("block should give up after the timeout when the buffer stays full")
+        void shouldBlockThenGiveUp() {
+            writer = startBlocked(OverflowPolicy.block);
+
+            assertThat(writer.submit(2)).isTrue();
+            assertThat(writer.submit(3)).isTrue();
+            assertThat(writer.submit(4)).isFalse();
+            assertThat(dropped("timeout")).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    @DisplayName("lifecycle")
+    class LifecycleTests {
+
+        @Test
+        @DisplayName("stop should drain pending events and reject later submits")
+        void shouldDrainOnStop() {
+            writer = start(settings(64, 10, 60_000, OverflowPolicy.drop_oldest));
+            for (int i = 0; i < 25; i++) {
+                writer.submit(i);
+            }
+
+            writer.stop();
+
+            assertThat(writer.written()).hasSize(25);
+            assertThat(writer.isRunning()).isFalse();
+            assertThat(writer.submit(99)).isFalse();
+            assertThat(dropped("shutdown")).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should expose the buffer depth gauge")
+        void shouldExposeDepth() {
+            writer = startBlocked(OverflowPolicy.drop_oldest);
+            writer.submit(2);
+
+            assertThat(meterRegistry.get("analytics.buffer.depth").tag("stream", "test").gauge().value())
+                    .isEqualTo(1);
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    /** Buffer de 2 places dont le writer est bloque dans l'ecriture du premier evenement */
+    private RecordingWriter startBlocked(OverflowPolicy policy) {
+        RecordingWriter blocked = start(new AnalyticsWriterSettings(2, 1, 60_000, policy, 0.5, 0.5, 5, 5_000));
+        blocked.hold();
+        blocked.submit(1);
+        blocked.awaitHeld();
+        return blocked;
+    }
+
+    private RecordingWriter start(AnalyticsWriterSettings settings) {
+        RecordingWriter started = new RecordingWriter(settings, meterRegistry);
+        started.start();
+        return started;
+    }
+
+    private static AnalyticsWriterSettings settings(int capacity, int batchSize, long flushIntervalMs,
+                                                    OverflowPolicy policy) {
+        return new AnalyticsWriterSettings(capacity, batchSize, flushIntervalMs, policy, 0.75, 0.1, 5, 5_000);
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).tag("stream", "test").counter().count();
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("analytics.events.dropped").tag("stream", "test").tag("reason", reason)
+                .counter().count();
+    }
+
+    /** Evenement = son poids; les valeurs negatives ne sont pas echantillonnables */
+    private static final class RecordingWriter extends AnalyticsBatchWriter<Integer> {
+
+        private final LinkedBlockingQueue<List<Integer>> batches = new LinkedBlockingQueue<>();
+        private final List<Integer> written = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch held;
+        private volatile CountDownLatch gate;
+        private volatile boolean failNext;
+
+        RecordingWriter(AnalyticsWriterSettings settings, MeterRegistry meterRegistry) {
+            super("test", settings, meterRegistry);
+        }
+
+        @Override
+        protected void writeBatch(List<Integer> batch) {
+            CountDownLatch currentGate = gate;
+            if (currentGate != null) {
+                held.countDown();
+                try {
+                    currentGate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failNext) {
+                failNext = false;
+                throw new IllegalStateException("database unavailable");
+            }
+            written.addAll(batch);
+            batches.add(List.copyOf(batch));
+        }
+
+        @Override
+        protected Integer reweight(Integer event, int factor) {
+            return event < 0 ? null : event * factor;
+        }
+
+        void hold() {
+            held = new CountDownLatch(1);
+            gate = new CountDownLatch(1);
+        }
+
+        void awaitHeld() {
+            try {
+                assertThat(held.await(5, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void release() {
+            CountDownLatch currentGate = gate;
+            gate = null;
+            if (currentGate != null) {
+                currentGate.countDown();
+            }
+        }
+
+        List<Integer> nextBatch() throws InterruptedException {
+            return batches.poll(5, TimeUnit.SECONDS);
+        }
+
+        List<Integer> written() {
+            return written;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalyticsCopyLoaderTest {
+
+    private static final Instant CREATED_AT = Instant.parse("2025-06-01T10:15:30.123456Z");
+    private static final String LOCAL_TIME = LocalDateTime.ofInstant(CREATED_AT, ZoneId.systemDefault()).toString();
+
+    @Test
+    @DisplayName("should write NULL as empty fields and quote text values")
+    void shouldFormatSearchEventRow() {
+        UUID sessionId = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        SearchEventRecord event = new SearchEventRecord(sessionId, null, 5L, null, null, Region.brussels,
+                null, true, null, SearchType.filter, null, "say \"hi\"", null, "", CREATED_AT);
+        StringBuilder out = new StringBuilder();
+
+        AnalyticsCopyLoader.appendSearchEvent(out, 100L, event);
+
+        assertThat(out.toString()).isEqualTo("100," + sessionId + ",,5,,,brussels,,true,,filter,,"
+                + "\"say \"\"hi\"\"\",,\"\"," + LOCAL_TIME + ",1\n");
+    }
+
+    @Test
+    @DisplayName("should reference the reserved search event id in calculation rows")
+    void shouldFormatCalculationRow() {
+        SearchEventRecord event = new SearchEventRecord(UUID.randomUUID(), null, null, null, null, null,
+                null, null, null, SearchType.calculate, null, null, null, null, CREATED_AT);
+        TaxCalculationRecord line = new TaxCalculationRecord(3L, null, Region.wallonia, TaxType.annual,
+                new BigDecimal("99.9"), 85, 8, null, 24, false);
+        StringBuilder out = new StringBuilder();
+
+        AnalyticsCopyLoader.appendCalculation(out, 100L, line, event);
+
+        assertThat(out.toString()).isEqualTo("100,3,,wallonia,annual,99.90,85,8,,24,false," + LOCAL_TIME + "\n");
+    }
+}
@@ -0,0 +1,140 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsEventWriterTest {
+
+    private static final String BROWSER =
+            "Mozilla/5.0 (Linux; Android 14; Pixel 8) AppleWebKit/537.36 Chrome/120.0 Mobile Safari/537.36";
+    private static final String CRAWLER = "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)";
+
+    @Mock
+    private AnalyticsJournal journal;
+
+    @Mock
+    private PopularVehicleSketches popularVehicleSketches;
+
+    @Captor
+    private ArgumentCaptor<List<AnalyticsEvent>> eventsCaptor;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LiveTrafficCounters liveTrafficCounters = new LiveTrafficCounters(60);
+
+    @Test
+    @DisplayName("should derive client fields from the raw headers before writing")
+    void shouldEnrichEvents() {
+        AnalyticsEventWriter writer = writer(true);
+        SearchEventRecord search = event(SearchType.calculate);
+        TaxCalculationRecord line = new TaxCalculationRecord(1L, null, Region.wallonia, TaxType.tmc,
+                new BigDecimal("1500.00"), null, null, null, 0, false);
+
+        writer.writeBatch(List.of(
+                new CapturedEvent(new CalculationEventRecord(search, List.of(line)), BROWSER,
+                        "https://www.google.be/search?q=taxe", "fr-BE,fr;q=0.9,en;q=0.8"),
+                new CapturedEvent(event(SearchType.browse), null, null, null)));
+
+        verify(journal).append(eventsCaptor.capture());
+        List<AnalyticsEvent> written = eventsCaptor.getValue();
+        assertThat(written.get(0)).isInstanceOfSatisfying(CalculationEventRecord.class, calculation -> {
+            assertThat(calculation.calculations()).containsExactly(line);
+            SearchEventRecord enriched = calculation.searchEvent();
+            assertThat(enriched.sessionId()).isEqualTo(search.sessionId());
+            assertThat(enriched.deviceType()).isEqualTo(DeviceType.mobile);
+            assertThat(enriched.referrerSource()).isEqualTo("google");
+            assertThat(enriched.userAgentHash()).hasSize(64);
+            assertThat(enriched.language()).isEqualTo("fr-BE,fr;q");
+        });
+        assertThat(written.get(1)).isInstanceOfSatisfying(SearchEventRecord.class, browse -> {
+            assertThat(browse.deviceType()).isNull();
+            assertThat(browse.referrerSource()).isEqualTo("direct");
+            assertThat(browse.userAgentHash()).isNull();
+        });
+        verify(popularVehicleSketches).record(written);
+        assertThat(liveTrafficCounters.snapshot(2).totals().searches()).isEqualTo(2);
+        assertThat(liveTrafficCounters.snapshot(2).totals().calculations()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should drop bots before the journal and the live counters")
+    void shouldFilterBots() {
+        AnalyticsEventWriter writer = writer(true);
+
+        writer.writeBatch(List.of(new CapturedEvent(event(SearchType.browse), CRAWLER, null, null)));
+
+        verifyNoInteractions(journal, popularVehicleSketches);
+        assertThat(liveTrafficCounters.snapshot(2).totals().searches()).isZero();
+        assertThat(meterRegistry.get("analytics.events.dropped").tag("reason", "bot").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("should keep bots when filtering is disabled")
+    void shouldKeepBotsWhenDisabled() {
+        AnalyticsEventWriter writer = writer(false);
+
+        writer.writeBatch(List.of(new CapturedEvent(event(SearchType.browse), CRAWLER, null, null)));
+
+        verify(journal).append(eventsCaptor.capture());
+        assertThat(eventsCaptor.getValue()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("should multiply the weight of sampled searches and never sample calculations")
+    void shouldReweightOnlySearches() {
+        AnalyticsEventWriter writer = writer(true);
+        SearchEventRecord browse = event(SearchType.browse).withSampleWeight(4);
+
+        CapturedEvent weighted = writer.reweight(new CapturedEvent(browse, BROWSER, null, "fr"), 10);
+
+        assertThat(weighted.event().searchEvent().sampleWeight()).isEqualTo(40);
+        assertThat(weighted.userAgent()).isEqualTo(BROWSER);
+        assertThat(writer.reweight(new CapturedEvent(event(SearchType.calculate), null, null, null), 10)).isNull();
+        assertThat(writer.reweight(new CapturedEvent(new CalculationEventRecord(browse, List.of()), null, null,
+                null), 10)).isNull();
+        assertThat(writer.reweight(new CapturedEvent(browse.withSampleWeight(4096), null, null, null), 10))
+                .isNull();
+    }
+
+    @Test
+    @DisplayName("should map referers to traffic sources")
+    void shouldExtractReferrerSource() {
+        assertThat(AnalyticsEventWriter.referrerSource(null)).isEqualTo("direct");
+        assertThat(AnalyticsEventWriter.referrerSource("https://M.FACEBOOK.COM/")).isEqualTo("facebook");
+        assertThat(AnalyticsEventWriter.referrerSource("https://www.linkedin.com/feed")).isEqualTo("linkedin");
+        assertThat(AnalyticsEventWriter.referrerSource("https://example.org")).isEqualTo("other");
+    }
+
+    private AnalyticsEventWriter writer(boolean filterBots) {
+        return new AnalyticsEventWriter(journal, popularVehicleSketches, liveTrafficCounters,
+                new UserAgentClassifier(100),
+                new AnalyticsWriterSettings(16, 10, 1_000, OverflowPolicy.drop_oldest, 0.75, 0.1, 5, 5_000),
+                meterRegistry, filterBots);
+    }
+
+    private static SearchEventRecord event(SearchType searchType) {
+        return new SearchEventRecord(UUID.randomUUID(), null, null, null, 3L, Region.wallonia, null, null, null,
+                searchType, null, null, null, null, Instant.now());
+    }
+}
@@ -0,0 +1,118 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.service.analytics.AnalyticsCopyLoader.JournalCheckpoint;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsJournal.JournalSegment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsJournalDrainerTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private AnalyticsCopyLoader loader;
+
+    @Captor
+    private ArgumentCaptor<List<AnalyticsEvent>> batches;
+
+    @Captor
+    private ArgumentCaptor<JournalCheckpoint> checkpoints;
+
+    private AnalyticsJournal journal;
+    private AnalyticsJournalDrainer drainer;
+
+    @BeforeEach
+    void setUp() {
+        journal = new AnalyticsJournal(directory.toString(), 16);
+        drainer = new AnalyticsJournalDrainer(journal, loader, new SimpleMeterRegistry(), 3);
+    }
+
+    @Nested
+    @DisplayName("drain")
+    class DrainTests {
+
+        @Test
+        @DisplayName("should load the active segment in chunks and delete it")
+        void shouldLoadAndDelete() {
+            when(loader.readCheckpoint(journal.getId())).thenReturn(Optional.empty());
+            journal.append(AnalyticsJournalTest.events(7));
+
+            long loaded = drainer.drain();
+
+            assertThat(loaded).isEqualTo(7);
+            verify(loader, times(3)).load(eq(journal.getId()), batches.capture(), checkpoints.capture());
+            assertThat(batches.getAllValues()).extracting(List::size).containsExactly(3, 3, 1);
+            assertThat(checkpoints.getAllValues()).extracting(JournalCheckpoint::position).isSorted();
+            assertThat(journal.sealedSegments()).isEmpty();
+        }
+
+        @Test
+        @DisplayName("should resume after the checkpoint and skip acknowledged segments")
+        void shouldResumeFromCheckpoint() {
+            journal.append(AnalyticsJournalTest.events(2));
+            journal.sealActiveSegment();
+            journal.append(AnalyticsJournalTest.events(5));
+            journal.sealActiveSegment();
+            List<JournalSegment> segments = journal.sealedSegments();
+            long afterTwo = AnalyticsJournal.read(segments.get(1), 0, 2).nextPosition();
+            when(loader.readCheckpoint(journal.getId()))
+                    .thenReturn(Optional.of(new JournalCheckpoint(segments.get(1).number(), afterTwo)));
+
+            long loaded = drainer.drain();
+
+            assertThat(loaded).isEqualTo(3);
+            assertThat(journal.sealedSegments()).isEmpty();
+        }
+
+        @Test
+        @DisplayName("should keep the segment when the database rejects the load")
+        void shouldKeepSegmentOnFailure() {
+            when(loader.readCheckpoint(journal.getId())).thenReturn(Optional.empty());
+            doThrow(new IllegalStateException("COPY failed"))
+                    .when(loader).load(eq(journal.getId()), anyList(), any(JournalCheckpoint.class));
+            journal.append(AnalyticsJournalTest.events(2));
+
+            assertThat(drainer.drain()).isZero();
+            assertThat(journal.sealedSegments()).hasSize(1);
+        }
+
+        @Test
+        @DisplayName("should move an unreadable segment aside")
+        void shouldQuarantineCorruptSegment() throws Exception {
+            when(loader.readCheckpoint(journal.getId())).thenReturn(Optional.empty());
+            Files.write(directory.resolve("segment-0000000000000000.ajl"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+            drainer.drain();
+
+            verify(loader, never()).load(any(), anyList(), any());
+            assertThat(directory.resolve("segment-0000000000000000.ajl.corrupt")).exists();
+            assertThat(journal.sealedSegments()).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsJournal.JournalChunk;
+import be.hoffmann.backtaxes.service.analytics.AnalyticsJournal.JournalSegment;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AnalyticsJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Nested
+    @DisplayName("append and read")
+    class AppendReadTests {
+
+        @Test
+        @DisplayName("should read back every field of search and calculation events")
+        void shouldRoundTripEvents() {
+            AnalyticsJournal journal = journal(16);
+            SearchEventRecord search = fullSearchEvent();
+            SearchEventRecord sparse = new SearchEventRecord(null, null, null, null, null, null, null,
+                    null, null, SearchType.browse, null, null, null, null, now());
+            SearchEventRecord sampled = new SearchEventRecord(UUID.randomUUID(), null, null, null, 4L,
+                    Region.wallonia, null, null, null, SearchType.filter, null, null, null, null, now(), 8);
+            CalculationEventRecord calculation = new CalculationEventRecord(search, List.of(
+                    new TaxCalculationRecord(3L, null, Region.flanders, TaxType.tmc, new BigDecimal("1234.5"),
+                            110, 9, 128, 36, false, 12L),
+                    new TaxCalculationRecord(null, 7L, Region.flanders, TaxType.annual, new BigDecimal("0.00"),
+                            null, null, null, null, true)));
+            CalculationEventRecord unsampled = new CalculationEventRecord(sparse, List.of(
+                    new TaxCalculationRecord(3L, null, Region.wallonia, TaxType.tmc, new BigDecimal("61.50"),
+                            null, null, null, 0, false, 12L)), false);
+
+            journal.append(List.of(search, sparse, calculation, sampled, unsampled));
+            journal.sealActiveSegment();
+
+            List<JournalSegment> segments = journal.sealedSegments();
+            assertThat(segments).hasSize(1);
+            JournalChunk chunk = AnalyticsJournal.read(segments.getFirst(), 0, 100);
+            assertThat(chunk.complete()).isTrue();
+            assertThat(chunk.events()).hasSize(5);
+            assertThat(chunk.events().get(0)).isEqualTo(search);
+            assertThat(chunk.events().get(1)).isEqualTo(sparse);
+            assertThat(chunk.events().get(3)).isEqualTo(sampled);
+            assertThat(chunk.events().get(3).searchEvent().sampleWeight()).isEqualTo(8);
+            CalculationEventRecord read = (CalculationEventRecord) chunk.events().get(2);
+            assertThat(read.searchEvent()).isEqualTo(search);
+            assertThat(read.calculations().get(0).calculatedAmount()).isEqualByComparingTo("1234.50");
+            assertThat(read.calculations().get(1).submissionId()).isEqualTo(7L);
+            assertThat(read.calculations().get(1).isExempt()).isTrue();
+            assertThat(read.calculations().get(0).ruleVersion()).isEqualTo(12L);
+            assertThat(read.calculations().get(1).ruleVersion()).isNull();
+            assertThat(read.linesSampled()).isTrue();
+            assertThat(chunk.events().get(4)).isEqualTo(unsampled);
+        }
+
+        @Test
+        @DisplayName("should resume reading from the returned position")
+        void shouldReadInChunks() {
+            AnalyticsJournal journal = journal(16);
+            journal.append(events(5));
+            journal.sealActiveSegment();
+            JournalSegment segment = journal.sealedSegments().getFirst();
+
+            JournalChunk first = AnalyticsJournal.read(segment, 0, 3);
+            JournalChunk second = AnalyticsJournal.read(segment, first.nextPosition(), 3);
+
+            assertThat(first.events()).hasSize(3);
+            assertThat(first.complete()).isFalse();
+            assertThat(second.events()).hasSize(2);
+            assertThat(second.complete()).isTrue();
+            assertThat(second.events().getFirst()).isEqualTo(events(5).get(3));
+        }
+
+        @Test
+        @DisplayName("should roll over to a new segment when the active one is full")
+        void shouldRollOver() {
+            AnalyticsJournal journal = journal(1);
+            List<SearchEventRecord> events = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                events.add(fullSearchEvent());
+            }
+
+            journal.append(events);
+            journal.sealActiveSegment();
+
+            List<JournalSegment> segments = journal.sealedSegments();
+            assertThat(segments).hasSizeGreaterThan(1);
+            int total = segments.stream().mapToInt(s -> AnalyticsJournal.read(s, 0, 100_000).events().size()).sum();
+            assertThat(total).isEqualTo(20_000);
+        }
+
+        @Test
+        @DisplayName("should not seal an empty segment")
+        void shouldNotSealEmptySegment() {
+            AnalyticsJournal journal = journal(16);
+
+            assertThat(journal.sealActiveSegment()).isFalse();
+            assertThat(journal.sealedSegments()).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("crash recovery")
+    class RecoveryTests {
+
+        @Test
+        @DisplayName("should treat the unsealed segment of a crashed process as sealed on restart")
+        void shouldRecoverUnsealedSegment() {
+            AnalyticsJournal crashed = journal(16);
+            crashed.append(events(4));
+            crashed.releaseLock();
+
+            AnalyticsJournal restarted = journal(16);
+
+            List<JournalSegment> segments = restarted.sealedSegments();
+            assertThat(segments).hasSize(1);
+            assertThat(AnalyticsJournal.read(segments.getFirst(), 0, 100).events()).hasSize(4);
+            assertThat(restarted.getId()).isEqualTo(crashed.getId());
+        }
+
+        @Test
+        @DisplayName("should stop at an entry whose checksum does not match")
+        void shouldStopAtTornEntry() throws Exception {
+            AnalyticsJournal journal = journal(16);
+            journal.append(events(3));
+            journal.sealActiveSegment();
+            JournalSegment segment = journal.sealedSegments().getFirst();
+            long lastEntry = AnalyticsJournal.read(segment, 0, 2).nextPosition();
+            try (RandomAccessFile file = new RandomAccessFile(segment.path().toFile(), "rw")) {
+                file.seek(file.length() - 1);
+                file.write(file.read() ^ 0xFF);
+            }
+
+            JournalChunk chunk = AnalyticsJournal.read(segment, 0, 100);
+
+            assertThat(chunk.events()).hasSize(2);
+            assertThat(chunk.nextPosition()).isEqualTo(lastEntry);
+            assertThat(chunk.complete()).isTrue();
+        }
+
+        @Test
+        @DisplayName("should never reuse a segment number after all segments were deleted")
+        void shouldKeepNumbersMonotonic() {
+            AnalyticsJournal journal = journal(16);
+            journal.append(events(1));
+            journal.sealActiveSegment();
+            JournalSegment first = journal.sealedSegments().getFirst();
+            journal.delete(first);
+            journal.close();
+
+            AnalyticsJournal restarted = journal(16);
+            restarted.append(events(1));
+            restarted.sealActiveSegment();
+
+            assertThat(restarted.sealedSegments().getFirst().number()).isGreaterThan(first.number());
+        }
+    }
+
+    @Nested
+    @DisplayName("directory lock")
+    class LockTests {
+
+        @Test
+        @DisplayName("should refuse a directory used by another journal until it is closed")
+        void shouldLockDirectory() {
+            AnalyticsJournal first = journal(16);
+
+            assertThatThrownBy(() -> journal(16))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("used by another process");
+
+            first.close();
+            assertThat(journal(16).getId()).isEqualTo(first.getId());
+        }
+    }
+
+    private AnalyticsJournal journal(int segmentSizeMb) {
+        return new AnalyticsJournal(directory.toString(), segmentSizeMb);
+    }
+
+    static List<SearchEventRecord> events(int count) {
+        List<SearchEventRecord> events = new ArrayList<>();
+        Instant start = Instant.parse("2025-06-01T10:00:00Z");
+        for (int i = 0; i < count; i++) {
+            events.add(new SearchEventRecord(new UUID(0, i), null, (long) i, null, null, Region.wallonia,
+                    FuelType.petrol, null, null, SearchType.browse, DeviceType.mobile, "direct", null, "fr",
+                    start.plusSeconds(i)));
+        }
+        return events;
+    }
+
+    static SearchEventRecord fullSearchEvent() {
+        return new SearchEventRecord(UUID.randomUUID(), 42L, 1L, 2L, 3L, Region.flanders,
+                FuelType.plug_in_hybrid_diesel, false, LocalDate.of(2019, 3, 15), SearchType.calculate,
+                DeviceType.tablet, "google", "ab".repeat(32), "nl-BE", now());
+    }
+
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+}
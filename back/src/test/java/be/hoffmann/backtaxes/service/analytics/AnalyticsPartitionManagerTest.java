@@ -0,0 +1,164 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.service.analytics.AnalyticsPartitionManager.PartitionMaintenance;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsPartitionManagerTest {
+
+    private static final String SEARCH_EVENTS = DailyAggregateRollup.SEARCH_EVENTS;
+    private static final String TAX_CALCULATIONS = DailyAggregateRollup.TAX_CALCULATIONS;
+    private static final LocalDateTime WATERMARK = LocalDateTime.of(2025, 7, 10, 2, 4);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private RetentionArchiver retentionArchiver;
+
+    private AnalyticsPartitionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new AnalyticsPartitionManager(jdbcTemplate, new TransactionTemplate(transactionManager),
+                retentionArchiver, 3, 90);
+    }
+
+    private void givenPartitions(String table, YearMonth first, YearMonth last) {
+        List<String> names = new ArrayList<>(List.of(table + "_default"));
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            names.add(AnalyticsPartitionManager.partitionName(table, month));
+        }
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(table))).thenReturn(names);
+    }
+
+    private void givenWatermarks() {
+        when(jdbcTemplate.queryForList(anyString(), eq(LocalDateTime.class), anyString())).thenReturn(List.of(WATERMARK));
+    }
+
+    @Nested
+    @DisplayName("partition creation")
+    class CreationTests {
+
+        @Test
+        @DisplayName("should create missing months ahead and move their rows out of the default partition")
+        void shouldCreateMissingMonths() {
+            givenPartitions(SEARCH_EVENTS, YearMonth.of(2025, 6), YearMonth.of(2025, 8));
+            givenPartitions(TAX_CALCULATIONS, YearMonth.of(2025, 6), YearMonth.of(2025, 9));
+            when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq("search_events_p2025_09")))
+                    .thenReturn(false);
+            givenWatermarks();
+
+            PartitionMaintenance result = manager.maintain(LocalDate.of(2025, 6, 15));
+
+            assertThat(result.created()).containsExactly("search_events_p2025_09");
+            assertThat(result.dropped()).isEmpty();
+            verify(jdbcTemplate).execute("CREATE TABLE search_events_p2025_09 (LIKE search_events INCLUDING DEFAULTS)");
+            verify(jdbcTemplate).update(contains("DELETE FROM search_events_default"),
+                    eq(LocalDateTime.of(2025, 9, 1, 0, 0)), eq(LocalDateTime.of(2025, 10, 1, 0, 0)));
+            verify(jdbcTemplate).execute("ALTER TABLE search_events ATTACH PARTITION search_events_p2025_09"
+                    + " FOR VALUES FROM ('2025-09-01') TO ('2025-10-01')");
+        }
+
+        @Test
+        @DisplayName("should skip a month created concurrently by another instance")
+        void shouldSkipExistingPartition() {
+            givenPartitions(SEARCH_EVENTS, YearMonth.of(2025, 6), YearMonth.of(2025, 8));
+            givenPartitions(TAX_CALCULATIONS, YearMonth.of(2025, 6), YearMonth.of(2025, 9));
+            when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq("search_events_p2025_09")))
+                    .thenReturn(true);
+            givenWatermarks();
+
+            PartitionMaintenance result = manager.maintain(LocalDate.of(2025, 6, 15));
+
+            assertThat(result.created()).isEmpty();
+            verify(jdbcTemplate, never()).execute(contains("CREATE TABLE"));
+        }
+    }
+
+    @Nested
+    @DisplayName("retention")
+    class RetentionTests {
+
+        @Test
+        @DisplayName("should archive and drop expired partitions only once their rows are rolled up")
+        void shouldDropRolledUpExpiredPartitions() {
+            givenPartitions(SEARCH_EVENTS, YearMonth.of(2025, 3), YearMonth.of(2025, 10));
+            givenPartitions(TAX_CALCULATIONS, YearMonth.of(2025, 3), YearMonth.of(2025, 10));
+            givenWatermarks();
+            when(jdbcTemplate.queryForObject(contains("FROM search_events_p2025_03"), eq(Boolean.class), eq(WATERMARK)))
+                    .thenReturn(false);
+            when(jdbcTemplate.queryForObject(contains("FROM tax_calculations_p2025_03"), eq(Boolean.class), eq(WATERMARK)))
+                    .thenReturn(true);
+
+            PartitionMaintenance result = manager.maintain(LocalDate.of(2025, 7, 10));
+
+            assertThat(result.dropped()).containsExactly("search_events_p2025_03");
+            assertThat(result.retained()).containsExactly("tax_calculations_p2025_03");
+            verify(retentionArchiver).archivePartition(SEARCH_EVENTS, "search_events_p2025_03");
+            verify(retentionArchiver, never()).archivePartition(TAX_CALCULATIONS, "tax_calculations_p2025_03");
+            verify(jdbcTemplate).execute("ALTER TABLE search_events DETACH PARTITION search_events_p2025_03");
+            verify(jdbcTemplate).execute("DROP TABLE search_events_p2025_03");
+            verify(jdbcTemplate, never()).execute("DROP TABLE tax_calculations_p2025_03");
+            verify(retentionArchiver).archiveExpired(TAX_CALCULATIONS, "tax_calculations_default",
+                    "tax_calculations_default_2025-04-11", LocalDateTime.of(2025, 4, 11, 0, 0), WATERMARK);
+            verify(jdbcTemplate).update(contains("DELETE FROM tax_calculations_default"),
+                    eq(LocalDateTime.of(2025, 4, 11, 0, 0)), eq(WATERMARK));
+        }
+
+        @Test
+        @DisplayName("should never drop a partition before any rollup ran")
+        void shouldKeepPartitionsWithoutWatermark() {
+            givenPartitions(SEARCH_EVENTS, YearMonth.of(2025, 3), YearMonth.of(2025, 10));
+            givenPartitions(TAX_CALCULATIONS, YearMonth.of(2025, 4), YearMonth.of(2025, 10));
+            when(jdbcTemplate.queryForList(anyString(), eq(LocalDateTime.class), anyString())).thenReturn(List.of());
+            when(jdbcTemplate.queryForObject(contains("FROM search_events_p2025_03"), eq(Boolean.class),
+                    eq(LocalDateTime.of(1970, 1, 1, 0, 0)))).thenReturn(true);
+
+            PartitionMaintenance result = manager.maintain(LocalDate.of(2025, 7, 10));
+
+            assertThat(result.dropped()).isEmpty();
+            assertThat(result.retained()).containsExactly("search_events_p2025_03");
+            verify(retentionArchiver, never()).archivePartition(any(), any());
+            verify(jdbcTemplate, never()).execute(contains("DETACH"));
+        }
+    }
+
+    @Test
+    @DisplayName("should reject a non-positive retention")
+    void shouldRejectInvalidConfiguration() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        assertThatThrownBy(() -> new AnalyticsPartitionManager(jdbcTemplate, transactionTemplate, retentionArchiver, 3, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AnalyticsPartitionManager(jdbcTemplate, transactionTemplate, retentionArchiver, 0, 90))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
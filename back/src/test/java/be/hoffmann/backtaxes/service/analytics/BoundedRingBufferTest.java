@@ -0,0 +1,126 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedRingBufferTest {
+
+    @Nested
+    @DisplayName("single thread")
+    class SingleThreadTests {
+
+        @Test
+        @DisplayName("should round capacity up to a power of two")
+        void shouldRoundCapacity() {
+            assertThat(new BoundedRingBuffer<Integer>(5).capacity()).isEqualTo(8);
+            assertThat(new BoundedRingBuffer<Integer>(8).capacity()).isEqualTo(8);
+            assertThatThrownBy(() -> new BoundedRingBuffer<Integer>(1))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+
+        @Test
+        @DisplayName("should return elements in FIFO order across wrap-around")
+        void shouldKeepFifoOrder() {
+            BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+            List<Integer> polled = new ArrayList<>();
+
+            for (int i = 0; i < 10; i++) {
+                assertThat(buffer.offer(i)).isTrue();
+                if (i % 2 == 1) {
+                    polled.add(buffer.poll());
+                    polled.add(buffer.poll());
+                }
+            }
+
+            assertThat(polled).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+            assertThat(buffer.poll()).isNull();
+            assertThat(buffer.isEmpty()).isTrue();
+        }
+
+        @Test
+        @DisplayName("should reject offers when full")
+        void shouldRejectWhenFull() {
+            BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+            for (int i = 0; i < 4; i++) {
+                buffer.offer(i);
+            }
+
+            assertThat(buffer.offer(4)).isFalse();
+            assertThat(buffer.size()).isEqualTo(4);
+
+            buffer.poll();
+            assertThat(buffer.offer(4)).isTrue();
+        }
+
+        @Test
+        @DisplayName("should drain at most the requested number of elements")
+        void shouldDrainUpToMax() {
+            BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(8);
+            for (int i = 0; i < 5; i++) {
+                buffer.offer(i);
+            }
+            List<Integer> target = new ArrayList<>();
+
+            assertThat(buffer.drainTo(target, 3)).isEqualTo(3);
+            assertThat(buffer.drainTo(target, 10)).isEqualTo(2);
+            assertThat(target).containsExactly(0, 1, 2, 3, 4);
+        }
+    }
+
+    @Nested
+    @DisplayName("concurrency")
+    class ConcurrencyTests {
+
+        @Test
+        @DisplayName("should deliver every element exactly once with concurrent producers")
+        void shouldNotLoseOrDuplicateElements() throws Exception {
+            int producers = 4;
+            int perProducer = 50_000;
+            BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(1024);
+            ExecutorService executor = Executors.newFixedThreadPool(producers);
+            CountDownLatch start = new CountDownLatch(1);
+            try {
+                for (int p = 0; p < producers; p++) {
+                    int base = p * perProducer;
+                    executor.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < perProducer; i++) {
+                            while (!buffer.offer(base + i)) {
+                                Thread.onSpinWait();
+                            }
+                        }
+                        return null;
+                    });
+                }
+                start.countDown();
+
+                Set<Integer> received = new HashSet<>();
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                while (received.size() < producers * perProducer && System.nanoTime() < deadline) {
+                    Integer element = buffer.poll();
+                    if (element != null) {
+                        assertThat(received.add(element)).isTrue();
+                    }
+                }
+
+                assertThat(received).hasSize(producers * perProducer);
+                assertThat(buffer.isEmpty()).isTrue();
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.service.analytics.CalculationFingerprints.Fingerprint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class CalculationFingerprintsTest {
+
+    private static final Instant FIRST = Instant.parse("2025-06-01T08:00:00Z");
+    private static final Instant LAST = Instant.parse("2025-06-02T17:30:00Z");
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Captor
+    private ArgumentCaptor<SqlParameterSource[]> batchCaptor;
+
+    private CalculationFingerprints fingerprints;
+
+    @BeforeEach
+    void setUp() {
+        fingerprints = new CalculationFingerprints(jdbcTemplate);
+    }
+
+    private static SearchEventRecord search(Instant createdAt) {
+        return new SearchEventRecord(UUID.randomUUID(), null, null, null, 3L, Region.wallonia, FuelType.diesel,
+                false, null, SearchType.calculate, null, null, null, null, createdAt);
+    }
+
+    private static TaxCalculationRecord line(TaxType taxType, String amount, Long ruleVersion) {
+        return new TaxCalculationRecord(3L, null, Region.wallonia, taxType, new BigDecimal(amount),
+                110, 9, 128, 36, false, ruleVersion);
+    }
+
+    @Test
+    @DisplayName("should upsert one row per distinct calculation with its count and first and last occurrence")
+    void shouldCountDuplicates() {
+        List<AnalyticsEvent> events = List.of(
+                new CalculationEventRecord(search(LAST), List.of(line(TaxType.tmc, "61.5", 4L))),
+                new CalculationEventRecord(search(FIRST), List.of(line(TaxType.tmc, "61.50", 4L),
+                        line(TaxType.annual, "250.00", 4L))),
+                new CalculationEventRecord(search(LAST), List.of(line(TaxType.tmc, "61.50", 4L)), false),
+                search(LAST));
+
+        int upserted = fingerprints.record(events);
+
+        assertThat(upserted).isEqualTo(2);
+        verify(jdbcTemplate).batchUpdate(anyString(), batchCaptor.capture());
+        SqlParameterSource tmc = Arrays.stream(batchCaptor.getValue())
+                .filter(params -> "tmc".equals(params.getValue("taxType")))
+                .findFirst().orElseThrow();
+        assertThat(tmc.getValue("count")).isEqualTo(3L);
+        assertThat(tmc.getValue("firstSeenAt")).isEqualTo(LocalDateTime.ofInstant(FIRST, ZoneId.systemDefault()));
+        assertThat(tmc.getValue("lastSeenAt")).isEqualTo(LocalDateTime.ofInstant(LAST, ZoneId.systemDefault()));
+        assertThat(tmc.getValue("fuelType")).isEqualTo("diesel");
+        assertThat((byte[]) tmc.getValue("fingerprint")).hasSize(CalculationFingerprints.FINGERPRINT_BYTES);
+    }
+
+    @Test
+    @DisplayName("should not write anything for a batch without calculations")
+    void shouldSkipSearchOnlyBatch() {
+        assertThat(fingerprints.record(List.of(search(FIRST)))).isZero();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("should distinguish rule versions and ignore the scale of amounts")
+    void shouldHashNormalizedInputs() {
+        byte[] hash = Fingerprint.of(line(TaxType.tmc, "61.5", 4L), FuelType.diesel).hash();
+
+        assertThat(Fingerprint.of(line(TaxType.tmc, "61.500", 4L), FuelType.diesel).hash()).isEqualTo(hash);
+        assertThat(Fingerprint.of(line(TaxType.tmc, "61.5", 5L), FuelType.diesel).hash()).isNotEqualTo(hash);
+        assertThat(Fingerprint.of(line(TaxType.tmc, "61.5", 4L), FuelType.petrol).hash()).isNotEqualTo(hash);
+    }
+}
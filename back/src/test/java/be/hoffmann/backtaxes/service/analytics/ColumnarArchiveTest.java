@@ -0,0 +1,98 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.service.analytics.ColumnarArchive.Column;
+import be.hoffmann.backtaxes.service.analytics.ColumnarArchive.ColumnType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ColumnarArchiveTest {
+
+    private static final List<Column> COLUMNS = List.of(
+            new Column("id", ColumnType.LONG),
+            new Column("session_id", ColumnType.UUID),
+            new Column("region", ColumnType.STRING),
+            new Column("amount", ColumnType.DECIMAL),
+            new Column("power_kw", ColumnType.INT),
+            new Column("is_exempt", ColumnType.BOOLEAN),
+            new Column("first_registration_date", ColumnType.DATE),
+            new Column("created_at", ColumnType.TIMESTAMP));
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 0, 0);
+
+    private static Object[] row(int i) {
+        return new Object[]{
+                1_000_000L + i,
+                i % 2 == 0 ? new UUID(i, -i) : null,
+                i % 3 == 0 ? "wallonia" : "flanders",
+                i % 5 == 0 ? null : new BigDecimal("61.50").add(BigDecimal.valueOf(i, 2)),
+                i % 7 == 0 ? null : -i,
+                i % 2 == 1,
+                LocalDate.of(2019, 1, 1).plusDays(i % 400),
+                START.plusNanos(i * 1_337_000L)};
+    }
+
+    private static byte[] write(int rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ColumnarArchive.Writer writer = ColumnarArchive.open(out, COLUMNS)) {
+            for (int i = 0; i < rows; i++) {
+                writer.write(row(i));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    @DisplayName("should read back every value and null across several row groups")
+    void shouldRoundTripAllTypes() throws IOException {
+        int rows = ColumnarArchive.ROW_GROUP_SIZE + 100;
+        List<String> names = COLUMNS.stream().map(Column::name).toList();
+        List<Object[]> read = new ArrayList<>();
+
+        long count = ColumnarArchive.scan(new ByteArrayInputStream(write(rows)), names, row -> read.add(row.clone()));
+
+        assertThat(count).isEqualTo(rows);
+        for (int i : new int[]{0, 1, 5, 7, ColumnarArchive.ROW_GROUP_SIZE, rows - 1}) {
+            assertThat(read.get(i)).containsExactly(row(i));
+        }
+    }
+
+    @Test
+    @DisplayName("should decode only the projected columns, in the requested order")
+    void shouldProjectColumns() throws IOException {
+        List<Object[]> read = new ArrayList<>();
+
+        ColumnarArchive.scan(new ByteArrayInputStream(write(3)), List.of("created_at", "region"),
+                row -> read.add(row.clone()));
+
+        assertThat(read).hasSize(3);
+        assertThat(read.get(1)).containsExactly(START.plusNanos(1_337_000L), "flanders");
+    }
+
+    @Test
+    @DisplayName("should encode sorted ids, timestamps and enums in a few bytes per row")
+    void shouldEncodeCompactly() throws IOException {
+        int rows = 10_000;
+
+        assertThat(write(rows).length).isLessThan(rows * 16);
+    }
+
+    @Test
+    @DisplayName("should reject an unknown column")
+    void shouldRejectUnknownColumn() {
+        assertThatThrownBy(() -> ColumnarArchive.scan(new ByteArrayInputStream(write(1)), List.of("brand"), row -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,210 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DailyAggregateRollupTest {
+
+    private static final LocalDateTime UNTIL = LocalDateTime.of(2025, 6, 1, 10, 4);
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private SessionSketchRollup sessionSketchRollup;
+
+    @Mock
+    private TaxDigestRollup taxDigestRollup;
+
+    @Mock
+    private AnalyticsAggregateReader aggregateReader;
+
+    @Captor
+    private ArgumentCaptor<String> sqlCaptor;
+
+    @Captor
+    private ArgumentCaptor<SqlParameterSource> paramsCaptor;
+
+    private DailyAggregateRollup rollup;
+
+    @BeforeEach
+    void setUp() {
+        rollup = new DailyAggregateRollup(jdbcTemplate, new TransactionTemplate(transactionManager),
+                sessionSketchRollup, taxDigestRollup, aggregateReader, new SimpleMeterRegistry(), 60);
+    }
+
+    private void givenWatermarks(LocalDateTime searchEvents, LocalDateTime taxCalculations) throws Exception {
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(LocalDateTime.class)))
+                .thenReturn(UNTIL);
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("source")).thenReturn(DailyAggregateRollup.SEARCH_EVENTS, DailyAggregateRollup.TAX_CALCULATIONS);
+        when(rs.getObject("watermark", LocalDateTime.class)).thenReturn(searchEvents, taxCalculations);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            handler.processRow(rs);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+    }
+
+    @Nested
+    @DisplayName("rollup")
+    class RollupTests {
+
+        @Test
+        @DisplayName("should upsert every level for new rows and advance both watermarks")
+        void shouldRollupNewRowsAndAdvanceWatermarks() throws Exception {
+            LocalDateTime from = UNTIL.minusHours(1);
+            givenWatermarks(from, from);
+            when(jdbcTemplate.update(anyString(), any(SqlParameterSource.class))).thenReturn(2);
+
+            DailyAggregateRollup.RollupResult result = rollup.rollup();
+
+            int levels = RollupLevel.values().length;
+            assertThat(result.until()).isEqualTo(UNTIL);
+            assertThat(result.searchGroups()).isEqualTo(2 * levels);
+            assertThat(result.calculationGroups()).isEqualTo(2 * levels);
+
+            verify(jdbcTemplate, times(2 * levels + 2)).update(sqlCaptor.capture(), paramsCaptor.capture());
+            MapSqlParameterSource range = (MapSqlParameterSource) paramsCaptor.getAllValues().get(0);
+            assertThat(range.getValue("from")).isEqualTo(from);
+            assertThat(range.getValue("to")).isEqualTo(UNTIL);
+            List<Object> watermarks = paramsCaptor.getAllValues().stream()
+                    .map(params -> (MapSqlParameterSource) params)
+                    .filter(params -> params.hasValue("watermark"))
+                    .map(params -> params.getValue("source"))
+                    .toList();
+            assertThat(watermarks).containsExactly(DailyAggregateRollup.SEARCH_EVENTS, DailyAggregateRollup.TAX_CALCULATIONS);
+            verify(sessionSketchRollup).update(from, UNTIL);
+            verify(taxDigestRollup).update(from, UNTIL);
+            verify(aggregateReader).evictRolledUp();
+        }
+
+        @Test
+        @DisplayName("should skip a source already rolled up to the upper bound")
+        void shouldSkipUpToDateSource() throws Exception {
+            givenWatermarks(UNTIL, UNTIL.minusMinutes(5));
+            when(jdbcTemplate.update(anyString(), any(SqlParameterSource.class))).thenReturn(1);
+
+            DailyAggregateRollup.RollupResult result = rollup.rollup();
+
+            assertThat(result.searchGroups()).isZero();
+            assertThat(result.calculationGroups()).isEqualTo(RollupLevel.values().length);
+            verify(jdbcTemplate, times(RollupLevel.values().length + 1))
+                    .update(sqlCaptor.capture(), any(SqlParameterSource.class));
+            assertThat(sqlCaptor.getAllValues()).noneMatch(sql -> sql.contains("search_count"));
+            verify(sessionSketchRollup, never()).update(any(), any());
+            verify(taxDigestRollup).update(UNTIL.minusMinutes(5), UNTIL);
+        }
+    }
+
+    @Nested
+    @DisplayName("RollupLevel")
+    class RollupLevelTests {
+
+        @Test
+        @DisplayName("should write typed NULLs for dimensions outside the global level")
+        void shouldWriteTypedNullsForGlobalLevel() {
+            String sql = RollupLevel.global.searchEventsUpsert();
+
+            assertThat(sql).contains("CAST(NULL AS region)", "CAST(NULL AS fuel_type)", "CAST(NULL AS boolean)");
+            assertThat(sql).doesNotContain("IS NOT NULL");
+            assertThat(sql).contains("ON CONFLICT (date, region, brand_id, model_id, fuel_type, is_new_vehicle, device_type)");
+        }
+
+        @Test
+        @DisplayName("should require region and fuel but keep unknown is_new_vehicle at fuel level")
+        void shouldFilterRequiredDimensionsAtFuelLevel() {
+            String sql = RollupLevel.fuel.taxCalculationsUpsert();
+
+            assertThat(sql).contains("batch.region IS NOT NULL", "batch.fuel_type IS NOT NULL", "batch.is_new_vehicle");
+            assertThat(sql).doesNotContain("batch.is_new_vehicle IS NOT NULL");
+            assertThat(sql).contains("CAST(NULL AS bigint)");
+        }
+
+        @Test
+        @DisplayName("should count a session only once per day and group across runs")
+        void shouldMatchPreviousRowsOfSameGroup() {
+            String sql = RollupLevel.fuel.searchEventsUpsert();
+
+            assertThat(sql).contains("p.ingested_at < :from",
+                    "p.region IS NOT DISTINCT FROM b.region",
+                    "p.fuel_type IS NOT DISTINCT FROM b.fuel_type");
+            assertThat(sql).doesNotContain("p.brand_id IS NOT DISTINCT FROM");
+        }
+
+        @Test
+        @DisplayName("should leave unique sessions to the sketches at sketched levels")
+        void shouldNotCountSessionsAtSketchedLevels() {
+            String sql = RollupLevel.brand.searchEventsUpsert();
+
+            assertThat(RollupLevel.brand.hasSessionSketch()).isTrue();
+            assertThat(RollupLevel.model.hasSessionSketch()).isFalse();
+            assertThat(sql).contains("batch.brand_id IS NOT NULL", "search_count = daily_aggregates.search_count");
+            assertThat(sql).doesNotContain("unique_sessions", "NOT EXISTS");
+        }
+
+        @Test
+        @DisplayName("should require device but keep unknown region at device level")
+        void shouldKeepUnknownRegionAtDeviceLevel() {
+            String sql = RollupLevel.device.searchEventsUpsert();
+
+            assertThat(sql).contains("b.device_type IS NOT NULL", "p.region IS NOT DISTINCT FROM b.region");
+            assertThat(sql).doesNotContain("b.region IS NOT NULL");
+            assertThat(RollupLevel.device.groupColumn()).isEqualTo("device_type");
+            assertThat(RollupLevel.device.aggregateRows()).isEqualTo(
+                    "brand_id IS NULL AND model_id IS NULL AND fuel_type IS NULL AND is_new_vehicle IS NULL"
+                            + " AND device_type IS NOT NULL");
+        }
+
+        @Test
+        @DisplayName("should select only global rows at global level")
+        void shouldSelectGlobalRows() {
+            assertThat(RollupLevel.global.groupColumn()).isNull();
+            assertThat(RollupLevel.global.aggregateRows()).isEqualTo(
+                    "region IS NULL AND brand_id IS NULL AND model_id IS NULL AND fuel_type IS NULL"
+                            + " AND is_new_vehicle IS NULL AND device_type IS NULL");
+        }
+
+        @Test
+        @DisplayName("should group on required columns and flag the others in GROUPING()")
+        void shouldDescribeGroupingSets() {
+            List<String> columns = List.of("region", "brand_id", "fuel_type", "device_type");
+
+            assertThat(RollupLevel.global.groupingSet("t")).isEqualTo("()");
+            assertThat(RollupLevel.brand.groupingSet("t")).isEqualTo("(t.region, t.brand_id)");
+            assertThat(RollupLevel.global.grouping(columns)).isEqualTo(0b1111);
+            assertThat(RollupLevel.brand.grouping(columns)).isEqualTo(0b0011);
+            assertThat(RollupLevel.fuel.grouping(columns)).isEqualTo(0b0101);
+            assertThat(RollupLevel.device.grouping(columns)).isEqualTo(0b1110);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    @Test
+    @DisplayName("should count small sets almost exactly")
+    void shouldCountSmallSets() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            UUID session = UUID.randomUUID();
+            sketch.add(session);
+            sketch.add(session);
+        }
+
+        assertThat(sketch.estimate()).isCloseTo(100, within(3L));
+        assertThat(new HyperLogLog().estimate()).isZero();
+    }
+
+    @Test
+    @DisplayName("should stay within the documented error bound on large sets")
+    void shouldStayWithinErrorBound() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 200_000; i++) {
+            sketch.add(new UUID(i, i * 31L));
+        }
+
+        double error = Math.abs(sketch.estimate() - 200_000) / 200_000.0;
+        assertThat(error).isLessThan(3 * HyperLogLog.RELATIVE_STANDARD_ERROR);
+    }
+
+    @Test
+    @DisplayName("should count overlapping sets once when merged")
+    void shouldMergeAsUnion() {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        HyperLogLog week = new HyperLogLog();
+        for (int i = 0; i < 30_000; i++) {
+            UUID session = new UUID(i, 7);
+            if (i < 20_000) {
+                monday.add(session);
+            }
+            if (i >= 10_000) {
+                tuesday.add(session);
+            }
+            week.add(session);
+        }
+
+        assertThat(monday.merge(tuesday).estimate()).isEqualTo(week.estimate());
+    }
+
+    @Test
+    @DisplayName("should round-trip sparse and dense encodings")
+    void shouldRoundTripBytes() {
+        HyperLogLog small = new HyperLogLog();
+        HyperLogLog large = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) {
+            if (i < 20) {
+                small.add(new UUID(3, i));
+            }
+            large.add(new UUID(3, i));
+        }
+
+        byte[] sparse = small.toBytes();
+        byte[] dense = large.toBytes();
+
+        assertThat(sparse.length).isLessThan(100);
+        assertThat(dense).hasSize(1 + HyperLogLog.REGISTERS);
+        assertThat(HyperLogLog.fromBytes(sparse).estimate()).isEqualTo(small.estimate());
+        assertThat(HyperLogLog.fromBytes(dense).estimate()).isEqualTo(large.estimate());
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[]{9}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,105 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse;
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse.MinuteTraffic;
+import be.hoffmann.backtaxes.dto.response.LiveTrafficResponse.SearchAndCalculationCount;
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+class LiveTrafficCountersTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-02T10:15:30Z");
+
+    @Test
+    @DisplayName("should count searches and calculations per minute and dimension")
+    void shouldCountPerMinute() {
+        LiveTrafficCounters counters = new LiveTrafficCounters(60);
+        counters.record(event(SearchType.browse, Region.wallonia, FuelType.petrol, NOW.minusSeconds(60)));
+        counters.record(event(SearchType.calculate, Region.wallonia, FuelType.diesel, NOW));
+        counters.record(event(SearchType.calculate, null, null, NOW));
+
+        LiveTrafficResponse snapshot = counters.snapshot(3, NOW);
+
+        assertThat(snapshot.minutes()).extracting(MinuteTraffic::minute).containsExactly(
+                Instant.parse("2026-03-02T10:13:00Z"), Instant.parse("2026-03-02T10:14:00Z"),
+                Instant.parse("2026-03-02T10:15:00Z"));
+        assertThat(snapshot.minutes().get(0).counts().searches()).isZero();
+        assertThat(snapshot.minutes().get(1).counts().bySearchType()).containsExactly(entry(SearchType.browse, 1L));
+        assertThat(snapshot.minutes().get(2).counts().calculations()).isEqualTo(2);
+        assertThat(snapshot.totals().searches()).isEqualTo(3);
+        assertThat(snapshot.totals().byRegion())
+                .containsExactly(entry(Region.wallonia, new SearchAndCalculationCount(2, 1)));
+        assertThat(snapshot.totals().byFuelType()).containsOnlyKeys(FuelType.petrol, FuelType.diesel);
+        assertThat(snapshot.totals().byDeviceType())
+                .containsExactly(entry(DeviceType.mobile, new SearchAndCalculationCount(3, 2)));
+        assertThat(snapshot.to()).isEqualTo(Instant.parse("2026-03-02T10:16:00Z"));
+    }
+
+    @Test
+    @DisplayName("should count a sampled search for its weight")
+    void shouldCountSampleWeight() {
+        LiveTrafficCounters counters = new LiveTrafficCounters(60);
+        counters.record(new SearchEventRecord(UUID.randomUUID(), null, null, null, null, Region.flanders, null, null,
+                null, SearchType.filter, DeviceType.desktop, null, null, null, NOW, 8));
+
+        LiveTrafficResponse snapshot = counters.snapshot(1, NOW);
+
+        assertThat(snapshot.totals().searches()).isEqualTo(8);
+        assertThat(snapshot.totals().bySearchType()).containsExactly(entry(SearchType.filter, 8L));
+        assertThat(snapshot.totals().byRegion())
+                .containsExactly(entry(Region.flanders, new SearchAndCalculationCount(8, 0)));
+    }
+
+    @Test
+    @DisplayName("should reuse a ring slot for a newer minute and ignore older events")
+    void shouldRollOverSlots() {
+        LiveTrafficCounters counters = new LiveTrafficCounters(2);
+        Instant earlier = NOW.minusSeconds(3 * 60);
+        counters.record(event(SearchType.browse, Region.flanders, null, earlier));
+
+        counters.record(event(SearchType.browse, Region.flanders, null, NOW));
+        counters.record(event(SearchType.browse, Region.flanders, null, earlier));
+
+        assertThat(counters.snapshot(10, NOW).minutes()).hasSize(2);
+        assertThat(counters.snapshot(2, NOW).totals().searches()).isEqualTo(1);
+        assertThat(counters.snapshot(1, earlier).totals().searches()).isZero();
+        assertThatThrownBy(() -> new LiveTrafficCounters(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("should not lose increments under concurrent recording")
+    void shouldCountConcurrently() throws Exception {
+        LiveTrafficCounters counters = new LiveTrafficCounters(5);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counters.record(event(SearchType.filter, Region.brussels, null, NOW));
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(counters.snapshot(1, NOW).totals().searches()).isEqualTo(80_000);
+    }
+
+    private static SearchEventRecord event(SearchType searchType, Region region, FuelType fuelType, Instant createdAt) {
+        return new SearchEventRecord(UUID.randomUUID(), null, null, null, null, region, fuelType, null, null,
+                searchType, DeviceType.mobile, null, null, null, createdAt);
+    }
+}
@@ -0,0 +1,111 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.service.analytics.PopularVehicleSketches.Ranking;
+import be.hoffmann.backtaxes.service.analytics.PopularVehicleSketches.SketchCheckpoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PopularVehicleJobTest {
+
+    private static final LocalDate WEEK = LocalDate.of(2026, 3, 2);
+    private static final String JOURNAL_ID = "6f1c2d9e-0b7a-4c55-9e0f-3a8d1b2c4e5f";
+
+    @Mock
+    private PopularVehicleStore store;
+
+    @Mock
+    private AnalyticsJournal journal;
+
+    @Captor
+    private ArgumentCaptor<List<SketchCheckpoint>> checkpoints;
+
+    @Captor
+    private ArgumentCaptor<Function<List<SketchCheckpoint>, List<Ranking>>> rankings;
+
+    private PopularVehicleSketches sketches;
+    private PopularVehicleJob job;
+
+    @BeforeEach
+    void setUp() {
+        sketches = new PopularVehicleSketches(100);
+        when(journal.getId()).thenReturn(JOURNAL_ID);
+        job = new PopularVehicleJob(sketches, store, journal, 10, 15);
+        when(store.loadCheckpoints(JOURNAL_ID)).thenReturn(List.of());
+        sketches.record(List.of(search(1L, WEEK), search(2L, WEEK.plusWeeks(1))));
+    }
+
+    @Test
+    @DisplayName("should only checkpoint the current week before the materialize delay")
+    void shouldWaitForDelay() {
+        job.checkpoint(LocalDateTime.of(WEEK.plusWeeks(1), LocalTime.of(0, 10)));
+
+        verify(store, never()).materialize(any(), any(), any(), anyInt());
+        verify(store).saveCheckpoints(eq(JOURNAL_ID), checkpoints.capture());
+        assertThat(checkpoints.getValue()).extracting(SketchCheckpoint::weekStart)
+                .containsOnly(WEEK, WEEK.plusWeeks(1));
+    }
+
+    @Test
+    @DisplayName("should materialize completed weeks and restore only once")
+    void shouldMaterializeCompletedWeek() {
+        when(store.lastMaterializedWeek()).thenReturn(WEEK.minusWeeks(1));
+        when(store.materialize(eq(WEEK), eq(JOURNAL_ID), any(), eq(10))).thenReturn(1);
+
+        job.checkpoint(LocalDateTime.of(WEEK.plusWeeks(1), LocalTime.of(0, 20)));
+        job.checkpoint(LocalDateTime.of(WEEK.plusWeeks(1), LocalTime.of(0, 25)));
+
+        verify(store).materialize(eq(WEEK), eq(JOURNAL_ID), rankings.capture(), eq(10));
+        assertThat(rankings.getValue().apply(List.of())).extracting(Ranking::region).containsOnly(Region.wallonia);
+        verify(store, times(1)).loadCheckpoints(JOURNAL_ID);
+        verify(store, times(2)).saveCheckpoints(eq(JOURNAL_ID), checkpoints.capture());
+        assertThat(checkpoints.getValue()).extracting(SketchCheckpoint::weekStart)
+                .containsOnly(WEEK.plusWeeks(1));
+        assertThat(sketches.completedWeeks(WEEK.plusWeeks(1))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should forget a week already materialized by another instance")
+    void shouldEvictWeekMaterializedElsewhere() {
+        when(store.lastMaterializedWeek()).thenReturn(WEEK.minusWeeks(1));
+        when(store.materialize(eq(WEEK), eq(JOURNAL_ID), any(), eq(10))).thenReturn(-1);
+
+        job.checkpoint(LocalDateTime.of(WEEK.plusWeeks(1), LocalTime.of(0, 20)));
+
+        verify(store).saveCheckpoints(eq(JOURNAL_ID), checkpoints.capture());
+        assertThat(checkpoints.getValue()).extracting(SketchCheckpoint::weekStart)
+                .containsOnly(WEEK.plusWeeks(1));
+        assertThat(sketches.completedWeeks(WEEK.plusWeeks(1))).isEmpty();
+    }
+
+    private static SearchEventRecord search(Long variantId, LocalDate day) {
+        return new SearchEventRecord(UUID.randomUUID(), null, null, null, variantId, Region.wallonia, null, null,
+                null, SearchType.browse, null, null, null, null,
+                LocalDateTime.of(day, LocalTime.NOON).atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
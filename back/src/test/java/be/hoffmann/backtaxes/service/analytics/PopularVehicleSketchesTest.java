@@ -0,0 +1,136 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.RankingType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.service.analytics.PopularVehicleSketches.RankedVehicle;
+import be.hoffmann.backtaxes.service.analytics.PopularVehicleSketches.Ranking;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class PopularVehicleSketchesTest {
+
+    private static final LocalDate WEEK = LocalDate.of(2026, 3, 2);
+
+    private PopularVehicleSketches sketches;
+
+    @BeforeEach
+    void setUp() {
+        sketches = new PopularVehicleSketches(100);
+    }
+
+    @Test
+    @DisplayName("should rank searched variants and order taxed variants by first-year tax")
+    void shouldBuildRankings() {
+        sketches.record(List.of(
+                search(1L, SearchType.browse, WEEK),
+                search(1L, SearchType.browse, WEEK.plusDays(2)),
+                search(1L, SearchType.filter, WEEK.plusDays(3)),
+                calculation(2L, WEEK.plusDays(6), "1000.00", "300.00"),
+                calculation(3L, WEEK, "200.00", "100.00"),
+                calculation(3L, WEEK, "400.00", "100.00")));
+
+        List<Ranking> rankings = sketches.rankings(WEEK);
+
+        assertThat(ranking(rankings, RankingType.most_searched)).extracting(RankedVehicle::variantId)
+                .containsExactly(1L, 3L, 2L);
+        assertThat(ranking(rankings, RankingType.highest_tax)).extracting(RankedVehicle::variantId)
+                .containsExactly(2L, 3L);
+        List<RankedVehicle> lowest = ranking(rankings, RankingType.lowest_tax);
+        assertThat(lowest).extracting(RankedVehicle::variantId).containsExactly(3L, 2L);
+        assertThat(lowest.get(0).avgTaxTmc()).isEqualByComparingTo("300.00");
+        assertThat(lowest.get(0).avgTaxAnnual()).isEqualByComparingTo("100.00");
+        assertThat(lowest.get(0).searchCount()).isEqualTo(2);
+        assertThat(sketches.rankings(WEEK.plusWeeks(1))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should restore checkpoints and ignore weeks already materialized")
+    void shouldRestoreCheckpoints() {
+        sketches.record(List.of(
+                search(1L, SearchType.browse, WEEK.minusWeeks(1)),
+                search(5L, SearchType.browse, WEEK)));
+
+        PopularVehicleSketches restored = new PopularVehicleSketches(100);
+        restored.restore(sketches.checkpoints(), WEEK.minusWeeks(1));
+        restored.record(List.of(search(1L, SearchType.browse, WEEK.minusWeeks(1))));
+
+        assertThat(restored.completedWeeks(WEEK.plusWeeks(1))).containsExactly(WEEK);
+        assertThat(ranking(restored.rankings(WEEK), RankingType.most_searched))
+                .extracting(RankedVehicle::variantId, RankedVehicle::searchCount)
+                .containsExactly(tuple(5L, 1L));
+    }
+
+    @Test
+    @DisplayName("should merge checkpoints of other instances into the rankings of a week")
+    void shouldMergeOtherCheckpoints() {
+        PopularVehicleSketches other = new PopularVehicleSketches(100);
+        other.record(List.of(
+                search(2L, SearchType.browse, WEEK),
+                search(2L, SearchType.browse, WEEK),
+                search(1L, SearchType.browse, WEEK),
+                search(9L, SearchType.browse, WEEK.plusWeeks(1))));
+        sketches.record(List.of(
+                search(1L, SearchType.browse, WEEK),
+                search(1L, SearchType.browse, WEEK.plusDays(1))));
+
+        List<Ranking> rankings = sketches.rankings(WEEK, other.checkpoints());
+
+        assertThat(ranking(rankings, RankingType.most_searched))
+                .extracting(RankedVehicle::variantId, RankedVehicle::searchCount)
+                .containsExactly(tuple(1L, 3L), tuple(2L, 2L));
+        assertThat(ranking(sketches.rankings(WEEK), RankingType.most_searched))
+                .extracting(RankedVehicle::variantId, RankedVehicle::searchCount)
+                .containsExactly(tuple(1L, 2L));
+    }
+
+    @Test
+    @DisplayName("should forget a week once evicted")
+    void shouldEvictWeek() {
+        sketches.record(List.of(search(1L, SearchType.browse, WEEK)));
+
+        sketches.evict(WEEK);
+        sketches.record(List.of(search(1L, SearchType.browse, WEEK.plusDays(1))));
+
+        assertThat(sketches.completedWeeks(WEEK.plusWeeks(2))).isEmpty();
+        assertThat(sketches.checkpoints()).isEmpty();
+    }
+
+    private static List<RankedVehicle> ranking(List<Ranking> rankings, RankingType rankingType) {
+        return rankings.stream()
+                .filter(ranking -> ranking.region() == Region.wallonia && ranking.rankingType() == rankingType)
+                .findFirst()
+                .orElseThrow()
+                .vehicles();
+    }
+
+    private static SearchEventRecord search(Long variantId, SearchType searchType, LocalDate day) {
+        return new SearchEventRecord(UUID.randomUUID(), null, null, null, variantId, Region.wallonia, null, null,
+                null, searchType, null, null, null, null,
+                LocalDateTime.of(day, LocalTime.NOON).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static CalculationEventRecord calculation(Long variantId, LocalDate day, String tmc, String annual) {
+        return new CalculationEventRecord(search(variantId, SearchType.calculate, day), List.of(
+                line(variantId, TaxType.tmc, tmc),
+                line(variantId, TaxType.annual, annual)));
+    }
+
+    private static TaxCalculationRecord line(Long variantId, TaxType taxType, String amount) {
+        return new TaxCalculationRecord(variantId, null, Region.wallonia, taxType, new BigDecimal(amount),
+                null, null, null, null, false);
+    }
+}
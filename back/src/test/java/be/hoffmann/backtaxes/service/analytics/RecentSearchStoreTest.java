@@ -0,0 +1,204 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.entity.enums.EuroNorm;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.SearchType;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore.Filter;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore.Group;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore.Row;
+import be.hoffmann.backtaxes.service.analytics.RecentSearchStore.Slice;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecentSearchStoreTest {
+
+    /** Lundi */
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2026, 3, 2, 10, 0);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+
+    private RecentSearchStore store(int memoryMb) {
+        return new RecentSearchStore(jdbcTemplate, new SimpleMeterRegistry(), 90, memoryMb, 60);
+    }
+
+    private static Row search(LocalDateTime createdAt, Region region, FuelType fuelType, DeviceType deviceType,
+                              EuroNorm euroNorm, Long brandId, int weight) {
+        return new Row(createdAt, region, fuelType, deviceType, SearchType.filter, euroNorm, brandId, null, null,
+                weight);
+    }
+
+    private static Filter filter(Set<Region> regions, Set<FuelType> fuelTypes, Set<DeviceType> deviceTypes,
+                                 Set<EuroNorm> euroNorms, Set<Long> brandIds) {
+        return new Filter(regions, fuelTypes, deviceTypes, null, euroNorms, brandIds, null, null);
+    }
+
+    @Nested
+    @DisplayName("query")
+    class QueryTests {
+
+        @Test
+        @DisplayName("should count filtered searches by group with their sample weight")
+        void shouldFilterAndGroup() {
+            RecentSearchStore store = store(256);
+            store.append(search(MONDAY, Region.brussels, FuelType.diesel, DeviceType.mobile, EuroNorm.euro_6, 1L, 1));
+            store.append(search(MONDAY, Region.brussels, FuelType.diesel, DeviceType.mobile, EuroNorm.euro_6d, 1L, 4));
+            store.append(search(MONDAY, Region.brussels, FuelType.diesel, DeviceType.desktop, EuroNorm.euro_6, 2L, 1));
+            store.append(search(MONDAY, Region.brussels, FuelType.petrol, DeviceType.mobile, EuroNorm.euro_6, 2L, 1));
+            store.append(search(MONDAY, Region.wallonia, FuelType.diesel, DeviceType.mobile, EuroNorm.euro_6, 2L, 1));
+            store.append(search(MONDAY, Region.brussels, FuelType.diesel, DeviceType.mobile, null, 3L, 2));
+
+            Slice slice = store.query(MONDAY.minusDays(1), MONDAY.plusDays(1),
+                    filter(Set.of(Region.brussels), Set.of(FuelType.diesel), Set.of(DeviceType.mobile), Set.of(), Set.of()),
+                    List.of(SliceDimension.euro_norm), 10);
+
+            assertThat(slice.count()).isEqualTo(7);
+            assertThat(slice.groupCount()).isEqualTo(3);
+            assertThat(slice.groups()).containsExactly(
+                    new Group(List.of(EuroNorm.euro_6d), 4),
+                    new Group(Arrays.asList((Object) null), 2),
+                    new Group(List.of(EuroNorm.euro_6), 1));
+        }
+
+        @Test
+        @DisplayName("should filter on several values and identifiers, and keep the largest groups")
+        void shouldFilterOnIdsAndLimit() {
+            RecentSearchStore store = store(256);
+            store.append(search(MONDAY, Region.flanders, FuelType.diesel, DeviceType.mobile, EuroNorm.euro_6, 1L, 1));
+            store.append(search(MONDAY, Region.flanders, FuelType.electric, DeviceType.mobile, null, 1L, 1));
+            store.append(search(MONDAY, Region.flanders, FuelType.petrol, DeviceType.mobile, EuroNorm.euro_6, 2L, 3));
+            store.append(search(MONDAY, Region.flanders, FuelType.petrol, DeviceType.mobile, EuroNorm.euro_6, 3L, 5));
+            store.append(search(MONDAY, Region.flanders, FuelType.lpg, DeviceType.mobile, EuroNorm.euro_6, 2L, 1));
+
+            Slice slice = store.query(MONDAY, MONDAY.plusHours(1),
+                    filter(Set.of(), Set.of(FuelType.diesel, FuelType.electric, FuelType.petrol), Set.of(), Set.of(),
+                            Set.of(1L, 2L)),
+                    List.of(SliceDimension.brand, SliceDimension.fuel_type), 2);
+
+            assertThat(slice.count()).isEqualTo(5);
+            assertThat(slice.groupCount()).isEqualTo(3);
+            assertThat(slice.groups()).containsExactly(
+                    new Group(List.of(2L, FuelType.petrol), 3),
+                    new Group(List.of(1L, FuelType.diesel), 1));
+        }
+
+        @Test
+        @DisplayName("should bucket searches by week starting on Monday, within the period")
+        void shouldGroupByWeek() {
+            RecentSearchStore store = store(256);
+            store.append(search(MONDAY.minusDays(1), Region.brussels, null, null, null, null, 1));
+            store.append(search(MONDAY, Region.brussels, null, null, null, null, 1));
+            store.append(search(MONDAY.plusDays(6), Region.brussels, null, null, null, null, 1));
+            store.append(search(MONDAY.plusDays(7), Region.brussels, null, null, null, null, 1));
+            store.append(search(MONDAY.plusDays(8), Region.brussels, null, null, null, null, 1));
+            store.append(search(MONDAY.plusDays(30), Region.brussels, null, null, null, null, 1));
+
+            Slice slice = store.query(MONDAY.minusDays(1), MONDAY.plusDays(9), Filter.NONE,
+                    List.of(SliceDimension.week), 10);
+
+            assertThat(slice.count()).isEqualTo(5);
+            assertThat(slice.groups()).containsExactly(
+                    new Group(List.of(LocalDate.of(2026, 3, 2)), 2),
+                    new Group(List.of(LocalDate.of(2026, 3, 9)), 2),
+                    new Group(List.of(LocalDate.of(2026, 2, 23)), 1));
+        }
+
+        @Test
+        @DisplayName("should return only the total without group")
+        void shouldReturnTotalOnly() {
+            RecentSearchStore store = store(256);
+            store.append(search(MONDAY, Region.brussels, null, null, null, null, 3));
+            store.append(search(MONDAY, null, null, null, null, null, 1));
+
+            Slice slice = store.query(MONDAY, MONDAY.plusMinutes(1), Filter.NONE, List.of(), 10);
+
+            assertThat(slice.count()).isEqualTo(4);
+            assertThat(slice.groups()).isEmpty();
+        }
+
+        @Test
+        @DisplayName("should reject a group key wider than a long")
+        void shouldRejectTooManyDistinctValues() {
+            RecentSearchStore store = store(256);
+            store.append(new Row(MONDAY, null, null, null, null, null, 1L << 30, 1L << 30, 1L << 30, 1));
+
+            assertThatThrownBy(() -> store.query(MONDAY, MONDAY.plusDays(1), Filter.NONE,
+                    List.of(SliceDimension.brand, SliceDimension.model, SliceDimension.variant), 10))
+                    .isInstanceOf(ValidationException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("refresh")
+    class RefreshTests {
+
+        private static final LocalDateTime UNTIL = LocalDateTime.of(2026, 3, 2, 12, 0);
+
+        @Test
+        @DisplayName("should rebuild the retention by one-day windows, then load only new rows")
+        void shouldRebuildThenTail() {
+            when(jdbcTemplate.queryForObject(anyString(), any(MapSqlParameterSource.class), eq(LocalDateTime.class)))
+                    .thenReturn(UNTIL, UNTIL.plusSeconds(30));
+            RecentSearchStore store = store(256);
+
+            store.refresh();
+            store.refresh();
+
+            verify(jdbcTemplate, times(91)).query(anyString(), any(MapSqlParameterSource.class),
+                    any(RowCallbackHandler.class));
+            Slice slice = store.query(MONDAY, MONDAY.plusDays(1), Filter.NONE, List.of(), 10);
+            assertThat(slice.coveredFrom()).isEqualTo(UNTIL.plusSeconds(30).minusDays(90));
+            assertThat(slice.loadedUntil()).isEqualTo(UNTIL.plusSeconds(30));
+        }
+
+        @Test
+        @DisplayName("should free the oldest block beyond the memory budget and report the covered period")
+        void shouldEvictBeyondMemoryBudget() {
+            when(jdbcTemplate.queryForObject(anyString(), any(MapSqlParameterSource.class), eq(LocalDateTime.class)))
+                    .thenReturn(UNTIL);
+            RecentSearchStore store = store(2);
+            store.refresh();
+
+            for (int i = 0; i < SearchColumnBlock.ROWS; i++) {
+                store.append(search(MONDAY.minusDays(2), Region.brussels, null, null, null, null, 1));
+            }
+            store.append(search(MONDAY, Region.brussels, null, null, null, null, 1));
+
+            Slice slice = store.query(MONDAY.minusDays(7), MONDAY.plusDays(1), Filter.NONE, List.of(), 10);
+            assertThat(store.rows()).isEqualTo(1);
+            assertThat(slice.count()).isEqualTo(1);
+            assertThat(slice.coveredFrom()).isEqualTo(MONDAY.minusDays(2).plusMinutes(1));
+        }
+    }
+
+    @Test
+    @DisplayName("should reject a memory budget smaller than one block")
+    void shouldRejectTooSmallBudget() {
+        assertThatThrownBy(() -> store(1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("memory-mb");
+    }
+}
@@ -0,0 +1,210 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.AnalyticsReport;
+import be.hoffmann.backtaxes.entity.enums.ReportType;
+import be.hoffmann.backtaxes.repository.AnalyticsReportRepository;
+import be.hoffmann.backtaxes.service.analytics.RetentionArchiver.ArchivedFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionArchiverTest {
+
+    private static final String TABLE = DailyAggregateRollup.TAX_CALCULATIONS;
+    private static final String PARTITION = "tax_calculations_p2025_03";
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private JdbcTemplate cursorTemplate;
+
+    @Mock
+    private AnalyticsReportRepository reportRepository;
+
+    @Captor
+    private ArgumentCaptor<String> sqlCaptor;
+
+    @Captor
+    private ArgumentCaptor<AnalyticsReport> reportCaptor;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+
+    private RetentionArchiver archiver;
+
+    @BeforeEach
+    void setUp() {
+        archiver = new RetentionArchiver(cursorTemplate, reportRepository, objectMapper, directory);
+    }
+
+    private static Map<String, Object> calculation(long id, LocalDateTime createdAt, String amount) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("search_event_id", id * 10);
+        row.put("region", "brussels");
+        row.put("tax_type", "annual");
+        row.put("calculated_amount", new BigDecimal(amount));
+        row.put("power_kw", 110);
+        row.put("is_exempt", false);
+        row.put("created_at", createdAt);
+        row.put("ingested_at", createdAt.plusSeconds(3));
+        return row;
+    }
+
+    private void givenRows(List<Map<String, Object>> rows) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        AtomicReference<Map<String, Object>> current = new AtomicReference<>();
+        when(rs.getObject(anyString(), any(Class.class)))
+                .thenAnswer(invocation -> current.get().get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            for (Map<String, Object> row : rows) {
+                current.set(row);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(cursorTemplate).query(sqlCaptor.capture(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+    }
+
+    private ArchivedFile archiveMarch() throws Exception {
+        givenRows(List.of(
+                calculation(1, LocalDateTime.of(2025, 3, 2, 8, 0), "120.00"),
+                calculation(2, LocalDateTime.of(2025, 3, 15, 9, 30), "85.50"),
+                calculation(3, LocalDateTime.of(2025, 3, 31, 23, 59), "1020.75")));
+        return archiver.archivePartition(TABLE, PARTITION);
+    }
+
+    @Nested
+    @DisplayName("archive")
+    class ArchiveTests {
+
+        @Test
+        @DisplayName("should stream the partition to a columnar file and record a data_retention report")
+        void shouldArchivePartition() throws Exception {
+            ArchivedFile archived = archiveMarch();
+
+            assertThat(sqlCaptor.getValue()).contains("FROM " + PARTITION).endsWith("ORDER BY id");
+            assertThat(archived.rows()).isEqualTo(3);
+            assertThat(archived.firstDay()).isEqualTo(LocalDate.of(2025, 3, 2));
+            assertThat(archived.lastDay()).isEqualTo(LocalDate.of(2025, 3, 31));
+            Path file = directory.resolve(archived.file());
+            assertThat(file).exists().hasFileName(PARTITION + RetentionArchiver.EXTENSION);
+            assertThat(Files.size(file)).isEqualTo(archived.bytes());
+            assertThat(archived.sha256()).hasSize(64);
+
+            verify(reportRepository).save(reportCaptor.capture());
+            AnalyticsReport report = reportCaptor.getValue();
+            assertThat(report.getReportType()).isEqualTo(ReportType.data_retention);
+            assertThat(report.getPeriodStart()).isEqualTo(archived.firstDay());
+            assertThat(objectMapper.readValue(report.getReportData(), ArchivedFile.class)).isEqualTo(archived);
+            assertThat(report.getReportData()).contains("\"total_events_archived\":3");
+        }
+
+        @Test
+        @DisplayName("should not write a file nor a report when no row expires")
+        void shouldSkipEmptySource() throws Exception {
+            givenRows(List.of());
+
+            ArchivedFile archived = archiver.archiveExpired(TABLE, "tax_calculations_default",
+                    "tax_calculations_default_2025-04-11", LocalDateTime.of(2025, 4, 11, 0, 0), LocalDateTime.now());
+
+            assertThat(archived).isNull();
+            assertThat(directory.resolve(TABLE)).isEmptyDirectory();
+            verify(reportRepository, never()).save(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("scan")
+    class ScanTests {
+
+        private void givenArchivedReport() throws Exception {
+            archiveMarch();
+            verify(reportRepository).save(reportCaptor.capture());
+            AnalyticsReport report = reportCaptor.getValue();
+            AnalyticsReport unrelated = new AnalyticsReport();
+            unrelated.setReportData("{\"total_events_archived\": 150000, \"date_range\": \"2024-01-01 to 2024-03-31\"}");
+            when(reportRepository.findRetentionReports()).thenReturn(List.of(report, unrelated));
+        }
+
+        @Test
+        @DisplayName("should return the projected columns of archived rows created in the range")
+        void shouldScanArchivedRows() throws Exception {
+            givenArchivedReport();
+            List<Object[]> rows = new ArrayList<>();
+
+            long count = archiver.scan(TABLE, LocalDate.of(2025, 3, 10), LocalDate.of(2025, 4, 30),
+                    List.of("id", "calculated_amount"), rows::add);
+
+            assertThat(count).isEqualTo(2);
+            assertThat(rows).containsExactly(
+                    new Object[]{2L, new BigDecimal("85.50")},
+                    new Object[]{3L, new BigDecimal("1020.75")});
+        }
+
+        @Test
+        @DisplayName("should refuse to read an archive whose checksum does not match")
+        void shouldVerifyChecksum() throws Exception {
+            givenArchivedReport();
+            Path file = directory.resolve(TABLE).resolve(PARTITION + RetentionArchiver.EXTENSION);
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length / 2] ^= 1;
+            Files.write(file, bytes);
+
+            assertThatThrownBy(() -> archiver.scan(TABLE, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31),
+                    List.of("id"), row -> { }))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    @DisplayName("should reject a table without archive schema")
+    void shouldRejectUnknownTable() {
+        assertThatThrownBy(() -> archiver.archivePartition("users", "users"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("should refuse a non-positive fetch size")
+    void shouldRejectFetchSize() {
+        assertThatThrownBy(() -> new RetentionArchiver(mock(DataSource.class), reportRepository,
+                objectMapper, directory.toString(), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
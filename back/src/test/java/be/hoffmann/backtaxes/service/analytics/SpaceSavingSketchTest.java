@@ -0,0 +1,93 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.service.analytics.SpaceSavingSketch.Counter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class SpaceSavingSketchTest {
+
+    @Test
+    @DisplayName("should count exactly while below capacity")
+    void shouldCountExactlyBelowCapacity() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(4);
+        sketch.add(1, 3);
+        sketch.add(2, 1);
+        sketch.add(1, 2);
+
+        assertThat(sketch.top(10)).extracting(Counter::key, Counter::count)
+                .containsExactly(tuple(1L, 5L), tuple(2L, 1L));
+        assertThatThrownBy(() -> new SpaceSavingSketch(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("should replace the smallest counter and inherit its count")
+    void shouldEvictSmallestCounter() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(2);
+        sketch.add(1, 5);
+        sketch.add(2, 2);
+        sketch.addTax(2, TaxType.tmc, 10_000);
+
+        sketch.add(3, 1);
+
+        assertThat(sketch.size()).isEqualTo(2);
+        assertThat(sketch.get(2)).isNull();
+        assertThat(sketch.get(3).count()).isEqualTo(3);
+        assertThat(sketch.get(3).hasTax()).isFalse();
+    }
+
+    @Test
+    @DisplayName("should keep heavy hitters of a skewed stream")
+    void shouldKeepHeavyHitters() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(20);
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            long key = i % 4 == 0 ? i % 3 : 100 + random.nextInt(5_000);
+            sketch.add(key, 1);
+        }
+
+        assertThat(sketch.top(3)).extracting(Counter::key).containsExactlyInAnyOrder(0L, 1L, 2L);
+        assertThat(sketch.get(0).count()).isGreaterThanOrEqualTo(834);
+    }
+
+    @Test
+    @DisplayName("should average tax amounts per tax type")
+    void shouldAverageTaxAmounts() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(4);
+        sketch.add(7, 2);
+        sketch.addTax(7, TaxType.tmc, 100_00);
+        sketch.addTax(7, TaxType.tmc, 201_00);
+        sketch.addTax(7, TaxType.annual, 250_50);
+        sketch.addTax(8, TaxType.tmc, 999_00);
+
+        Counter counter = sketch.get(7);
+        assertThat(counter.avgTaxTmc()).isEqualByComparingTo("150.50");
+        assertThat(counter.avgTaxAnnual()).isEqualByComparingTo("250.50");
+        assertThat(counter.avgFirstYearTax()).isEqualByComparingTo(new BigDecimal("401.00"));
+        assertThat(sketch.get(8)).isNull();
+    }
+
+    @Test
+    @DisplayName("should restore counters and amounts from a checkpoint")
+    void shouldRoundTripCheckpoint() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(3);
+        sketch.add(1, 4);
+        sketch.add(2, 9);
+        sketch.addTax(2, TaxType.annual, 300_00);
+
+        SpaceSavingSketch restored = new SpaceSavingSketch(3);
+        restored.merge(sketch.toBytes());
+
+        assertThat(restored.top(3)).extracting(Counter::key, Counter::count)
+                .containsExactly(tuple(2L, 9L), tuple(1L, 4L));
+        assertThat(restored.get(2).avgTaxAnnual()).isEqualByComparingTo("300.00");
+        assertThat(restored.get(1).hasTax()).isFalse();
+    }
+}
@@ -0,0 +1,114 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class TDigestTest {
+
+    /** Montants log-normaux (mediane ~400 EUR, longue queue), comme les montants de taxe */
+    private static double[] amounts(int count, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.exp(6 + 0.6 * random.nextGaussian());
+        }
+        return values;
+    }
+
+    private static double exactQuantile(double[] sorted, double q) {
+        return sorted[(int) Math.min(sorted.length - 1, q * sorted.length)];
+    }
+
+    @Test
+    @DisplayName("should estimate p50, p90 and p99 within a small rank error")
+    void shouldEstimateQuantiles() {
+        double[] values = amounts(100_000, 1);
+        TDigest digest = new TDigest();
+        for (double value : values) {
+            digest.add(value);
+        }
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        for (double q : new double[]{0.5, 0.9, 0.99}) {
+            assertThat(digest.cdf(digest.quantile(q))).isCloseTo(q, within(0.005));
+            assertThat(digest.cdf(exactQuantile(sorted, q))).isCloseTo(q, within(0.005));
+        }
+        assertThat(digest.quantile(0)).isEqualTo(sorted[0]);
+        assertThat(digest.quantile(1)).isEqualTo(sorted[sorted.length - 1]);
+        assertThat(digest.count()).isEqualTo(100_000);
+        assertThat(digest.centroidCount()).isLessThanOrEqualTo(TDigest.DEFAULT_COMPRESSION);
+    }
+
+    @Test
+    @DisplayName("should give the same distribution when daily digests are merged")
+    void shouldMergeDigests() {
+        TDigest whole = new TDigest();
+        TDigest merged = new TDigest();
+        for (int day = 0; day < 7; day++) {
+            TDigest daily = new TDigest();
+            for (double value : amounts(10_000, day)) {
+                daily.add(value);
+                whole.add(value);
+            }
+            merged.merge(TDigest.fromBytes(daily.toBytes()));
+        }
+
+        assertThat(merged.count()).isEqualTo(whole.count());
+        assertThat(merged.min()).isEqualTo(whole.min());
+        assertThat(merged.max()).isEqualTo(whole.max());
+        for (double q : new double[]{0.5, 0.9, 0.99}) {
+            assertThat(whole.cdf(merged.quantile(q))).isCloseTo(q, within(0.005));
+        }
+    }
+
+    @Test
+    @DisplayName("should place repeated amounts and values outside the observed range")
+    void shouldComputeCdf() {
+        TDigest digest = new TDigest();
+        for (int i = 0; i < 99; i++) {
+            digest.add(61.50);
+        }
+        digest.add(980);
+
+        assertThat(digest.cdf(10)).isZero();
+        assertThat(digest.cdf(61.50)).isGreaterThan(0.95);
+        assertThat(digest.cdf(980)).isEqualTo(1);
+        assertThat(digest.quantile(0.5)).isEqualTo(61.50);
+    }
+
+    @Test
+    @DisplayName("should survive serialization")
+    void shouldRoundTrip() {
+        TDigest digest = new TDigest();
+        for (double value : amounts(5_000, 3)) {
+            digest.add(value);
+        }
+
+        TDigest copy = TDigest.fromBytes(digest.toBytes());
+
+        assertThat(copy.count()).isEqualTo(digest.count());
+        assertThat(copy.quantile(0.9)).isEqualTo(digest.quantile(0.9));
+        assertThat(copy.toBytes()).isEqualTo(digest.toBytes());
+    }
+
+    @Test
+    @DisplayName("should report an empty digest and reject invalid values")
+    void shouldHandleEmptyAndInvalidInput() {
+        TDigest digest = new TDigest();
+
+        assertThat(digest.quantile(0.5)).isNaN();
+        assertThat(digest.cdf(100)).isNaN();
+        assertThat(TDigest.fromBytes(digest.toBytes()).count()).isZero();
+        assertThatThrownBy(() -> digest.add(Double.NaN)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> digest.quantile(1.5)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TDigest.fromBytes(new byte[]{9})).isInstanceOf(IllegalArgumentException.class);
+    }
+}
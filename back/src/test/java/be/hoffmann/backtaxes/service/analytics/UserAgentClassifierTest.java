@@ -0,0 +1,94 @@
+package be.hoffmann.backtaxes.service.analytics;
+
+import be.hoffmann.backtaxes.entity.enums.DeviceType;
+import be.hoffmann.backtaxes.service.analytics.UserAgentClassifier.Classification;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserAgentClassifierTest {
+
+    private static final String IPHONE =
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 17_0 like Mac OS X) AppleWebKit/605.1.15 Mobile/15E148";
+    private static final String IPAD =
+            "Mozilla/5.0 (iPad; CPU OS 17_0 like Mac OS X) AppleWebKit/605.1.15 Mobile/15E148";
+    private static final String FIREFOX =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:128.0) Gecko/20100101 Firefox/128.0";
+
+    private final UserAgentClassifier classifier = new UserAgentClassifier(100);
+
+    @Test
+    @DisplayName("should detect the device type and hash the user agent")
+    void shouldClassifyBrowsers() {
+        Classification iphone = classifier.classify(IPHONE);
+        Classification firefox = classifier.classify(FIREFOX);
+
+        assertThat(iphone.deviceType()).isEqualTo(DeviceType.mobile);
+        assertThat(classifier.classify(IPAD).deviceType()).isEqualTo(DeviceType.tablet);
+        assertThat(firefox.deviceType()).isEqualTo(DeviceType.desktop);
+        assertThat(iphone.hash()).hasSize(64).isNotEqualTo(firefox.hash());
+        assertThat(iphone.bot()).isFalse();
+        assertThat(firefox.bot()).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+            "Mozilla/5.0 (compatible; bingbot/2.0; +http://www.bing.com/bingbot.htm)",
+            "Mozilla/5.0 (compatible; AhrefsBot/7.0; +http://ahrefs.com/robot/)",
+            "facebookexternalhit/1.1 (+http://www.facebook.com/externalhit_uatext.php)",
+            "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 HeadlessChrome/120.0.0.0 Safari/537.36",
+            "python-requests/2.31.0",
+            "curl/8.4.0"
+    })
+    @DisplayName("should flag crawlers and automated clients as bots")
+    void shouldDetectBots(String userAgent) {
+        assertThat(classifier.classify(userAgent).bot()).isTrue();
+    }
+
+    @Test
+    @DisplayName("should not flag a phone brand containing 'bot' as a bot")
+    void shouldNotFlagCubot() {
+        assertThat(classifier.classify("Mozilla/5.0 (Linux; Android 10; CUBOT X30) Mobile Safari/537.36").bot())
+                .isFalse();
+    }
+
+    @Test
+    @DisplayName("should return the same classification from the cache")
+    void shouldMemoize() {
+        Classification first = classifier.classify(FIREFOX);
+
+        assertThat(classifier.classify(new String(FIREFOX))).isSameAs(first);
+        assertThat(classifier.cachedEntries()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should not cache oversized user agents")
+    void shouldNotCacheOversized() {
+        String huge = FIREFOX + "x".repeat(UserAgentClassifier.MAX_CACHED_LENGTH);
+
+        assertThat(classifier.classify(huge).deviceType()).isEqualTo(DeviceType.desktop);
+        assertThat(classifier.cachedEntries()).isZero();
+    }
+
+    @Test
+    @DisplayName("should return no information without user agent")
+    void shouldHandleMissingUserAgent() {
+        Classification none = classifier.classify(null);
+
+        assertThat(none.hash()).isNull();
+        assertThat(none.deviceType()).isNull();
+        assertThat(none.bot()).isFalse();
+        assertThat(classifier.classify("  ").hash()).isNull();
+    }
+
+    @Test
+    @DisplayName("should refuse a non-positive cache size")
+    void shouldRejectCacheSize() {
+        assertThatThrownBy(() -> new UserAgentClassifier(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
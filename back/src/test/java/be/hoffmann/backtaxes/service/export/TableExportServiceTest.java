@@ -0,0 +1,176 @@
+package be.hoffmann.backtaxes.service.export;
+
+import be.hoffmann.backtaxes.exception.ValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TableExportServiceTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    private TableExportService service;
+
+    /** Requetes executees et valeur de :after a chaque page */
+    private final List<String> queries = new ArrayList<>();
+    private final List<Object> afterValues = new ArrayList<>();
+    private SqlParameterSource lastParams;
+
+    @BeforeEach
+    void setUp() {
+        service = new TableExportService(jdbcTemplate, objectMapper, 2);
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    private void givenPages(List<Object[]>... pages) {
+        List<List<Object[]>> remaining = new ArrayList<>(Arrays.asList(pages));
+        when(jdbcTemplate.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenAnswer(invocation -> {
+                    queries.add(invocation.getArgument(0));
+                    lastParams = invocation.getArgument(1);
+                    afterValues.add(lastParams.getValue("after"));
+                    return remaining.isEmpty() ? List.of() : remaining.remove(0);
+                });
+    }
+
+    private static Object[] bracket(long id, String key, BigDecimal amount, LocalDate validTo) {
+        return new Object[]{id, "wallonia", "tmc", key, 0, 70, amount, LocalDate.of(2025, 1, 1), validTo};
+    }
+
+    private static String gunzip(ByteArrayOutputStream out) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Nested
+    @DisplayName("export")
+    class ExportTests {
+
+        @Test
+        @DisplayName("should write a CSV page by page, resuming after the last id")
+        void shouldWriteCsvByKeysetPages() throws IOException {
+            givenPages(
+                    List.of(bracket(3, "kw_0_70", new BigDecimal("61.50"), null),
+                            bracket(7, "kw,\"old\"", new BigDecimal("1E+2"), LocalDate.of(2025, 6, 30))),
+                    List.of(bracket(9, "kw_70_85", new BigDecimal("123.00"), null)));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            long rows = service.export(ExportDataset.tax_brackets, ExportFormat.csv, null, null, out);
+
+            assertThat(rows).isEqualTo(3);
+            assertThat(afterValues).containsExactly(0L, 7L);
+            assertThat(queries.get(0)).contains("FROM tax_brackets WHERE id > :after ORDER BY id LIMIT :limit")
+                    .doesNotContain("created_at");
+            assertThat(gunzip(out).split("\r\n")).containsExactly(
+                    "id,region,tax_type,bracket_key,min_value,max_value,amount,valid_from,valid_to",
+                    "3,wallonia,tmc,kw_0_70,0,70,61.50,2025-01-01,",
+                    "7,wallonia,tmc,\"kw,\"\"old\"\"\",0,70,100,2025-01-01,2025-06-30",
+                    "9,wallonia,tmc,kw_70_85,0,70,123.00,2025-01-01,");
+        }
+
+        @Test
+        @DisplayName("should write one JSON object per line, bounded on created_at")
+        void shouldWriteNdjsonWithinRange() throws IOException {
+            LocalDateTime createdAt = LocalDateTime.of(2025, 6, 3, 10, 15);
+            givenPages(List.of(new Object[]{12L, "jane@example.com", false, true, createdAt}));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            service.export(ExportDataset.users, ExportFormat.ndjson,
+                    LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30), out);
+
+            assertThat(queries.get(0)).contains("AND created_at >= :startTime AND created_at < :endTime");
+            assertThat(lastParams.getValue("startTime")).isEqualTo(LocalDateTime.of(2025, 6, 1, 0, 0));
+            assertThat(lastParams.getValue("endTime")).isEqualTo(LocalDateTime.of(2025, 7, 1, 0, 0));
+            String[] lines = gunzip(out).split("\n");
+            assertThat(lines).hasSize(1);
+            JsonNode user = objectMapper.readTree(lines[0]);
+            assertThat(user.get("id").asLong()).isEqualTo(12);
+            assertThat(user.get("email").asString()).isEqualTo("jane@example.com");
+            assertThat(user.get("is_admin").asBoolean()).isTrue();
+            assertThat(user.get("created_at").asString()).isEqualTo("2025-06-03T10:15");
+            assertThat(user.has("password_hash")).isFalse();
+        }
+
+        @Test
+        @DisplayName("should stop on an empty page when the last page was full")
+        void shouldStopOnEmptyPage() throws IOException {
+            givenPages(List.of(bracket(1, "a", BigDecimal.ONE, null), bracket(2, "b", BigDecimal.TEN, null)));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            long rows = service.export(ExportDataset.tax_brackets, ExportFormat.csv, null, null, out);
+
+            assertThat(rows).isEqualTo(2);
+            assertThat(afterValues).containsExactly(0L, 2L);
+        }
+    }
+
+    @Nested
+    @DisplayName("validate")
+    class ValidateTests {
+
+        @Test
+        @DisplayName("should refuse a created_at range on tax_brackets or an inverted range")
+        void shouldRejectInvalidRange() {
+            assertThatThrownBy(() -> service.validate(ExportDataset.tax_brackets, LocalDate.of(2025, 6, 1), null))
+                    .isInstanceOf(ValidationException.class);
+            assertThatThrownBy(() -> service.export(ExportDataset.search_events, ExportFormat.csv,
+                    LocalDate.of(2025, 6, 30), LocalDate.of(2025, 6, 1), new ByteArrayOutputStream()))
+                    .isInstanceOf(ValidationException.class);
+            verifyNoInteractions(jdbcTemplate);
+        }
+    }
+
+    @Test
+    @DisplayName("should name the file after the dataset, range and format")
+    void shouldBuildFilename() {
+        assertThat(TableExportService.filename(ExportDataset.search_events, ExportFormat.ndjson,
+                LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30)))
+                .isEqualTo("search_events_2025-06-01_2025-06-30.ndjson.gz");
+        assertThat(TableExportService.filename(ExportDataset.users, ExportFormat.csv, null, null))
+                .isEqualTo("users.csv.gz");
+    }
+
+    @Test
+    @DisplayName("should refuse a non-positive page size")
+    void shouldRejectPageSize() {
+        assertThatThrownBy(() -> new TableExportService(mock(NamedParameterJdbcTemplate.class), objectMapper, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,143 @@
+package be.hoffmann.backtaxes.service.fleet;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static be.hoffmann.backtaxes.service.fleet.RegionAssignmentSolver.UNLIMITED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RegionAssignmentSolverTest {
+
+    @Nested
+    @DisplayName("without active constraints")
+    class UnconstrainedTests {
+
+        @Test
+        @DisplayName("should assign each group to its cheapest region")
+        void shouldPickCheapestRegion() {
+            long[][] costs = {{300, 100, 200}, {50, 400, 60}};
+            int[] quantities = {2, 3};
+
+            RegionAssignmentSolver.Solution solution = new RegionAssignmentSolver(
+                    costs, quantities, new int[]{UNLIMITED, UNLIMITED, UNLIMITED}).solve();
+
+            assertThat(solution.allocation()[0]).containsExactly(0, 2, 0);
+            assertThat(solution.allocation()[1]).containsExactly(3, 0, 0);
+            assertThat(solution.totalCost()).isEqualTo(2 * 100 + 3 * 50);
+            assertThat(solution.unconstrainedCost()).isEqualTo(solution.totalCost());
+        }
+
+        @Test
+        @DisplayName("should never use a region with zero capacity")
+        void shouldSkipExcludedRegion() {
+            long[][] costs = {{10, 500, 20}};
+
+            RegionAssignmentSolver.Solution solution = new RegionAssignmentSolver(
+                    costs, new int[]{4}, new int[]{0, UNLIMITED, UNLIMITED}).solve();
+
+            assertThat(solution.allocation()[0]).containsExactly(0, 0, 4);
+            assertThat(solution.totalCost()).isEqualTo(80);
+        }
+    }
+
+    @Nested
+    @DisplayName("with capacity constraints")
+    class ConstrainedTests {
+
+        @Test
+        @DisplayName("should move the vehicles with the smallest extra cost")
+        void shouldMoveSmallestRegret() {
+            // Les deux groupes preferent la region 0, qui n'accepte que 1 vehicule
+            long[][] costs = {{100, 110, 500}, {100, 300, 500}};
+
+            RegionAssignmentSolver.Solution solution = new RegionAssignmentSolver(
+                    costs, new int[]{1, 1}, new int[]{1, UNLIMITED, UNLIMITED}).solve();
+
+            assertThat(solution.allocation()[0]).containsExactly(0, 1, 0);
+            assertThat(solution.allocation()[1]).containsExactly(1, 0, 0);
+            assertThat(solution.totalCost()).isEqualTo(210);
+            assertThat(solution.unconstrainedCost()).isEqualTo(200);
+        }
+
+        @Test
+        @DisplayName("should move vehicles along a chain of regions when cheaper")
+        void shouldMoveAlongChain() {
+            // Region 0 pleine: le surcout direct 0 -> 2 est eleve, mieux vaut
+            // pousser un vehicule de 0 vers 1 et un autre de 1 vers 2
+            long[][] costs = {{0, 10, 1000}, {500, 0, 5}};
+
+            RegionAssignmentSolver.Solution solution = new RegionAssignmentSolver(
+                    costs, new int[]{2, 1}, new int[]{1, 1, UNLIMITED}).solve();
+
+            assertThat(solution.allocation()[0]).containsExactly(1, 1, 0);
+            assertThat(solution.allocation()[1]).containsExactly(0, 0, 1);
+            assertThat(solution.totalCost()).isEqualTo(15);
+        }
+
+        @Test
+        @DisplayName("should split a group across regions")
+        void shouldSplitGroup() {
+            long[][] costs = {{100, 200, 300}};
+
+            RegionAssignmentSolver.Solution solution = new RegionAssignmentSolver(
+                    costs, new int[]{10}, new int[]{4, 3, UNLIMITED}).solve();
+
+            assertThat(solution.allocation()[0]).containsExactly(4, 3, 3);
+        }
+
+        @Test
+        @DisplayName("should match brute force on small random fleets")
+        void shouldMatchBruteForce() {
+            Random random = new Random(42);
+            for (int run = 0; run < 500; run++) {
+                int size = 1 + random.nextInt(7);
+                long[][] costs = new long[size][3];
+                int[] quantities = new int[size];
+                Arrays.fill(quantities, 1);
+                for (long[] row : costs) {
+                    for (int r = 0; r < 3; r++) {
+                        row[r] = random.nextInt(50);
+                    }
+                }
+                int[] capacities = {random.nextInt(size + 1), random.nextInt(size + 1), size};
+
+                RegionAssignmentSolver.Solution solution =
+                        new RegionAssignmentSolver(costs, quantities, capacities).solve();
+
+                assertThat(solution.totalCost()).isEqualTo(bruteForce(costs, capacities, 0, new int[3]));
+            }
+        }
+
+        @Test
+        @DisplayName("should reject fleets larger than the total capacity")
+        void shouldRejectInsufficientCapacity() {
+            long[][] costs = {{1, 2, 3}};
+
+            assertThatThrownBy(() -> new RegionAssignmentSolver(costs, new int[]{5}, new int[]{1, 1, 1}).solve())
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private long bruteForce(long[][] costs, int[] capacities, int index, int[] load) {
+        if (index == costs.length) {
+            return 0;
+        }
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < capacities.length; r++) {
+            if (load[r] < capacities[r]) {
+                load[r]++;
+                long rest = bruteForce(costs, capacities, index + 1, load);
+                load[r]--;
+                if (rest != Long.MAX_VALUE) {
+                    best = Math.min(best, costs[index][r] + rest);
+                }
+            }
+        }
+        return best;
+    }
+}
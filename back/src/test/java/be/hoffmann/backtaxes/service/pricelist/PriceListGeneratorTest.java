@@ -0,0 +1,269 @@
+package be.hoffmann.backtaxes.service.pricelist;
+
+import be.hoffmann.backtaxes.dto.response.PriceListGenerationResponse;
+import be.hoffmann.backtaxes.dto.response.TaxCalculationResponse;
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.engine.TaxRules;
+import be.hoffmann.backtaxes.entity.Brand;
+import be.hoffmann.backtaxes.entity.Model;
+import be.hoffmann.backtaxes.entity.Variant;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.repository.VariantRepository;
+import be.hoffmann.backtaxes.service.TaxCalculationService;
+import be.hoffmann.backtaxes.service.TaxCalculationService.VehicleData;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.AgePrice;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.Manifest;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.ModelPriceList;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.RegionPrices;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.VariantPriceList;
+import be.hoffmann.backtaxes.service.pricelist.PriceListDocuments.VariantSummary;
+import be.hoffmann.backtaxes.service.pricelist.PriceListGenerator.PriceListFile;
+import be.hoffmann.backtaxes.service.rules.RuleVersionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PriceListGeneratorTest {
+
+    private static final FileTime OLD = FileTime.from(Instant.parse("2020-01-01T00:00:00Z"));
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private VariantRepository variantRepository;
+
+    @Mock
+    private TaxCalculationService taxCalculationService;
+
+    @Mock
+    private RuleVersionService ruleVersionService;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+
+    private Variant golf;
+    private Variant golfGti;
+    private Variant clio;
+
+    @BeforeEach
+    void setUp() {
+        Brand volkswagen = brand(1L, "Volkswagen");
+        Model golfModel = model(10L, "Golf", volkswagen);
+        Model clioModel = model(20L, "Clio", brand(2L, "Renault"));
+        golf = variant(100L, "1.5 TSI", golfModel, 110, 8);
+        golfGti = variant(101L, "GTI", golfModel, 180, 11);
+        clio = variant(200L, "TCe 90", clioModel, 67, 5);
+
+        when(ruleVersionService.getRuleSet(any(LocalDate.class)))
+                .thenReturn(TaxRuleSet.builder(LocalDate.of(2026, 1, 1)).build());
+        // Taxe annuelle = 10 x CV fiscaux, TMC = puissance en kW (quel que soit l'age)
+        when(taxCalculationService.calculateTax(any(VehicleData.class), any(Region.class), any(TaxType.class),
+                any(LocalDate.class), any(TaxRules.class)))
+                .thenAnswer(invocation -> response(invocation.getArgument(0), invocation.getArgument(2)));
+    }
+
+    @Test
+    @DisplayName("should write every variant and model document and the manifest on the first run")
+    void shouldGenerateAllDocuments() throws IOException {
+        when(variantRepository.findAllWithDetails()).thenReturn(List.of(golf, golfGti, clio));
+        PriceListGenerator generator = generator();
+
+        PriceListGenerationResponse response = generator.generate();
+
+        assertThat(response.variantsWritten()).isEqualTo(3);
+        assertThat(response.variantsUnchanged()).isZero();
+        assertThat(response.modelsWritten()).isEqualTo(2);
+        assertThat(response.modelsUnchanged()).isZero();
+        assertThat(response.filesDeleted()).isZero();
+
+        PriceListFile golfFile = generator.findVariantDocument(100L).orElseThrow();
+        assertThat(golfFile.path()).isEqualTo(versionDirectory().resolve("variants/100.json.gz"));
+        VariantPriceList golfDocument = read(golfFile.path(), VariantPriceList.class);
+        assertThat(golfDocument.version()).isEqualTo(golfFile.contentKey());
+        assertThat(golfDocument.variant().name()).isEqualTo("1.5 TSI");
+        assertThat(golfDocument.variant().brandName()).isEqualTo("Volkswagen");
+        assertThat(golfDocument.regions()).extracting(RegionPrices::region).containsExactly(Region.values());
+        RegionPrices wallonia = golfDocument.regions().get(Region.wallonia.ordinal());
+        assertThat(wallonia.annual()).isEqualByComparingTo("80");
+        assertThat(wallonia.tmc()).extracting(AgePrice::ageYears).containsExactly(0, 5);
+
+        PriceListFile golfModelFile = generator.findModelDocument(10L).orElseThrow();
+        ModelPriceList golfModel = read(golfModelFile.path(), ModelPriceList.class);
+        assertThat(golfModel.version()).isEqualTo(golfModelFile.contentKey());
+        assertThat(golfModel.modelName()).isEqualTo("Golf");
+        assertThat(golfModel.variants()).extracting(VariantSummary::id, VariantSummary::name)
+                .containsExactly(tuple(100L, "1.5 TSI"), tuple(101L, "GTI"));
+        assertThat(golfModel.variants().get(1).tmcNew().get(Region.flanders)).isEqualByComparingTo("180");
+
+        Manifest manifest = objectMapper.readValue(
+                versionDirectory().resolve("manifest.json").toFile(), Manifest.class);
+        assertThat(manifest.rulesVersion()).isEqualTo(response.rulesVersion());
+        assertThat(manifest.variants()).containsOnlyKeys(100L, 101L, 200L)
+                .containsEntry(100L, golfFile.contentKey());
+        assertThat(manifest.models()).containsOnlyKeys(10L, 20L)
+                .containsEntry(10L, golfModelFile.contentKey());
+    }
+
+    @Test
+    @DisplayName("should only rewrite the documents whose content key changed, using the manifest on disk")
+    void shouldRewriteChangedDocumentsOnly() throws IOException {
+        when(variantRepository.findAllWithDetails()).thenReturn(List.of(golf, golfGti, clio));
+        PriceListGenerator first = generator();
+        first.generate();
+        String golfKey = first.findVariantDocument(100L).orElseThrow().contentKey();
+        String gtiKey = first.findVariantDocument(101L).orElseThrow().contentKey();
+        String golfModelKey = first.findModelDocument(10L).orElseThrow().contentKey();
+        touchAll(List.of("variants/100", "variants/101", "variants/200", "models/10", "models/20"));
+
+        // Nouvelle instance: reprend le manifeste ecrit par la premiere generation
+        golfGti.setFiscalHp(12);
+        PriceListGenerator generator = generator();
+        PriceListGenerationResponse response = generator.generate();
+
+        assertThat(response.variantsWritten()).isEqualTo(1);
+        assertThat(response.variantsUnchanged()).isEqualTo(2);
+        assertThat(response.modelsWritten()).isEqualTo(1);
+        assertThat(response.modelsUnchanged()).isEqualTo(1);
+        assertThat(response.filesDeleted()).isZero();
+
+        assertThat(modified("variants/100")).isEqualTo(OLD);
+        assertThat(modified("variants/200")).isEqualTo(OLD);
+        assertThat(modified("models/20")).isEqualTo(OLD);
+        assertThat(modified("variants/101")).isNotEqualTo(OLD);
+        assertThat(modified("models/10")).isNotEqualTo(OLD);
+
+        assertThat(generator.findVariantDocument(100L).orElseThrow().contentKey()).isEqualTo(golfKey);
+        PriceListFile gtiFile = generator.findVariantDocument(101L).orElseThrow();
+        assertThat(gtiFile.contentKey()).isNotEqualTo(gtiKey);
+        assertThat(read(gtiFile.path(), VariantPriceList.class).regions().get(0).annual())
+                .isEqualByComparingTo("120");
+        assertThat(generator.findModelDocument(10L).orElseThrow().contentKey()).isNotEqualTo(golfModelKey);
+    }
+
+    @Test
+    @DisplayName("should rewrite an unchanged document whose file is missing")
+    void shouldRewriteMissingFile() throws IOException {
+        when(variantRepository.findAllWithDetails()).thenReturn(List.of(golf, golfGti, clio));
+        PriceListGenerator generator = generator();
+        generator.generate();
+        Files.delete(versionDirectory().resolve("variants/200.json.gz"));
+
+        PriceListGenerationResponse response = generator.generate();
+
+        assertThat(response.variantsWritten()).isEqualTo(1);
+        assertThat(response.modelsWritten()).isZero();
+        assertThat(generator.findVariantDocument(200L)).isPresent();
+    }
+
+    @Test
+    @DisplayName("should delete the documents of variants and models removed from the catalogue")
+    void shouldDeleteStaleDocuments() {
+        when(variantRepository.findAllWithDetails())
+                .thenReturn(List.of(golf, golfGti, clio))
+                .thenReturn(List.of(golf));
+        PriceListGenerator generator = generator();
+        generator.generate();
+
+        PriceListGenerationResponse response = generator.generate();
+
+        // GTI et Clio supprimes; le modele Golf change (une variante en moins)
+        assertThat(response.filesDeleted()).isEqualTo(3);
+        assertThat(response.variantsWritten()).isZero();
+        assertThat(response.modelsWritten()).isEqualTo(1);
+        assertThat(versionDirectory().resolve("variants/101.json.gz")).doesNotExist();
+        assertThat(versionDirectory().resolve("variants/200.json.gz")).doesNotExist();
+        assertThat(versionDirectory().resolve("models/20.json.gz")).doesNotExist();
+        assertThat(versionDirectory().resolve("variants/100.json.gz")).exists();
+        assertThat(generator.findVariantDocument(101L)).isEmpty();
+        assertThat(generator.findModelDocument(20L)).isEmpty();
+        assertThat(read(generator.findModelDocument(10L).orElseThrow().path(), ModelPriceList.class).variants())
+                .extracting(VariantSummary::id).containsExactly(100L);
+    }
+
+    private PriceListGenerator generator() {
+        return new PriceListGenerator(variantRepository, taxCalculationService, ruleVersionService, objectMapper,
+                directory.toString(), List.of(0, 5), 2, false);
+    }
+
+    private Path versionDirectory() {
+        return directory.resolve("v" + PriceListDocuments.SCHEMA_VERSION);
+    }
+
+    private void touchAll(List<String> documents) throws IOException {
+        for (String document : documents) {
+            Files.setLastModifiedTime(versionDirectory().resolve(document + ".json.gz"), OLD);
+        }
+    }
+
+    private FileTime modified(String document) throws IOException {
+        return Files.getLastModifiedTime(versionDirectory().resolve(document + ".json.gz"));
+    }
+
+    private <T> T read(Path file, Class<T> type) {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return objectMapper.readValue(in, type);
+        } catch (IOException e) {
+            throw new AssertionError("Unreadable price list " + file, e);
+        }
+    }
+
+    private static TaxCalculationResponse response(VehicleData vehicle, TaxType taxType) {
+        TaxCalculationResponse response = new TaxCalculationResponse();
+        response.setIsExempt(false);
+        response.setAmount(taxType == TaxType.annual
+                ? BigDecimal.valueOf(vehicle.fiscalHp * 10L)
+                : BigDecimal.valueOf(vehicle.powerKw));
+        return response;
+    }
+
+    private static Brand brand(Long id, String name) {
+        Brand brand = new Brand();
+        brand.setId(id);
+        brand.setName(name);
+        return brand;
+    }
+
+    private static Model model(Long id, String name, Brand brand) {
+        Model model = new Model();
+        model.setId(id);
+        model.setName(name);
+        model.setBrand(brand);
+        return model;
+    }
+
+    private static Variant variant(Long id, String name, Model model, int powerKw, int fiscalHp) {
+        Variant variant = new Variant();
+        variant.setId(id);
+        variant.setName(name);
+        variant.setModel(model);
+        variant.setPowerKw(powerKw);
+        variant.setFiscalHp(fiscalHp);
+        variant.setFuel(FuelType.petrol);
+        return variant;
+    }
+}
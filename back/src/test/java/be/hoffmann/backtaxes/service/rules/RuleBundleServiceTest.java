@@ -0,0 +1,128 @@
+package be.hoffmann.backtaxes.service.rules;
+
+import be.hoffmann.backtaxes.engine.TaxEngine;
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RuleBundleServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 6, 1);
+
+    @Mock
+    private RuleVersionService ruleVersionService;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+
+    private RuleBundleService ruleBundleService;
+
+    @BeforeEach
+    void setUp() {
+        ruleBundleService = new RuleBundleService(ruleVersionService, objectMapper);
+    }
+
+    @Nested
+    @DisplayName("compile")
+    class CompileTests {
+
+        @Test
+        @DisplayName("should export rules in a compact, normalized form")
+        void shouldExportCompactBundle() throws IOException {
+            TaxRuleSet rules = TaxRuleSet.builder(DATE)
+                    .bracket(Region.wallonia, TaxType.annual, "fiscal_hp", 5, 5, new BigDecimal("133.0700"))
+                    .bracket(Region.wallonia, TaxType.annual, "fiscal_hp", 0, 4, new BigDecimal("99.98"))
+                    .parameter(Region.brussels, TaxType.tmc, "min_amount", new BigDecimal("75.7900"))
+                    .ageCoefficient(Region.brussels, TaxType.tmc, 1, new BigDecimal("0.9000"))
+                    .exemption(Region.flanders, TaxType.annual, "fuel_electric")
+                    .build();
+
+            RuleBundleService.CompiledBundle bundle = ruleBundleService.compile(rules);
+            JsonNode json = objectMapper.readTree(bundle.json());
+
+            assertThat(json.get("version").asString()).isEqualTo(bundle.version()).hasSize(16);
+            assertThat(json.get("formulaVersion").asInt()).isEqualTo(TaxEngine.FORMULA_VERSION);
+            assertThat(json.at("/rules/wallonia/annual/brackets/fiscal_hp").toString())
+                    .isEqualTo("[[0,4,99.98],[5,5,133.07]]");
+            assertThat(json.at("/rules/brussels/tmc/parameters/min_amount").decimalValue())
+                    .isEqualByComparingTo("75.79");
+            assertThat(json.at("/rules/brussels/tmc/ageCoefficients/1").decimalValue())
+                    .isEqualByComparingTo("0.9");
+            assertThat(json.at("/rules/flanders/annual/exemptions/0").asString()).isEqualTo("fuel_electric");
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bundle.gzipped()))) {
+                assertThat(in.readAllBytes()).isEqualTo(bundle.json());
+            }
+        }
+
+        @Test
+        @DisplayName("should derive the version from the content only")
+        void shouldHashContent() {
+            TaxRuleSet first = TaxRuleSet.builder(DATE)
+                    .parameter(Region.brussels, TaxType.tmc, "min_amount", new BigDecimal("75.79"))
+                    .parameter(Region.brussels, TaxType.tmc, "lpg_reduction", new BigDecimal("298"))
+                    .build();
+            TaxRuleSet sameRulesLater = TaxRuleSet.builder(DATE.plusMonths(1))
+                    .parameter(Region.brussels, TaxType.tmc, "lpg_reduction", new BigDecimal("298.00"))
+                    .parameter(Region.brussels, TaxType.tmc, "min_amount", new BigDecimal("75.7900"))
+                    .build();
+            TaxRuleSet changed = TaxRuleSet.builder(DATE)
+                    .parameter(Region.brussels, TaxType.tmc, "min_amount", new BigDecimal("80"))
+                    .parameter(Region.brussels, TaxType.tmc, "lpg_reduction", new BigDecimal("298"))
+                    .build();
+
+            String version = ruleBundleService.compile(first).version();
+
+            assertThat(ruleBundleService.compile(sameRulesLater).version()).isEqualTo(version);
+            assertThat(ruleBundleService.compile(changed).version()).isNotEqualTo(version);
+        }
+    }
+
+    @Nested
+    @DisplayName("getCurrentBundle")
+    class GetCurrentBundleTests {
+
+        @Test
+        @DisplayName("should reuse the compiled bundle while rules are unchanged")
+        void shouldReuseCompiledBundle() {
+            TaxRuleSet rules = TaxRuleSet.builder(DATE)
+                    .parameter(Region.brussels, TaxType.tmc, "min_amount", new BigDecimal("75.79"))
+                    .build();
+            when(ruleVersionService.getRuleSet(any())).thenReturn(rules);
+
+            RuleBundleService.CompiledBundle bundle = ruleBundleService.getCurrentBundle();
+
+            assertThat(ruleBundleService.getCurrentBundle()).isSameAs(bundle);
+            assertThat(ruleBundleService.findBundle(bundle.version())).containsSame(bundle);
+            assertThat(ruleBundleService.findBundle("0000000000000000")).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("should load the formula specification from the engine")
+    void shouldLoadFormulaSpec() {
+        RuleBundleService.FormulaSpec spec = ruleBundleService.getFormulaSpec();
+
+        assertThat(spec.formulaVersion()).isEqualTo(TaxEngine.FORMULA_VERSION);
+        assertThat(new String(spec.content())).contains("formulaVersion " + TaxEngine.FORMULA_VERSION);
+    }
+}
@@ -0,0 +1,283 @@
+package be.hoffmann.backtaxes.service.rules;
+
+import be.hoffmann.backtaxes.engine.TaxRuleSet;
+import be.hoffmann.backtaxes.entity.TaxBracket;
+import be.hoffmann.backtaxes.entity.TaxRuleVersion;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import be.hoffmann.backtaxes.exception.ValidationException;
+import be.hoffmann.backtaxes.repository.AgeCoefficientRepository;
+import be.hoffmann.backtaxes.repository.TaxBracketRepository;
+import be.hoffmann.backtaxes.repository.TaxExemptionRepository;
+import be.hoffmann.backtaxes.repository.TaxParameterRepository;
+import be.hoffmann.backtaxes.repository.TaxRuleVersionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RuleVersionServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Mock
+    private TaxRuleVersionRepository versionRepository;
+
+    @Mock
+    private TaxBracketRepository taxBracketRepository;
+
+    @Mock
+    private TaxParameterRepository taxParameterRepository;
+
+    @Mock
+    private AgeCoefficientRepository ageCoefficientRepository;
+
+    @Mock
+    private TaxExemptionRepository taxExemptionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RuleVersionService ruleVersionService;
+
+    private final List<TaxRuleVersion> saved = new ArrayList<>();
+    private final List<TaxBracket> draftBrackets = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ruleVersionService = new RuleVersionService(versionRepository, taxBracketRepository,
+                taxParameterRepository, ageCoefficientRepository, taxExemptionRepository,
+                JsonMapper.builder().build(), transactionManager);
+    }
+
+    @Nested
+    @DisplayName("current")
+    class CurrentTests {
+
+        @Test
+        @DisplayName("should publish the draft as initial version when none exists")
+        void shouldPublishInitialVersion() {
+            when(versionRepository.findTopByOrderByIdDesc()).thenReturn(Optional.empty());
+            stubDraft();
+            stubSave();
+            draftBrackets.add(bracket("133.07", TODAY.minusYears(1), null));
+
+            PublishedRules published = ruleVersionService.current();
+
+            assertThat(published.getVersionId()).isEqualTo(1L);
+            assertThat(saved).hasSize(1);
+            assertThat(saved.getFirst().getRuleCount()).isEqualTo(1);
+            assertThat(annualAmount(ruleVersionService.getRuleSet(TODAY))).contains(new BigDecimal("133.07"));
+            assertThat(ruleVersionService.current()).isSameAs(published);
+        }
+
+        @Test
+        @DisplayName("should publish the initial version at startup in its own writable transaction")
+        void shouldInitializeInNewTransaction() {
+            when(versionRepository.findTopByOrderByIdDesc()).thenReturn(Optional.empty());
+            stubDraft();
+            stubSave();
+
+            ruleVersionService.initializeAtStartup();
+
+            verify(transactionManager).getTransaction(argThat(definition ->
+                    definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW
+                            && !definition.isReadOnly()));
+            InOrder inOrder = inOrder(versionRepository);
+            inOrder.verify(versionRepository).lockPublication();
+            inOrder.verify(versionRepository).findTopByOrderByIdDesc();
+            assertThat(ruleVersionService.current().getVersionId()).isEqualTo(1L);
+        }
+
+        @Test
+        @DisplayName("should load the latest published version without reading the draft")
+        void shouldLoadLatestVersion() {
+            RuleSnapshot snapshot = new RuleSnapshot(
+                    List.of(new RuleSnapshot.BracketRow(Region.wallonia, TaxType.annual, "fiscal_hp",
+                            8, 8, new BigDecimal("99.98"), TODAY.minusYears(1), null)),
+                    List.of(), List.of(), List.of());
+            TaxRuleVersion version = new TaxRuleVersion();
+            version.setId(12L);
+            version.setFingerprint("f");
+            version.setRuleCount(1);
+            version.setRules(JsonMapper.builder().build().writeValueAsString(snapshot));
+            version.setPublishedAt(Instant.now());
+            when(versionRepository.findTopByOrderByIdDesc()).thenReturn(Optional.of(version));
+
+            PublishedRules published = ruleVersionService.current();
+
+            assertThat(published.getVersionId()).isEqualTo(12L);
+            assertThat(annualAmount(published.ruleSetAt(TODAY))).contains(new BigDecimal("99.98"));
+            verify(taxBracketRepository, never()).findAll();
+        }
+    }
+
+    @Nested
+    @DisplayName("publish")
+    class PublishTests {
+
+        @BeforeEach
+        void publishInitialVersion() {
+            when(versionRepository.findTopByOrderByIdDesc()).thenAnswer(invocation ->
+                    saved.isEmpty() ? Optional.empty() : Optional.of(saved.getLast()));
+            stubDraft();
+            stubSave();
+            draftBrackets.add(bracket("133.07", TODAY.minusYears(1), null));
+            ruleVersionService.current();
+        }
+
+        @Test
+        @DisplayName("should swap in a new version while the previous one stays unchanged")
+        void shouldSwapVersion() {
+            PublishedRules previous = ruleVersionService.current();
+            draftBrackets.getFirst().setAmount(new BigDecimal("140.00"));
+
+            assertThat(ruleVersionService.hasPendingChanges()).isTrue();
+            assertThat(ruleVersionService.getRuleSet(TODAY)).isSameAs(previous.ruleSetAt(TODAY));
+
+            PublishedRules published = ruleVersionService.publish("Indexation");
+
+            assertThat(published.getVersionId()).isEqualTo(2L);
+            assertThat(ruleVersionService.current()).isSameAs(published);
+            assertThat(annualAmount(published.ruleSetAt(TODAY))).contains(new BigDecimal("140.00"));
+            assertThat(annualAmount(previous.ruleSetAt(TODAY))).contains(new BigDecimal("133.07"));
+            assertThat(saved.getLast().getNote()).isEqualTo("Indexation");
+            assertThat(ruleVersionService.hasPendingChanges()).isFalse();
+        }
+
+        @Test
+        @DisplayName("should swap in a published version only after its transaction commits")
+        void shouldSwapAfterCommit() {
+            PublishedRules previous = ruleVersionService.current();
+            draftBrackets.getFirst().setAmount(new BigDecimal("140.00"));
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                PublishedRules published = ruleVersionService.publish(null);
+
+                assertThat(ruleVersionService.current()).isSameAs(previous);
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+                assertThat(ruleVersionService.current()).isSameAs(published);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
+        @Test
+        @DisplayName("should keep the previous version when the publication rolls back")
+        void shouldKeepVersionOnRollback() {
+            PublishedRules previous = ruleVersionService.current();
+            draftBrackets.getFirst().setAmount(new BigDecimal("140.00"));
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                ruleVersionService.publish(null);
+
+                TransactionSynchronizationManager.getSynchronizations()
+                        .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+                assertThat(ruleVersionService.current()).isSameAs(previous);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
+        @Test
+        @DisplayName("should reject a draft identical to the published version")
+        void shouldRejectUnchangedDraft() {
+            assertThatThrownBy(() -> ruleVersionService.publish(null))
+                    .isInstanceOf(ValidationException.class)
+                    .hasMessageContaining("identique");
+            assertThat(saved).hasSize(1);
+        }
+
+        @Test
+        @DisplayName("should compare the draft with the latest stored version, under the publication lock")
+        void shouldRejectDraftPublishedByConcurrentCommit() {
+            draftBrackets.getFirst().setAmount(new BigDecimal("140.00"));
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                ruleVersionService.publish(null);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+
+            assertThatThrownBy(() -> ruleVersionService.publish(null))
+                    .isInstanceOf(ValidationException.class)
+                    .hasMessageContaining("version publiee 2");
+            assertThat(saved).hasSize(2);
+            verify(versionRepository, times(3)).lockPublication();
+        }
+
+        @Test
+        @DisplayName("should apply future-dated rules of the published version on their start date")
+        void shouldApplyScheduledRules() {
+            draftBrackets.getFirst().setValidTo(TODAY.plusDays(9));
+            draftBrackets.add(bracket("150.00", TODAY.plusDays(10), null));
+
+            PublishedRules published = ruleVersionService.publish(null);
+
+            assertThat(annualAmount(published.ruleSetAt(TODAY))).contains(new BigDecimal("133.07"));
+            assertThat(annualAmount(published.ruleSetAt(TODAY.plusDays(10)))).contains(new BigDecimal("150.00"));
+            assertThat(published.getSnapshot().periodBoundaries())
+                    .containsExactly(TODAY.minusYears(1), TODAY.plusDays(10));
+        }
+    }
+
+    private void stubDraft() {
+        when(taxBracketRepository.findAll()).thenReturn(draftBrackets);
+        when(taxParameterRepository.findAll()).thenReturn(List.of());
+        when(ageCoefficientRepository.findAll()).thenReturn(List.of());
+        when(taxExemptionRepository.findAll()).thenReturn(List.of());
+    }
+
+    private void stubSave() {
+        when(versionRepository.save(any(TaxRuleVersion.class))).thenAnswer(invocation -> {
+            TaxRuleVersion version = invocation.getArgument(0);
+            version.setId((long) saved.size() + 1);
+            saved.add(version);
+            return version;
+        });
+    }
+
+    private static TaxBracket bracket(String amount, LocalDate validFrom, LocalDate validTo) {
+        TaxBracket bracket = new TaxBracket();
+        bracket.setRegion(Region.wallonia);
+        bracket.setTaxType(TaxType.annual);
+        bracket.setBracketKey("fiscal_hp");
+        bracket.setMinValue(8);
+        bracket.setMaxValue(8);
+        bracket.setAmount(new BigDecimal(amount));
+        bracket.setValidFrom(validFrom);
+        bracket.setValidTo(validTo);
+        return bracket;
+    }
+
+    private static Optional<BigDecimal> annualAmount(TaxRuleSet rules) {
+        return rules.findBracketAmount(Region.wallonia, TaxType.annual, "fiscal_hp", 8);
+    }
+}
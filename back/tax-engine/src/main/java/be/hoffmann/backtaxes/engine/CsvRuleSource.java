@@ -0,0 +1,145 @@
+package be.hoffmann.backtaxes.engine;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Source de regles lue depuis les exports CSV des tables de baremes:
+ *
+ *   tax_brackets_export.csv     region,tax_type,bracket_key,min_value,max_value,amount
+ *   tax_params_export.csv       region,tax_type,param_key,param_value
+ *   age_coeffs_export.csv       region,tax_type,vehicle_age_years,coefficient
+ *   tax_exemptions_export.csv   region,tax_type,condition_key   (optionnel)
+ *
+ * Les exports ne contiennent que les regles en vigueur (pas de dates de validite):
+ * le meme contenu est renvoye quelle que soit la date demandee. Les fichiers sont
+ * lus une seule fois a la construction.
+ */
+public class CsvRuleSource implements RuleSource {
+
+    public static final String BRACKETS_FILE = "tax_brackets_export.csv";
+    public static final String PARAMETERS_FILE = "tax_params_export.csv";
+    public static final String AGE_COEFFICIENTS_FILE = "age_coeffs_export.csv";
+    public static final String EXEMPTIONS_FILE = "tax_exemptions_export.csv";
+
+    private final List<Consumer<TaxRuleSet.Builder>> rules = new ArrayList<>();
+
+    /**
+     * @param brackets export des tranches
+     * @param parameters export des parametres
+     * @param ageCoefficients export des coefficients d'age
+     * @param exemptions export des exemptions, ou null
+     */
+    public CsvRuleSource(Reader brackets, Reader parameters, Reader ageCoefficients, Reader exemptions) {
+        read(BRACKETS_FILE, brackets, row -> {
+            Region region = Region.valueOf(row.get("region"));
+            TaxType taxType = TaxType.valueOf(row.get("tax_type"));
+            String key = row.get("bracket_key");
+            int min = Integer.parseInt(row.get("min_value"));
+            Integer max = row.get("max_value").isEmpty() ? null : Integer.valueOf(row.get("max_value"));
+            BigDecimal amount = new BigDecimal(row.get("amount"));
+            rules.add(builder -> builder.bracket(region, taxType, key, min, max, amount));
+        });
+        read(PARAMETERS_FILE, parameters, row -> {
+            Region region = Region.valueOf(row.get("region"));
+            TaxType taxType = TaxType.valueOf(row.get("tax_type"));
+            String key = row.get("param_key");
+            BigDecimal value = new BigDecimal(row.get("param_value"));
+            rules.add(builder -> builder.parameter(region, taxType, key, value));
+        });
+        read(AGE_COEFFICIENTS_FILE, ageCoefficients, row -> {
+            Region region = Region.valueOf(row.get("region"));
+            TaxType taxType = TaxType.valueOf(row.get("tax_type"));
+            int age = Integer.parseInt(row.get("vehicle_age_years"));
+            BigDecimal coefficient = new BigDecimal(row.get("coefficient"));
+            rules.add(builder -> builder.ageCoefficient(region, taxType, age, coefficient));
+        });
+        if (exemptions != null) {
+            read(EXEMPTIONS_FILE, exemptions, row -> {
+                Region region = Region.valueOf(row.get("region"));
+                TaxType taxType = TaxType.valueOf(row.get("tax_type"));
+                String conditionKey = row.get("condition_key");
+                rules.add(builder -> builder.exemption(region, taxType, conditionKey));
+            });
+        }
+    }
+
+    /**
+     * Charge les exports depuis un repertoire (noms de fichiers par defaut).
+     * Le fichier des exemptions est facultatif.
+     */
+    public static CsvRuleSource fromDirectory(Path directory) {
+        Path exemptionsFile = directory.resolve(EXEMPTIONS_FILE);
+        try (Reader brackets = Files.newBufferedReader(directory.resolve(BRACKETS_FILE), StandardCharsets.UTF_8);
+             Reader parameters = Files.newBufferedReader(directory.resolve(PARAMETERS_FILE), StandardCharsets.UTF_8);
+             Reader ageCoefficients = Files.newBufferedReader(directory.resolve(AGE_COEFFICIENTS_FILE), StandardCharsets.UTF_8);
+             Reader exemptions = Files.exists(exemptionsFile)
+                     ? Files.newBufferedReader(exemptionsFile, StandardCharsets.UTF_8)
+                     : null) {
+            return new CsvRuleSource(brackets, parameters, ageCoefficients, exemptions);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read tax rule exports from " + directory, e);
+        }
+    }
+
+    @Override
+    public TaxRuleSet load(LocalDate rateDate) {
+        TaxRuleSet.Builder builder = TaxRuleSet.builder(rateDate);
+        rules.forEach(rule -> rule.accept(builder));
+        return builder.build();
+    }
+
+    /**
+     * Lit un CSV simple (separateur virgule, sans guillemets) avec ligne d'en-tete.
+     * Les colonnes sont adressees par leur nom d'en-tete.
+     */
+    private static void read(String name, Reader reader, Consumer<Map<String, String>> consumer) {
+        try {
+            BufferedReader lines = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+            String header = lines.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException(name + ": missing header");
+            }
+            String[] columns = header.strip().split(",");
+            String line;
+            int lineNumber = 1;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] values = line.split(",", -1);
+                if (values.length != columns.length) {
+                    throw new IllegalArgumentException(name + ":" + lineNumber + ": expected "
+                            + columns.length + " columns but found " + values.length);
+                }
+                Map<String, String> row = new HashMap<>(columns.length * 2);
+                for (int i = 0; i < columns.length; i++) {
+                    row.put(columns[i].strip(), values[i].strip());
+                }
+                try {
+                    consumer.accept(row);
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException(name + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + name, e);
+        }
+    }
+}
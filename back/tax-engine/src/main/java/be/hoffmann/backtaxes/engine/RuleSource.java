@@ -0,0 +1,14 @@
+package be.hoffmann.backtaxes.engine;
+
+import java.time.LocalDate;
+
+/**
+ * Source de regles de taxation (fichiers CSV, base de donnees, service distant...).
+ */
+public interface RuleSource {
+
+    /**
+     * Charge le jeu de regles valide a la date de reference donnee.
+     */
+    TaxRuleSet load(LocalDate rateDate);
+}
@@ -0,0 +1,527 @@
+package be.hoffmann.backtaxes.engine;
+
+import be.hoffmann.backtaxes.entity.enums.EuroNorm;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Optional;
+
+/**
+ * Moteur de calcul des taxes vehicules (TMC et taxe annuelle) pour les trois
+ * regions belges.
+ *
+ * Java pur, sans dependance: les baremes sont lus via TaxRules (jeu de regles
+ * immuable charge depuis un RuleSource, ou adaptateur vers une autre source).
+ * Sans etat, une instance peut etre partagee entre threads.
+ */
+public class TaxEngine {
+
+    /**
+     * Version des formules (voir la specification FORMULA_SPEC_RESOURCE).
+     * A incrementer a chaque changement de formule qui modifie les montants
+     * pour un meme jeu de regles.
+     */
+    public static final int FORMULA_VERSION = 1;
+
+    /** Specification de reference des formules, pour les implementations clientes */
+    public static final String FORMULA_SPEC_RESOURCE = "/be/hoffmann/backtaxes/engine/formulas.md";
+
+    // Common BigDecimal constants for tax calculations
+    private static final BigDecimal DEFAULT_CO2_REFERENCE_WALLONIA = BigDecimal.valueOf(136);
+    private static final BigDecimal DEFAULT_MMA_REFERENCE = BigDecimal.valueOf(1838);
+    private static final BigDecimal DEFAULT_ELECTRIC_MIN_COEFF = BigDecimal.valueOf(0.01);
+    private static final BigDecimal DEFAULT_HYBRID_FACTOR = BigDecimal.valueOf(0.8);
+    private static final BigDecimal DEFAULT_ELECTRIC_MIN_BRUSSELS = BigDecimal.valueOf(74.29);
+    private static final BigDecimal DEFAULT_LPG_REDUCTION_BRUSSELS = BigDecimal.valueOf(298);
+    private static final BigDecimal DEFAULT_FLANDERS_DIVISOR = BigDecimal.valueOf(246);
+    private static final BigDecimal DEFAULT_FLANDERS_CONSTANT = BigDecimal.valueOf(4500);
+    private static final BigDecimal DEFAULT_WLTP_Q_FACTOR = BigDecimal.valueOf(1.245);
+    private static final BigDecimal DEFAULT_CO2_CORRECTION_X = BigDecimal.valueOf(63);
+    private static final BigDecimal DEFAULT_LPG_FUEL_FACTOR = BigDecimal.valueOf(0.88);
+    private static final BigDecimal DEFAULT_CNG_FUEL_FACTOR = BigDecimal.valueOf(0.93);
+    private static final BigDecimal DEFAULT_MIN_BIV = BigDecimal.valueOf(500);
+    private static final BigDecimal DEFAULT_LPG_SUPPLEMENT_PER_HP = BigDecimal.valueOf(99.16);
+    private static final BigDecimal DEFAULT_CO2_REFERENCE_FLANDERS = BigDecimal.valueOf(149);
+    private static final BigDecimal DEFAULT_CO2_CORRECTION_PERCENT = BigDecimal.valueOf(0.003);
+
+    /**
+     * Calcule une taxe avec un jeu de regles donne.
+     * La date de reference des baremes (et de l'age du vehicule) est celle des regles.
+     */
+    public TaxResult calculate(
+            Vehicle vehicle,
+            Region region,
+            TaxType taxType,
+            LocalDate registrationDate,
+            TaxRules rules) {
+
+        TaxResult result = new TaxResult(region, taxType);
+
+        LocalDate rateDate = rules.getRateDate();
+
+        // Verifier les exemptions (electrique, hydrogene)
+        if (rules.isZeroEmissionExempt(region, taxType, vehicle.fuel)) {
+            result.setAmount(BigDecimal.ZERO);
+            result.setExempt(true);
+            result.setExemptionReason("Zero emission vehicle (" + vehicle.fuel + ")");
+            return result;
+        }
+
+        result.setExempt(false);
+
+        // Calculer l'age du vehicule par rapport a la date courante
+        int vehicleAgeYears = calculateVehicleAge(registrationDate, rateDate);
+        result.addBreakdownItem("vehicleAgeYears", vehicleAgeYears);
+
+        // Calculer selon la region et le type de taxe
+        BigDecimal amount;
+        if (taxType == TaxType.tmc) {
+            amount = calculateTmc(vehicle, region, rules, vehicleAgeYears, registrationDate, result);
+        } else {
+            amount = calculateAnnual(vehicle, region, rules, result);
+        }
+
+        // Appliquer les limites min/max
+        // Note: le minimum ne s'applique pas si:
+        // - le coefficient d'age est 0 (vehicule de 15+ ans)
+        // - CNG exempt (Brussels TMC)
+        Object ageCoefObj = result.getBreakdown().get("ageCoefficient");
+        boolean ageExempt = ageCoefObj != null && BigDecimal.ZERO.compareTo(new BigDecimal(ageCoefObj.toString())) == 0;
+        boolean cngExempt = Boolean.TRUE.equals(result.getBreakdown().get("cngExempt"));
+
+        if (!ageExempt && !cngExempt) {
+            BigDecimal minAmount = rules.getMinAmount(region, taxType);
+            if (amount.compareTo(minAmount) < 0) {
+                amount = minAmount;
+                result.addBreakdownItem("minAmountApplied", true);
+            }
+        }
+
+        Optional<BigDecimal> maxAmountOpt = rules.getMaxAmount(region, taxType);
+        if (maxAmountOpt.isPresent()) {
+            BigDecimal maxAmount = maxAmountOpt.get();
+            if (amount.compareTo(maxAmount) > 0) {
+                result.addBreakdownItem("maxAmountApplied", true);
+                result.addBreakdownItem("originalAmount", amount);
+                amount = maxAmount;
+            }
+        }
+
+        result.setAmount(amount.setScale(2, RoundingMode.HALF_UP));
+        return result;
+    }
+
+    /**
+     * Calcule la TMC selon la region.
+     */
+    private BigDecimal calculateTmc(
+            Vehicle vehicle,
+            Region region,
+            TaxRules rules,
+            int vehicleAgeYears,
+            LocalDate registrationDate,
+            TaxResult result) {
+
+        BigDecimal baseAmount;
+        BigDecimal ageCoefficient = rules.getAgeCoefficient(
+                region, TaxType.tmc, vehicleAgeYears, BigDecimal.ONE);
+        result.addBreakdownItem("ageCoefficient", ageCoefficient);
+
+        baseAmount = switch (region) {
+            case wallonia -> calculateWalloniaTmc(vehicle, rules, result);
+            case brussels -> calculateBrusselsTmc(vehicle, rules, result);
+            case flanders -> calculateFlandersTmc(vehicle, rules, registrationDate, result);
+        };
+
+        result.addBreakdownItem("baseAmount", baseAmount);
+
+        // Appliquer le coefficient d'age
+        // Note: Brussels electric a un tarif fixe, pas de coefficient d'age (sauf exemption 15+)
+        BigDecimal finalAmount;
+        boolean isElectricFixed = Boolean.TRUE.equals(result.getBreakdown().get("isElectricReduced"));
+        if (isElectricFixed && ageCoefficient.compareTo(BigDecimal.ZERO) > 0) {
+            // Tarif electrique fixe: pas de coefficient d'age (sauf si 0 = exempt)
+            finalAmount = baseAmount;
+            result.addBreakdownItem("electricFixedNoAgeCoef", true);
+        } else {
+            finalAmount = baseAmount.multiply(ageCoefficient);
+        }
+        result.addBreakdownItem("afterAgeCoefficient", finalAmount);
+
+        return finalAmount;
+    }
+
+    /**
+     * Calcule la TMC Wallonie (reforme 2025).
+     * Formule officielle: TMC = MB × (CO2/X) × (MMA/Y) × C × coefficient_age
+     * Ou MB = Montant de base (puissance kW)
+     *    CO2 = emissions CO2 du vehicule
+     *    X = 136 (WLTP) ou 115 (NEDC)
+     *    MMA = Masse Maximale Autorisee
+     *    Y = 1838 kg (reference)
+     *    C = coefficient energie/carburant
+     */
+    private BigDecimal calculateWalloniaTmc(Vehicle vehicle, TaxRules rules, TaxResult result) {
+        // Montant de base selon la puissance (MB)
+        BigDecimal baseAmount = rules.findBracketAmount(
+                Region.wallonia, TaxType.tmc, "power_kw", vehicle.powerKw)
+                .orElse(BigDecimal.ZERO);
+        result.addBreakdownItem("powerKw", vehicle.powerKw);
+        result.addBreakdownItem("baseAmount", baseAmount);
+
+        // Coefficient energie (C) - depend du type de carburant
+        BigDecimal energyCoef = getWalloniaEnergyCoefficient(vehicle, rules);
+        result.addBreakdownItem("energyCoefficient", energyCoef);
+
+        // Facteur CO2 = CO2 / X (pour vehicules thermiques uniquement)
+        BigDecimal co2Factor = BigDecimal.ONE;
+        if (!isZeroEmissionFuel(vehicle.fuel) && vehicle.co2Wltp != null && vehicle.co2Wltp > 0) {
+            BigDecimal co2Reference = rules.getParameter(
+                    Region.wallonia, TaxType.tmc, "co2_reference_wltp", BigDecimal.valueOf(136));
+            co2Factor = BigDecimal.valueOf(vehicle.co2Wltp)
+                    .divide(co2Reference, 4, RoundingMode.HALF_UP);
+            result.addBreakdownItem("co2Wltp", vehicle.co2Wltp);
+            result.addBreakdownItem("co2Reference", co2Reference);
+            result.addBreakdownItem("co2Factor", co2Factor);
+        }
+
+        // Facteur MMA = MMA / Y
+        BigDecimal mmaFactor = BigDecimal.ONE;
+        if (vehicle.mmaKg != null && vehicle.mmaKg > 0) {
+            BigDecimal mmaReference = rules.getParameter(
+                    Region.wallonia, TaxType.tmc, "mma_reference", BigDecimal.valueOf(1838));
+            mmaFactor = BigDecimal.valueOf(vehicle.mmaKg)
+                    .divide(mmaReference, 4, RoundingMode.HALF_UP);
+            result.addBreakdownItem("mmaKg", vehicle.mmaKg);
+            result.addBreakdownItem("mmaReference", mmaReference);
+            result.addBreakdownItem("mmaFactor", mmaFactor);
+        }
+
+        // Formule: MB × (CO2/X) × (MMA/Y) × C
+        return baseAmount.multiply(co2Factor).multiply(mmaFactor).multiply(energyCoef);
+    }
+
+    /**
+     * Retourne le coefficient energie pour Wallonie TMC.
+     * - Electrique/Hydrogene: coefficient variable selon la puissance (0.01 a 0.26)
+     * - Hybride: 0.8
+     * - Thermique (essence, diesel, etc.): 1.0
+     */
+    private BigDecimal getWalloniaEnergyCoefficient(Vehicle vehicle, TaxRules rules) {
+        FuelType fuel = vehicle.fuel;
+
+        // Vehicules electriques/hydrogene: coefficient selon puissance
+        if (fuel == FuelType.electric || fuel == FuelType.hydrogen) {
+            return rules.findBracketAmount(
+                    Region.wallonia, TaxType.tmc, "energy_electric_kw", vehicle.powerKw)
+                    .orElse(BigDecimal.valueOf(0.01));
+        }
+
+        // Vehicules hybrides
+        if (isHybridFuel(fuel)) {
+            return rules.getParameter(Region.wallonia, TaxType.tmc, "energy_hybrid", BigDecimal.valueOf(0.8));
+        }
+
+        // Vehicules thermiques (essence, diesel, GPL, CNG, etc.)
+        return rules.getParameter(Region.wallonia, TaxType.tmc, "energy_thermal", BigDecimal.ONE);
+    }
+
+    /**
+     * Verifie si le carburant est zero emission.
+     */
+    private boolean isZeroEmissionFuel(FuelType fuel) {
+        return fuel == FuelType.electric || fuel == FuelType.hydrogen;
+    }
+
+    /**
+     * Verifie si le carburant est hybride.
+     */
+    private boolean isHybridFuel(FuelType fuel) {
+        return fuel == FuelType.hybrid_petrol || fuel == FuelType.hybrid_diesel
+                || fuel == FuelType.plug_in_hybrid_petrol || fuel == FuelType.plug_in_hybrid_diesel;
+    }
+
+    /**
+     * Calcule la TMC Bruxelles.
+     * Formule: Max(montant_CV, montant_kW) × Coef. age - Reduction LPG
+     * On compare les MONTANTS (pas les valeurs CV/kW) et on prend le plus eleve.
+     * Electrique/Hydrogene: tarif reduit fixe de 74.29€
+     */
+    private BigDecimal calculateBrusselsTmc(Vehicle vehicle, TaxRules rules, TaxResult result) {
+        // Vehicules electriques/hydrogene: tarif reduit fixe (pas exempt, mais minimum garanti)
+        if (isZeroEmissionFuel(vehicle.fuel)) {
+            BigDecimal electricAmount = rules.getParameter(
+                    Region.brussels, TaxType.tmc, "electric_min_amount", BigDecimal.valueOf(74.29));
+            result.addBreakdownItem("electricFixedAmount", electricAmount);
+            result.addBreakdownItem("isElectricReduced", true);
+            return electricAmount;
+        }
+
+        // Montant selon CV fiscaux
+        BigDecimal amountByFiscalHp = rules.findBracketAmount(
+                Region.brussels, TaxType.tmc, "fiscal_hp", vehicle.fiscalHp)
+                .orElse(BigDecimal.ZERO);
+        result.addBreakdownItem("fiscalHp", vehicle.fiscalHp);
+        result.addBreakdownItem("amountByFiscalHp", amountByFiscalHp);
+
+        // Montant selon puissance kW
+        BigDecimal amountByPowerKw = rules.findBracketAmount(
+                Region.brussels, TaxType.tmc, "power_kw", vehicle.powerKw)
+                .orElse(BigDecimal.ZERO);
+        result.addBreakdownItem("powerKw", vehicle.powerKw);
+        result.addBreakdownItem("amountByPowerKw", amountByPowerKw);
+
+        // Prendre le montant le plus eleve
+        BigDecimal baseAmount = amountByFiscalHp.max(amountByPowerKw);
+        result.addBreakdownItem("baseAmount", baseAmount);
+        result.addBreakdownItem("usedCriteria", amountByFiscalHp.compareTo(amountByPowerKw) >= 0 ? "fiscal_hp" : "power_kw");
+
+        // Reduction LPG
+        if (vehicle.fuel == FuelType.lpg) {
+            BigDecimal lpgReduction = rules.getParameter(
+                    Region.brussels, TaxType.tmc, "lpg_reduction", BigDecimal.valueOf(298));
+            baseAmount = baseAmount.subtract(lpgReduction);
+            result.addBreakdownItem("lpgReduction", lpgReduction);
+        }
+
+        // CNG est exempt (0€)
+        if (vehicle.fuel == FuelType.cng) {
+            result.addBreakdownItem("cngExempt", true);
+            return BigDecimal.ZERO;
+        }
+
+        return baseAmount.max(BigDecimal.ZERO);
+    }
+
+    /**
+     * Calcule la TMC Flandre (BIV).
+     *
+     * DEUX FORMULES selon la date de premiere immatriculation:
+     * - Pre-2021 (NEDC): BIV = (((CO2 × f + x) / 246)^6 × 4500 + c) × LC
+     * - 2021+ (WLTP):    BIV = (((CO2 × f × q) / 246)^6 × 4500 + c) × LC
+     *
+     * Ou:
+     *   CO2 = emissions CO2 (g/km)
+     *   f = facteur carburant (LPG: 0.88, CNG: 0.93, bicarburation CNG: 0.744, autres: 1.0)
+     *   x = terme de correction CO2 additif (NEDC, +4.5g/an depuis 2013)
+     *   q = facteur multiplicatif WLTP (1.07 en 2021, +0.035/an)
+     *   c = luchtcomponent (selon euronorm et type de carburant)
+     *   LC = coefficient d'age (applique en amont dans calculateTmc)
+     *
+     * Note: LC est applique APRES cette methode dans calculateTmc()
+     */
+    private BigDecimal calculateFlandersTmc(Vehicle vehicle, TaxRules rules, LocalDate registrationDate, TaxResult result) {
+        // Vehicules electriques/hydrogene: montant fixe a partir de 2026
+        if (isZeroEmissionFuel(vehicle.fuel)) {
+            Optional<BigDecimal> electricFixed = rules.getParameter(
+                    Region.flanders, TaxType.tmc, "electric_fixed_amount");
+            if (electricFixed.isPresent()) {
+                result.addBreakdownItem("electricFixedAmount", electricFixed.get());
+                result.addBreakdownItem("isElectricReduced", true);
+                return electricFixed.get();
+            }
+            // Avant 2026: exempt (gere par isZeroEmissionExempt dans calculateTax)
+            return BigDecimal.ZERO;
+        }
+
+        // Determiner si le vehicule est NEDC (pre-2021) ou WLTP (2021+)
+        LocalDate wltpStartDate = LocalDate.of(2021, 1, 1);
+        boolean isWltp = registrationDate != null && !registrationDate.isBefore(wltpStartDate);
+        result.addBreakdownItem("formulaType", isWltp ? "WLTP" : "NEDC");
+
+        // CO2 emissions (utiliser NEDC si disponible pour vehicules pre-2021)
+        int co2;
+        if (isWltp) {
+            co2 = vehicle.co2Wltp != null && vehicle.co2Wltp > 0
+                    ? vehicle.co2Wltp
+                    : getDefaultCo2(vehicle);
+            result.addBreakdownItem("co2Wltp", co2);
+        } else {
+            // Pour NEDC, preferer co2Nedc si disponible
+            co2 = vehicle.co2Nedc != null && vehicle.co2Nedc > 0
+                    ? vehicle.co2Nedc
+                    : (vehicle.co2Wltp != null && vehicle.co2Wltp > 0
+                            ? vehicle.co2Wltp
+                            : getDefaultCo2(vehicle));
+            result.addBreakdownItem("co2Nedc", co2);
+        }
+
+        // f = facteur carburant
+        BigDecimal f = getFlandersFuelFactor(vehicle.fuel, rules);
+        result.addBreakdownItem("fuelFactor_f", f);
+
+        // Diviseur (246)
+        BigDecimal divisor = rules.getParameter(
+                Region.flanders, TaxType.tmc, "formula_divisor", BigDecimal.valueOf(246));
+
+        // Constante (4500)
+        BigDecimal constant = rules.getParameter(
+                Region.flanders, TaxType.tmc, "formula_constant", BigDecimal.valueOf(4500));
+
+        // c = luchtcomponent (selon euronorm et carburant)
+        BigDecimal c = getFlandersLuchtcomponent(vehicle, rules);
+        result.addBreakdownItem("luchtcomponent_c", c);
+        result.addBreakdownItem("euroNorm", vehicle.euroNorm);
+
+        // Calculer selon la formule appropriee
+        BigDecimal step1;
+        if (isWltp) {
+            // Formule WLTP: CO2 × f × q
+            BigDecimal q = rules.getParameter(
+                    Region.flanders, TaxType.tmc, "wltp_q_factor", BigDecimal.valueOf(1.245));
+            result.addBreakdownItem("wltp_q_factor", q);
+            step1 = BigDecimal.valueOf(co2).multiply(f).multiply(q);
+            result.addBreakdownItem("step1_co2_f_q", step1);
+        } else {
+            // Formule NEDC: CO2 × f + x
+            BigDecimal x = rules.getParameter(
+                    Region.flanders, TaxType.tmc, "co2_correction_x", BigDecimal.valueOf(63));
+            result.addBreakdownItem("co2Correction_x", x);
+            step1 = BigDecimal.valueOf(co2).multiply(f).add(x);
+            result.addBreakdownItem("step1_co2_f_x", step1);
+        }
+
+        // Etape 2: / 246
+        BigDecimal step2 = step1.divide(divisor, 10, RoundingMode.HALF_UP);
+        result.addBreakdownItem("step2_divided", step2);
+
+        // Etape 3: ^6
+        BigDecimal step3 = step2.pow(6);
+        result.addBreakdownItem("step3_power6", step3);
+
+        // Etape 4: × 4500
+        BigDecimal step4 = step3.multiply(constant);
+        result.addBreakdownItem("step4_times4500", step4);
+
+        // Etape 5: + c (luchtcomponent)
+        BigDecimal biv = step4.add(c);
+        result.addBreakdownItem("step5_plus_luchtcomponent", biv);
+
+        // Note: le coefficient d'age (LC) est applique dans calculateTmc()
+        return biv;
+    }
+
+    /**
+     * Retourne le facteur carburant (f) pour la formule BIV Flandre.
+     */
+    private BigDecimal getFlandersFuelFactor(FuelType fuel, TaxRules rules) {
+        if (fuel == FuelType.lpg) {
+            return rules.getParameter(
+                    Region.flanders, TaxType.tmc, "fuel_factor_lpg", BigDecimal.valueOf(0.88));
+        }
+        if (fuel == FuelType.cng) {
+            return rules.getParameter(
+                    Region.flanders, TaxType.tmc, "fuel_factor_cng", BigDecimal.valueOf(0.93));
+        }
+        return rules.getParameter(Region.flanders, TaxType.tmc, "fuel_factor_default", BigDecimal.ONE);
+    }
+
+    /**
+     * Retourne le luchtcomponent (c) pour la formule BIV Flandre.
+     * Depend du type de carburant (diesel vs essence/LPG/CNG) et de la norme Euro.
+     */
+    private BigDecimal getFlandersLuchtcomponent(Vehicle vehicle, TaxRules rules) {
+        int euroNormValue = getEuroNormNumericValue(vehicle.euroNorm);
+
+        // Diesel a un luchtcomponent plus eleve
+        String bracketKey = (vehicle.fuel == FuelType.diesel || vehicle.fuel == FuelType.hybrid_diesel
+                || vehicle.fuel == FuelType.plug_in_hybrid_diesel)
+                ? "luchtcomponent_diesel"
+                : "luchtcomponent_petrol";
+
+        return rules.findBracketAmount(
+                Region.flanders, TaxType.tmc, bracketKey, euroNormValue)
+                .orElse(BigDecimal.valueOf(500)); // Valeur par defaut raisonnable
+    }
+
+    /**
+     * Retourne une valeur CO2 par defaut si non disponible.
+     * Basee sur des estimations selon le type de carburant et la puissance.
+     */
+    private int getDefaultCo2(Vehicle vehicle) {
+        // Estimation basee sur des moyennes du marche
+        if (vehicle.fuel == FuelType.diesel || vehicle.fuel == FuelType.hybrid_diesel) {
+            return 120 + (vehicle.powerKw / 2);
+        }
+        // Essence et autres
+        return 130 + (vehicle.powerKw / 2);
+    }
+
+    /**
+     * Convertit un EuroNorm en valeur numerique pour les brackets Flandre.
+     */
+    private int getEuroNormNumericValue(EuroNorm euroNorm) {
+        if (euroNorm == null) return 6; // Default to Euro 6
+        return switch (euroNorm) {
+            case euro_1 -> 1;
+            case euro_2 -> 2;
+            case euro_3 -> 3;
+            case euro_4 -> 4;
+            case euro_5 -> 5;
+            case euro_6, euro_6d_temp, euro_6d -> 6;
+            case euro_7 -> 7;
+        };
+    }
+
+    /**
+     * Calcule la taxe annuelle.
+     */
+    private BigDecimal calculateAnnual(
+            Vehicle vehicle,
+            Region region,
+            TaxRules rules,
+            TaxResult result) {
+
+        // Montant de base selon CV fiscaux
+        BigDecimal baseAmount = rules.findBracketAmount(region, TaxType.annual, "fiscal_hp", vehicle.fiscalHp)
+                .orElse(BigDecimal.ZERO);
+        result.addBreakdownItem("baseAmount", baseAmount);
+        result.addBreakdownItem("fiscalHp", vehicle.fiscalHp);
+
+        // Supplement LPG (Wallonia & Brussels only - Flanders has no LPG supplement)
+        // Official rates: ≤7 CV: 89.16€, 8-13 CV: 148.68€, ≥14 CV: 208.20€
+        if (vehicle.fuel == FuelType.lpg && region != Region.flanders) {
+            BigDecimal lpgSupplement = rules.findBracketAmount(region, TaxType.annual, "lpg_supplement", vehicle.fiscalHp)
+                    .orElseGet(() -> {
+                        // Fallback to official rates if no bracket found
+                        if (vehicle.fiscalHp <= 7) return BigDecimal.valueOf(89.16);
+                        if (vehicle.fiscalHp <= 13) return BigDecimal.valueOf(148.68);
+                        return BigDecimal.valueOf(208.20);
+                    });
+            baseAmount = baseAmount.add(lpgSupplement);
+            result.addBreakdownItem("lpgSupplement", lpgSupplement);
+        }
+
+        // Bonus/Malus CO2 pour la Flandre
+        if (region == Region.flanders && vehicle.co2Wltp != null && vehicle.co2Wltp > 0) {
+            BigDecimal co2Reference = rules.getParameter(
+                    Region.flanders, TaxType.annual, "co2_reference_wltp", BigDecimal.valueOf(149));
+            BigDecimal co2Diff = BigDecimal.valueOf(vehicle.co2Wltp).subtract(co2Reference);
+            BigDecimal correctionPercent = rules.getParameter(
+                    Region.flanders, TaxType.annual, "co2_correction_percent", BigDecimal.valueOf(0.003));
+            BigDecimal co2Adjustment = baseAmount.multiply(co2Diff).multiply(correctionPercent);
+            baseAmount = baseAmount.add(co2Adjustment);
+            result.addBreakdownItem("co2Adjustment", co2Adjustment);
+        }
+
+        return baseAmount.max(BigDecimal.ZERO);
+    }
+
+    /**
+     * Calcule l'age du vehicule en annees.
+     * Pour la TMC, l'age est calcule par rapport a la date de calcul (pas aujourd'hui).
+     */
+    private int calculateVehicleAge(LocalDate registrationDate, LocalDate referenceDate) {
+        if (registrationDate == null) {
+            return 0;
+        }
+        LocalDate refDate = referenceDate != null ? referenceDate : LocalDate.now();
+        int years = Period.between(registrationDate, refDate).getYears();
+        return Math.max(0, years); // Ne pas retourner d'age negatif pour les vehicules neufs
+    }
+}
@@ -0,0 +1,69 @@
+package be.hoffmann.backtaxes.engine;
+
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resultat d'un calcul de taxe: montant, exemption et detail du calcul.
+ */
+public class TaxResult {
+
+    private final Region region;
+    private final TaxType taxType;
+    private final Map<String, Object> breakdown = new HashMap<>();
+    private BigDecimal amount;
+    private boolean exempt;
+    private String exemptionReason;
+
+    TaxResult(Region region, TaxType taxType) {
+        this.region = region;
+        this.taxType = taxType;
+    }
+
+    public Region getRegion() {
+        return region;
+    }
+
+    public TaxType getTaxType() {
+        return taxType;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public boolean isExempt() {
+        return exempt;
+    }
+
+    void setExempt(boolean exempt) {
+        this.exempt = exempt;
+    }
+
+    public String getExemptionReason() {
+        return exemptionReason;
+    }
+
+    void setExemptionReason(String exemptionReason) {
+        this.exemptionReason = exemptionReason;
+    }
+
+    /**
+     * Etapes intermediaires du calcul (coefficients, tranches, facteurs).
+     */
+    public Map<String, Object> getBreakdown() {
+        return breakdown;
+    }
+
+    void addBreakdownItem(String key, Object value) {
+        breakdown.put(key, value);
+    }
+}
@@ -0,0 +1,227 @@
+package be.hoffmann.backtaxes.engine;
+
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Jeu de regles immuable, fige pour une date de reference.
+ *
+ * Contient toutes les tranches, parametres, coefficients d'age et exemptions
+ * valides a cette date, indexes en memoire. Une fois construit, il peut etre
+ * partage entre threads et reutilise pour un nombre illimite de calculs
+ * sans aucun acces a la base de donnees.
+ */
+public final class TaxRuleSet implements TaxRules {
+
+    /** Age maximum pris en compte pour les coefficients (15+ ans = meme coefficient) */
+    private static final int MAX_AGE_YEARS = 15;
+
+    private final LocalDate rateDate;
+    private final Map<RuleKey, List<BracketRule>> brackets;
+    private final Map<RuleKey, BigDecimal> parameters;
+    private final Map<RuleKey, BigDecimal> ageCoefficients;
+    private final Set<RuleKey> exemptions;
+    private final String fingerprint;
+
+    private TaxRuleSet(Builder builder) {
+        this.rateDate = builder.rateDate;
+        Map<RuleKey, List<BracketRule>> sortedBrackets = new HashMap<>();
+        builder.brackets.forEach((key, rules) -> sortedBrackets.put(key, rules.stream()
+                .sorted(Comparator.comparingInt(BracketRule::minValue))
+                .toList()));
+        this.brackets = Map.copyOf(sortedBrackets);
+        this.parameters = Map.copyOf(builder.parameters);
+        this.ageCoefficients = Map.copyOf(builder.ageCoefficients);
+        this.exemptions = Set.copyOf(builder.exemptions);
+        this.fingerprint = computeFingerprint();
+    }
+
+    public static Builder builder(LocalDate rateDate) {
+        return new Builder(rateDate);
+    }
+
+    @Override
+    public LocalDate getRateDate() {
+        return rateDate;
+    }
+
+    @Override
+    public Optional<BigDecimal> findBracketAmount(Region region, TaxType taxType, String bracketKey, int value) {
+        List<BracketRule> rules = brackets.get(new RuleKey(region, taxType, bracketKey));
+        if (rules == null) {
+            return Optional.empty();
+        }
+        for (BracketRule rule : rules) {
+            if (rule.contains(value)) {
+                return Optional.of(rule.amount());
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<BigDecimal> getParameter(Region region, TaxType taxType, String paramKey) {
+        return Optional.ofNullable(parameters.get(new RuleKey(region, taxType, paramKey)));
+    }
+
+    @Override
+    public BigDecimal getAgeCoefficient(Region region, TaxType taxType, int vehicleAgeYears, BigDecimal defaultValue) {
+        int age = Math.min(vehicleAgeYears, MAX_AGE_YEARS);
+        BigDecimal coefficient = ageCoefficients.get(new RuleKey(region, taxType, String.valueOf(age)));
+        return coefficient != null ? coefficient : defaultValue;
+    }
+
+    @Override
+    public boolean isZeroEmissionExempt(Region region, TaxType taxType, FuelType fuelType) {
+        if (fuelType == FuelType.electric || fuelType == FuelType.hydrogen) {
+            return exemptions.contains(new RuleKey(region, taxType, "fuel_" + fuelType.name()));
+        }
+        return false;
+    }
+
+    /**
+     * Empreinte SHA-256 (hex) du contenu des regles, independante de la date de reference.
+     * Deux jeux de regles avec la meme empreinte donnent exactement les memes montants.
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Parcourt toutes les regles (export, serialisation). Les tranches d'une meme
+     * cle sont visitees par borne minimale croissante; l'ordre des cles n'est pas garanti.
+     */
+    public void accept(Visitor visitor) {
+        brackets.forEach((key, rules) -> rules.forEach(
+                rule -> visitor.bracket(key.region(), key.taxType(), key.key(), rule)));
+        parameters.forEach((key, value) -> visitor.parameter(key.region(), key.taxType(), key.key(), value));
+        ageCoefficients.forEach((key, value) -> visitor.ageCoefficient(
+                key.region(), key.taxType(), Integer.parseInt(key.key()), value));
+        exemptions.forEach(key -> visitor.exemption(key.region(), key.taxType(), key.key()));
+    }
+
+    /**
+     * Nombre total de regles contenues (pour le logging).
+     */
+    public int size() {
+        return brackets.values().stream().mapToInt(List::size).sum()
+                + parameters.size() + ageCoefficients.size() + exemptions.size();
+    }
+
+    private String computeFingerprint() {
+        List<String> lines = new ArrayList<>(size());
+        brackets.forEach((key, rules) -> rules.forEach(rule -> lines.add("bracket|" + key.canonical()
+                + "|" + rule.minValue() + "|" + rule.maxValue() + "|" + canonical(rule.amount()))));
+        parameters.forEach((key, value) -> lines.add("param|" + key.canonical() + "|" + canonical(value)));
+        ageCoefficients.forEach((key, value) -> lines.add("age|" + key.canonical() + "|" + canonical(value)));
+        exemptions.forEach(key -> lines.add("exemption|" + key.canonical()));
+        Collections.sort(lines);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String line : lines) {
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String canonical(BigDecimal value) {
+        return value == null ? "null" : value.stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Cle de recherche: region + type de taxe + cle metier (bracket_key, param_key, age, condition_key).
+     */
+    private record RuleKey(Region region, TaxType taxType, String key) {
+
+        String canonical() {
+            return region + "|" + taxType + "|" + key;
+        }
+    }
+
+    /**
+     * Tranche immuable.
+     */
+    public record BracketRule(int minValue, Integer maxValue, BigDecimal amount) {
+
+        public boolean contains(int value) {
+            return value >= minValue && (maxValue == null || value <= maxValue);
+        }
+    }
+
+    /**
+     * Visiteur des regles d'un TaxRuleSet.
+     */
+    public interface Visitor {
+
+        void bracket(Region region, TaxType taxType, String bracketKey, BracketRule rule);
+
+        void parameter(Region region, TaxType taxType, String paramKey, BigDecimal value);
+
+        void ageCoefficient(Region region, TaxType taxType, int vehicleAgeYears, BigDecimal coefficient);
+
+        void exemption(Region region, TaxType taxType, String conditionKey);
+    }
+
+    /**
+     * Builder pour assembler un TaxRuleSet.
+     */
+    public static class Builder {
+        private final LocalDate rateDate;
+        private final Map<RuleKey, List<BracketRule>> brackets = new HashMap<>();
+        private final Map<RuleKey, BigDecimal> parameters = new HashMap<>();
+        private final Map<RuleKey, BigDecimal> ageCoefficients = new HashMap<>();
+        private final Set<RuleKey> exemptions = new HashSet<>();
+
+        private Builder(LocalDate rateDate) {
+            this.rateDate = rateDate;
+        }
+
+        public Builder bracket(Region region, TaxType taxType, String bracketKey,
+                               int minValue, Integer maxValue, BigDecimal amount) {
+            brackets.computeIfAbsent(new RuleKey(region, taxType, bracketKey), k -> new ArrayList<>())
+                    .add(new BracketRule(minValue, maxValue, amount));
+            return this;
+        }
+
+        public Builder parameter(Region region, TaxType taxType, String paramKey, BigDecimal value) {
+            parameters.put(new RuleKey(region, taxType, paramKey), value);
+            return this;
+        }
+
+        public Builder ageCoefficient(Region region, TaxType taxType, int vehicleAgeYears, BigDecimal coefficient) {
+            ageCoefficients.put(new RuleKey(region, taxType, String.valueOf(vehicleAgeYears)), coefficient);
+            return this;
+        }
+
+        public Builder exemption(Region region, TaxType taxType, String conditionKey) {
+            exemptions.add(new RuleKey(region, taxType, conditionKey));
+            return this;
+        }
+
+        public TaxRuleSet build() {
+            return new TaxRuleSet(this);
+        }
+    }
+}
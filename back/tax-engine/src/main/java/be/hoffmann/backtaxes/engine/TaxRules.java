@@ -0,0 +1,74 @@
+package be.hoffmann.backtaxes.engine;
+
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Vue des regles de taxation applicables a une date de reference donnee.
+ *
+ * Le moteur de calcul ne depend que de cette interface, ce qui permet de
+ * l'executer soit sur des donnees "live" (adaptateur vers la base de
+ * l'application), soit sur un jeu de regles immuable fige pour une periode
+ * (TaxRuleSet, construit par une RuleSource).
+ */
+public interface TaxRules {
+
+    /**
+     * Date de reference pour laquelle ces regles sont valides.
+     */
+    LocalDate getRateDate();
+
+    /**
+     * Montant (ou coefficient) de la tranche contenant la valeur donnee.
+     */
+    Optional<BigDecimal> findBracketAmount(Region region, TaxType taxType, String bracketKey, int value);
+
+    /**
+     * Valeur d'un parametre de taxe.
+     */
+    Optional<BigDecimal> getParameter(Region region, TaxType taxType, String paramKey);
+
+    /**
+     * Valeur d'un parametre de taxe avec valeur par defaut.
+     */
+    default BigDecimal getParameter(Region region, TaxType taxType, String paramKey, BigDecimal defaultValue) {
+        return getParameter(region, taxType, paramKey).orElse(defaultValue);
+    }
+
+    /**
+     * Coefficient d'age avec valeur par defaut (l'age est plafonne a 15 ans).
+     */
+    BigDecimal getAgeCoefficient(Region region, TaxType taxType, int vehicleAgeYears, BigDecimal defaultValue);
+
+    /**
+     * Verifie si un vehicule electrique ou hydrogene est exonere.
+     */
+    boolean isZeroEmissionExempt(Region region, TaxType taxType, FuelType fuelType);
+
+    /**
+     * Montant minimum de taxe (0 si non defini).
+     */
+    default BigDecimal getMinAmount(Region region, TaxType taxType) {
+        return getParameter(region, taxType, "min_amount", BigDecimal.ZERO);
+    }
+
+    /**
+     * Montant maximum de taxe (vide si pas de plafond).
+     */
+    default Optional<BigDecimal> getMaxAmount(Region region, TaxType taxType) {
+        return getParameter(region, taxType, "max_amount");
+    }
+
+    /**
+     * Convertit une cylindree en CV fiscaux selon les tranches "displacement_cc".
+     */
+    default Optional<Integer> getFiscalHpFromDisplacement(Region region, int displacementCc) {
+        return findBracketAmount(region, TaxType.annual, "displacement_cc", displacementCc)
+                .map(BigDecimal::intValue);
+    }
+}
@@ -0,0 +1,29 @@
+package be.hoffmann.backtaxes.engine;
+
+import be.hoffmann.backtaxes.entity.enums.EuroNorm;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+
+/**
+ * Donnees vehicule normalisees pour le calcul.
+ * Puissance et CV fiscaux absents sont ramenes a 0.
+ */
+public class Vehicle {
+    public final Integer powerKw;
+    public final Integer fiscalHp;
+    public final FuelType fuel;
+    public final EuroNorm euroNorm;
+    public final Integer co2Wltp;
+    public final Integer co2Nedc;
+    public final Integer mmaKg;
+
+    public Vehicle(Integer powerKw, Integer fiscalHp, FuelType fuel, EuroNorm euroNorm,
+                   Integer co2Wltp, Integer co2Nedc, Integer mmaKg) {
+        this.powerKw = powerKw != null ? powerKw : 0;
+        this.fiscalHp = fiscalHp != null ? fiscalHp : 0;
+        this.fuel = fuel;
+        this.euroNorm = euroNorm;
+        this.co2Wltp = co2Wltp;
+        this.co2Nedc = co2Nedc;
+        this.mmaKg = mmaKg;
+    }
+}
@@ -0,0 +1,155 @@
+package be.hoffmann.backtaxes.engine;
+
+import be.hoffmann.backtaxes.entity.enums.EuroNorm;
+import be.hoffmann.backtaxes.entity.enums.FuelType;
+import be.hoffmann.backtaxes.entity.enums.Region;
+import be.hoffmann.backtaxes.entity.enums.TaxType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaxEngineTest {
+
+    private static final LocalDate RATE_DATE = LocalDate.of(2025, 6, 1);
+
+    private static final String BRACKETS = """
+            region,tax_type,bracket_key,min_value,max_value,amount
+            wallonia,annual,fiscal_hp,0,4,99.98
+            wallonia,annual,fiscal_hp,5,5,133.07
+            brussels,tmc,fiscal_hp,0,8,75.79
+            brussels,tmc,fiscal_hp,9,10,151.57
+            brussels,tmc,fiscal_hp,11,,609.99
+            brussels,tmc,power_kw,0,70,75.79
+            brussels,tmc,power_kw,71,,346.92
+            """;
+
+    private static final String PARAMETERS = """
+            region,tax_type,param_key,param_value
+            brussels,tmc,min_amount,75.7900
+            """;
+
+    private static final String AGE_COEFFICIENTS = """
+            region,tax_type,vehicle_age_years,coefficient
+            brussels,tmc,0,1.0000
+            brussels,tmc,1,0.9000
+            brussels,tmc,3,0.7000
+            """;
+
+    private static final String EXEMPTIONS = """
+            region,tax_type,condition_key
+            flanders,annual,fuel_electric
+            """;
+
+    private final TaxEngine engine = new TaxEngine();
+
+    private TaxRuleSet rules;
+
+    @BeforeEach
+    void setUp() {
+        rules = source(BRACKETS, PARAMETERS, AGE_COEFFICIENTS, EXEMPTIONS).load(RATE_DATE);
+    }
+
+    @Nested
+    @DisplayName("calculate")
+    class CalculateTests {
+
+        @Test
+        @DisplayName("should use the fiscal_hp bracket for Wallonia annual tax")
+        void shouldUseWalloniaAnnualBracket() {
+            Vehicle vehicle = new Vehicle(66, 5, FuelType.petrol, EuroNorm.euro_6d, 120, null, 1400);
+
+            TaxResult result = engine.calculate(vehicle, Region.wallonia, TaxType.annual, RATE_DATE, rules);
+
+            assertThat(result.getAmount()).isEqualByComparingTo("133.07");
+            assertThat(result.isExempt()).isFalse();
+        }
+
+        @Test
+        @DisplayName("should take the highest of hp and kW amounts and apply the age coefficient for Brussels TMC")
+        void shouldApplyBrusselsTmcRules() {
+            Vehicle vehicle = new Vehicle(60, 11, FuelType.petrol, EuroNorm.euro_6d, 120, null, 1400);
+
+            TaxResult result = engine.calculate(
+                    vehicle, Region.brussels, TaxType.tmc, RATE_DATE.minusYears(1), rules);
+
+            assertThat(result.getAmount()).isEqualByComparingTo("548.99");
+            assertThat(result.getBreakdown())
+                    .containsEntry("usedCriteria", "fiscal_hp")
+                    .containsEntry("vehicleAgeYears", 1);
+        }
+
+        @Test
+        @DisplayName("should exempt a vehicle whose fuel matches an exemption")
+        void shouldApplyExemption() {
+            Vehicle vehicle = new Vehicle(100, 5, FuelType.electric, null, 0, null, 1800);
+
+            TaxResult result = engine.calculate(vehicle, Region.flanders, TaxType.annual, RATE_DATE, rules);
+
+            assertThat(result.isExempt()).isTrue();
+            assertThat(result.getAmount()).isEqualByComparingTo(BigDecimal.ZERO);
+            assertThat(result.getExemptionReason()).contains("electric");
+        }
+    }
+
+    @Nested
+    @DisplayName("CsvRuleSource")
+    class CsvRuleSourceTests {
+
+        @Test
+        @DisplayName("should load the same rules whatever the row order")
+        void shouldIgnoreRowOrder() {
+            String reversedBrackets = BRACKETS.lines().findFirst().orElseThrow() + "\n"
+                    + String.join("\n", BRACKETS.lines().skip(1).toList().reversed());
+
+            TaxRuleSet reversed = source(reversedBrackets, PARAMETERS, AGE_COEFFICIENTS, EXEMPTIONS).load(RATE_DATE);
+
+            assertThat(reversed.fingerprint()).isEqualTo(rules.fingerprint());
+        }
+
+        @Test
+        @DisplayName("should work without exemptions export")
+        void shouldAllowMissingExemptions() {
+            CsvRuleSource source = new CsvRuleSource(
+                    new StringReader(BRACKETS), new StringReader(PARAMETERS), new StringReader(AGE_COEFFICIENTS), null);
+
+            assertThat(source.load(RATE_DATE).isZeroEmissionExempt(Region.flanders, TaxType.annual, FuelType.electric))
+                    .isFalse();
+        }
+
+        @Test
+        @DisplayName("should report the file and line of an invalid row")
+        void shouldReportInvalidRow() {
+            String invalid = PARAMETERS + "atlantis,tmc,min_amount,1\n";
+
+            assertThatThrownBy(() -> source(BRACKETS, invalid, AGE_COEFFICIENTS, EXEMPTIONS))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageStartingWith(CsvRuleSource.PARAMETERS_FILE + ":3");
+        }
+
+        @Test
+        @DisplayName("should reject rows with a wrong column count")
+        void shouldRejectWrongColumnCount() {
+            String invalid = AGE_COEFFICIENTS + "brussels,tmc,5\n";
+
+            assertThatThrownBy(() -> source(BRACKETS, PARAMETERS, invalid, EXEMPTIONS))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining(CsvRuleSource.AGE_COEFFICIENTS_FILE + ":5");
+        }
+    }
+
+    private static CsvRuleSource source(String brackets, String parameters, String ageCoefficients, String exemptions) {
+        return new CsvRuleSource(
+                new StringReader(brackets),
+                new StringReader(parameters),
+                new StringReader(ageCoefficients),
+                new StringReader(exemptions));
+    }
+}